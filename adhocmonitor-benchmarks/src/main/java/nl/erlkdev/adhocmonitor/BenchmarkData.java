@@ -0,0 +1,70 @@
+package nl.erlkdev.adhocmonitor;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Fixed test data of the benchmarks, so the results of different runs can be compared.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+
+    /**
+     * Function to create the addresses of the neighbours
+     *
+     * @param amount The amount of neighbours
+     * @return The addresses of the neighbours
+     */
+    static String[] neighbours(int amount) {
+        String[] neighbours = new String[amount];
+        for (int i = 0; i < amount; i++) {
+            neighbours[i] = "10.0." + (i / 250) + "." + (i % 250 + 2);
+        }
+        return neighbours;
+    }
+
+
+    /**
+     * Function to set custom values of all the types on a node
+     *
+     * @param monitorNode The monitor node
+     * @param amount The amount of custom values
+     */
+    static void setCustomValues(MonitorNode monitorNode, int amount) {
+        for (int i = 0; i < amount; i++) {
+            String key = "value" + i;
+            Object value = customValue(i);
+            if (value instanceof Long) {
+                monitorNode.setCustomValue(key, (Long) value);
+            } else if (value instanceof Double) {
+                monitorNode.setCustomValue(key, (Double) value);
+            } else if (value instanceof Boolean) {
+                monitorNode.setCustomValue(key, (Boolean) value);
+            } else {
+                monitorNode.setCustomValue(key, (String) value);
+            }
+        }
+    }
+
+
+    /**
+     * Function to create the value of a custom value, the types alternate
+     *
+     * @param index The index of the custom value
+     * @return A long, double, boolean or string
+     */
+    static Object customValue(int index) {
+        switch (index % 4) {
+            case 0:
+                return (long) index * 1000;
+            case 1:
+                return index * 0.5;
+            case 2:
+                return index % 3 == 0;
+            default:
+                return "state " + index;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.File;
+import java.util.regex.Pattern;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Runs the benchmark suite with fixed settings, so the results of different changes can be compared.
+ * The counter benchmarks run with 1, 2, 4, 8 and 16 threads, the other benchmarks with one thread.
+ * All runs use the GC profiler, which reports the allocated bytes per operation (gc.alloc.rate.norm).
+ * The results of every run are written as JSON to the result directory.
+ *
+ * Arguments: the result directory and optionally a regex that selects the benchmarks.
+ */
+public class BenchmarkRunner {
+
+    /* Thread counts of the contention benchmarks. */
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+
+
+    public static void main(String[] args) throws RunnerException {
+        File resultDir = new File(args.length > 0 ? args[0] : "build/results/jmh");
+        Pattern include = Pattern.compile(args.length > 1 ? args[1] : ".*");
+        resultDir.mkdirs();
+
+        String counters = CounterBenchmark.class.getName();
+        if (include.matcher(counters).find()) {
+            for (int threads : THREADS) {
+                run(options(counters, new File(resultDir, "counters-" + threads + "t.json")).threads(threads));
+            }
+        }
+
+        String[] singleThreaded = {JsonBenchmark.class.getName(), SendBenchmark.class.getName(),
+                LegacySendBenchmark.class.getName()};
+        for (String benchmark : singleThreaded) {
+            if (include.matcher(benchmark).find()) {
+                String name = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+                run(options(benchmark, new File(resultDir, name + ".json")).threads(1));
+            }
+        }
+    }
+
+
+    /**
+     * Function to create the options of a run with the fixed settings of the suite
+     *
+     * @param benchmark The class name of the benchmark
+     * @param result The file of the JSON results
+     * @return The options builder
+     */
+    private static ChainedOptionsBuilder options(String benchmark, File result) {
+        return new OptionsBuilder()
+                .include(Pattern.quote(benchmark) + "\\.")
+                .forks(2)
+                .warmupIterations(5)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(1))
+                .jvmArgsAppend("-Xms512m", "-Xmx512m")
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.getAbsolutePath());
+    }
+
+
+    /**
+     * Function to run the benchmarks with the options
+     *
+     * @param builder The options builder
+     * @throws RunnerException If the benchmarks couldn't be run
+     */
+    private static void run(ChainedOptionsBuilder builder) throws RunnerException {
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,99 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Benchmark of the IO and process tick counters, the latency histograms and the custom values of the monitor
+ * node, which are called from the network threads of the application. The BenchmarkRunner runs it with 1 to 16
+ * threads to measure the contention. Every thread sends to its own neighbour, like the connections of an ad hoc network.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CounterBenchmark {
+
+    /* Amount of neighbours of the node. */
+    static final int NEIGHBOURS = 16;
+
+    @State(Scope.Benchmark)
+    public static class NodeState {
+        MonitorNode monitorNode;
+        String[] neighbours;
+        Counter counter;
+        DoubleGauge gauge;
+
+        @Setup
+        public void setup() {
+            neighbours = new String[NEIGHBOURS];
+            for (int i = 0; i < NEIGHBOURS; i++) {
+                neighbours[i] = "192.168.1." + (i + 10);
+            }
+            monitorNode = new MonitorNode("192.168.1.1");
+            monitorNode.setCurrentNeighbours(neighbours);
+            counter = monitorNode.registerCounter("forwarded");
+            gauge = monitorNode.registerDoubleGauge("load");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        String neighbour;
+
+        @Setup
+        public void setup(NodeState nodeState, ThreadParams threadParams) {
+            neighbour = nodeState.neighbours[threadParams.getThreadIndex() % NEIGHBOURS];
+        }
+    }
+
+
+    @Benchmark
+    public void addSendIO(NodeState nodeState, ThreadState threadState) {
+        nodeState.monitorNode.addSendIO(threadState.neighbour, 1400);
+    }
+
+
+    @Benchmark
+    public void addRecieveIO(NodeState nodeState, ThreadState threadState) {
+        nodeState.monitorNode.addRecieveIO(threadState.neighbour, 1400);
+    }
+
+
+    @Benchmark
+    public void incrProcessTicks(NodeState nodeState) {
+        nodeState.monitorNode.incrProcessTicks();
+    }
+
+
+    @Benchmark
+    public void setCustomValue(NodeState nodeState) {
+        nodeState.monitorNode.setCustomValue("load", 0.5);
+    }
+
+
+    @Benchmark
+    public void counterIncrement(NodeState nodeState) {
+        nodeState.counter.increment();
+    }
+
+
+    @Benchmark
+    public void gaugeSet(NodeState nodeState) {
+        nodeState.gauge.set(0.5);
+    }
+
+
+    @Benchmark
+    public void recordLatency(NodeState nodeState) {
+        nodeState.monitorNode.recordLatency("route", 250000);
+    }
+}
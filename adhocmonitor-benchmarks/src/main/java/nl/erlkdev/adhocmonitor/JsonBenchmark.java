@@ -0,0 +1,43 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Benchmark of the JSON serialization of the monitor node, with 1 to 1000 neighbours and custom values.
+ * The node isn't started, so the series are empty and the cost is that of the neighbours and custom values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class JsonBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int size;
+
+    private MonitorNode monitorNode;
+
+
+    @Setup
+    public void setup() {
+        monitorNode = new MonitorNode("192.168.1.1");
+        monitorNode.setCurrentNeighbours(BenchmarkData.neighbours(size));
+        BenchmarkData.setCustomValues(monitorNode, size);
+    }
+
+
+    @Benchmark
+    public String getJson() {
+        return monitorNode.getJson();
+    }
+}
@@ -0,0 +1,154 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Benchmark of one send of the original send path, before the send pipeline: the node kept its samples in maps
+ * of boxed values, built an org.json tree of the node on every send, serialized it twice and send it with a new
+ * DatagramSocket. The node state and the send are copied from that code, with the same data as SendBenchmark,
+ * so gc.alloc.rate.norm of both benchmarks is the allocation per send before and after the send pipeline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class LegacySendBenchmark {
+
+    /* The default series of the original node. */
+    private static final String[] SERIES = {"ioTotalChart", "ioRecvChart", "ioSendChart", "speedChart",
+            "cpuUsageChart", "cpuTotalUsageChart"};
+
+    @Param({"10", "100"})
+    public int neighbours;
+
+    private DatagramChannel receiver;
+    private InetAddress address;
+    private int port;
+
+    /* State of the original node. */
+    private final Map<String, Map<Long, Double>> series = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, int[]> currentNeighbours = new ConcurrentHashMap<>();
+    private final JSONObject customValues = new JSONObject();
+    private long timeStamp = 0;
+
+
+    @Setup
+    public void setup() throws IOException, JSONException {
+        receiver = DatagramChannel.open();
+        receiver.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        InetSocketAddress target = (InetSocketAddress) receiver.getLocalAddress();
+        address = target.getAddress();
+        port = target.getPort();
+
+        for (String name : SERIES) {
+            series.put(name, new ConcurrentHashMap<Long, Double>());
+        }
+        for (String neighbour : BenchmarkData.neighbours(neighbours)) {
+            currentNeighbours.put(neighbour, new int[3]);
+        }
+        for (int i = 0; i < 10; i++) {
+            customValues.put("value" + i, BenchmarkData.customValue(i));
+        }
+    }
+
+
+    @TearDown
+    public void tearDown() throws IOException {
+        receiver.close();
+    }
+
+
+    @Benchmark
+    public int send() throws IOException, JSONException {
+        for (int i = 0; i < SendBenchmark.SAMPLES_PER_SEND; i++) {
+            timeStamp += 200;
+            for (Map<Long, Double> map : series.values()) {
+                map.put(timeStamp, (double) i);
+            }
+        }
+
+        JSONObject parent = new JSONObject();
+        parent.put("type", "data");
+        parent.put("node", getJson());
+
+        DatagramSocket socket = new DatagramSocket();
+        DatagramPacket packet = new DatagramPacket(parent.toString().getBytes(), parent.toString().getBytes().length,
+                address, port);
+        socket.send(packet);
+        socket.close();
+        return packet.getLength();
+    }
+
+
+    /**
+     * Function to create the JSON object of the node, like the original MonitorNode.getJson
+     *
+     * @return The JSON object
+     * @throws JSONException If a value couldn't be added
+     */
+    private JSONObject getJson() throws JSONException {
+        JSONObject parent = new JSONObject();
+        parent.put("address", "192.168.1.1");
+        parent.put("status", NodeStatus.IDLE.toString());
+        parent.put("timeStamp", System.currentTimeMillis());
+        for (String name : SERIES) {
+            parent.put(name, mapToJSON(series.get(name)));
+        }
+
+        JSONArray neighboursArray = new JSONArray();
+        Enumeration<String> neighboursKeys = currentNeighbours.keys();
+        while (neighboursKeys.hasMoreElements()) {
+            String key = neighboursKeys.nextElement();
+            JSONObject neighbourObject = new JSONObject();
+            neighbourObject.put("address", key);
+            neighbourObject.put("bytesSend", currentNeighbours.get(key)[0]);
+            neighbourObject.put("bytesReceived", currentNeighbours.get(key)[1]);
+            neighbourObject.put("dataSend", currentNeighbours.get(key)[2]);
+            currentNeighbours.get(key)[2] = 0;
+            neighboursArray.put(neighbourObject);
+        }
+        parent.put("neighbours", neighboursArray);
+        parent.put("customValues", customValues);
+        return parent;
+    }
+
+
+    /**
+     * Function to convert the samples of a series to a JSON object and clear them, like the original mapToJSON
+     *
+     * @param map The samples
+     * @return The JSON object
+     * @throws JSONException If a value couldn't be added
+     */
+    private static JSONObject mapToJSON(Map<Long, Double> map) throws JSONException {
+        JSONObject jsonObject = new JSONObject();
+        for (Map.Entry<Long, Double> entry : map.entrySet()) {
+            jsonObject.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+        }
+        map.clear();
+        return jsonObject;
+    }
+}
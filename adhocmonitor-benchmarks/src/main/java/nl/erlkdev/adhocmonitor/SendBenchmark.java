@@ -0,0 +1,85 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Benchmark of one send of the send pipeline: snapshot, encode and write the datagram, like the send task of the
+ * MonitorClient. The packets are send to a bound loopback channel that is never read, so the kernel drops them
+ * when its buffer is full and the receiver doesn't add to the cost.
+ * Before every send the series get the samples of one monitor interval (500 ms at the default 200 ms samples).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class SendBenchmark {
+
+    /* Samples of each series per send. */
+    static final int SAMPLES_PER_SEND = 3;
+
+    @Param({"JSON", "BINARY"})
+    public PacketFormat format;
+
+    @Param({"1", "10"})
+    public int keyframeInterval;
+
+    @Param({"10", "100"})
+    public int neighbours;
+
+    private DatagramChannel receiver;
+    private PacketSender packetSender;
+    private MonitorNode monitorNode;
+    private SampleRing[] series;
+    private long timeStamp = 0;
+
+
+    @Setup
+    public void setup() throws IOException {
+        receiver = DatagramChannel.open();
+        receiver.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+        PacketEncoder encoder = format == PacketFormat.BINARY ? new BinaryPacketEncoder() : new JsonPacketEncoder();
+        packetSender = new PacketSender((InetSocketAddress) receiver.getLocalAddress(), encoder);
+        packetSender.setKeyframeInterval(keyframeInterval);
+        packetSender.open();
+
+        monitorNode = new MonitorNode("192.168.1.1");
+        monitorNode.setCurrentNeighbours(BenchmarkData.neighbours(neighbours));
+        BenchmarkData.setCustomValues(monitorNode, 10);
+        series = monitorNode.getSeries().toArray(new SampleRing[0]);
+    }
+
+
+    @TearDown
+    public void tearDown() throws IOException {
+        packetSender.close();
+        receiver.close();
+    }
+
+
+    @Benchmark
+    public int send() throws IOException {
+        for (int i = 0; i < SAMPLES_PER_SEND; i++) {
+            timeStamp += 200;
+            for (SampleRing ring : series) {
+                ring.add(timeStamp, i);
+            }
+        }
+        return packetSender.send(monitorNode);
+    }
+}
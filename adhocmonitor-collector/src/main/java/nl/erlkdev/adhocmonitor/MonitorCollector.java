@@ -0,0 +1,354 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Collector that receives the data packets of the nodes and keeps them in a packet store.
+ * It is a Java replacement of the UDP receiver of the monitor visualization process: the datagrams are read
+ * by one or more non-blocking receive loops instead of a thread per datagram, and every node has a time
+ * ordered ring instead of a list that is sorted on every packet. With more than one loop the loops share the
+ * port with SO_REUSEPORT. The stored packets can be recorded with a TelemetryRecorder.
+ *
+ * Like the monitor visualization process the collector answers the sync and codec requests of the nodes on its
+ * TCP port, with its wall clock time. The dictionaries of the codec requests are added to the decompressor that
+ * is shared by the receive loops, so the compressed packets are decompressed.
+ *
+ * Usage: MonitorCollector [--host 0.0.0.0] [--port 7000] [--tcp-port 7001] [--receivers 1]
+ *        [--packet-limit 600] [--max-offset 1000] [--array-length 10000] [--record directory]
+ */
+public class MonitorCollector {
+
+    private final InetSocketAddress address;
+    private final InetSocketAddress tcpAddress;
+    private final int receivers;
+    private final PacketStore packetStore;
+    private final PacketDecompressor decompressor = new PacketDecompressor();
+    private TelemetryRecorder recorder = null;
+    private SyncServer syncServer = null;
+
+    private final List<ReceiverLoop> loops = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    /* Statistics of all the receive loops. */
+    private final AtomicLong datagrams = new AtomicLong();
+    private final AtomicLong packets = new AtomicLong();
+    private final AtomicLong decodeErrors = new AtomicLong();
+
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String host = "0.0.0.0";
+        int port = MonitorClient.DEFAULT_UDP_PORT;
+        int tcpPort = MonitorClient.DEFAULT_TCP_PORT;
+        int receivers = 1;
+        int packetLimit = PacketStore.DEFAULT_PACKET_LIMIT;
+        long maxOffset = PacketStore.DEFAULT_MAX_OFFSET;
+        long arrayLength = PacketStore.DEFAULT_ARRAY_LENGTH;
+        File recordingDirectory = null;
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value of " + args[i]);
+                }
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--host":
+                        host = value;
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(value);
+                        break;
+                    case "--tcp-port":
+                        tcpPort = Integer.parseInt(value);
+                        break;
+                    case "--receivers":
+                        receivers = Integer.parseInt(value);
+                        break;
+                    case "--packet-limit":
+                        packetLimit = Integer.parseInt(value);
+                        break;
+                    case "--max-offset":
+                        maxOffset = Long.parseLong(value);
+                        break;
+                    case "--array-length":
+                        arrayLength = Long.parseLong(value);
+                        break;
+                    case "--record":
+                        recordingDirectory = new File(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown argument " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        MonitorCollector collector = new MonitorCollector(new InetSocketAddress(host, port),
+                new InetSocketAddress(host, tcpPort), receivers, new PacketStore(packetLimit, maxOffset, arrayLength));
+        if (recordingDirectory != null) {
+            TelemetryRecorder recorder = new TelemetryRecorder(recordingDirectory);
+            recorder.setErrorListener(new MonitorClient.ErrorListener() {
+                @Override
+                public void onError(String errorMsg) {
+                    System.err.println(errorMsg);
+                }
+            });
+            recorder.start();
+            collector.setRecorder(recorder);
+
+            /* Closes the last segment when the collector is stopped with Ctrl+C. */
+            final TelemetryRecorder shutdownRecorder = recorder;
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        shutdownRecorder.close();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        collector.start();
+        System.out.println("Collecting on " + collector.getLocalAddress() + " with " + receivers
+                + " receivers, sync on " + collector.getTcpAddress());
+
+        /* Prints the statistics every second. */
+        long lastDatagrams = 0;
+        long lastPackets = 0;
+        while (true) {
+            Thread.sleep(1000);
+            long datagrams = collector.getDatagramsReceived();
+            long packets = collector.getPacketsStored();
+            System.out.println(String.format(Locale.US, "%8d datagrams/s %8d packets/s %6d nodes  "
+                            + "decode errors %d  missed %d  dropped deltas %d  duplicates %d",
+                    datagrams - lastDatagrams, packets - lastPackets, collector.getPacketStore().getNodes().size(),
+                    collector.getDecodeErrors(), collector.getPacketStore().getMissedPackets(),
+                    collector.getPacketStore().getDroppedDeltas(), collector.getPacketStore().getDuplicatePackets()));
+            lastDatagrams = datagrams;
+            lastPackets = packets;
+        }
+    }
+
+
+    /**
+     * Constructor for the collector without a TCP port, the dictionaries of the compressed packets are added to
+     * the decompressor by the application
+     *
+     * @param address The address to receive on, port 0 binds to a free port
+     * @param receivers The amount of receive loops
+     * @param packetStore The store for the packets
+     */
+    public MonitorCollector(InetSocketAddress address, int receivers, PacketStore packetStore) {
+        this(address, null, receivers, packetStore);
+    }
+
+
+    /**
+     * Constructor for the collector
+     *
+     * @param address The address to receive on, port 0 binds to a free port
+     * @param tcpAddress The address of the TCP port for the time sync and compression of the nodes, port 0 binds
+     *                   to a free port, or null to not serve the TCP port
+     * @param receivers The amount of receive loops
+     * @param packetStore The store for the packets
+     */
+    public MonitorCollector(InetSocketAddress address, InetSocketAddress tcpAddress, int receivers,
+                            PacketStore packetStore) {
+        if (receivers < 1) {
+            throw new IllegalArgumentException("At least one receiver is needed");
+        }
+        this.address = address;
+        this.tcpAddress = tcpAddress;
+        this.receivers = receivers;
+        this.packetStore = packetStore;
+    }
+
+
+    /**
+     * Function to set the recorder of the stored packets, it is used by the receive loops of the next start
+     * The recorder is started and closed by the caller.
+     *
+     * @param recorder The started recorder, or null to not record the packets
+     */
+    public synchronized void setRecorder(TelemetryRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+
+    /**
+     * Function to bind the channels and the TCP port, and start the receive loops
+     *
+     * @throws IOException If a channel couldn't be bound, or the platform doesn't support SO_REUSEPORT for
+     *                     multiple receivers
+     */
+    public synchronized void start() throws IOException {
+        if (!loops.isEmpty()) {
+            return;
+        }
+
+        boolean reusePort = receivers > 1;
+        if (reusePort && !supportsReusePort()) {
+            throw new IOException("SO_REUSEPORT is not supported, use one receiver");
+        }
+
+        SyncServer newSyncServer = null;
+        if (tcpAddress != null) {
+            newSyncServer = new SyncServer(tcpAddress, new SyncServer.TimeSource() {
+                @Override
+                public long getTime() {
+                    return System.currentTimeMillis();
+                }
+            }, decompressor, "MonitorCollector-Sync");
+            newSyncServer.start();
+        }
+
+        /* The first loop binds the port, so the other loops also get the port of an address with port 0. */
+        InetSocketAddress bindAddress = address;
+        try {
+            for (int i = 0; i < receivers; i++) {
+                ReceiverLoop loop = new ReceiverLoop(bindAddress, reusePort, packetStore, recorder,
+                        new PacketDecompressor(decompressor), datagrams, packets, decodeErrors);
+                loops.add(loop);
+                bindAddress = loop.getLocalAddress();
+            }
+        } catch (IOException e) {
+            for (ReceiverLoop loop : loops) {
+                loop.close();
+            }
+            loops.clear();
+            if (newSyncServer != null) {
+                newSyncServer.stop();
+            }
+            throw e;
+        }
+        syncServer = newSyncServer;
+
+        for (int i = 0; i < loops.size(); i++) {
+            Thread thread = new Thread(loops.get(i), "MonitorCollector-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+
+    /**
+     * Function to stop the receive loops and wait for them
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting for the loops
+     */
+    public synchronized void stopAndWait() throws InterruptedException {
+        stop();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        threads.clear();
+    }
+
+
+    private void stop() {
+        for (ReceiverLoop loop : loops) {
+            loop.stop();
+        }
+        loops.clear();
+        if (syncServer != null) {
+            syncServer.stop();
+            syncServer = null;
+        }
+    }
+
+
+    /**
+     * Gets the address the collector receives on
+     *
+     * @return the bound address, or the configured address if the collector isn't started
+     * @throws IOException If the address couldn't be read
+     */
+    public synchronized InetSocketAddress getLocalAddress() throws IOException {
+        return loops.isEmpty() ? address : loops.get(0).getLocalAddress();
+    }
+
+
+    /**
+     * Gets the address of the TCP port for the time sync and compression of the nodes
+     *
+     * @return the bound address, or null if the collector isn't started or doesn't serve the TCP port
+     */
+    public synchronized InetSocketAddress getTcpAddress() {
+        return syncServer != null ? syncServer.getLocalAddress() : null;
+    }
+
+
+    /**
+     * Gets the store with the received packets
+     *
+     * @return the packet store
+     */
+    public PacketStore getPacketStore() {
+        return packetStore;
+    }
+
+
+    /**
+     * Gets the amount of received datagrams
+     *
+     * @return the amount of datagrams
+     */
+    public long getDatagramsReceived() {
+        return datagrams.get();
+    }
+
+
+    /**
+     * Gets the amount of data packets that is stored, a batch datagram contains multiple data packets
+     *
+     * @return the amount of stored data packets
+     */
+    public long getPacketsStored() {
+        return packets.get();
+    }
+
+
+    /**
+     * Gets the amount of datagrams that couldn't be decoded
+     *
+     * @return the amount of decode errors
+     */
+    public long getDecodeErrors() {
+        return decodeErrors.get();
+    }
+
+
+    /**
+     * Gets the decompressor with the dictionaries of the compressed packets, it is shared by the receive loops
+     * The dictionaries of the codec requests on the TCP port are added to it.
+     *
+     * @return the decompressor
+     */
+    public PacketDecompressor getDecompressor() {
+        return decompressor;
+    }
+
+
+    private static boolean supportsReusePort() throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            return channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } finally {
+            channel.close();
+        }
+    }
+}
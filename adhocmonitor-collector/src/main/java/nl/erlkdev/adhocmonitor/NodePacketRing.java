@@ -0,0 +1,371 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Ring buffer with the packets of one node, ordered on their time stamps.
+ * A packet is put in its place when it is added, which is the end of the ring unless it arrives out of order,
+ * so the ring is never sorted again. When the ring is full the oldest packet is removed and its snapshot is
+ * reused for the new packet.
+ *
+ * The lookups return copies of the packets, the stored snapshots are reused by later packets.
+ *
+ * The ring also restores the delta packets of the node with its last keyframe, under the lock of the ring, so the
+ * receive loops only contend on the packets of the same node. A packet with a sequence number that is already in
+ * the ring, like a retransmit of a packet whose acknowledgement was lost, is dropped.
+ *
+ * The samples of the added packets are also put in a rollup of their series, which keeps the history of the node
+ * after its packets are removed from the ring. The amount of series with a rollup is limited, so the memory of a
+ * node is bounded.
+ */
+class NodePacketRing {
+
+    /* Maximum amount of series of a node with a rollup. */
+    static final int MAX_ROLLUP_SERIES = 64;
+
+    private final String address;
+    private final int capacity;
+    private final long[] timeStamps;
+    private final NodeSnapshot[] packets;
+    private final Map<String, SeriesRollup> rollups = new HashMap<>();
+
+    /* Index of the oldest packet and the amount of packets. */
+    private int head = 0;
+    private int count = 0;
+
+    /* The last keyframe and the highest sequence number of the node. */
+    private final NodeSnapshot keyframe = new NodeSnapshot();
+    private boolean hasKeyframe = false;
+    private long lastSequence = -1;
+
+    /* Statistics */
+    private long missedPackets = 0;
+    private long droppedDeltas = 0;
+    private long duplicatePackets = 0;
+
+
+    /**
+     * Constructor for the ring
+     *
+     * @param address The address of the node
+     * @param capacity The maximum amount of packets
+     */
+    NodePacketRing(String address, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.address = address;
+        this.capacity = capacity;
+        this.timeStamps = new long[capacity];
+        this.packets = new NodeSnapshot[capacity];
+    }
+
+
+    /**
+     * Function to add a packet in the order of its time stamp
+     * If the ring is full, the oldest packet is removed. A packet that is older than all packets of a full ring
+     * is not added, but its samples are still added to the rollups. A duplicate and a delta without its keyframe
+     * are not added at all.
+     *
+     * @param packet The packet, it is copied, a delta is completed with its keyframe first
+     * @return true if the packet is added, else false
+     */
+    synchronized boolean add(NodeSnapshot packet) {
+        if (packet.getSequence() >= 0) {
+            if (contains(packet.getTimeStamp(), packet.getSequence())) {
+                duplicatePackets++;
+                return false;
+            }
+            if (!reassemble(packet)) {
+                return false;
+            }
+        }
+
+        rollUp(packet);
+        long timeStamp = packet.getTimeStamp();
+        NodeSnapshot slot;
+        if (count == capacity) {
+            if (timeStamp < timeStamps[head]) {
+                return false;
+            }
+            slot = packets[head];
+            head = (head + 1) % capacity;
+            count--;
+        } else {
+            slot = packets[(head + count) % capacity];
+            if (slot == null) {
+                slot = new NodeSnapshot();
+            }
+        }
+        slot.copyFrom(packet);
+
+        /* Moves the newer packets one place to make room, packets almost always arrive in order. */
+        int index = count;
+        while (index > 0 && timeStamps[physical(index - 1)] > timeStamp) {
+            int from = physical(index - 1);
+            int to = physical(index);
+            timeStamps[to] = timeStamps[from];
+            packets[to] = packets[from];
+            index--;
+        }
+        timeStamps[physical(index)] = timeStamp;
+        packets[physical(index)] = slot;
+        count++;
+        return true;
+    }
+
+
+    /**
+     * Function to get the newest packet at a time stamp
+     * The packet must not be older than the maximum offset, like getPacket of the monitor visualization process.
+     *
+     * @param timeStamp The time stamp
+     * @param maxOffset The maximum age of the packet at the time stamp
+     * @return A copy of the packet, or null if there is no packet in the range
+     */
+    synchronized NodeSnapshot getPacket(long timeStamp, long maxOffset) {
+        int index = lastAtOrBefore(timeStamp);
+        if (index < 0 || timeStamp - timeStamps[physical(index)] > maxOffset) {
+            return null;
+        }
+        NodeSnapshot copy = new NodeSnapshot();
+        copy.copyFrom(packets[physical(index)]);
+        return copy;
+    }
+
+
+    /**
+     * Function to get the packets of an interval before a time stamp
+     *
+     * @param timeStamp The end of the interval
+     * @param arrayLength The length of the interval in milliseconds
+     * @return Copies of the packets from the newest to the oldest, like getPacketArray of the visualization process
+     */
+    synchronized List<NodeSnapshot> getPacketArray(long timeStamp, long arrayLength) {
+        List<NodeSnapshot> output = new ArrayList<>();
+        for (int index = lastAtOrBefore(timeStamp); index >= 0; index--) {
+            int slot = physical(index);
+            if (timeStamps[slot] < timeStamp - arrayLength) {
+                break;
+            }
+            NodeSnapshot copy = new NodeSnapshot();
+            copy.copyFrom(packets[slot]);
+            output.add(copy);
+        }
+        return output;
+    }
+
+
+    /**
+     * Function to get the samples of a chart in the packets of an interval before a time stamp
+     *
+     * @param timeStamp The end of the interval
+     * @param arrayLength The length of the interval in milliseconds
+     * @param chartName The name of the series
+     * @return The samples of the chart, ordered on their time stamps
+     */
+    synchronized NodeSnapshot.Series getChart(long timeStamp, long arrayLength, String chartName) {
+        NodeSnapshot.Series chart = new NodeSnapshot().addSeries(chartName);
+        int first = lastAtOrBefore(timeStamp);
+        while (first >= 0 && timeStamps[physical(first)] >= timeStamp - arrayLength) {
+            first--;
+        }
+        for (int index = first + 1; index < count; index++) {
+            int slot = physical(index);
+            if (timeStamps[slot] > timeStamp) {
+                break;
+            }
+            NodeSnapshot packet = packets[slot];
+            for (int i = 0; i < packet.getSeriesCount(); i++) {
+                NodeSnapshot.Series series = packet.getSeries(i);
+                if (series.getName().equals(chartName)) {
+                    for (int j = 0; j < series.size(); j++) {
+                        chart.add(series.getTimeStamp(j), series.getValue(j));
+                    }
+                }
+            }
+        }
+
+        /* The samples of a packet are ordered, only the samples of overlapping packets can be out of order. */
+        chart.sortByTimeStamp();
+        return chart;
+    }
+
+
+    /**
+     * Function to get the rollup buckets of a series in a time range
+     *
+     * @param chartName The name of the series
+     * @param from The start of the range in milliseconds, inclusive
+     * @param to The end of the range in milliseconds, exclusive
+     * @param buckets The buckets in the range are added to it
+     * @return The width of the buckets in milliseconds, or 0 if the series has no rollup
+     */
+    synchronized long getRollup(String chartName, long from, long to, SeriesRollup.Buckets buckets) {
+        SeriesRollup rollup = rollups.get(chartName);
+        if (rollup == null) {
+            return 0;
+        }
+        return rollup.getWidth(rollup.query(from, to, buckets));
+    }
+
+
+    /**
+     * Checks if the ring contains a packet with a sequence number
+     * A retransmit has the time stamp of the original packet, so only the packets with that time stamp are checked.
+     *
+     * @param timeStamp The time stamp of the packet
+     * @param sequence The sequence number of the packet
+     * @return true if the ring contains the packet
+     */
+    private boolean contains(long timeStamp, long sequence) {
+        for (int index = lastAtOrBefore(timeStamp); index >= 0; index--) {
+            int slot = physical(index);
+            if (timeStamps[slot] != timeStamp) {
+                break;
+            }
+            if (packets[slot].getSequence() == sequence) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Restores the full state of a packet with a sequence number, like DeltaReassembler.reassemble for one node
+     *
+     * @param packet The packet, a delta is completed with the neighbours and custom values of the keyframe
+     * @return true if the packet contains the full state, false if the keyframe of the delta is missing
+     */
+    private boolean reassemble(NodeSnapshot packet) {
+        long sequence = packet.getSequence();
+        if (lastSequence >= 0 && sequence > lastSequence + 1) {
+            missedPackets += sequence - lastSequence - 1;
+        }
+        lastSequence = Math.max(lastSequence, sequence);
+
+        if (!packet.isDelta()) {
+            keyframe.copyFrom(packet);
+            hasKeyframe = true;
+            return true;
+        }
+        if (!hasKeyframe || keyframe.getSequence() != packet.getBaseSequence()) {
+            droppedDeltas++;
+            return false;
+        }
+        DeltaReassembler.restore(keyframe, packet);
+        return true;
+    }
+
+
+    /**
+     * Adds the samples of a packet to the rollups of their series
+     *
+     * @param packet The packet
+     */
+    private void rollUp(NodeSnapshot packet) {
+        for (int i = 0; i < packet.getSeriesCount(); i++) {
+            NodeSnapshot.Series series = packet.getSeries(i);
+            SeriesRollup rollup = rollups.get(series.getName());
+            if (rollup == null) {
+                if (rollups.size() >= MAX_ROLLUP_SERIES || series.size() == 0) {
+                    continue;
+                }
+                rollup = new SeriesRollup();
+                rollups.put(series.getName(), rollup);
+            }
+            for (int j = 0; j < series.size(); j++) {
+                rollup.add(series.getTimeStamp(j), series.getValue(j));
+            }
+        }
+    }
+
+
+    /**
+     * Gets the address of the node
+     *
+     * @return the address of the node
+     */
+    String getAddress() {
+        return address;
+    }
+
+
+    /**
+     * Gets the amount of packets in the ring
+     *
+     * @return the amount of packets
+     */
+    synchronized int size() {
+        return count;
+    }
+
+
+    /**
+     * Gets the amount of packets that are missing in the sequence of the node
+     *
+     * @return the amount of missed packets
+     */
+    synchronized long getMissedPackets() {
+        return missedPackets;
+    }
+
+
+    /**
+     * Gets the amount of deltas that couldn't be restored because their keyframe was missing
+     *
+     * @return the amount of dropped deltas
+     */
+    synchronized long getDroppedDeltas() {
+        return droppedDeltas;
+    }
+
+
+    /**
+     * Gets the amount of packets that were dropped because the ring already contained them
+     *
+     * @return the amount of duplicate packets
+     */
+    synchronized long getDuplicatePackets() {
+        return duplicatePackets;
+    }
+
+
+    /**
+     * Finds the newest packet with a time stamp that isn't after a time stamp
+     *
+     * @param timeStamp The time stamp
+     * @return The logical index of the packet, or -1 if all packets are newer
+     */
+    private int lastAtOrBefore(long timeStamp) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (timeStamps[physical(middle)] <= timeStamp) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+
+    /**
+     * Converts a logical index, from the oldest packet, to the index in the arrays
+     *
+     * @param index The logical index
+     * @return The index in the arrays
+     */
+    private int physical(int index) {
+        int slot = head + index;
+        return slot >= capacity ? slot - capacity : slot;
+    }
+}
@@ -0,0 +1,227 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Store with the packets of the nodes, the Java counterpart of the DataStore of the monitor visualization process.
+ * Every node has its own time ordered ring, so adding a packet only locks the ring of its node. The ring also
+ * restores the delta packets of its node and drops the duplicates.
+ * The lookups have the same semantics as the DataStore: a packet at a time stamp is the newest packet that
+ * isn't newer than the time stamp and not older than the maximum offset.
+ */
+public class PacketStore {
+
+    /* Defaults of the settings of the visualization process. */
+    public static final int DEFAULT_PACKET_LIMIT = 600;
+    public static final long DEFAULT_MAX_OFFSET = 1000;
+    public static final long DEFAULT_ARRAY_LENGTH = 10000;
+
+    private final int packetLimit;
+    private final long maxOffset;
+    private final long arrayLength;
+    private final ConcurrentHashMap<String, NodePacketRing> nodes = new ConcurrentHashMap<>();
+
+
+    /**
+     * Constructor for a store with the default settings
+     */
+    public PacketStore() {
+        this(DEFAULT_PACKET_LIMIT, DEFAULT_MAX_OFFSET, DEFAULT_ARRAY_LENGTH);
+    }
+
+
+    /**
+     * Constructor for the store
+     *
+     * @param packetLimit The maximum amount of packets of each node
+     * @param maxOffset The maximum age of a packet at the time stamp of a lookup, in milliseconds
+     * @param arrayLength The length of the interval of a chart, in milliseconds
+     */
+    public PacketStore(int packetLimit, long maxOffset, long arrayLength) {
+        this.packetLimit = packetLimit;
+        this.maxOffset = maxOffset;
+        this.arrayLength = arrayLength;
+    }
+
+
+    /**
+     * Function to add a packet to the ring of its node
+     *
+     * @param packet The packet, it is copied, a delta is completed with the keyframe of its node first
+     * @return true if the packet is added, false if it is older than all the packets of a full ring, if the ring
+     *         already contains it, or if it is a delta without its keyframe
+     */
+    public boolean addPacket(NodeSnapshot packet) {
+        NodePacketRing ring = nodes.get(packet.getAddress());
+        if (ring == null) {
+            NodePacketRing created = new NodePacketRing(packet.getAddress(), packetLimit);
+            ring = nodes.putIfAbsent(packet.getAddress(), created);
+            if (ring == null) {
+                ring = created;
+            }
+        }
+        return ring.add(packet);
+    }
+
+
+    /**
+     * Gets the addresses of the nodes in the store
+     *
+     * @return the addresses of the nodes
+     */
+    public Set<String> getNodes() {
+        return nodes.keySet();
+    }
+
+
+    /**
+     * Function to get the packet of a node at a time stamp
+     *
+     * @param node The address of the node
+     * @param timeStamp The time stamp
+     * @return A copy of the packet, or null if the node has no packet at the time stamp
+     */
+    public NodeSnapshot getNodeData(String node, long timeStamp) {
+        return getNodeData(node, timeStamp, maxOffset);
+    }
+
+
+    /**
+     * Function to get the packet of a node at a time stamp with a maximum offset
+     *
+     * @param node The address of the node
+     * @param timeStamp The time stamp
+     * @param maxOffset The maximum age of the packet at the time stamp, in milliseconds
+     * @return A copy of the packet, or null if the node has no packet at the time stamp
+     */
+    public NodeSnapshot getNodeData(String node, long timeStamp, long maxOffset) {
+        NodePacketRing ring = nodes.get(node);
+        return ring != null ? ring.getPacket(timeStamp, maxOffset) : null;
+    }
+
+
+    /**
+     * Function to get the packets of all the nodes at a time stamp
+     *
+     * @param timeStamp The time stamp
+     * @return The packets by the address of their node, nodes without a packet at the time stamp are left out
+     */
+    public Map<String, NodeSnapshot> getAllNodeData(long timeStamp) {
+        Map<String, NodeSnapshot> output = new LinkedHashMap<>();
+        for (NodePacketRing ring : nodes.values()) {
+            NodeSnapshot packet = ring.getPacket(timeStamp, maxOffset);
+            if (packet != null) {
+                output.put(ring.getAddress(), packet);
+            }
+        }
+        return output;
+    }
+
+
+    /**
+     * Function to get the packets of a node in the chart interval before a time stamp
+     *
+     * @param node The address of the node
+     * @param timeStamp The end of the interval
+     * @return Copies of the packets from the newest to the oldest
+     */
+    public List<NodeSnapshot> getPacketArray(String node, long timeStamp) {
+        NodePacketRing ring = nodes.get(node);
+        return ring != null ? ring.getPacketArray(timeStamp, arrayLength) : new ArrayList<NodeSnapshot>();
+    }
+
+
+    /**
+     * Function to get the samples of a chart of a node in the chart interval before a time stamp
+     *
+     * @param node The address of the node
+     * @param timeStamp The end of the interval
+     * @param chartName The name of the chart series
+     * @return The samples ordered on their time stamps, or null if the node is unknown
+     */
+    public NodeSnapshot.Series getNodeChart(String node, long timeStamp, String chartName) {
+        NodePacketRing ring = nodes.get(node);
+        return ring != null ? ring.getChart(timeStamp, arrayLength, chartName) : null;
+    }
+
+
+    /**
+     * Function to get the history of a chart of a node in a time range, from the rollup of the series
+     * The buckets come from the finest tier that still has the start of the range, so a recent range has the
+     * resolution of the samples and an old range has buckets of a minute.
+     *
+     * @param node The address of the node
+     * @param chartName The name of the chart series
+     * @param from The start of the range in milliseconds, inclusive
+     * @param to The end of the range in milliseconds, exclusive
+     * @param buckets The buckets with samples in the range are added to it, ordered on their time stamps
+     * @return The width of the buckets in milliseconds, or 0 if the node or the series is unknown
+     */
+    public long getNodeRollup(String node, String chartName, long from, long to, SeriesRollup.Buckets buckets) {
+        NodePacketRing ring = nodes.get(node);
+        return ring != null ? ring.getRollup(chartName, from, to, buckets) : 0;
+    }
+
+
+    /**
+     * Gets the amount of packets in the store
+     *
+     * @return the amount of packets of all the nodes
+     */
+    public long getPacketCount() {
+        long count = 0;
+        for (NodePacketRing ring : nodes.values()) {
+            count += ring.size();
+        }
+        return count;
+    }
+
+
+    /**
+     * Gets the amount of packets that are missing in the sequences of the nodes
+     *
+     * @return the amount of missed packets
+     */
+    public long getMissedPackets() {
+        long count = 0;
+        for (NodePacketRing ring : nodes.values()) {
+            count += ring.getMissedPackets();
+        }
+        return count;
+    }
+
+
+    /**
+     * Gets the amount of deltas that couldn't be restored because their keyframe was missing
+     *
+     * @return the amount of dropped deltas
+     */
+    public long getDroppedDeltas() {
+        long count = 0;
+        for (NodePacketRing ring : nodes.values()) {
+            count += ring.getDroppedDeltas();
+        }
+        return count;
+    }
+
+
+    /**
+     * Gets the amount of packets that were dropped because their node already had them, like retransmits
+     *
+     * @return the amount of duplicate packets
+     */
+    public long getDuplicatePackets() {
+        long count = 0;
+        for (NodePacketRing ring : nodes.values()) {
+            count += ring.getDuplicatePackets();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,269 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Receive loop of the collector on one non-blocking datagram channel.
+ * The loop waits on a selector and then reads every queued datagram before it waits again, so a burst of
+ * packets costs one wakeup. The packets are decoded on the loop thread into reused snapshots and added to the
+ * packet store. Several loops can share a port with SO_REUSEPORT, the kernel spreads the nodes over them.
+ *
+ * The data packets of a node in reliable mode request an acknowledgement. The sequence numbers of those packets
+ * in a datagram are acknowledged with one acknowledgement to the address the datagram came from. The packets that
+ * an aggregator relayed are acknowledged in a separate acknowledgement with the addresses of their nodes, which
+ * the aggregator passes back to the nodes.
+ * Compressed datagrams are decompressed before they are decoded.
+ */
+class ReceiverLoop implements Runnable {
+
+    /* Receive buffer of the socket, to absorb the bursts of many nodes. */
+    private static final int RECEIVE_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final PacketStore packetStore;
+    private final TelemetryRecorder recorder;
+    private final PacketDecompressor decompressor;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(PacketSender.MAX_PACKET_SIZE);
+    private final BinaryPacketDecoder binaryDecoder = new BinaryPacketDecoder();
+    private final JsonPacketDecoder jsonDecoder = new JsonPacketDecoder();
+    private final List<NodeSnapshot> snapshots = new ArrayList<>();
+    private final ByteBuffer ackBuffer = ByteBuffer.allocateDirect(PacketSender.ACK_BUFFER_SIZE);
+    private final long[] ackSequences = new long[128];
+    private final long[] relayedSequences = new long[128];
+    private final String[] relayedAddresses = new String[128];
+
+    /* Statistics, shared by the loops of a collector. */
+    private final AtomicLong datagrams;
+    private final AtomicLong packets;
+    private final AtomicLong decodeErrors;
+
+    private volatile boolean running = true;
+
+
+    /**
+     * Constructor for a receive loop, the channel is bound when the loop is created
+     *
+     * @param address The address to bind to
+     * @param reusePort true to bind with SO_REUSEPORT, so other loops can bind to the same port
+     * @param packetStore The store of the packets
+     * @param recorder The recorder of the stored packets, or null to not record them
+     * @param decompressor The decompressor of the compressed packets, owned by the loop
+     * @param datagrams The counter of the received datagrams
+     * @param packets The counter of the stored data packets
+     * @param decodeErrors The counter of the datagrams that couldn't be decoded
+     * @throws IOException If the channel couldn't be bound
+     */
+    ReceiverLoop(InetSocketAddress address, boolean reusePort, PacketStore packetStore, TelemetryRecorder recorder,
+                 PacketDecompressor decompressor, AtomicLong datagrams, AtomicLong packets, AtomicLong decodeErrors)
+            throws IOException {
+        this.packetStore = packetStore;
+        this.recorder = recorder;
+        this.decompressor = decompressor;
+        this.datagrams = datagrams;
+        this.packets = packets;
+        this.decodeErrors = decodeErrors;
+
+        channel = DatagramChannel.open();
+        try {
+            if (reusePort) {
+                channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER_SIZE);
+            channel.bind(address);
+            channel.configureBlocking(false);
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                selector.selectedKeys().clear();
+                receiveAll();
+            }
+        } catch (ClosedSelectorException e) {
+            /* The loop is stopped. */
+        } catch (IOException e) {
+            if (running) {
+                e.printStackTrace();
+            }
+        } finally {
+            close();
+        }
+    }
+
+
+    /**
+     * Function to stop the loop, it closes the channel when it wakes up
+     */
+    void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+
+    /**
+     * Gets the address the channel is bound to
+     *
+     * @return the local address of the channel
+     * @throws IOException If the address couldn't be read
+     */
+    InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) channel.getLocalAddress();
+    }
+
+
+    /**
+     * Reads and handles the datagrams until the channel has no more queued datagrams
+     *
+     * @throws IOException If the channel couldn't be read
+     */
+    private void receiveAll() throws IOException {
+        long received = 0;
+        long stored = 0;
+        while (running) {
+            buffer.clear();
+            SocketAddress source = channel.receive(buffer);
+            if (source == null) {
+                break;
+            }
+            buffer.flip();
+            received++;
+            stored += handle(buffer, source);
+        }
+        datagrams.addAndGet(received);
+        packets.addAndGet(stored);
+    }
+
+
+    /**
+     * Decodes a datagram and adds its data packets to the store
+     * Binary and JSON packets are both accepted, a batch adds all its packets, and they can be compressed.
+     *
+     * @param datagram The datagram
+     * @param source The address the datagram came from
+     * @return The amount of data packets that is stored
+     */
+    private int handle(ByteBuffer datagram, SocketAddress source) {
+        int count;
+        try {
+            if (PacketDecompressor.isCompressedPacket(datagram)) {
+                datagram = decompressor.decompress(datagram);
+            }
+            if (BinaryPacketDecoder.isBatchPacket(datagram)) {
+                count = binaryDecoder.decodeBatch(datagram, snapshots);
+            } else if (BinaryPacketDecoder.isBinaryPacket(datagram)) {
+                if (snapshots.isEmpty()) {
+                    snapshots.add(new NodeSnapshot());
+                }
+                binaryDecoder.decode(datagram, snapshots.get(0));
+                count = 1;
+            } else {
+                count = jsonDecoder.decodePackets(datagram, snapshots);
+            }
+        } catch (IllegalArgumentException e) {
+            decodeErrors.incrementAndGet();
+            return 0;
+        }
+
+        int stored = 0;
+        int acks = 0;
+        int relayedAcks = 0;
+        for (int i = 0; i < count; i++) {
+            NodeSnapshot packet = snapshots.get(i);
+
+            /* A packet is acknowledged when it is received, also when it is a duplicate of a retransmit. */
+            if (packet.isAckRequested() && packet.getSequence() >= 0) {
+                if (packet.getRelay() == null) {
+                    if (acks < ackSequences.length) {
+                        ackSequences[acks++] = packet.getSequence();
+                    }
+                } else if (relayedAcks < relayedSequences.length) {
+                    relayedAddresses[relayedAcks] = packet.getAddress();
+                    relayedSequences[relayedAcks++] = packet.getSequence();
+                }
+            }
+            if (packetStore.addPacket(packet)) {
+                stored++;
+                if (recorder != null) {
+                    recorder.record(packet);
+                }
+            }
+        }
+
+        if (acks > 0) {
+            ackBuffer.clear();
+            BinaryPacketEncoder.encodeAck(ackSequences, acks, ackBuffer);
+            sendAck(source);
+        }
+        if (relayedAcks > 0) {
+            ackBuffer.clear();
+            try {
+                BinaryPacketEncoder.encodeRelayedAck(relayedAddresses, relayedSequences, relayedAcks, ackBuffer);
+                sendAck(source);
+            } catch (BufferOverflowException e) {
+                /* The addresses are too long for one acknowledgement, the nodes retransmit the packets. */
+            }
+            Arrays.fill(relayedAddresses, 0, relayedAcks, null);
+        }
+        return stored;
+    }
+
+
+    /**
+     * Sends the acknowledgement in the acknowledgement buffer
+     * The channel is non-blocking, an acknowledgement that isn't send is handled like a lost one: the node
+     * retransmits the packet.
+     *
+     * @param target The address the acknowledged datagram came from
+     */
+    private void sendAck(SocketAddress target) {
+        ackBuffer.flip();
+        try {
+            channel.send(ackBuffer, target);
+        } catch (IOException e) {
+            /* The node is not reachable. */
+        }
+    }
+
+
+    /**
+     * Function to close the selector, the channel and the decompressor, for a loop that is never run
+     */
+    void close() {
+        try {
+            selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        decompressor.end();
+    }
+}
@@ -0,0 +1,277 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.util.Arrays;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Rollup of a chart series at multiple resolutions, for the history of a node over a long run.
+ * Every tier divides the time in buckets of a fixed width and keeps the minimum, maximum, sum and count of the
+ * samples of its newest buckets in a ring of primitive arrays, so the memory of a series is fixed when it is
+ * created. A sample updates the bucket of every tier, the finest tier keeps the recent history and the coarser
+ * tiers keep a longer history.
+ *
+ * The tiers by default are 200 milliseconds for 5 minutes, 5 seconds for 1 hour and 1 minute for 24 hours.
+ * Retransmitted packets can contain samples that are already added, so a sample with the time stamp of one of
+ * the recent samples is skipped. The rollup is not thread-safe, it is guarded by the packet ring of its node.
+ */
+public class SeriesRollup {
+
+    /* Default tiers: the width of the buckets in milliseconds and the amount of buckets. */
+    public static final long[] DEFAULT_WIDTHS = {200, 5000, 60000};
+    public static final int[] DEFAULT_CAPACITIES = {1500, 720, 1440};
+
+    /* Amount of recent sample time stamps that is checked for duplicates. */
+    private static final int RECENT_SAMPLES = 512;
+
+    private final Tier[] tiers;
+
+    /* Recent sample time stamps in a ring, and the newest time stamp. */
+    private final long[] recent = new long[RECENT_SAMPLES];
+    private int recentNext = 0;
+    private int recentSize = 0;
+    private long newestTimeStamp = Long.MIN_VALUE;
+
+
+    /**
+     * Constructor for a rollup with the default tiers
+     */
+    public SeriesRollup() {
+        this(DEFAULT_WIDTHS, DEFAULT_CAPACITIES);
+    }
+
+
+    /**
+     * Constructor for a rollup
+     *
+     * @param widths The width of the buckets of every tier in milliseconds, from the finest to the coarsest
+     * @param capacities The amount of buckets of every tier
+     */
+    public SeriesRollup(long[] widths, int[] capacities) {
+        if (widths.length == 0 || widths.length != capacities.length) {
+            throw new IllegalArgumentException("Every tier needs a width and a capacity");
+        }
+        tiers = new Tier[widths.length];
+        for (int i = 0; i < tiers.length; i++) {
+            if (widths[i] < 1 || capacities[i] < 1) {
+                throw new IllegalArgumentException("Width and capacity must be at least 1");
+            }
+            tiers[i] = new Tier(widths[i], capacities[i]);
+        }
+    }
+
+
+    /**
+     * Function to add a sample to the buckets of all the tiers
+     * Samples that are older than the buckets of a tier are not added to that tier.
+     *
+     * @param timeStamp The time stamp of the sample
+     * @param value The value of the sample
+     */
+    public void add(long timeStamp, double value) {
+        if (timeStamp < 0 || Double.isNaN(value)) {
+            return;
+        }
+
+        /* Samples almost always arrive in order, only older samples can be duplicates. */
+        if (timeStamp <= newestTimeStamp) {
+            for (int i = 0; i < recentSize; i++) {
+                if (recent[i] == timeStamp) {
+                    return;
+                }
+            }
+        } else {
+            newestTimeStamp = timeStamp;
+        }
+        recent[recentNext] = timeStamp;
+        recentNext = (recentNext + 1) % RECENT_SAMPLES;
+        recentSize = Math.min(recentSize + 1, RECENT_SAMPLES);
+
+        for (Tier tier : tiers) {
+            tier.add(timeStamp, value);
+        }
+    }
+
+
+    /**
+     * Function to get the buckets of a time range from the finest tier that still has the start of the range
+     * If no tier has the start of the range, the coarsest tier is used.
+     *
+     * @param from The start of the range in milliseconds, inclusive
+     * @param to The end of the range in milliseconds, exclusive
+     * @param buckets The buckets with a sample in the range are added to it, in time order
+     * @return The index of the used tier
+     */
+    public int query(long from, long to, Buckets buckets) {
+        int tier = tiers.length - 1;
+        for (int i = 0; i < tiers.length; i++) {
+            if (tiers[i].getOldestTimeStamp() <= from) {
+                tier = i;
+                break;
+            }
+        }
+        query(tier, from, to, buckets);
+        return tier;
+    }
+
+
+    /**
+     * Function to get the buckets of a time range from a tier
+     *
+     * @param tier The index of the tier
+     * @param from The start of the range in milliseconds, inclusive
+     * @param to The end of the range in milliseconds, exclusive
+     * @param buckets The buckets with a sample in the range are added to it, in time order
+     */
+    public void query(int tier, long from, long to, Buckets buckets) {
+        tiers[tier].query(from, to, buckets);
+    }
+
+
+    /**
+     * Gets the amount of tiers
+     *
+     * @return the amount of tiers
+     */
+    public int getTierCount() {
+        return tiers.length;
+    }
+
+
+    /**
+     * Gets the width of the buckets of a tier
+     *
+     * @param tier The index of the tier
+     * @return the width of the buckets in milliseconds
+     */
+    public long getWidth(int tier) {
+        return tiers[tier].width;
+    }
+
+
+    /**
+     * Ring with the newest buckets of one tier.
+     * A slot holds the bucket with the index that is equal to the slot modulo the capacity, the index of the bucket
+     * is stored with it, so a slot of an old bucket is recognized and reset.
+     */
+    private static class Tier {
+        private final long width;
+        private final int capacity;
+        private final long[] indices;
+        private final float[] mins;
+        private final float[] maxs;
+        private final double[] sums;
+        private final int[] counts;
+        private long newestIndex = -1;
+
+        Tier(long width, int capacity) {
+            this.width = width;
+            this.capacity = capacity;
+            this.indices = new long[capacity];
+            this.mins = new float[capacity];
+            this.maxs = new float[capacity];
+            this.sums = new double[capacity];
+            this.counts = new int[capacity];
+            Arrays.fill(indices, -1);
+        }
+
+        void add(long timeStamp, double value) {
+            long index = timeStamp / width;
+            if (index <= newestIndex - capacity) {
+                return;
+            }
+            int slot = (int) (index % capacity);
+            if (indices[slot] != index) {
+                indices[slot] = index;
+                mins[slot] = Float.POSITIVE_INFINITY;
+                maxs[slot] = Float.NEGATIVE_INFINITY;
+                sums[slot] = 0;
+                counts[slot] = 0;
+            }
+            mins[slot] = Math.min(mins[slot], (float) value);
+            maxs[slot] = Math.max(maxs[slot], (float) value);
+            sums[slot] += value;
+            counts[slot]++;
+            newestIndex = Math.max(newestIndex, index);
+        }
+
+        long getOldestTimeStamp() {
+            return newestIndex < 0 ? Long.MAX_VALUE : Math.max(0, newestIndex - capacity + 1) * width;
+        }
+
+        void query(long from, long to, Buckets buckets) {
+            if (newestIndex < 0 || to <= from) {
+                return;
+            }
+            long first = Math.max(Math.max(0, from) / width, newestIndex - capacity + 1);
+            long last = Math.min((to - 1) / width, newestIndex);
+            for (long index = first; index <= last; index++) {
+                int slot = (int) (index % capacity);
+                if (indices[slot] == index && counts[slot] > 0) {
+                    buckets.add(index * width, mins[slot], maxs[slot], sums[slot] / counts[slot], counts[slot]);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Buckets of a query, in primitive arrays that are reused by the next query after a clear.
+     */
+    public static class Buckets {
+        private long[] timeStamps = new long[64];
+        private double[] mins = new double[64];
+        private double[] maxs = new double[64];
+        private double[] averages = new double[64];
+        private long[] counts = new long[64];
+        private int size = 0;
+
+        /**
+         * Clears the buckets, so they can be reused
+         */
+        public void clear() {
+            size = 0;
+        }
+
+        void add(long timeStamp, double min, double max, double average, long count) {
+            if (size == timeStamps.length) {
+                int capacity = size * 2;
+                timeStamps = Arrays.copyOf(timeStamps, capacity);
+                mins = Arrays.copyOf(mins, capacity);
+                maxs = Arrays.copyOf(maxs, capacity);
+                averages = Arrays.copyOf(averages, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+            }
+            timeStamps[size] = timeStamp;
+            mins[size] = min;
+            maxs[size] = max;
+            averages[size] = average;
+            counts[size] = count;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long getTimeStamp(int index) {
+            return timeStamps[index];
+        }
+
+        public double getMin(int index) {
+            return mins[index];
+        }
+
+        public double getMax(int index) {
+            return maxs[index];
+        }
+
+        public double getAverage(int index) {
+            return averages[index];
+        }
+
+        public long getCount(int index) {
+            return counts[index];
+        }
+    }
+}
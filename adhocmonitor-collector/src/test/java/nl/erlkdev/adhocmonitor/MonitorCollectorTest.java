@@ -0,0 +1,143 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests of the TCP port of the collector: the time sync, and the negotiated dictionary of a node that decompresses
+ * its packets on the receive loops.
+ */
+public class MonitorCollectorTest {
+
+    private static final String ADDRESS = "10.0.0.1";
+    private static final String[] NEIGHBOURS = {"10.0.0.2", "10.0.0.3", "02:00:5e:10:00:04"};
+
+    private MonitorCollector collector;
+
+
+    @Before
+    public void setUp() throws Exception {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        collector = new MonitorCollector(new InetSocketAddress(loopback, 0), new InetSocketAddress(loopback, 0), 1,
+                new PacketStore());
+        collector.start();
+    }
+
+
+    @After
+    public void tearDown() throws Exception {
+        collector.stopAndWait();
+    }
+
+
+    @Test
+    public void syncIsAnsweredWithTheWallClock() throws Exception {
+        try (Socket socket = new Socket()) {
+            socket.connect(collector.getTcpAddress(), 5000);
+            socket.setSoTimeout(5000);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.UTF_8));
+            OutputStream out = socket.getOutputStream();
+
+            /* Multiple requests over one connection. */
+            for (int i = 0; i < 2; i++) {
+                long before = System.currentTimeMillis();
+                out.write("{\"type\":\"sync\",\"time1\":1}".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                String response = in.readLine();
+                long after = System.currentTimeMillis();
+
+                assertNotNull(response);
+                assertTrue(response, response.startsWith("{\"type\":\"sync\",\"time1d\":"));
+                byte[] data = response.getBytes(StandardCharsets.UTF_8);
+                long time1d = ClockSync.parseField(data, data.length, "time1d");
+                long time2 = ClockSync.parseField(data, data.length, "time2");
+                assertTrue(before <= time1d && time1d <= time2 && time2 <= after);
+            }
+        }
+    }
+
+
+    @Test
+    public void negotiatedDictionaryDecompressesThePackets() throws Exception {
+        MonitorNode monitorNode = new MonitorNode(ADDRESS);
+        monitorNode.setCurrentNeighbours(NEIGHBOURS);
+        byte[] dictionary = PacketCompressor.buildDictionary(monitorNode);
+        assertTrue(CompressionHandshake.negotiate(collector.getTcpAddress(), ADDRESS, dictionary));
+
+        PacketCompressor compressor = new PacketCompressor(dictionary);
+        try (DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            ByteBuffer compressed = compressor.compress(encode());
+            assertTrue(PacketDecompressor.isCompressedPacket(compressed));
+            socket.send(new DatagramPacket(compressed.array(), compressed.arrayOffset() + compressed.position(),
+                    compressed.remaining(), collector.getLocalAddress()));
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (collector.getPacketsStored() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            compressor.end();
+        }
+
+        assertEquals(1, collector.getPacketsStored());
+        assertEquals(0, collector.getDecodeErrors());
+        NodeSnapshot packet = collector.getPacketStore().getNodeData(ADDRESS, 1760000000000L);
+        assertNotNull(packet);
+        assertEquals(NEIGHBOURS.length, packet.getNeighbourCount());
+    }
+
+
+    @Test
+    public void collectorWithoutTcpAddressDoesNotServeTheTcpPort() throws Exception {
+        MonitorCollector udpOnly = new MonitorCollector(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1,
+                new PacketStore());
+        udpOnly.start();
+        try {
+            assertEquals(null, udpOnly.getTcpAddress());
+        } finally {
+            udpOnly.stopAndWait();
+        }
+    }
+
+
+    /**
+     * Encodes a JSON packet of the node with samples and the neighbours
+     *
+     * @return The buffer with the packet between its position and limit
+     */
+    private static ByteBuffer encode() {
+        NodeSnapshot snapshot = new NodeSnapshot();
+        snapshot.setMetadata(ADDRESS, "idle", 1760000000000L);
+        NodeSnapshot.Series series = snapshot.addSeries(MonitorSeries.CPU_USAGE.toString());
+        for (int i = 0; i < 5; i++) {
+            series.add(1760000000000L + i * 200, i * 1.5);
+        }
+        for (int i = 0; i < NEIGHBOURS.length; i++) {
+            snapshot.addNeighbour(NEIGHBOURS[i], 1000 * i, 2000 * i, i % 2 == 0);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        new JsonPacketEncoder().encode(snapshot, buffer);
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,155 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests of the ring of a node: the order of the packets, the dropped duplicates and the restored deltas.
+ */
+public class NodePacketRingTest {
+
+    private static final String ADDRESS = "10.0.0.1";
+
+    private final NodePacketRing ring = new NodePacketRing(ADDRESS, 4);
+
+
+    @Test
+    public void outOfOrderPacketIsPutInItsPlace() {
+        assertTrue(ring.add(packet(100, -1, -1)));
+        assertTrue(ring.add(packet(300, -1, -1)));
+        assertTrue(ring.add(packet(200, -1, -1)));
+
+        List<NodeSnapshot> packets = ring.getPacketArray(300, 1000);
+        assertEquals(3, packets.size());
+        assertEquals(300, packets.get(0).getTimeStamp());
+        assertEquals(200, packets.get(1).getTimeStamp());
+        assertEquals(100, packets.get(2).getTimeStamp());
+    }
+
+
+    @Test
+    public void fullRingDropsTheOldestPacket() {
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(ring.add(packet(i * 100, -1, -1)));
+        }
+        assertEquals(4, ring.size());
+        assertNull(ring.getPacket(100, 50));
+
+        /* A packet older than all the packets of the full ring is not added. */
+        assertFalse(ring.add(packet(50, -1, -1)));
+    }
+
+
+    @Test
+    public void duplicateSequenceIsDropped() {
+        assertTrue(ring.add(packet(100, 0, 0)));
+        assertTrue(ring.add(packet(200, 1, 1)));
+
+        /* A retransmit whose acknowledgement was lost, also after a newer packet. */
+        assertFalse(ring.add(packet(100, 0, 0)));
+        assertFalse(ring.add(packet(200, 1, 1)));
+        assertEquals(2, ring.size());
+        assertEquals(2, ring.getDuplicatePackets());
+
+        /* Another packet with the same time stamp is not a duplicate. */
+        assertTrue(ring.add(packet(200, 2, 2)));
+        assertEquals(3, ring.size());
+    }
+
+
+    @Test
+    public void packetsWithoutSequenceAreNotDuplicates() {
+        assertTrue(ring.add(packet(100, -1, -1)));
+        assertTrue(ring.add(packet(100, -1, -1)));
+        assertEquals(2, ring.size());
+        assertEquals(0, ring.getDuplicatePackets());
+    }
+
+
+    @Test
+    public void deltaIsRestoredWithTheKeyframe() {
+        NodeSnapshot keyframe = packet(100, 0, 0);
+        keyframe.addNeighbour("10.0.0.2", 100, 200, true);
+        keyframe.addNeighbour("10.0.0.3", 300, 400, false);
+        keyframe.putCustomValue("state", "up");
+        assertTrue(ring.add(keyframe));
+
+        NodeSnapshot delta = packet(200, 1, 0);
+        delta.addNeighbour("10.0.0.2", 150, 250, true);
+        assertTrue(ring.add(delta));
+
+        NodeSnapshot stored = ring.getPacket(200, 0);
+        assertEquals(2, stored.getNeighbourCount());
+        assertEquals("up", stored.getCustomValues().get("state"));
+        assertEquals(0, ring.getDroppedDeltas());
+    }
+
+
+    @Test
+    public void deltaWithoutItsKeyframeIsDropped() {
+        assertTrue(ring.add(packet(100, 3, 3)));
+        assertFalse(ring.add(packet(200, 5, 2)));
+        assertEquals(1, ring.size());
+        assertEquals(1, ring.getDroppedDeltas());
+        assertEquals(1, ring.getMissedPackets());
+    }
+
+
+    @Test
+    public void concurrentRetransmitsAreStoredOnce() throws Exception {
+        final PacketStore store = new PacketStore(1000, PacketStore.DEFAULT_MAX_OFFSET,
+                PacketStore.DEFAULT_ARRAY_LENGTH);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 500; i++) {
+                        store.addPacket(packet(i * 10, i, i));
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(500, store.getPacketCount());
+        assertEquals(3 * 500, store.getDuplicatePackets());
+    }
+
+
+    /**
+     * Creates a packet of the node
+     *
+     * @param timeStamp The time stamp
+     * @param sequence The sequence number, or -1 for a packet without a sequence number
+     * @param baseSequence The sequence number of the keyframe, the sequence number itself for a keyframe
+     * @return The packet
+     */
+    private static NodeSnapshot packet(long timeStamp, long sequence, long baseSequence) {
+        NodeSnapshot packet = new NodeSnapshot();
+        packet.setMetadata(ADDRESS, "idle", timeStamp);
+        packet.setSequence(sequence, baseSequence);
+        return packet;
+    }
+}
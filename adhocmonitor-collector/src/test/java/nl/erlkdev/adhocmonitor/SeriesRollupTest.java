@@ -0,0 +1,143 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests of the buckets of the series rollup, the tier of a query and the skipping of duplicate samples.
+ */
+public class SeriesRollupTest {
+
+    /* Two small tiers: 10 ms for 50 ms and 100 ms for 400 ms. */
+    private final SeriesRollup rollup = new SeriesRollup(new long[]{10, 100}, new int[]{5, 4});
+    private final SeriesRollup.Buckets buckets = new SeriesRollup.Buckets();
+
+
+    @Test
+    public void recentRangeUsesTheFinestTier() {
+        addRange(0, 200);
+        assertEquals(0, rollup.query(150, 200, buckets));
+        assertEquals(5, buckets.size());
+        for (int i = 0; i < 5; i++) {
+            assertBucket(i, 150 + i * 10, 10);
+        }
+    }
+
+
+    @Test
+    public void olderRangeUsesACoarserTier() {
+        addRange(0, 200);
+        assertEquals(1, rollup.query(100, 200, buckets));
+        assertEquals(1, buckets.size());
+        assertBucket(0, 100, 100);
+        assertEquals(100, rollup.getWidth(1));
+    }
+
+
+    @Test
+    public void rangeOlderThanAllTiersUsesTheCoarsestTier() {
+        addRange(0, 1000);
+        assertEquals(1, rollup.query(0, 1000, buckets));
+
+        /* Only the newest 4 buckets are kept. */
+        assertEquals(4, buckets.size());
+        for (int i = 0; i < 4; i++) {
+            assertBucket(i, 600 + i * 100, 100);
+        }
+    }
+
+
+    @Test
+    public void queryOfATierOnlyReturnsTheRange() {
+        addRange(0, 200);
+        rollup.query(0, 165, 185, buckets);
+        assertEquals(3, buckets.size());
+        assertBucket(0, 160, 10);
+        assertBucket(2, 180, 10);
+
+        /* The buckets are reused after a clear. */
+        buckets.clear();
+        rollup.query(0, 185, 185, buckets);
+        assertEquals(0, buckets.size());
+    }
+
+
+    @Test
+    public void duplicateSamplesAreSkipped() {
+        rollup.add(5, 1);
+        rollup.add(6, 2);
+        rollup.add(5, 1);
+
+        /* An older sample that isn't a duplicate is added. */
+        rollup.add(3, 3);
+        rollup.query(0, 0, 10, buckets);
+        assertEquals(1, buckets.size());
+        assertEquals(3, buckets.getCount(0));
+        assertEquals(1, buckets.getMin(0), 0);
+        assertEquals(3, buckets.getMax(0), 0);
+        assertEquals(2, buckets.getAverage(0), 1e-9);
+    }
+
+
+    @Test
+    public void invalidSamplesAreSkipped() {
+        rollup.add(-1, 1);
+        rollup.add(5, Double.NaN);
+        rollup.query(0, 0, 100, buckets);
+        assertEquals(0, buckets.size());
+    }
+
+
+    @Test
+    public void sampleOlderThanATierOnlyUpdatesCoarserTiers() {
+        addRange(100, 200);
+        rollup.add(50, 1000);
+        rollup.query(0, 0, 200, buckets);
+        assertEquals(5, buckets.size());
+        assertEquals(150, buckets.getTimeStamp(0));
+
+        buckets.clear();
+        rollup.query(1, 0, 200, buckets);
+        assertEquals(2, buckets.size());
+        assertEquals(1, buckets.getCount(0));
+        assertEquals(1000, buckets.getMax(0), 0);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tierWithoutCapacityIsRejected() {
+        new SeriesRollup(new long[]{10, 100}, new int[]{5});
+    }
+
+
+    /**
+     * Adds a sample for every millisecond of a range, with the time stamp as value
+     *
+     * @param from The first time stamp
+     * @param to The time stamp after the last sample
+     */
+    private void addRange(long from, long to) {
+        for (long timeStamp = from; timeStamp < to; timeStamp++) {
+            rollup.add(timeStamp, timeStamp);
+        }
+    }
+
+
+    /**
+     * Checks a bucket of samples that were added by addRange
+     *
+     * @param index The index of the bucket
+     * @param timeStamp The start of the bucket
+     * @param width The width of the bucket
+     */
+    private void assertBucket(int index, long timeStamp, long width) {
+        assertEquals(timeStamp, buckets.getTimeStamp(index));
+        assertEquals(width, buckets.getCount(index));
+        assertEquals(timeStamp, buckets.getMin(index), 0);
+        assertEquals(timeStamp + width - 1, buckets.getMax(index), 0);
+        assertEquals(timeStamp + (width - 1) / 2.0, buckets.getAverage(index), 1e-9);
+    }
+}
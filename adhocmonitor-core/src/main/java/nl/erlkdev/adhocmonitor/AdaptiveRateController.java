@@ -0,0 +1,272 @@
+package nl.erlkdev.adhocmonitor;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Sampler that adapts the sample and send period of a monitor node to its activity.
+ *
+ * When the node is processing or its IO rate changes sharply, the controller switches to the fast periods.
+ * When the node is idle and its IO rate stayed stable for the hold time, the periods are multiplied by the
+ * backoff factor, until they reach the slow periods (the floor). With a low battery the controller backs off
+ * without waiting for the hold time. Other statuses keep the current periods.
+ *
+ * The decisions are added to the samplePeriodChart and sendPeriodChart series of the node, and are available
+ * with the getters. The engine and send timer are only rescheduled when a period changes.
+ */
+public class AdaptiveRateController implements Sampler {
+
+    /* Names of the series with the decisions of the controller. */
+    public static final String SAMPLE_PERIOD_SERIES = "samplePeriodChart";
+    public static final String SEND_PERIOD_SERIES = "sendPeriodChart";
+
+    /* Default settings */
+    public static final long DEFAULT_HOLD_TIME = 10000;
+    public static final double DEFAULT_BACKOFF_FACTOR = 2.0;
+    public static final double DEFAULT_CHANGE_THRESHOLD = 0.5;
+
+    /* IO rate in bytes per millisecond below which changes are not seen as sharp, so noise around 0 is ignored. */
+    private static final double MIN_IO_RATE = 1.0;
+
+    /* Weight of a new IO rate in the average IO rate. */
+    private static final double AVERAGE_WEIGHT = 0.2;
+
+    private final MonitorNode monitorNode;
+    private final long fastSamplePeriod;
+    private final long slowSamplePeriod;
+    private final long fastSendPeriod;
+    private final long slowSendPeriod;
+    private final SampleRing samplePeriodArray;
+    private final SampleRing sendPeriodArray;
+
+    /* Settings */
+    private volatile long holdTime = DEFAULT_HOLD_TIME;
+    private volatile double backoffFactor = DEFAULT_BACKOFF_FACTOR;
+    private volatile double changeThreshold = DEFAULT_CHANGE_THRESHOLD;
+    private volatile boolean lowBattery = false;
+    private volatile SendPeriodListener sendPeriodListener = null;
+
+    /* State, only changed on the sampler thread. */
+    private volatile long samplePeriod;
+    private volatile long sendPeriod;
+    private volatile long speedUps = 0;
+    private volatile long backoffs = 0;
+    private long lastSend;
+    private long lastReceived;
+    private double averageRate;
+    private long lastActive;
+    private long lastBackoff;
+
+
+    /**
+     * Constructor for the adaptive rate controller
+     * The controller starts at the fast periods.
+     *
+     * @param monitorNode The monitor node
+     * @param fastSamplePeriod The sample period in milliseconds when the node is active
+     * @param slowSamplePeriod The sample period in milliseconds when the node is idle, the floor of the sample rate
+     * @param fastSendPeriod The send period in milliseconds when the node is active
+     * @param slowSendPeriod The send period in milliseconds when the node is idle, the floor of the send rate
+     */
+    public AdaptiveRateController(MonitorNode monitorNode, long fastSamplePeriod, long slowSamplePeriod,
+                                  long fastSendPeriod, long slowSendPeriod) {
+        if (fastSamplePeriod <= 0 || fastSendPeriod <= 0) {
+            throw new IllegalArgumentException("Periods must be positive");
+        }
+        if (slowSamplePeriod < fastSamplePeriod || slowSendPeriod < fastSendPeriod) {
+            throw new IllegalArgumentException("Slow periods can't be shorter than the fast periods");
+        }
+        this.monitorNode = monitorNode;
+        this.fastSamplePeriod = fastSamplePeriod;
+        this.slowSamplePeriod = slowSamplePeriod;
+        this.fastSendPeriod = fastSendPeriod;
+        this.slowSendPeriod = slowSendPeriod;
+        this.samplePeriod = fastSamplePeriod;
+        this.sendPeriod = fastSendPeriod;
+        this.samplePeriodArray = monitorNode.createSeries(SAMPLE_PERIOD_SERIES);
+        this.sendPeriodArray = monitorNode.createSeries(SEND_PERIOD_SERIES);
+    }
+
+
+    @Override
+    public void reset() {
+        lastSend = monitorNode.getBytesSend();
+        lastReceived = monitorNode.getBytesReceived();
+        averageRate = 0;
+        lastActive = monitorNode.getMonitorTime();
+        lastBackoff = lastActive;
+    }
+
+
+    @Override
+    public void sample(long timeStamp, long elapsed) {
+        /* Calculates the IO rate and checks if it changed sharply compared to the average. */
+        long send = monitorNode.getBytesSend();
+        long received = monitorNode.getBytesReceived();
+        double rate = (double) ((send - lastSend) + (received - lastReceived)) / (double) elapsed;
+        lastSend = send;
+        lastReceived = received;
+        boolean sharpChange = Math.abs(rate - averageRate) > changeThreshold * Math.max(averageRate, MIN_IO_RATE);
+        averageRate += AVERAGE_WEIGHT * (rate - averageRate);
+
+        NodeStatus status = monitorNode.getNodeStatus();
+        long period = samplePeriod;
+        if (status == NodeStatus.PROCESSING || sharpChange) {
+            lastActive = timeStamp;
+            if (period != fastSamplePeriod) {
+                period = fastSamplePeriod;
+                speedUps++;
+            }
+        } else if (status == NodeStatus.IDLE && period < slowSamplePeriod
+                && (lowBattery || (timeStamp - lastActive >= holdTime && timeStamp - lastBackoff >= holdTime))) {
+            period = Math.min(slowSamplePeriod, Math.max(period + 1, (long) (period * backoffFactor)));
+            lastBackoff = timeStamp;
+            backoffs++;
+        }
+
+        if (period != samplePeriod) {
+            applySamplePeriod(period);
+        }
+
+        /* Stores the decisions */
+        samplePeriodArray.add(timeStamp, samplePeriod);
+        sendPeriodArray.add(timeStamp, sendPeriod);
+    }
+
+
+    /**
+     * Changes the sample period and the matching send period
+     * The send period is scaled with the sample period between the fast and slow send period.
+     *
+     * @param period The new sample period
+     */
+    private void applySamplePeriod(long period) {
+        samplePeriod = period;
+        monitorNode.setSamplePeriod(period);
+
+        long newSendPeriod = fastSendPeriod;
+        if (slowSamplePeriod > fastSamplePeriod) {
+            double fraction = (double) (period - fastSamplePeriod) / (double) (slowSamplePeriod - fastSamplePeriod);
+            newSendPeriod = fastSendPeriod + Math.round(fraction * (slowSendPeriod - fastSendPeriod));
+        }
+        if (newSendPeriod != sendPeriod) {
+            sendPeriod = newSendPeriod;
+            SendPeriodListener listener = sendPeriodListener;
+            if (listener != null) {
+                listener.onSendPeriodChanged(newSendPeriod);
+            }
+        }
+    }
+
+
+    /**
+     * Function to set the time the node has to be idle and stable before the controller backs off
+     * It is also the time between two backoff steps.
+     *
+     * @param holdTime Default value is 10000 milliseconds
+     */
+    public void setHoldTime(long holdTime) {
+        this.holdTime = holdTime;
+    }
+
+
+    /**
+     * Function to set the factor by which the periods increase on each backoff step
+     *
+     * @param backoffFactor Default value is 2.0
+     */
+    public void setBackoffFactor(double backoffFactor) {
+        if (backoffFactor <= 1.0) {
+            throw new IllegalArgumentException("Backoff factor must be larger than 1");
+        }
+        this.backoffFactor = backoffFactor;
+    }
+
+
+    /**
+     * Function to set the relative change of the IO rate that is seen as a sharp change
+     *
+     * @param changeThreshold Default value is 0.5, a change of 50% of the average IO rate
+     */
+    public void setChangeThreshold(double changeThreshold) {
+        this.changeThreshold = changeThreshold;
+    }
+
+
+    /**
+     * Function to tell the controller the battery is low
+     * With a low battery the controller backs off without waiting for the hold time.
+     *
+     * @param lowBattery true if the battery is low, else false
+     */
+    public void setLowBattery(boolean lowBattery) {
+        this.lowBattery = lowBattery;
+    }
+
+
+    /**
+     * Function to set the listener that reschedules the send timer
+     *
+     * @param sendPeriodListener The listener, or null
+     */
+    public void setSendPeriodListener(SendPeriodListener sendPeriodListener) {
+        this.sendPeriodListener = sendPeriodListener;
+    }
+
+
+    /**
+     * Function that returns the current sample period
+     *
+     * @return The sample period in milliseconds
+     */
+    public long getSamplePeriod() {
+        return samplePeriod;
+    }
+
+
+    /**
+     * Function that returns the current send period
+     *
+     * @return The send period in milliseconds
+     */
+    public long getSendPeriod() {
+        return sendPeriod;
+    }
+
+
+    /**
+     * Function that returns how often the controller switched to the fast periods
+     *
+     * @return The amount of speed ups
+     */
+    public long getSpeedUps() {
+        return speedUps;
+    }
+
+
+    /**
+     * Function that returns how often the controller backed off
+     *
+     * @return The amount of backoff steps
+     */
+    public long getBackoffs() {
+        return backoffs;
+    }
+
+
+    /**
+     * Function that returns if the controller is told the battery is low
+     *
+     * @return true if the battery is low, else false
+     */
+    public boolean isLowBattery() {
+        return lowBattery;
+    }
+
+
+    /**
+     * Interface for a listener that is called when the send period changes
+     */
+    public interface SendPeriodListener {
+        void onSendPeriodChanged(long sendPeriod);
+    }
+}
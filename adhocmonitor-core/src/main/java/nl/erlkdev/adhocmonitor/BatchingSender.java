@@ -0,0 +1,269 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Packet sender that collects the data packets of multiple send intervals in one batch datagram.
+ * This keeps the packet rate low on congested links, while the node can still be sampled at a high rate.
+ *
+ * A batch is send when its oldest packet waited the maximum batch latency, or when the next packet doesn't fit
+ * in the maximum datagram size. A snapshot that doesn't fit in a datagram on its own is split into multiple
+ * packets, each with the full node state and a part of the samples. A batch with only one packet is send as
+ * a normal data packet.
+ *
+ * The maximum batch latency is checked on every send, so the actual latency is rounded up to the send interval.
+ * In reliable mode the packets are kept in the retransmit window when their batch is written, so the retransmit
+ * timeout doesn't include the time in the batch. They are retransmitted one per datagram, outside the batches.
+ */
+public class BatchingSender extends PacketSender {
+
+    /* Default maximum datagram size, below the 8096 byte receive buffer of the monitor visualization process. */
+    public static final int DEFAULT_MAX_DATAGRAM_SIZE = 8000;
+
+    /* Extra room in the batch buffer for the batch header of a single packet, which is send without it. */
+    private static final int BATCH_HEADER_ROOM = 64;
+
+    private final int maxDatagramSize;
+    private final long maxBatchLatency;
+
+    /* The batch that is being collected */
+    private final ByteBuffer batch;
+    private final NodeSnapshot part = new NodeSnapshot();
+    private int batchCount = 0;
+    private long batchStart = 0;
+    private int firstPacketStart = 0;
+    private int firstPacketEnd = 0;
+
+    /* The packets in the batch that request an acknowledgement: their sequence and range in the batch buffer. */
+    private long[] retainSequences = new long[8];
+    private int[] retainStarts = new int[8];
+    private int[] retainEnds = new int[8];
+    private int retainCount = 0;
+
+
+    /**
+     * Constructor for the batching sender
+     *
+     * @param target The address of the monitor system
+     * @param encoder The encoder of the data packets
+     * @param maxBatchLatency The maximum time in milliseconds a packet waits in a batch
+     * @param maxDatagramSize The maximum size of a datagram in bytes
+     */
+    public BatchingSender(InetSocketAddress target, PacketEncoder encoder, long maxBatchLatency, int maxDatagramSize) {
+        super(target, encoder, new ByteBufferPool(maxDatagramSize, 1));
+        if (maxDatagramSize < BATCH_HEADER_ROOM || maxDatagramSize > MAX_PACKET_SIZE) {
+            throw new IllegalArgumentException("Max datagram size must be between " + BATCH_HEADER_ROOM + " and "
+                    + MAX_PACKET_SIZE + " bytes");
+        }
+        if (maxBatchLatency < 0) {
+            throw new IllegalArgumentException("Max batch latency can't be negative");
+        }
+        this.maxDatagramSize = maxDatagramSize;
+        this.maxBatchLatency = maxBatchLatency;
+        this.batch = ByteBuffer.allocateDirect(maxDatagramSize + BATCH_HEADER_ROOM);
+    }
+
+
+    /**
+     * Adds a snapshot to the batch
+     * The batch is send if the maximum batch latency has passed.
+     *
+     * @param snapshot The snapshot
+     * @return The amount of bytes that is send, 0 if the packet is only added to the batch
+     * @throws IOException If the packet is larger than the maximum datagram size or couldn't be send
+     */
+    @Override
+    public synchronized int send(NodeSnapshot snapshot) throws IOException {
+        ByteBuffer packet = getBufferPool().acquire();
+        try {
+            int bytes = appendSlices(snapshot, packet, 0, 1, 1);
+            if (batchCount > 0 && System.nanoTime() - batchStart >= maxBatchLatency * 1000000L) {
+                bytes += flush();
+            }
+            return bytes;
+        } finally {
+            getBufferPool().release(packet);
+        }
+    }
+
+
+    /**
+     * Sends the collected batch
+     * The packets that request an acknowledgement are kept in the retransmit window after the batch is written.
+     * If the batch couldn't be send they are dropped, like the packet of a failed send of the packet sender.
+     *
+     * @return The amount of bytes that is send
+     * @throws IOException If the batch couldn't be send
+     */
+    public synchronized int flush() throws IOException {
+        if (batchCount == 0) {
+            return 0;
+        }
+
+        /* A single packet is send without the batch header. */
+        if (batchCount == 1) {
+            batch.limit(firstPacketEnd);
+            batch.position(firstPacketStart);
+        } else {
+            getEncoder().endBatch(batch);
+            batch.flip();
+        }
+
+        try {
+            int bytes = write(batch);
+            for (int i = 0; i < retainCount; i++) {
+                batch.limit(retainEnds[i]);
+                batch.position(retainStarts[i]);
+                retain(retainSequences[i], batch);
+            }
+            return bytes;
+        } finally {
+            batch.clear();
+            batchCount = 0;
+            retainCount = 0;
+        }
+    }
+
+
+    /**
+     * Sends the collected batch and closes the datagram channel
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        super.close();
+    }
+
+
+    /**
+     * Gets the maximum size of a datagram
+     *
+     * @return the maximum size of a datagram in bytes
+     */
+    public int getMaxDatagramSize() {
+        return maxDatagramSize;
+    }
+
+
+    /**
+     * Gets the maximum time a packet waits in a batch
+     *
+     * @return the maximum batch latency in milliseconds
+     */
+    public long getMaxBatchLatency() {
+        return maxBatchLatency;
+    }
+
+
+    /**
+     * Adds a range of slices of a snapshot to the batch
+     * If the range doesn't fit in a datagram it is split in two halves.
+     *
+     * @param snapshot The snapshot
+     * @param packet The buffer for the encoded packet
+     * @param sliceFrom The first slice
+     * @param sliceTo The slice after the last slice
+     * @param slices The amount of slices
+     * @return The amount of bytes that is send to make room in the batch
+     * @throws IOException If a single sample doesn't fit in a datagram or the batch couldn't be send
+     */
+    private int appendSlices(NodeSnapshot snapshot, ByteBuffer packet, long sliceFrom, long sliceTo, long slices)
+            throws IOException {
+        NodeSnapshot source = snapshot;
+        if (slices > 1) {
+            part.copyFrom(snapshot, sliceFrom, sliceTo, slices);
+            source = part;
+        }
+
+        packet.clear();
+        boolean fits;
+        try {
+            encode(source, packet);
+            fits = packet.position() <= maxDatagramSize;
+        } catch (BufferOverflowException e) {
+            fits = false;
+        }
+
+        if (!fits) {
+            if (getMaxSliceSamples(snapshot, sliceFrom, sliceTo, slices) <= 1) {
+                recordSendFailure();
+                throw new IOException("Data packet is larger than " + maxDatagramSize + " bytes");
+            }
+            int bytes = appendSlices(snapshot, packet, sliceFrom * 2, sliceFrom + sliceTo, slices * 2);
+            return bytes + appendSlices(snapshot, packet, sliceFrom + sliceTo, sliceTo * 2, slices * 2);
+        }
+
+        packet.flip();
+        return append(packet, isRetained(source) ? source.getSequence() : -1);
+    }
+
+
+    /**
+     * Appends an encoded packet to the batch, the batch is send first if the packet doesn't fit
+     *
+     * @param packet The encoded packet
+     * @param retainSequence The sequence number to retain the packet with when the batch is send, -1 to not retain it
+     * @return The amount of bytes that is send to make room in the batch
+     * @throws IOException If the batch couldn't be send
+     */
+    private int append(ByteBuffer packet, long retainSequence) throws IOException {
+        PacketEncoder encoder = getEncoder();
+        int bytes = 0;
+        if (batchCount > 0 && batch.position() + encoder.getBatchOverhead() + packet.remaining() > maxDatagramSize) {
+            bytes = flush();
+        }
+
+        if (batchCount == 0) {
+            encoder.beginBatch(batch);
+            batchStart = System.nanoTime();
+        }
+        int length = packet.remaining();
+        encoder.appendToBatch(batch, packet, batchCount == 0);
+        if (batchCount == 0) {
+            firstPacketEnd = batch.position();
+            firstPacketStart = firstPacketEnd - length;
+        }
+        if (retainSequence >= 0) {
+            if (retainCount == retainSequences.length) {
+                retainSequences = Arrays.copyOf(retainSequences, retainCount * 2);
+                retainStarts = Arrays.copyOf(retainStarts, retainCount * 2);
+                retainEnds = Arrays.copyOf(retainEnds, retainCount * 2);
+            }
+            retainSequences[retainCount] = retainSequence;
+            retainEnds[retainCount] = batch.position();
+            retainStarts[retainCount] = batch.position() - length;
+            retainCount++;
+        }
+        batchCount++;
+        return bytes;
+    }
+
+
+    /**
+     * Gets the largest amount of samples of a series in a range of slices
+     *
+     * @param snapshot The snapshot
+     * @param sliceFrom The first slice
+     * @param sliceTo The slice after the last slice
+     * @param slices The amount of slices
+     * @return The largest amount of samples
+     */
+    private static int getMaxSliceSamples(NodeSnapshot snapshot, long sliceFrom, long sliceTo, long slices) {
+        int max = 0;
+        for (int i = 0; i < snapshot.getSeriesCount(); i++) {
+            int size = snapshot.getSeries(i).size();
+            max = Math.max(max, (int) (size * sliceTo / slices - size * sliceFrom / slices));
+        }
+        return max;
+    }
+}
@@ -0,0 +1,269 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Functions to read and write the primitive types of the binary packet format.
+ * The write functions don't allocate, so they can be used on every send.
+ */
+public final class BinaryCodec {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /* Address kinds in the address table. */
+    private static final int ADDRESS_STRING = 0;
+    private static final int ADDRESS_MAC = 1;
+
+    private BinaryCodec() {
+    }
+
+
+    /**
+     * Writes an unsigned variable length long (7 bits per byte, least significant group first)
+     *
+     * @param buffer The buffer
+     * @param value The value, interpreted as unsigned
+     */
+    public static void writeVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+
+    /**
+     * Reads an unsigned variable length long
+     *
+     * @param buffer The buffer
+     * @return The value
+     */
+    public static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+
+    /**
+     * Writes a signed variable length long, using zigzag encoding so small negative values stay small
+     *
+     * @param buffer The buffer
+     * @param value The value
+     */
+    public static void writeZigZag(ByteBuffer buffer, long value) {
+        writeVarLong(buffer, (value << 1) ^ (value >> 63));
+    }
+
+
+    /**
+     * Reads a signed variable length long
+     *
+     * @param buffer The buffer
+     * @return The value
+     */
+    public static long readZigZag(ByteBuffer buffer) {
+        long value = readVarLong(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+
+    /**
+     * Reads a variable length int that is used as a count or length
+     *
+     * @param buffer The buffer
+     * @return The value
+     */
+    public static int readCount(ByteBuffer buffer) {
+        long value = readVarLong(buffer);
+        if (value < 0 || value > buffer.capacity()) {
+            throw new IllegalArgumentException("Invalid count: " + value);
+        }
+        return (int) value;
+    }
+
+
+    /**
+     * Writes a string as a variable length byte count followed by the UTF-8 bytes
+     *
+     * @param buffer The buffer
+     * @param value The string
+     */
+    public static void writeString(ByteBuffer buffer, String value) {
+        writeString(buffer, value, 0, value.length());
+    }
+
+
+    /**
+     * Writes a part of a string as a variable length byte count followed by the UTF-8 bytes
+     *
+     * @param buffer The buffer
+     * @param value The string
+     * @param start The index of the first character
+     * @param end The index after the last character
+     */
+    public static void writeString(ByteBuffer buffer, String value, int start, int end) {
+        /* Calculates the UTF-8 length first, so no byte array is needed. */
+        int utf8Length = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                utf8Length += 1;
+            } else if (c < 0x800) {
+                utf8Length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(value.charAt(i + 1))) {
+                utf8Length += 4;
+                i++;
+            } else {
+                utf8Length += 3;
+            }
+        }
+        writeVarLong(buffer, utf8Length);
+
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+
+    /**
+     * Reads a string
+     *
+     * @param buffer The buffer
+     * @return The string
+     */
+    public static String readString(ByteBuffer buffer) {
+        int length = readCount(buffer);
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, UTF8);
+        }
+        return value;
+    }
+
+
+    /**
+     * Writes an address
+     * MAC addresses (for instance 02:00:5e:10:00:01) are written as 6 bytes, other addresses as a string.
+     *
+     * @param buffer The buffer
+     * @param address The address
+     */
+    public static void writeAddress(ByteBuffer buffer, String address) {
+        if (!isMacAddress(address)) {
+            buffer.put((byte) ADDRESS_STRING);
+            writeString(buffer, address);
+            return;
+        }
+
+        buffer.put((byte) ADDRESS_MAC);
+        for (int i = 0; i < 6; i++) {
+            buffer.put((byte) ((hexValue(address.charAt(i * 3)) << 4) | hexValue(address.charAt(i * 3 + 1))));
+        }
+    }
+
+
+    /**
+     * Reads an address
+     *
+     * @param buffer The buffer
+     * @return The address, MAC addresses are returned in lower case
+     */
+    public static String readAddress(ByteBuffer buffer) {
+        int kind = buffer.get();
+        if (kind == ADDRESS_STRING) {
+            return readString(buffer);
+        }
+        if (kind != ADDRESS_MAC) {
+            throw new IllegalArgumentException("Unknown address kind: " + kind);
+        }
+
+        char[] chars = new char[17];
+        for (int i = 0; i < 6; i++) {
+            int b = buffer.get() & 0xFF;
+            chars[i * 3] = Character.forDigit(b >> 4, 16);
+            chars[i * 3 + 1] = Character.forDigit(b & 0xF, 16);
+            if (i < 5) {
+                chars[i * 3 + 2] = ':';
+            }
+        }
+        return new String(chars);
+    }
+
+
+    /**
+     * Checks if an address is a lower case MAC address, so it can be written without losing information
+     *
+     * @param address The address
+     * @return true if the address is a lower case MAC address, else false
+     */
+    private static boolean isMacAddress(String address) {
+        if (address.length() != 17) {
+            return false;
+        }
+        for (int i = 0; i < 17; i++) {
+            char c = address.charAt(i);
+            if (i % 3 == 2) {
+                if (c != ':') {
+                    return false;
+                }
+            } else if (hexValue(c) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Returns the value of a lower case hexadecimal digit
+     *
+     * @param c The digit
+     * @return The value of the digit, or -1 if it isn't a lower case hexadecimal digit
+     */
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+}
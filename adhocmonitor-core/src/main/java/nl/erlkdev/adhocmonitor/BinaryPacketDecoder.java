@@ -0,0 +1,316 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Decoder for the binary data packets written by the BinaryPacketEncoder.
+ * It can be used by a monitor process written in Java to read the packets of the nodes.
+ */
+public class BinaryPacketDecoder {
+
+    /**
+     * Checks if a packet is a binary data packet
+     *
+     * @param buffer The buffer with the packet at its position
+     * @return true if the packet starts with the binary magic byte, else false
+     */
+    public static boolean isBinaryPacket(ByteBuffer buffer) {
+        return buffer.remaining() > 0 && buffer.get(buffer.position()) == BinaryPacketEncoder.MAGIC;
+    }
+
+
+    /**
+     * Checks if a packet is a binary batch packet
+     *
+     * @param buffer The buffer with the packet at its position
+     * @return true if the packet is a binary batch packet, else false
+     */
+    public static boolean isBatchPacket(ByteBuffer buffer) {
+        return buffer.remaining() > 2 && isBinaryPacket(buffer)
+                && (buffer.get(buffer.position() + 2) & BinaryPacketEncoder.FLAG_BATCH) != 0;
+    }
+
+
+    /**
+     * Checks if a packet is an acknowledgement of data packets
+     *
+     * @param buffer The buffer with the packet at its position
+     * @return true if the packet is an acknowledgement, else false
+     */
+    public static boolean isAckPacket(ByteBuffer buffer) {
+        return buffer.remaining() > 2 && isBinaryPacket(buffer)
+                && (buffer.get(buffer.position() + 2) & BinaryPacketEncoder.FLAG_ACK) != 0;
+    }
+
+
+    /**
+     * Checks if a packet is an acknowledgement of relayed data packets
+     *
+     * @param buffer The buffer with the packet at its position
+     * @return true if the packet is an acknowledgement of relayed packets, else false
+     */
+    public static boolean isRelayedAckPacket(ByteBuffer buffer) {
+        return isAckPacket(buffer) && (buffer.get(buffer.position() + 2) & BinaryPacketEncoder.FLAG_RELAYED) != 0;
+    }
+
+
+    /**
+     * Reads the sequence numbers of an acknowledgement
+     *
+     * @param buffer The buffer with the acknowledgement at its position
+     * @param sequences The array for the sequence numbers, the sequence numbers that don't fit are skipped
+     * @return The amount of sequence numbers in the array
+     * @throws IllegalArgumentException If the packet is not a valid acknowledgement
+     */
+    public static int decodeAck(ByteBuffer buffer, long[] sequences) {
+        if (!isAckPacket(buffer) || isRelayedAckPacket(buffer)) {
+            throw new IllegalArgumentException("Not an acknowledgement");
+        }
+        buffer.position(buffer.position() + 3);
+        try {
+            int count = BinaryCodec.readCount(buffer);
+            int read = 0;
+            for (int i = 0; i < count; i++) {
+                long sequence = BinaryCodec.readVarLong(buffer);
+                if (read < sequences.length) {
+                    sequences[read++] = sequence;
+                }
+            }
+            return read;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated acknowledgement", e);
+        }
+    }
+
+
+    /**
+     * Reads the node addresses and sequence numbers of an acknowledgement of relayed packets
+     *
+     * @param buffer The buffer with the acknowledgement at its position
+     * @param addresses The array for the node addresses
+     * @param sequences The array for the sequence numbers, the sequence numbers that don't fit are skipped
+     * @return The amount of sequence numbers in the arrays
+     * @throws IllegalArgumentException If the packet is not a valid acknowledgement of relayed packets
+     */
+    public static int decodeRelayedAck(ByteBuffer buffer, String[] addresses, long[] sequences) {
+        if (!isRelayedAckPacket(buffer)) {
+            throw new IllegalArgumentException("Not an acknowledgement of relayed packets");
+        }
+        buffer.position(buffer.position() + 3);
+        try {
+            int count = BinaryCodec.readCount(buffer);
+            int read = 0;
+            for (int i = 0; i < count; i++) {
+                String address = BinaryCodec.readString(buffer);
+                long sequence = BinaryCodec.readVarLong(buffer);
+                if (read < sequences.length && read < addresses.length) {
+                    addresses[read] = address;
+                    sequences[read++] = sequence;
+                }
+            }
+            return read;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated acknowledgement", e);
+        }
+    }
+
+
+    /**
+     * Reads the data packets of a binary batch packet into snapshots
+     * The snapshots in the list are reused, new snapshots are added when the list is too short.
+     *
+     * @param buffer The buffer with the batch packet at its position
+     * @param snapshots The snapshots
+     * @return The amount of data packets in the batch
+     * @throws IllegalArgumentException If the packet is not a valid binary batch packet
+     */
+    public int decodeBatch(ByteBuffer buffer, List<NodeSnapshot> snapshots) {
+        if (!isBatchPacket(buffer)) {
+            throw new IllegalArgumentException("Not a binary batch packet");
+        }
+        int version = buffer.get(buffer.position() + 1);
+        if (version != BinaryPacketEncoder.VERSION) {
+            throw new IllegalArgumentException("Unsupported packet version: " + version);
+        }
+        buffer.position(buffer.position() + 3);
+
+        int limit = buffer.limit();
+        int count = 0;
+        try {
+            while (buffer.hasRemaining()) {
+                int length = buffer.getShort() & 0xFFFF;
+                int end = buffer.position() + length;
+                if (end > limit) {
+                    throw new IllegalArgumentException("Truncated binary batch packet");
+                }
+                if (count == snapshots.size()) {
+                    snapshots.add(new NodeSnapshot());
+                }
+
+                /* Limits the buffer to the data packet, so a packet can't read into the next one. */
+                buffer.limit(end);
+                decode(buffer, snapshots.get(count++));
+                buffer.limit(limit);
+                buffer.position(end);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary batch packet", e);
+        } finally {
+            buffer.limit(limit);
+        }
+        return count;
+    }
+
+
+    /**
+     * Reads a binary data packet into a snapshot
+     *
+     * @param buffer The buffer with the packet at its position
+     * @param snapshot The snapshot, it is cleared first
+     * @throws IllegalArgumentException If the packet is not a valid binary data packet
+     */
+    public void decode(ByteBuffer buffer, NodeSnapshot snapshot) {
+        snapshot.clear();
+        try {
+            if (buffer.get() != BinaryPacketEncoder.MAGIC) {
+                throw new IllegalArgumentException("Not a binary data packet");
+            }
+            int version = buffer.get();
+            if (version != BinaryPacketEncoder.VERSION) {
+                throw new IllegalArgumentException("Unsupported packet version: " + version);
+            }
+            int flags = buffer.get();
+            if ((flags & BinaryPacketEncoder.FLAG_BATCH) != 0) {
+                throw new IllegalArgumentException("Batch packet, use decodeBatch");
+            }
+
+            /* Address table */
+            String[] addresses = new String[BinaryCodec.readCount(buffer)];
+            for (int i = 0; i < addresses.length; i++) {
+                addresses[i] = BinaryCodec.readAddress(buffer);
+            }
+            String address = addresses[readIndex(buffer, addresses)];
+
+            /* Metadata */
+            String status = BinaryCodec.readString(buffer);
+            long timeStamp = BinaryCodec.readVarLong(buffer);
+            snapshot.setMetadata(address, status, timeStamp);
+            if ((flags & BinaryPacketEncoder.FLAG_SEQUENCE) != 0) {
+                long sequence = BinaryCodec.readVarLong(buffer);
+                long baseSequence = sequence;
+                if ((flags & BinaryPacketEncoder.FLAG_DELTA) != 0) {
+                    baseSequence = BinaryCodec.readVarLong(buffer);
+                }
+                snapshot.setSequence(sequence, baseSequence);
+            }
+            snapshot.setAckRequested((flags & BinaryPacketEncoder.FLAG_ACK_REQUEST) != 0);
+            if ((flags & BinaryPacketEncoder.FLAG_RELAYED) != 0) {
+                snapshot.setRelay(BinaryCodec.readString(buffer));
+            }
+
+            /* Chart series */
+            int seriesCount = BinaryCodec.readCount(buffer);
+            for (int i = 0; i < seriesCount; i++) {
+                int id = buffer.get() & 0xFF;
+                String name;
+                if (id == 0) {
+                    name = BinaryCodec.readString(buffer);
+                } else {
+                    MonitorSeries known = MonitorSeries.fromId(id);
+                    if (known == null) {
+                        throw new IllegalArgumentException("Unknown series id: " + id);
+                    }
+                    if (known.isNumbered()) {
+                        name = known.getName(String.valueOf(BinaryCodec.readVarLong(buffer)));
+                    } else if (known.isFamily()) {
+                        name = known.getName(BinaryCodec.readString(buffer));
+                    } else {
+                        name = known.toString();
+                    }
+                }
+
+                NodeSnapshot.Series series = snapshot.addSeries(name);
+                int count = BinaryCodec.readCount(buffer);
+                long previous = timeStamp;
+                for (int j = 0; j < count; j++) {
+                    previous += BinaryCodec.readZigZag(buffer);
+                    series.add(previous, buffer.getFloat());
+                }
+            }
+
+            /* Neighbours */
+            int neighbourCount = BinaryCodec.readCount(buffer);
+            for (int i = 0; i < neighbourCount; i++) {
+                String neighbour = addresses[readIndex(buffer, addresses)];
+                long bytesSend = BinaryCodec.readVarLong(buffer);
+                long bytesReceived = BinaryCodec.readVarLong(buffer);
+                boolean dataSend = buffer.get() != 0;
+                snapshot.addNeighbour(neighbour, bytesSend, bytesReceived, dataSend);
+            }
+
+            /* Custom values */
+            int customCount = BinaryCodec.readCount(buffer);
+            for (int i = 0; i < customCount; i++) {
+                String key = BinaryCodec.readString(buffer);
+                snapshot.putCustomValue(key, readCustomValue(buffer));
+            }
+
+            /* Removed neighbours and custom values of a delta */
+            if ((flags & BinaryPacketEncoder.FLAG_DELTA) != 0) {
+                int removedNeighbours = BinaryCodec.readCount(buffer);
+                for (int i = 0; i < removedNeighbours; i++) {
+                    snapshot.addRemovedNeighbour(addresses[readIndex(buffer, addresses)]);
+                }
+                int removedCustomValues = BinaryCodec.readCount(buffer);
+                for (int i = 0; i < removedCustomValues; i++) {
+                    snapshot.addRemovedCustomValue(BinaryCodec.readString(buffer));
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary data packet", e);
+        }
+    }
+
+
+    /**
+     * Reads an index in the address table
+     *
+     * @param buffer The buffer
+     * @param addresses The address table
+     * @return The index
+     */
+    private static int readIndex(ByteBuffer buffer, String[] addresses) {
+        long index = BinaryCodec.readVarLong(buffer);
+        if (index < 0 || index >= addresses.length) {
+            throw new IllegalArgumentException("Invalid address index: " + index);
+        }
+        return (int) index;
+    }
+
+
+    /**
+     * Reads a custom value
+     *
+     * @param buffer The buffer
+     * @return The custom value
+     */
+    private static Object readCustomValue(ByteBuffer buffer) {
+        int type = buffer.get();
+        switch (type) {
+            case BinaryPacketEncoder.TYPE_STRING:
+                return BinaryCodec.readString(buffer);
+            case BinaryPacketEncoder.TYPE_LONG:
+                return BinaryCodec.readZigZag(buffer);
+            case BinaryPacketEncoder.TYPE_DOUBLE:
+                return buffer.getDouble();
+            case BinaryPacketEncoder.TYPE_BOOLEAN:
+                return buffer.get() != 0;
+            default:
+                throw new IllegalArgumentException("Unknown custom value type: " + type);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Encoder for the compact binary data packets.
+ *
+ * Layout of a version 1 packet (varint: unsigned LEB128, zigzag: signed varint, string: varint length + UTF-8):
+ * <pre>
+ * byte    magic (0xAD)
+ * byte    version (1)
+ * byte    flags (bit 0: sequence number, bit 1: delta, bit 3: acknowledgement requested, bit 6: relayed)
+ * varint  address count, followed by the addresses (kind byte 0 + string, or kind byte 1 + 6 byte MAC)
+ * varint  index of the node address
+ * string  status
+ * varint  time stamp
+ * varint  sequence number (only with the sequence flag)
+ * varint  sequence number of the keyframe (only with the delta flag)
+ * string  addresses of the aggregators that relayed the packet, separated by commas (only with the relayed flag)
+ * varint  series count, per series:
+ *           byte id (0 = named series, followed by the name as string; the id of a family of series is
+ *           followed by the parameter of the name, a varint number or a string), varint sample count,
+ *           per sample: zigzag time stamp delta (to the packet time stamp for the first sample,
+ *           else to the previous sample) and a 4 byte float value
+ * varint  neighbour count, per neighbour:
+ *           varint address index, varint bytes send, varint bytes received, byte data send
+ * varint  custom value count, per custom value:
+ *           string key, byte type, value (string, zigzag long, 8 byte double or byte boolean)
+ * varint  removed neighbour count, followed by their address indices (only with the delta flag)
+ * varint  removed custom value count, followed by their keys (only with the delta flag)
+ * </pre>
+ *
+ * A batch packet starts with the magic byte, the version and the batch flag (bit 2), followed by the data
+ * packets. Every data packet is preceded by its length as 2 byte big endian unsigned short.
+ *
+ * An acknowledgement is send back by the receiver for the data packets that request it. It starts with the magic
+ * byte, the version and the ack flag (bit 4), followed by a varint count and the varint sequence numbers.
+ * The acknowledgement of relayed packets has the relayed flag too, and every sequence number is preceded by the
+ * address of its node as string.
+ *
+ * A compressed packet starts with the magic byte, the version and the compressed flag (bit 5), followed by the
+ * 4 byte id of the preset dictionary, the varint length of the original packet and the raw deflate data of the
+ * original packet, see the PacketCompressor.
+ */
+public class BinaryPacketEncoder implements PacketEncoder {
+
+    /* Packet header */
+    public static final byte MAGIC = (byte) 0xAD;
+    public static final byte VERSION = 1;
+
+    /* Flags */
+    static final int FLAG_SEQUENCE = 1;
+    static final int FLAG_DELTA = 2;
+    static final int FLAG_BATCH = 4;
+    static final int FLAG_ACK_REQUEST = 8;
+    static final int FLAG_ACK = 16;
+    static final int FLAG_COMPRESSED = 32;
+    static final int FLAG_RELAYED = 64;
+
+    /* Custom value types */
+    static final int TYPE_STRING = 0;
+    static final int TYPE_LONG = 1;
+    static final int TYPE_DOUBLE = 2;
+    static final int TYPE_BOOLEAN = 3;
+
+    @Override
+    public void encode(NodeSnapshot snapshot, ByteBuffer buffer) {
+        buffer.put(MAGIC);
+        buffer.put(VERSION);
+        int flags = 0;
+        if (snapshot.getSequence() >= 0) {
+            flags |= FLAG_SEQUENCE;
+        }
+        if (snapshot.isDelta()) {
+            flags |= FLAG_DELTA;
+        }
+        if (snapshot.isAckRequested()) {
+            flags |= FLAG_ACK_REQUEST;
+        }
+        if (snapshot.getRelay() != null) {
+            flags |= FLAG_RELAYED;
+        }
+        buffer.put((byte) flags);
+
+        /* Address table: the node address followed by the neighbour addresses and the removed neighbours. */
+        int neighbourCount = snapshot.getNeighbourCount();
+        List<String> removedNeighbours = snapshot.getRemovedNeighbours();
+        BinaryCodec.writeVarLong(buffer, neighbourCount + 1 + removedNeighbours.size());
+        BinaryCodec.writeAddress(buffer, snapshot.getAddress());
+        for (int i = 0; i < neighbourCount; i++) {
+            BinaryCodec.writeAddress(buffer, snapshot.getNeighbourAddress(i));
+        }
+        for (int i = 0; i < removedNeighbours.size(); i++) {
+            BinaryCodec.writeAddress(buffer, removedNeighbours.get(i));
+        }
+        BinaryCodec.writeVarLong(buffer, 0);
+
+        /* Metadata */
+        BinaryCodec.writeString(buffer, snapshot.getStatus());
+        long timeStamp = snapshot.getTimeStamp();
+        BinaryCodec.writeVarLong(buffer, timeStamp);
+        if ((flags & FLAG_SEQUENCE) != 0) {
+            BinaryCodec.writeVarLong(buffer, snapshot.getSequence());
+        }
+        if ((flags & FLAG_DELTA) != 0) {
+            BinaryCodec.writeVarLong(buffer, snapshot.getBaseSequence());
+        }
+        if ((flags & FLAG_RELAYED) != 0) {
+            BinaryCodec.writeString(buffer, snapshot.getRelay());
+        }
+
+        /* Chart series */
+        BinaryCodec.writeVarLong(buffer, snapshot.getSeriesCount());
+        for (int i = 0; i < snapshot.getSeriesCount(); i++) {
+            NodeSnapshot.Series series = snapshot.getSeries(i);
+            writeSeriesName(buffer, series.getName());
+
+            BinaryCodec.writeVarLong(buffer, series.size());
+            long previous = timeStamp;
+            for (int j = 0; j < series.size(); j++) {
+                BinaryCodec.writeZigZag(buffer, series.getTimeStamp(j) - previous);
+                buffer.putFloat((float) series.getValue(j));
+                previous = series.getTimeStamp(j);
+            }
+        }
+
+        /* Neighbours, the address index skips the node address. */
+        BinaryCodec.writeVarLong(buffer, neighbourCount);
+        for (int i = 0; i < neighbourCount; i++) {
+            BinaryCodec.writeVarLong(buffer, i + 1);
+            BinaryCodec.writeVarLong(buffer, snapshot.getNeighbourBytesSend(i));
+            BinaryCodec.writeVarLong(buffer, snapshot.getNeighbourBytesReceived(i));
+            buffer.put((byte) (snapshot.isNeighbourDataSend(i) ? 1 : 0));
+        }
+
+        /* Custom values */
+        Map<String, Object> customValues = snapshot.getCustomValues();
+        BinaryCodec.writeVarLong(buffer, customValues.size());
+        for (Map.Entry<String, Object> entry : customValues.entrySet()) {
+            BinaryCodec.writeString(buffer, entry.getKey());
+            writeCustomValue(buffer, entry.getValue());
+        }
+
+        /* Removed neighbours and custom values of a delta */
+        if ((flags & FLAG_DELTA) != 0) {
+            BinaryCodec.writeVarLong(buffer, removedNeighbours.size());
+            for (int i = 0; i < removedNeighbours.size(); i++) {
+                BinaryCodec.writeVarLong(buffer, neighbourCount + 1 + i);
+            }
+            List<String> removedCustomValues = snapshot.getRemovedCustomValues();
+            BinaryCodec.writeVarLong(buffer, removedCustomValues.size());
+            for (int i = 0; i < removedCustomValues.size(); i++) {
+                BinaryCodec.writeString(buffer, removedCustomValues.get(i));
+            }
+        }
+    }
+
+
+    @Override
+    public void beginBatch(ByteBuffer buffer) {
+        buffer.put(MAGIC);
+        buffer.put(VERSION);
+        buffer.put((byte) FLAG_BATCH);
+    }
+
+
+    @Override
+    public void appendToBatch(ByteBuffer buffer, ByteBuffer packet, boolean first) {
+        if (packet.remaining() > 0xFFFF) {
+            throw new IllegalArgumentException("Data packet is too large for a batch");
+        }
+        buffer.putShort((short) packet.remaining());
+        buffer.put(packet);
+    }
+
+
+    @Override
+    public void endBatch(ByteBuffer buffer) {
+    }
+
+
+    @Override
+    public int getBatchOverhead() {
+        /* The length before the packet, a batch has no end. */
+        return 2;
+    }
+
+
+    /**
+     * Function to write an acknowledgement of the sequence numbers of data packets
+     *
+     * @param sequences The sequence numbers
+     * @param count The amount of sequence numbers
+     * @param buffer The buffer
+     */
+    public static void encodeAck(long[] sequences, int count, ByteBuffer buffer) {
+        buffer.put(MAGIC);
+        buffer.put(VERSION);
+        buffer.put((byte) FLAG_ACK);
+        BinaryCodec.writeVarLong(buffer, count);
+        for (int i = 0; i < count; i++) {
+            BinaryCodec.writeVarLong(buffer, sequences[i]);
+        }
+    }
+
+
+    /**
+     * Function to write an acknowledgement of relayed data packets, which is passed back along their relay path
+     * Every sequence number is preceded by the address of its node, as the sequence numbers of nodes overlap.
+     *
+     * @param addresses The addresses of the nodes of the packets
+     * @param sequences The sequence numbers
+     * @param count The amount of sequence numbers
+     * @param buffer The buffer
+     * @throws java.nio.BufferOverflowException If the acknowledgement doesn't fit in the buffer
+     */
+    public static void encodeRelayedAck(String[] addresses, long[] sequences, int count, ByteBuffer buffer) {
+        buffer.put(MAGIC);
+        buffer.put(VERSION);
+        buffer.put((byte) (FLAG_ACK | FLAG_RELAYED));
+        BinaryCodec.writeVarLong(buffer, count);
+        for (int i = 0; i < count; i++) {
+            BinaryCodec.writeString(buffer, addresses[i]);
+            BinaryCodec.writeVarLong(buffer, sequences[i]);
+        }
+    }
+
+
+    /**
+     * Writes the name of a series as its id, the id of its family with the parameter, or as string
+     *
+     * @param buffer The buffer
+     * @param name The name of the series
+     */
+    static void writeSeriesName(ByteBuffer buffer, String name) {
+        MonitorSeries known = MonitorSeries.fromName(name);
+        if (known == null) {
+            buffer.put((byte) 0);
+            BinaryCodec.writeString(buffer, name);
+            return;
+        }
+        buffer.put((byte) known.getId());
+        if (known.isNumbered()) {
+            BinaryCodec.writeVarLong(buffer, known.getNumber(name));
+        } else if (known.isFamily()) {
+            BinaryCodec.writeString(buffer, name, known.getParameterStart(), known.getParameterEnd(name));
+        }
+    }
+
+
+    /**
+     * Writes a custom value with its type
+     *
+     * @param buffer The buffer
+     * @param value The custom value
+     */
+    private static void writeCustomValue(ByteBuffer buffer, Object value) {
+        if (value instanceof Integer || value instanceof Long) {
+            buffer.put((byte) TYPE_LONG);
+            BinaryCodec.writeZigZag(buffer, ((Number) value).longValue());
+        } else if (value instanceof Number) {
+            buffer.put((byte) TYPE_DOUBLE);
+            buffer.putDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            buffer.put((byte) TYPE_BOOLEAN);
+            buffer.put((byte) (((Boolean) value) ? 1 : 0));
+        } else {
+            buffer.put((byte) TYPE_STRING);
+            BinaryCodec.writeString(buffer, String.valueOf(value));
+        }
+    }
+}
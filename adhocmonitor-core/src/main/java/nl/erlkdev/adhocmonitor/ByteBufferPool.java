@@ -0,0 +1,68 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Pool of direct byte buffers with a fixed size.
+ * Buffers are allocated when the pool is empty and kept when they are released, so a steady send
+ * loop reuses the same buffers.
+ */
+public class ByteBufferPool {
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ArrayDeque<ByteBuffer> buffers;
+
+
+    /**
+     * Constructor for a buffer pool
+     *
+     * @param bufferSize The size of the buffers
+     * @param maxPooled The maximum amount of buffers that is kept in the pool
+     */
+    public ByteBufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+        this.buffers = new ArrayDeque<>(maxPooled);
+    }
+
+
+    /**
+     * Takes a cleared buffer from the pool, or allocates a new buffer if the pool is empty
+     *
+     * @return The buffer
+     */
+    public synchronized ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.pollFirst();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+
+    /**
+     * Returns a buffer to the pool
+     *
+     * @param buffer The buffer, it must not be used after it is released
+     */
+    public synchronized void release(ByteBuffer buffer) {
+        if (buffer.capacity() == bufferSize && buffers.size() < maxPooled) {
+            buffers.offerFirst(buffer);
+        }
+    }
+
+
+    /**
+     * Returns the size of the buffers
+     *
+     * @return The size of the buffers
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,432 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Clock synchronization between the node and the monitor.
+ *
+ * A sync runs multiple rounds of the precision time protocol exchange (https://en.wikipedia.org/wiki/Precision_Time_Protocol)
+ * over one TCP connection. Only the round with the smallest round trip time is used, because its offset is the
+ * least affected by queueing on a busy link. The error of that offset is at most half the round trip time, which
+ * is exposed as the uncertainty.
+ *
+ * The offsets of the last syncs are fitted with least squares, so the drift of the node clock is estimated
+ * and the offset is extrapolated between the syncs. The syncs can be repeated in the background.
+ *
+ * The offset is the node time minus the monitor time, so the monitor time is the node time minus the offset.
+ */
+public class ClockSync {
+
+    /* Default settings */
+    public static final int DEFAULT_ROUNDS = 8;
+    public static final int DEFAULT_HISTORY = 8;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final byte[] SYNC_REQUEST = "{\"type\":\"sync\"}".getBytes(UTF8);
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int READ_TIMEOUT = 2000;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    /* Minimum time between the first and last sync before the drift is estimated, shorter spans are dominated by noise. */
+    private static final long MIN_DRIFT_SPAN = 10000;
+
+    /* Indices in the offset model. */
+    private static final int BASE_OFFSET = 0;
+    private static final int BASE_TIME = 1;
+    private static final int DRIFT = 2;
+
+    private final InetSocketAddress monitor;
+    private final int rounds;
+
+    /* Best offset and node time of the last syncs, in a ring. Guarded by this. */
+    private final long[] syncTimes;
+    private final double[] syncOffsets;
+    private int syncCount = 0;
+
+    /* Fitted offset model: offset = base offset + drift * (node time - base time), replaced as a whole on each sync. */
+    private volatile double[] model = new double[3];
+    private volatile double uncertainty = Double.NaN;
+    private volatile long lastSyncTime = 0;
+
+    /* Background resync, guarded by the resync lock so stopping doesn't wait for a running sync. */
+    private final Object resyncLock = new Object();
+    private ScheduledExecutorService executor = null;
+    private final byte[] response = new byte[512];
+
+
+    /**
+     * Constructor for the clock sync
+     *
+     * @param monitor The address of the TCP sync port of the monitor
+     * @param rounds The amount of exchanges per sync
+     * @param history The amount of syncs that is used to estimate the drift
+     */
+    public ClockSync(InetSocketAddress monitor, int rounds, int history) {
+        if (rounds < 1 || history < 1) {
+            throw new IllegalArgumentException("Rounds and history must be at least 1");
+        }
+        this.monitor = monitor;
+        this.rounds = rounds;
+        this.syncTimes = new long[history];
+        this.syncOffsets = new double[history];
+    }
+
+
+    /**
+     * Constructor for the clock sync with the default rounds and history
+     *
+     * @param monitor The address of the TCP sync port of the monitor
+     */
+    public ClockSync(InetSocketAddress monitor) {
+        this(monitor, DEFAULT_ROUNDS, DEFAULT_HISTORY);
+    }
+
+
+    /**
+     * Synchronizes the clock with the monitor
+     * The rounds use one connection, if the monitor closes the connection after a round a new connection is made.
+     *
+     * @throws IOException If no round succeeded
+     */
+    public synchronized void sync() throws IOException {
+        double bestDelay = Double.POSITIVE_INFINITY;
+        double bestOffset = 0;
+        long bestTime = 0;
+        IOException lastError = null;
+
+        Socket socket = null;
+        try {
+            for (int i = 0; i < rounds; i++) {
+                try {
+                    if (socket == null) {
+                        socket = connect();
+                    }
+
+                    /* The node times are wall clock times, the round trip time is measured with the monotonic clock.
+                     * The round trip time keeps its fraction of a millisecond, on a local link it is below 1 ms. */
+                    long time1 = System.currentTimeMillis();
+                    long start = System.nanoTime();
+                    OutputStream out = socket.getOutputStream();
+                    out.write(SYNC_REQUEST);
+                    out.flush();
+                    int length = readResponse(socket.getInputStream());
+                    double roundTrip = (System.nanoTime() - start) / NANOS_PER_MILLI;
+                    double time2d = time1 + roundTrip;
+
+                    long time1d = parseField(response, length, "time1d");
+                    long time2 = parseField(response, length, "time2");
+
+                    /* The delay is the round trip time without the time the monitor needed to respond. */
+                    double delay = roundTrip - (time2 - time1d);
+                    if (delay < bestDelay) {
+                        bestDelay = Math.max(0, delay);
+                        bestOffset = -((time1d - time1 - time2d + time2) / 2.0);
+                        bestTime = time1;
+                    }
+                } catch (IOException e) {
+                    lastError = e;
+                    closeQuietly(socket);
+                    socket = null;
+                }
+            }
+        } finally {
+            closeQuietly(socket);
+        }
+
+        if (bestDelay == Double.POSITIVE_INFINITY) {
+            throw lastError != null ? lastError : new IOException("Time synchronization failed");
+        }
+        addSync(bestTime, bestOffset, bestDelay / 2.0);
+    }
+
+
+    /**
+     * Starts synchronizing the clock in the background
+     *
+     * @param interval The time between two syncs in milliseconds
+     * @param errorListener The listener for failed syncs, or null
+     */
+    public void startResync(long interval, final SyncErrorListener errorListener) {
+        synchronized (resyncLock) {
+            stopResync();
+            executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        sync();
+                    } catch (IOException e) {
+                        if (errorListener != null) {
+                            errorListener.onSyncError(e);
+                        }
+                    }
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    /**
+     * Stops synchronizing the clock in the background
+     */
+    public void stopResync() {
+        synchronized (resyncLock) {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+    }
+
+
+    /**
+     * Converts a node time to a monitor time
+     *
+     * @param nodeTime The node time in milliseconds
+     * @return The monitor time in milliseconds
+     */
+    public long toMonitorTime(long nodeTime) {
+        return nodeTime - Math.round(getOffset(nodeTime));
+    }
+
+
+    /**
+     * Gets the offset of the node clock at a node time, extrapolated with the estimated drift
+     *
+     * @param nodeTime The node time in milliseconds
+     * @return The node time minus the monitor time in milliseconds
+     */
+    public double getOffset(long nodeTime) {
+        double[] current = model;
+        return current[BASE_OFFSET] + current[DRIFT] * (nodeTime - current[BASE_TIME]);
+    }
+
+
+    /**
+     * Gets the current offset of the node clock
+     *
+     * @return The node time minus the monitor time in milliseconds
+     */
+    public long getOffset() {
+        return Math.round(getOffset(System.currentTimeMillis()));
+    }
+
+
+    /**
+     * Gets the estimated drift of the node clock
+     *
+     * @return The drift in milliseconds per millisecond, positive if the node clock runs faster than the monitor clock
+     */
+    public double getDrift() {
+        return model[DRIFT];
+    }
+
+
+    /**
+     * Gets the uncertainty of the offset of the last sync, half the smallest round trip time
+     *
+     * @return The uncertainty in milliseconds, NaN if there was no successful sync
+     */
+    public double getUncertainty() {
+        return uncertainty;
+    }
+
+
+    /**
+     * Gets the node time of the last successful sync
+     *
+     * @return The node time in milliseconds, 0 if there was no successful sync
+     */
+    public long getLastSyncTime() {
+        return lastSyncTime;
+    }
+
+
+    /**
+     * Adds the result of a sync and fits the offset model to the last syncs
+     *
+     * @param time The node time of the sync
+     * @param offset The offset of the sync
+     * @param syncUncertainty The uncertainty of the offset
+     */
+    void addSync(long time, double offset, double syncUncertainty) {
+        syncTimes[syncCount % syncTimes.length] = time;
+        syncOffsets[syncCount % syncOffsets.length] = offset;
+        syncCount++;
+
+        double[] newModel = new double[3];
+        newModel[BASE_TIME] = time;
+        newModel[BASE_OFFSET] = offset;
+
+        /* Least squares fit of offset = a + b * (time - newest time), once the syncs span enough time. */
+        int count = Math.min(syncCount, syncTimes.length);
+        long oldest = time;
+        for (int i = 0; i < count; i++) {
+            oldest = Math.min(oldest, syncTimes[i]);
+        }
+        if (time - oldest >= MIN_DRIFT_SPAN) {
+            double meanTime = 0;
+            double meanOffset = 0;
+            for (int i = 0; i < count; i++) {
+                meanTime += syncTimes[i] - time;
+                meanOffset += syncOffsets[i];
+            }
+            meanTime /= count;
+            meanOffset /= count;
+
+            double covariance = 0;
+            double variance = 0;
+            for (int i = 0; i < count; i++) {
+                double dt = syncTimes[i] - time - meanTime;
+                covariance += dt * (syncOffsets[i] - meanOffset);
+                variance += dt * dt;
+            }
+            newModel[DRIFT] = covariance / variance;
+            newModel[BASE_OFFSET] = meanOffset - newModel[DRIFT] * meanTime;
+        }
+
+        model = newModel;
+        uncertainty = syncUncertainty;
+        lastSyncTime = time;
+    }
+
+
+    /**
+     * Opens a connection to the monitor
+     *
+     * @return The socket
+     * @throws IOException If the connection couldn't be made
+     */
+    private Socket connect() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(monitor, CONNECT_TIMEOUT);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(READ_TIMEOUT);
+        } catch (IOException e) {
+            closeQuietly(socket);
+            throw e;
+        }
+        return socket;
+    }
+
+
+    /**
+     * Reads a response of the monitor into the response buffer, a response ends with a closing brace
+     *
+     * @param in The input stream of the connection
+     * @return The length of the response
+     * @throws IOException If the connection was closed before the response was complete
+     */
+    private int readResponse(InputStream in) throws IOException {
+        int length = 0;
+        while (length < response.length) {
+            int read = in.read(response, length, response.length - length);
+            if (read < 0) {
+                throw new IOException("Connection closed by the monitor");
+            }
+            length += read;
+            if (response[length - 1] == '}' || (response[length - 1] == '\n' && length > 1)) {
+                return length;
+            }
+        }
+        throw new IOException("Sync response is too large");
+    }
+
+
+    /**
+     * Parses a number field from a sync response
+     * Both JSON ("time2": 123) and the older Python representation ('time2': 123L) are accepted.
+     *
+     * @param data The response
+     * @param length The length of the response
+     * @param name The name of the field
+     * @return The value of the field
+     * @throws IOException If the field is not found
+     */
+    static long parseField(byte[] data, int length, String name) throws IOException {
+        for (int i = 0; i + name.length() + 1 < length; i++) {
+            /* Matches the name between quotes, so time1d doesn't match a field named time1dx. */
+            if ((data[i] != '"' && data[i] != '\'') || data[i + name.length() + 1] != data[i]) {
+                continue;
+            }
+            boolean match = true;
+            for (int j = 0; j < name.length() && match; j++) {
+                match = data[i + 1 + j] == name.charAt(j);
+            }
+            if (!match) {
+                continue;
+            }
+
+            /* Skips the colon, spaces and quotes and parses the digits. */
+            int position = i + name.length() + 2;
+            while (position < length && (data[position] == ':' || data[position] == ' '
+                    || data[position] == '"' || data[position] == '\'')) {
+                position++;
+            }
+            boolean negative = position < length && data[position] == '-';
+            if (negative) {
+                position++;
+            }
+            if (position >= length || data[position] < '0' || data[position] > '9') {
+                break;
+            }
+            long value = 0;
+            while (position < length && data[position] >= '0' && data[position] <= '9') {
+                value = value * 10 + (data[position++] - '0');
+            }
+            return negative ? -value : value;
+        }
+        throw new IOException("Field " + name + " not found in sync response");
+    }
+
+
+    /**
+     * Closes a socket and ignores the errors
+     *
+     * @param socket The socket, or null
+     */
+    private static void closeQuietly(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+
+    /**
+     * Thread factory for the resync thread.
+     * The thread is a daemon thread, so it never keeps the application alive.
+     */
+    private static final ThreadFactory threadFactory = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "AdhocMonitor-ClockSync");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+
+    /**
+     * Interface for a listener that is called when a background sync fails
+     */
+    public interface SyncErrorListener {
+        void onSyncError(IOException e);
+    }
+}
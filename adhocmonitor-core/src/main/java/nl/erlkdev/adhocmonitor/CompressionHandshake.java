@@ -0,0 +1,102 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Negotiation of the packet compression with the monitor, over the TCP port that is used for the time sync.
+ *
+ * The node sends the codecs it supports and its dictionary as hex string:
+ * {"type":"codec","address":"...","codecs":["deflate"],"dictionary":"..."}
+ * A monitor that supports one of the codecs keeps the dictionary and responds with the codec and the id of the
+ * dictionary: {"type":"codec","codec":"deflate","dictionaryId":...}. A monitor without compression doesn't
+ * respond, so the node keeps sending uncompressed packets.
+ */
+class CompressionHandshake {
+
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int READ_TIMEOUT = 2000;
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+
+    /**
+     * Function to negotiate the compression with a dictionary
+     *
+     * @param monitor The address of the TCP port of the monitor
+     * @param address The address of the node
+     * @param dictionary The dictionary of the node
+     * @return true if the monitor accepted the dictionary, false if it doesn't support compression
+     * @throws IOException If the monitor didn't respond
+     */
+    static boolean negotiate(InetSocketAddress monitor, String address, byte[] dictionary) throws IOException {
+        ByteBuffer request = ByteBuffer.allocate(address.length() * 6 + dictionary.length * 2 + 128);
+        JsonPacketEncoder.writeAscii(request, "{\"type\":\"codec\",\"address\":");
+        JsonPacketEncoder.writeString(request, address);
+        JsonPacketEncoder.writeAscii(request, ",\"codecs\":[\"deflate\"],\"dictionary\":\"");
+        for (byte b : dictionary) {
+            request.put(HEX[(b >> 4) & 0xF]);
+            request.put(HEX[b & 0xF]);
+        }
+        JsonPacketEncoder.writeAscii(request, "\"}");
+
+        Socket socket = new Socket();
+        try {
+            socket.connect(monitor, CONNECT_TIMEOUT);
+            socket.setSoTimeout(READ_TIMEOUT);
+            OutputStream out = socket.getOutputStream();
+            out.write(request.array(), 0, request.position());
+            out.flush();
+
+            byte[] response = new byte[512];
+            int length = readResponse(socket.getInputStream(), response);
+            return containsDeflate(response, length)
+                    && (int) ClockSync.parseField(response, length, "dictionaryId") == PacketCompressor.dictionaryId(dictionary);
+        } finally {
+            socket.close();
+        }
+    }
+
+
+    /**
+     * Reads the response of the monitor, a response ends with a closing brace or a new line
+     *
+     * @param in The input stream of the connection
+     * @param response The buffer for the response
+     * @return The length of the response
+     * @throws IOException If the connection was closed before the response was complete
+     */
+    private static int readResponse(InputStream in, byte[] response) throws IOException {
+        int length = 0;
+        while (length < response.length) {
+            int read = in.read(response, length, response.length - length);
+            if (read < 0) {
+                throw new IOException("Connection closed by the monitor");
+            }
+            length += read;
+            if (response[length - 1] == '}' || (response[length - 1] == '\n' && length > 1)) {
+                return length;
+            }
+        }
+        throw new IOException("Codec response is too large");
+    }
+
+
+    /**
+     * Checks if the response selects the deflate codec
+     *
+     * @param response The response
+     * @param length The length of the response
+     * @return true if the response contains the deflate codec, else false
+     * @throws IOException If the response isn't UTF-8
+     */
+    private static boolean containsDeflate(byte[] response, int length) throws IOException {
+        String text = new String(response, 0, length, "UTF-8");
+        return text.contains("\"deflate\"");
+    }
+}
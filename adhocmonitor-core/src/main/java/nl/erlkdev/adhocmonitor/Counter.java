@@ -0,0 +1,53 @@
+package nl.erlkdev.adhocmonitor;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Custom value that counts events, for instance the amount of forwarded messages.
+ * The count is striped like the IO counters, so many threads can count at the same time without contention.
+ * The packets contain the total count, so the rate can be calculated from two packets even if a packet is lost.
+ * This class is thread-safe.
+ */
+public class Counter extends CustomValue {
+
+    private final StripedLongAdder count = new StripedLongAdder();
+
+
+    Counter(String key) {
+        super(key);
+    }
+
+
+    /**
+     * Function to count one event
+     */
+    public void increment() {
+        count.increment();
+    }
+
+
+    /**
+     * Function to count an amount of events
+     *
+     * @param amount the amount
+     */
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+
+    /**
+     * Gets the total count
+     *
+     * @return the count
+     */
+    public long get() {
+        return count.sum();
+    }
+
+
+    @Override
+    Object getSnapshotValue() {
+        return count.sum();
+    }
+}
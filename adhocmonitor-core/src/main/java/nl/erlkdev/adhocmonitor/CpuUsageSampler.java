@@ -0,0 +1,229 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Sampler to collect the CPU usage information of the node.
+ * This data is used to create an CPU usage graph
+ *
+ * The stat files stay open between the samples and are parsed in place, so sampling doesn't allocate.
+ * The CPU time of the sampler thread itself is subtracted from the process and total CPU usage, so the
+ * monitor doesn't show up in the numbers it reports. The stat file of the thread is found through
+ * /proc/thread-self, on older kernels without it the sampler thread is not subtracted.
+ * Every core gets its own series (cpuCore0UsageChart, cpuCore1UsageChart, ...) when it is first seen,
+ * cores that are offline are skipped.
+ */
+class CpuUsageSampler implements Sampler, Closeable {
+
+    /* Name of the series of a core: prefix + core index + suffix. */
+    static final String CORE_SERIES_PREFIX = "cpuCore";
+    static final String CORE_SERIES_SUFFIX = "UsageChart";
+
+    private final MonitorNode monitorNode;
+    private final SampleRing cpuUsageArray;
+    private final SampleRing cpuTotalUsageArray;
+
+    /* Stat files of the system, the process and the sampler thread. The self links are resolved when the file is
+     * opened, so the thread stat file is opened again when the sampler runs on another thread. */
+    private final ProcStatReader systemStat = new ProcStatReader("/proc/stat");
+    private final ProcStatReader processStat = new ProcStatReader("/proc/self/stat");
+    private final ProcStatReader threadStat = new ProcStatReader("/proc/thread-self/stat");
+    private Thread samplerThread = null;
+    private boolean threadStatAvailable = true;
+
+    /* CPU times of the previous tick. */
+    private long lastIdle;
+    private long lastCpu;
+    private long lastUp;
+    private long lastMonitor;
+
+    /* CPU time of the sampler thread since the previous tick. */
+    private long monitorTime;
+
+    /* CPU times of the cores, the sequence is the read in which the core was last seen. */
+    private long[] coreIdle = new long[0];
+    private long[] coreBusy = new long[0];
+    private long[] coreSeen = new long[0];
+    private SampleRing[] coreSeries = new SampleRing[0];
+    private long readSequence = 1;
+
+
+    /**
+     * Constructor for the CPU usage sampler
+     *
+     * @param monitorNode The monitor node, used to create the series of the cores
+     * @param cpuUsageArray The series for the CPU usage of the process
+     * @param cpuTotalUsageArray The series for the total CPU usage
+     */
+    CpuUsageSampler(MonitorNode monitorNode, SampleRing cpuUsageArray, SampleRing cpuTotalUsageArray) {
+        this.monitorNode = monitorNode;
+        this.cpuUsageArray = cpuUsageArray;
+        this.cpuTotalUsageArray = cpuTotalUsageArray;
+    }
+
+
+    @Override
+    public void reset() {
+        try {
+            readTimes(-1);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+
+    @Override
+    public void sample(long timeStamp, long elapsed) {
+        long idle1 = lastIdle;
+        long cpu1 = lastCpu;
+        long up1 = lastUp;
+
+        try {
+            readTimes(timeStamp);
+        } catch (IOException e) {
+            throw new IllegalStateException("CPU times couldn't be read", e);
+        }
+
+        /* Skips the sample if no jiffies have passed. */
+        long total = (lastCpu + lastIdle) - (cpu1 + idle1);
+        if (total <= 0) {
+            return;
+        }
+
+        /* Calculates the CPU usage without the time of the sampler thread */
+        double cpuUsage = 100.0 * (double) Math.max(0, lastUp - up1 - monitorTime) / (double) total;
+        double cpuTotalUsage = 100.0 * (double) Math.max(0, lastCpu - cpu1 - monitorTime) / (double) total;
+
+        /* Stores the new time value pairs */
+        cpuUsageArray.add(timeStamp, cpuUsage);
+        cpuTotalUsageArray.add(timeStamp, cpuTotalUsage);
+    }
+
+
+    /**
+     * Closes the stat files, they are opened again on the next sample
+     */
+    @Override
+    public void close() {
+        systemStat.close();
+        processStat.close();
+        threadStat.close();
+        samplerThread = null;
+    }
+
+
+    /**
+     * Reads the idle and CPU time of the system and the cores, the up time of the process and the CPU time of
+     * the sampler thread
+     *
+     * @param timeStamp The monitor time of the tick, or -1 to only store the times of the cores
+     * @throws IOException If the proc files couldn't be read
+     */
+    private void readTimes(long timeStamp) throws IOException {
+        /* Reads the first line of /proc/stat, the fields after the cpu label are:
+         * user nice system idle iowait irq softirq steal */
+        systemStat.read();
+        systemStat.skipFields(1);
+        long user = systemStat.nextLong();
+        long nice = systemStat.nextLong();
+        long system = systemStat.nextLong();
+        lastCpu = user + nice + system;
+        lastIdle = readIdle(systemStat);
+
+        /* Reads the lines of the cores, which follow the first line */
+        readSequence++;
+        while (systemStat.nextLine() && systemStat.startsWith("cpu")) {
+            readCore((int) systemStat.nextLong(), timeStamp);
+        }
+
+        /* Reads /proc/self/stat, utime and stime are the 12th and 13th field after the command name */
+        processStat.read();
+        lastUp = readProcessTime(processStat);
+
+        /* Reads the stat file of the sampler thread, the thread can change when a shared scheduler is used */
+        Thread thread = Thread.currentThread();
+        boolean threadChanged = thread != samplerThread;
+        if (threadChanged) {
+            threadStat.close();
+            samplerThread = thread;
+        }
+        monitorTime = 0;
+        if (threadStatAvailable) {
+            try {
+                threadStat.read();
+            } catch (IOException e) {
+                threadStatAvailable = false;
+                return;
+            }
+            long monitor = readProcessTime(threadStat);
+            monitorTime = threadChanged ? 0 : Math.max(0, monitor - lastMonitor);
+            lastMonitor = monitor;
+        }
+    }
+
+
+    /**
+     * Reads the CPU times of a core and adds the usage since the previous tick to its series
+     *
+     * @param core The index of the core
+     * @param timeStamp The monitor time of the tick, or -1 to only store the times
+     * @throws IOException If the line couldn't be parsed
+     */
+    private void readCore(int core, long timeStamp) throws IOException {
+        if (core >= coreIdle.length) {
+            int size = core + 1;
+            coreIdle = Arrays.copyOf(coreIdle, size);
+            coreBusy = Arrays.copyOf(coreBusy, size);
+            coreSeen = Arrays.copyOf(coreSeen, size);
+            coreSeries = Arrays.copyOf(coreSeries, size);
+        }
+
+        long busy = systemStat.nextLong() + systemStat.nextLong() + systemStat.nextLong();
+        long idle = readIdle(systemStat);
+
+        /* Only adds a sample if the core was also online on the previous read. */
+        long total = (busy + idle) - (coreBusy[core] + coreIdle[core]);
+        if (timeStamp >= 0 && coreSeen[core] == readSequence - 1 && total > 0) {
+            if (coreSeries[core] == null) {
+                coreSeries[core] = monitorNode.createSeries(CORE_SERIES_PREFIX + core + CORE_SERIES_SUFFIX);
+            }
+            coreSeries[core].add(timeStamp, 100.0 * (double) (busy - coreBusy[core]) / (double) total);
+        }
+
+        coreBusy[core] = busy;
+        coreIdle[core] = idle;
+        coreSeen[core] = readSequence;
+    }
+
+
+    /**
+     * Reads the idle time of a cpu line, the sum of the idle, iowait, irq, softirq and steal fields
+     *
+     * @param reader The reader, at the idle field
+     * @return The idle time
+     * @throws IOException If the line couldn't be parsed
+     */
+    private static long readIdle(ProcStatReader reader) throws IOException {
+        return reader.nextLong() + reader.nextLong() + reader.nextLong() + reader.nextLong() + reader.nextLong();
+    }
+
+
+    /**
+     * Reads the user and system time of a process or thread stat file
+     *
+     * @param reader The reader of the stat file
+     * @return The sum of utime and stime
+     * @throws IOException If the file couldn't be parsed
+     */
+    private static long readProcessTime(ProcStatReader reader) throws IOException {
+        if (!reader.skipPastLast(')')) {
+            throw new IOException("Invalid stat file");
+        }
+        reader.skipFields(11);
+        return reader.nextLong() + reader.nextLong();
+    }
+}
@@ -0,0 +1,41 @@
+package nl.erlkdev.adhocmonitor;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Handle of a registered custom value of a monitor node.
+ * A handle is registered once with its key, and updated without boxing and without locks. Its current value is
+ * read when the node takes a snapshot, so every packet contains one value of every registered custom value.
+ */
+public abstract class CustomValue {
+
+    private final String key;
+
+
+    /**
+     * Constructor for the handle
+     *
+     * @param key The key of the custom value
+     */
+    CustomValue(String key) {
+        this.key = key;
+    }
+
+
+    /**
+     * Gets the key of the custom value
+     *
+     * @return the key
+     */
+    public String getKey() {
+        return key;
+    }
+
+
+    /**
+     * Function to get the value for a snapshot
+     *
+     * @return The current value, or null if the value can't be send
+     */
+    abstract Object getSnapshotValue();
+}
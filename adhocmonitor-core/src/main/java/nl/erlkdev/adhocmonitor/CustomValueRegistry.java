@@ -0,0 +1,131 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Registry of the custom value handles of a monitor node.
+ * Registering is rare and takes a lock, the snapshot iterates over the handles without a lock.
+ * A key can only be registered with one type, registering it again returns the same handle.
+ */
+class CustomValueRegistry {
+
+    private final ConcurrentHashMap<String, CustomValue> handles = new ConcurrentHashMap<>();
+
+    /* The handles in the order they are registered, which is the order in the packets. */
+    private final List<CustomValue> values = new CopyOnWriteArrayList<>();
+
+
+    /**
+     * Function to register a long gauge
+     *
+     * @param key The key of the custom value
+     * @return The new handle, or the handle that is already registered with the key
+     * @throws IllegalArgumentException If the key is null or registered with another type
+     */
+    synchronized LongGauge registerLongGauge(String key) {
+        LongGauge gauge = find(key, LongGauge.class);
+        if (gauge == null) {
+            gauge = add(new LongGauge(key));
+        }
+        return gauge;
+    }
+
+
+    /**
+     * Function to register a double gauge
+     *
+     * @param key The key of the custom value
+     * @return The new handle, or the handle that is already registered with the key
+     * @throws IllegalArgumentException If the key is null or registered with another type
+     */
+    synchronized DoubleGauge registerDoubleGauge(String key) {
+        DoubleGauge gauge = find(key, DoubleGauge.class);
+        if (gauge == null) {
+            gauge = add(new DoubleGauge(key));
+        }
+        return gauge;
+    }
+
+
+    /**
+     * Function to register a counter
+     *
+     * @param key The key of the custom value
+     * @return The new handle, or the handle that is already registered with the key
+     * @throws IllegalArgumentException If the key is null or registered with another type
+     */
+    synchronized Counter registerCounter(String key) {
+        Counter counter = find(key, Counter.class);
+        if (counter == null) {
+            counter = add(new Counter(key));
+        }
+        return counter;
+    }
+
+
+    /**
+     * Function to remove a handle, its value is not send anymore
+     *
+     * @param key The key of the handle
+     * @return true if a handle is removed, else false
+     */
+    synchronized boolean unregister(String key) {
+        CustomValue handle = handles.remove(key);
+        if (handle == null) {
+            return false;
+        }
+        values.remove(handle);
+        return true;
+    }
+
+
+    /**
+     * Function to add the current values of the handles to a snapshot
+     * The iterator of the list is a snapshot of the handles, so a handle can be removed during the loop.
+     *
+     * @param snapshot The snapshot
+     */
+    void takeSnapshot(NodeSnapshot snapshot) {
+        for (CustomValue handle : values) {
+            Object value = handle.getSnapshotValue();
+            if (value != null) {
+                snapshot.putCustomValue(handle.getKey(), value);
+            }
+        }
+    }
+
+
+    /**
+     * Finds the handle of a key
+     *
+     * @param key The key
+     * @param type The type of the handle
+     * @return The handle, or null if the key isn't registered
+     * @throws IllegalArgumentException If the key is registered with another type
+     */
+    private <T extends CustomValue> T find(String key, Class<T> type) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key can't be null");
+        }
+        CustomValue handle = handles.get(key);
+        if (handle == null) {
+            return null;
+        }
+        if (!type.isInstance(handle)) {
+            throw new IllegalArgumentException("Custom value " + key + " is registered as "
+                    + handle.getClass().getSimpleName());
+        }
+        return type.cast(handle);
+    }
+
+
+    private <T extends CustomValue> T add(T handle) {
+        handles.put(handle.getKey(), handle);
+        values.add(handle);
+        return handle;
+    }
+}
@@ -0,0 +1,123 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Restores the full state of delta packets on the receiving side.
+ * It keeps the last keyframe of each node and merges the deltas with it. It also counts the packets
+ * that are missing in the sequence of each node.
+ *
+ * All the nodes share the lock of the reassembler. A receiver with multiple threads keeps the keyframe of a node
+ * with the other state of the node instead, and merges the deltas with restore.
+ */
+public class DeltaReassembler {
+
+    private final Map<String, NodeSnapshot> keyframes = new HashMap<>();
+    private final Map<String, Long> lastSequences = new HashMap<>();
+    private long missedPackets = 0;
+    private long droppedDeltas = 0;
+
+
+    /**
+     * Restores the full state of a packet
+     * Keyframes and packets without a sequence number are returned as they are.
+     *
+     * @param packet The decoded packet, a delta is completed with the neighbours and custom values of its keyframe
+     * @return true if the packet contains the full state, false if the keyframe of the delta is missing
+     */
+    public synchronized boolean reassemble(NodeSnapshot packet) {
+        if (packet.getSequence() < 0) {
+            return true;
+        }
+        countMissed(packet.getAddress(), packet.getSequence());
+
+        if (!packet.isDelta()) {
+            NodeSnapshot keyframe = keyframes.get(packet.getAddress());
+            if (keyframe == null) {
+                keyframe = new NodeSnapshot();
+                keyframes.put(packet.getAddress(), keyframe);
+            }
+            keyframe.copyFrom(packet);
+            return true;
+        }
+
+        NodeSnapshot keyframe = keyframes.get(packet.getAddress());
+        if (keyframe == null || keyframe.getSequence() != packet.getBaseSequence()) {
+            droppedDeltas++;
+            return false;
+        }
+        restore(keyframe, packet);
+        return true;
+    }
+
+
+    /**
+     * Function to complete a delta with the neighbours and custom values of its keyframe that are unchanged
+     *
+     * @param keyframe The keyframe with the base sequence number of the delta
+     * @param packet The delta
+     */
+    static void restore(NodeSnapshot keyframe, NodeSnapshot packet) {
+        /* Adds the neighbours of the keyframe that are unchanged. */
+        Set<String> present = new HashSet<>(packet.getRemovedNeighbours());
+        for (int i = 0; i < packet.getNeighbourCount(); i++) {
+            present.add(packet.getNeighbourAddress(i));
+        }
+        for (int i = 0; i < keyframe.getNeighbourCount(); i++) {
+            if (!present.contains(keyframe.getNeighbourAddress(i))) {
+                packet.addNeighbour(keyframe.getNeighbourAddress(i), keyframe.getNeighbourBytesSend(i),
+                        keyframe.getNeighbourBytesReceived(i), keyframe.isNeighbourDataSend(i));
+            }
+        }
+
+        /* Adds the custom values of the keyframe that are unchanged. */
+        Map<String, Object> customValues = packet.getCustomValues();
+        for (Map.Entry<String, Object> entry : keyframe.getCustomValues().entrySet()) {
+            if (!customValues.containsKey(entry.getKey()) && !packet.getRemovedCustomValues().contains(entry.getKey())) {
+                customValues.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+
+    /**
+     * Counts the packets that are missing between the previous and the current sequence number of a node
+     *
+     * @param address The address of the node
+     * @param sequence The sequence number of the packet
+     */
+    private void countMissed(String address, long sequence) {
+        Long last = lastSequences.get(address);
+        if (last != null && sequence > last + 1) {
+            missedPackets += sequence - last - 1;
+        }
+        if (last == null || sequence > last) {
+            lastSequences.put(address, sequence);
+        }
+    }
+
+
+    /**
+     * Returns the amount of packets that are missing in the sequences of the nodes
+     *
+     * @return The amount of missed packets
+     */
+    public synchronized long getMissedPackets() {
+        return missedPackets;
+    }
+
+
+    /**
+     * Returns the amount of deltas that couldn't be restored because their keyframe was missing
+     *
+     * @return The amount of dropped deltas
+     */
+    public synchronized long getDroppedDeltas() {
+        return droppedDeltas;
+    }
+}
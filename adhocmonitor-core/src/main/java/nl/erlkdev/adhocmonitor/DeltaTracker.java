@@ -0,0 +1,132 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Turns full snapshots into keyframes and deltas.
+ * Every keyframe interval a full snapshot is send as keyframe. The packets in between only contain the
+ * neighbours and custom values that differ from the keyframe, so a receiver only needs the keyframe and
+ * one delta to recover the full state. A lost delta doesn't affect the next deltas.
+ */
+class DeltaTracker {
+
+    /* Indices in the neighbour state array. */
+    private static final int SEND = 0;
+    private static final int RECEIVED = 1;
+    private static final int DATA_SEND = 2;
+    private static final int KEYFRAME = 3;
+    private static final int SEEN = 4;
+
+    private final int keyframeInterval;
+
+    /* State of the last keyframe */
+    private long keyframeSequence = -1;
+    private int packetsSinceKeyframe = 0;
+    private final Map<String, long[]> keyframeNeighbours = new HashMap<>();
+    private final Map<String, Object> keyframeCustomValues = new HashMap<>();
+
+
+    /**
+     * Constructor for the delta tracker
+     *
+     * @param keyframeInterval The amount of packets from one keyframe to the next
+     */
+    DeltaTracker(int keyframeInterval) {
+        this.keyframeInterval = keyframeInterval;
+    }
+
+
+    /**
+     * Turns a full snapshot into a keyframe or a delta
+     *
+     * @param snapshot The full snapshot, it is changed into a delta if no keyframe is needed
+     * @param sequence The sequence number of the packet
+     */
+    void apply(NodeSnapshot snapshot, long sequence) {
+        if (keyframeSequence < 0 || packetsSinceKeyframe >= keyframeInterval - 1) {
+            storeKeyframe(snapshot, sequence);
+            snapshot.setSequence(sequence, sequence);
+            return;
+        }
+        packetsSinceKeyframe++;
+        snapshot.setSequence(sequence, keyframeSequence);
+
+        /* Keeps the neighbours that are new or changed since the keyframe. */
+        int kept = 0;
+        for (int i = 0; i < snapshot.getNeighbourCount(); i++) {
+            long[] state = keyframeNeighbours.get(snapshot.getNeighbourAddress(i));
+            if (state != null) {
+                state[SEEN] = sequence;
+            }
+            if (state == null || state[SEND] != snapshot.getNeighbourBytesSend(i)
+                    || state[RECEIVED] != snapshot.getNeighbourBytesReceived(i)
+                    || (state[DATA_SEND] != 0) != snapshot.isNeighbourDataSend(i)) {
+                snapshot.moveNeighbour(i, kept++);
+            }
+        }
+        snapshot.truncateNeighbours(kept);
+
+        /* Lists the keyframe neighbours that are gone. */
+        for (Map.Entry<String, long[]> entry : keyframeNeighbours.entrySet()) {
+            if (entry.getValue()[SEEN] != sequence) {
+                snapshot.addRemovedNeighbour(entry.getKey());
+            }
+        }
+
+        /* Lists the keyframe custom values that are gone and keeps the changed custom values. */
+        Map<String, Object> customValues = snapshot.getCustomValues();
+        for (String key : keyframeCustomValues.keySet()) {
+            if (!customValues.containsKey(key)) {
+                snapshot.addRemovedCustomValue(key);
+            }
+        }
+        Iterator<Map.Entry<String, Object>> entries = customValues.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, Object> entry = entries.next();
+            Object keyframeValue = keyframeCustomValues.get(entry.getKey());
+            if (keyframeValue != null && keyframeValue.equals(entry.getValue())) {
+                entries.remove();
+            }
+        }
+    }
+
+
+    /**
+     * Stores a full snapshot as the keyframe
+     *
+     * @param snapshot The full snapshot
+     * @param sequence The sequence number of the keyframe
+     */
+    private void storeKeyframe(NodeSnapshot snapshot, long sequence) {
+        keyframeSequence = sequence;
+        packetsSinceKeyframe = 0;
+
+        for (int i = 0; i < snapshot.getNeighbourCount(); i++) {
+            String address = snapshot.getNeighbourAddress(i);
+            long[] state = keyframeNeighbours.get(address);
+            if (state == null) {
+                state = new long[5];
+                keyframeNeighbours.put(address, state);
+            }
+            state[SEND] = snapshot.getNeighbourBytesSend(i);
+            state[RECEIVED] = snapshot.getNeighbourBytesReceived(i);
+            state[DATA_SEND] = snapshot.isNeighbourDataSend(i) ? 1 : 0;
+            state[KEYFRAME] = sequence;
+        }
+
+        /* Removes the neighbours that are not in the keyframe. */
+        Iterator<long[]> states = keyframeNeighbours.values().iterator();
+        while (states.hasNext()) {
+            if (states.next()[KEYFRAME] != sequence) {
+                states.remove();
+            }
+        }
+
+        keyframeCustomValues.clear();
+        keyframeCustomValues.putAll(snapshot.getCustomValues());
+    }
+}
@@ -0,0 +1,62 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Custom value with a double, for instance a ratio or a temperature.
+ * The double is stored as its raw bits in an atomic long, so it is set without boxing and without locks.
+ * A NaN or infinite value is not send, like the other custom values. This class is thread-safe.
+ */
+public class DoubleGauge extends CustomValue {
+
+    private final AtomicLong bits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+
+
+    DoubleGauge(String key) {
+        super(key);
+    }
+
+
+    /**
+     * Function to set the value
+     *
+     * @param value the new value
+     */
+    public void set(double value) {
+        bits.set(Double.doubleToRawLongBits(value));
+    }
+
+
+    /**
+     * Function to add an amount to the value
+     *
+     * @param amount the amount, negative to subtract
+     */
+    public void add(double amount) {
+        long current;
+        long next;
+        do {
+            current = bits.get();
+            next = Double.doubleToRawLongBits(Double.longBitsToDouble(current) + amount);
+        } while (!bits.compareAndSet(current, next));
+    }
+
+
+    /**
+     * Gets the current value
+     *
+     * @return the value
+     */
+    public double get() {
+        return Double.longBitsToDouble(bits.get());
+    }
+
+
+    @Override
+    Object getSnapshotValue() {
+        double value = get();
+        return Double.isNaN(value) || Double.isInfinite(value) ? null : value;
+    }
+}
@@ -0,0 +1,144 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.util.HashMap;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Space-Saving sketch that keeps the heaviest keys of a weighted stream in a fixed amount of slots.
+ * A key that isn't in the sketch replaces the key with the smallest count, and starts with that count as its
+ * overestimation. Every key with more than 1/capacity of the total weight is guaranteed to be in the sketch.
+ *
+ * The counts can be decayed, so the sketch follows the heavy keys of the recent past instead of the whole run.
+ * The sketch is not thread-safe.
+ */
+class HeavyHitterSketch {
+
+    private final String[] keys;
+    private final double[] counts;
+    private final double[] errors;
+    private final HashMap<String, Integer> slots;
+    private int size = 0;
+
+
+    /**
+     * Constructor for the sketch
+     *
+     * @param capacity The amount of slots
+     */
+    HeavyHitterSketch(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.keys = new String[capacity];
+        this.counts = new double[capacity];
+        this.errors = new double[capacity];
+        this.slots = new HashMap<>(capacity * 2);
+    }
+
+
+    /**
+     * Function to add weight to a key
+     *
+     * @param key The key
+     * @param weight The weight, a positive number
+     * @return The slot of the key
+     */
+    int offer(String key, double weight) {
+        Integer slot = slots.get(key);
+        if (slot != null) {
+            counts[slot] += weight;
+            return slot;
+        }
+
+        if (size < keys.length) {
+            keys[size] = key;
+            counts[size] = weight;
+            errors[size] = 0;
+            slots.put(key, size);
+            return size++;
+        }
+
+        /* Replaces the key with the smallest count, the new key may have had that count before. */
+        int min = 0;
+        for (int i = 1; i < size; i++) {
+            if (counts[i] < counts[min]) {
+                min = i;
+            }
+        }
+        slots.remove(keys[min]);
+        keys[min] = key;
+        errors[min] = counts[min];
+        counts[min] += weight;
+        slots.put(key, min);
+        return min;
+    }
+
+
+    /**
+     * Function to multiply all the counts with a factor, so old weight counts less than new weight
+     *
+     * @param factor The factor between 0 and 1
+     */
+    void decay(double factor) {
+        for (int i = 0; i < size; i++) {
+            counts[i] *= factor;
+            errors[i] *= factor;
+        }
+    }
+
+
+    /**
+     * Function to get the slot of a key
+     *
+     * @param key The key
+     * @return The slot, or -1 if the key is not in the sketch
+     */
+    int indexOf(String key) {
+        Integer slot = slots.get(key);
+        return slot != null ? slot : -1;
+    }
+
+
+    /**
+     * Gets the amount of used slots
+     *
+     * @return the amount of keys in the sketch
+     */
+    int size() {
+        return size;
+    }
+
+
+    /**
+     * Gets the key of a slot
+     *
+     * @param slot The slot
+     * @return the key
+     */
+    String getKey(int slot) {
+        return keys[slot];
+    }
+
+
+    /**
+     * Gets the count of a slot, an overestimation of the weight of its key by at most its error
+     *
+     * @param slot The slot
+     * @return the count
+     */
+    double getCount(int slot) {
+        return counts[slot];
+    }
+
+
+    /**
+     * Gets the maximum overestimation of the count of a slot
+     *
+     * @param slot The slot
+     * @return the error
+     */
+    double getError(int slot) {
+        return errors[slot];
+    }
+}
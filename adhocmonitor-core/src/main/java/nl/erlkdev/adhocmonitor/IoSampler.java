@@ -0,0 +1,63 @@
+package nl.erlkdev.adhocmonitor;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Sampler to collect the IO information of the node.
+ * This data is used to create an IO graph
+ */
+class IoSampler implements Sampler {
+
+    private final MonitorNode monitorNode;
+    private final SampleRing ioTotalArray;
+    private final SampleRing ioSendArray;
+    private final SampleRing ioReceivedArray;
+
+    /* Values of the previous tick. */
+    private long lastSend;
+    private long lastReceived;
+
+
+    /**
+     * Constructor for the IO sampler
+     *
+     * @param monitorNode The monitor node
+     * @param ioTotalArray The series for the total IO
+     * @param ioSendArray The series for the send IO
+     * @param ioReceivedArray The series for the received IO
+     */
+    IoSampler(MonitorNode monitorNode, SampleRing ioTotalArray, SampleRing ioSendArray,
+              SampleRing ioReceivedArray) {
+        this.monitorNode = monitorNode;
+        this.ioTotalArray = ioTotalArray;
+        this.ioSendArray = ioSendArray;
+        this.ioReceivedArray = ioReceivedArray;
+    }
+
+
+    @Override
+    public void reset() {
+        lastSend = monitorNode.getBytesSend();
+        lastReceived = monitorNode.getBytesReceived();
+    }
+
+
+    @Override
+    public void sample(long timeStamp, long elapsed) {
+        long send = monitorNode.getBytesSend();
+        long received = monitorNode.getBytesReceived();
+
+        /* Calculates for each value the value per millisecond */
+        double bytesIOSend = (double) (send - lastSend) / (double) elapsed;
+        double bytesIOReceived = (double) (received - lastReceived) / (double) elapsed;
+        double bytesIOTotal = bytesIOSend + bytesIOReceived;
+
+        lastSend = send;
+        lastReceived = received;
+
+        /* Stores the new time value pairs */
+        ioTotalArray.add(timeStamp, bytesIOTotal);
+        ioSendArray.add(timeStamp, bytesIOSend);
+        ioReceivedArray.add(timeStamp, bytesIOReceived);
+    }
+}
@@ -0,0 +1,714 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Decoder for the JSON data packets written by the JsonPacketEncoder and MonitorNode.getJson().
+ * It parses the packet bytes directly into snapshots, without building JSON objects first.
+ * Every object member that isn't a known field of the node is read as a chart series, like the monitor
+ * visualization process does. Unknown values of other types are skipped.
+ */
+public class JsonPacketDecoder {
+
+    /* Powers of ten that are exact doubles, for the fast path of the number parser. */
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /* Largest mantissa for which the fast path is exact. */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private ByteBuffer buffer;
+    private int position;
+    private int limit;
+    private final StringBuilder chars = new StringBuilder();
+
+    /* Result of the last parsed number. */
+    private boolean numberIsInteger;
+    private long integerValue;
+    private double doubleValue;
+
+
+    /**
+     * Checks if a packet can be a JSON packet
+     *
+     * @param buffer The buffer with the packet at its position
+     * @return true if the packet starts with a JSON object, else false
+     */
+    public static boolean isJsonPacket(ByteBuffer buffer) {
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            byte b = buffer.get(i);
+            if (!isWhitespace(b)) {
+                return b == '{';
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Reads a JSON data or batch packet into snapshots
+     * The snapshots in the list are reused, new snapshots are added when the list is too short.
+     *
+     * @param buffer The buffer with the packet between its position and limit, the position is moved to the end
+     * @param snapshots The snapshots
+     * @return The amount of data packets in the packet, 0 for packets of another type
+     * @throws IllegalArgumentException If the packet is not valid JSON or not a valid data packet
+     */
+    public int decodePackets(ByteBuffer buffer, List<NodeSnapshot> snapshots) {
+        start(buffer);
+        try {
+            return readPacket(snapshots, 0);
+        } finally {
+            finish();
+        }
+    }
+
+
+    /**
+     * Reads a JSON data packet into a snapshot
+     *
+     * @param buffer The buffer with the packet between its position and limit, the position is moved to the end
+     * @param snapshot The snapshot, it is cleared first
+     * @throws IllegalArgumentException If the packet is not a valid JSON data packet
+     */
+    public void decode(ByteBuffer buffer, NodeSnapshot snapshot) {
+        start(buffer);
+        try {
+            snapshot.clear();
+            boolean found = false;
+            expect('{');
+            if (!tryConsume('}')) {
+                do {
+                    String key = readString();
+                    expect(':');
+                    if (key.equals("node")) {
+                        readNode(snapshot);
+                        found = true;
+                    } else {
+                        skipValue();
+                    }
+                } while (tryConsume(','));
+                expect('}');
+            }
+            if (!found) {
+                throw new IllegalArgumentException("Not a JSON data packet");
+            }
+        } finally {
+            finish();
+        }
+    }
+
+
+    /**
+     * Reads a data or batch packet, the members can be in any order
+     *
+     * @param snapshots The snapshots
+     * @param offset The index of the first snapshot to use
+     * @return The amount of data packets that is read
+     */
+    private int readPacket(List<NodeSnapshot> snapshots, int offset) {
+        String type = null;
+        int count = 0;
+        expect('{');
+        if (tryConsume('}')) {
+            return 0;
+        }
+        do {
+            String key = readString();
+            expect(':');
+            if (key.equals("type")) {
+                type = readString();
+            } else if (key.equals("node")) {
+                readNode(snapshotAt(snapshots, offset));
+                count = 1;
+            } else if (key.equals("packets")) {
+                expect('[');
+                if (!tryConsume(']')) {
+                    do {
+                        count += readPacket(snapshots, offset + count);
+                    } while (tryConsume(','));
+                    expect(']');
+                }
+            } else {
+                skipValue();
+            }
+        } while (tryConsume(','));
+        expect('}');
+
+        if (type != null && !type.equals("data") && !type.equals("batch")) {
+            return 0;
+        }
+        return count;
+    }
+
+
+    /**
+     * Reads the node object of a data packet
+     *
+     * @param snapshot The snapshot, it is cleared first
+     */
+    private void readNode(NodeSnapshot snapshot) {
+        snapshot.clear();
+        String address = null;
+        String status = null;
+        long timeStamp = 0;
+        long sequence = -1;
+        long baseSequence = -1;
+        boolean ackRequested = false;
+        String relay = null;
+
+        expect('{');
+        if (!tryConsume('}')) {
+            do {
+                String key = readString();
+                expect(':');
+                switch (key) {
+                    case "address":
+                        address = readNullableString();
+                        break;
+                    case "status":
+                        status = readNullableString();
+                        break;
+                    case "timeStamp":
+                        timeStamp = readLong();
+                        break;
+                    case "seq":
+                        sequence = readLong();
+                        break;
+                    case "baseSeq":
+                        baseSequence = readLong();
+                        break;
+                    case "ack":
+                        ackRequested = readFlag();
+                        break;
+                    case "relay":
+                        relay = readNullableString();
+                        break;
+                    case "neighbours":
+                        readNeighbours(snapshot);
+                        break;
+                    case "customValues":
+                        readCustomValues(snapshot);
+                        break;
+                    case "removedNeighbours":
+                        expect('[');
+                        if (!tryConsume(']')) {
+                            do {
+                                snapshot.addRemovedNeighbour(readString());
+                            } while (tryConsume(','));
+                            expect(']');
+                        }
+                        break;
+                    case "removedCustomValues":
+                        expect('[');
+                        if (!tryConsume(']')) {
+                            do {
+                                snapshot.addRemovedCustomValue(readString());
+                            } while (tryConsume(','));
+                            expect(']');
+                        }
+                        break;
+                    default:
+                        if (peek() == '{') {
+                            readSeries(snapshot.addSeries(key));
+                        } else {
+                            skipValue();
+                        }
+                        break;
+                }
+            } while (tryConsume(','));
+            expect('}');
+        }
+
+        if (address == null) {
+            throw new IllegalArgumentException("Data packet without address");
+        }
+        snapshot.setMetadata(address, status, timeStamp);
+        if (sequence >= 0) {
+            snapshot.setSequence(sequence, baseSequence >= 0 ? baseSequence : sequence);
+        }
+        snapshot.setAckRequested(ackRequested);
+        snapshot.setRelay(relay);
+    }
+
+
+    /**
+     * Reads a chart series, an object with the time stamps as keys and the values as strings or numbers
+     *
+     * @param series The series of the snapshot
+     */
+    private void readSeries(NodeSnapshot.Series series) {
+        expect('{');
+        if (tryConsume('}')) {
+            return;
+        }
+        do {
+            expect('"');
+            long timeStamp = parseLongUntil('"');
+            expect(':');
+            double value;
+            if (tryConsume('"')) {
+                value = parseDoubleUntil('"');
+            } else {
+                readNumber();
+                value = numberIsInteger ? integerValue : doubleValue;
+            }
+            series.add(timeStamp, value);
+        } while (tryConsume(','));
+        expect('}');
+    }
+
+
+    /**
+     * Reads the neighbour array
+     *
+     * @param snapshot The snapshot
+     */
+    private void readNeighbours(NodeSnapshot snapshot) {
+        expect('[');
+        if (tryConsume(']')) {
+            return;
+        }
+        do {
+            String address = null;
+            long bytesSend = 0;
+            long bytesReceived = 0;
+            boolean dataSend = false;
+            expect('{');
+            if (!tryConsume('}')) {
+                do {
+                    String key = readString();
+                    expect(':');
+                    switch (key) {
+                        case "address":
+                            address = readString();
+                            break;
+                        case "bytesSend":
+                            bytesSend = readLong();
+                            break;
+                        case "bytesReceived":
+                            bytesReceived = readLong();
+                            break;
+                        case "dataSend":
+                            dataSend = readFlag();
+                            break;
+                        default:
+                            skipValue();
+                            break;
+                    }
+                } while (tryConsume(','));
+                expect('}');
+            }
+            if (address != null) {
+                snapshot.addNeighbour(address, bytesSend, bytesReceived, dataSend);
+            }
+        } while (tryConsume(','));
+        expect(']');
+    }
+
+
+    /**
+     * Reads the custom values object, nested objects and arrays are skipped
+     *
+     * @param snapshot The snapshot
+     */
+    private void readCustomValues(NodeSnapshot snapshot) {
+        expect('{');
+        if (tryConsume('}')) {
+            return;
+        }
+        do {
+            String key = readString();
+            expect(':');
+            byte b = peek();
+            if (b == '"') {
+                snapshot.putCustomValue(key, readString());
+            } else if (b == 't' || b == 'f') {
+                snapshot.putCustomValue(key, readBoolean());
+            } else if (b == '-' || (b >= '0' && b <= '9')) {
+                readNumber();
+                snapshot.putCustomValue(key, numberIsInteger ? (Object) integerValue : (Object) doubleValue);
+            } else {
+                skipValue();
+            }
+        } while (tryConsume(','));
+        expect('}');
+    }
+
+
+    private void start(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+
+    private void finish() {
+        buffer.position(Math.min(position, limit));
+        buffer = null;
+    }
+
+
+    /**
+     * Returns the next byte that isn't whitespace, without consuming it
+     *
+     * @return The next byte
+     */
+    private byte peek() {
+        while (position < limit && isWhitespace(buffer.get(position))) {
+            position++;
+        }
+        if (position >= limit) {
+            throw new IllegalArgumentException("Truncated JSON packet");
+        }
+        return buffer.get(position);
+    }
+
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw new IllegalArgumentException("Expected '" + c + "' at " + position);
+        }
+        position++;
+    }
+
+
+    private boolean tryConsume(char c) {
+        if (peek() == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Reads a string, with the JSON escapes
+     *
+     * @return The string
+     */
+    private String readString() {
+        expect('"');
+        chars.setLength(0);
+        while (true) {
+            if (position >= limit) {
+                throw new IllegalArgumentException("Truncated JSON string");
+            }
+            byte b = buffer.get(position++);
+            if (b == '"') {
+                return chars.toString();
+            }
+            if (b == '\\') {
+                readEscape();
+            } else if (b >= 0) {
+                chars.append((char) b);
+            } else {
+                readUtf8(b);
+            }
+        }
+    }
+
+
+    private String readNullableString() {
+        if (peek() == 'n') {
+            expectWord("null");
+            return null;
+        }
+        return readString();
+    }
+
+
+    private void readEscape() {
+        if (position >= limit) {
+            throw new IllegalArgumentException("Truncated JSON string");
+        }
+        byte b = buffer.get(position++);
+        switch (b) {
+            case 'b':
+                chars.append('\b');
+                break;
+            case 'f':
+                chars.append('\f');
+                break;
+            case 'n':
+                chars.append('\n');
+                break;
+            case 'r':
+                chars.append('\r');
+                break;
+            case 't':
+                chars.append('\t');
+                break;
+            case 'u':
+                if (position + 4 > limit) {
+                    throw new IllegalArgumentException("Truncated JSON string");
+                }
+                int c = 0;
+                for (int i = 0; i < 4; i++) {
+                    c = (c << 4) | hexValue(buffer.get(position++));
+                }
+                chars.append((char) c);
+                break;
+            default:
+                chars.append((char) b);
+                break;
+        }
+    }
+
+
+    /**
+     * Reads a multi byte UTF-8 character
+     *
+     * @param first The first byte of the character
+     */
+    private void readUtf8(byte first) {
+        int extra;
+        int codePoint;
+        if ((first & 0xE0) == 0xC0) {
+            extra = 1;
+            codePoint = first & 0x1F;
+        } else if ((first & 0xF0) == 0xE0) {
+            extra = 2;
+            codePoint = first & 0x0F;
+        } else if ((first & 0xF8) == 0xF0) {
+            extra = 3;
+            codePoint = first & 0x07;
+        } else {
+            throw new IllegalArgumentException("Invalid UTF-8 in JSON string");
+        }
+        if (position + extra > limit) {
+            throw new IllegalArgumentException("Truncated JSON string");
+        }
+        for (int i = 0; i < extra; i++) {
+            codePoint = (codePoint << 6) | (buffer.get(position++) & 0x3F);
+        }
+        chars.appendCodePoint(codePoint);
+    }
+
+
+    private static int hexValue(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        throw new IllegalArgumentException("Invalid unicode escape");
+    }
+
+
+    /**
+     * Reads a number that must be an integer
+     *
+     * @return The number
+     */
+    private long readLong() {
+        readNumber();
+        return numberIsInteger ? integerValue : (long) doubleValue;
+    }
+
+
+    /**
+     * Reads a flag that is written as 0/1 or as a boolean
+     *
+     * @return The flag
+     */
+    private boolean readFlag() {
+        byte b = peek();
+        if (b == 't' || b == 'f') {
+            return readBoolean();
+        }
+        return readLong() != 0;
+    }
+
+
+    private boolean readBoolean() {
+        if (peek() == 't') {
+            expectWord("true");
+            return true;
+        }
+        expectWord("false");
+        return false;
+    }
+
+
+    private void expectWord(String word) {
+        peek();
+        for (int i = 0; i < word.length(); i++) {
+            if (position >= limit || buffer.get(position++) != word.charAt(i)) {
+                throw new IllegalArgumentException("Expected " + word);
+            }
+        }
+    }
+
+
+    /**
+     * Reads a JSON number into the number result fields
+     */
+    private void readNumber() {
+        peek();
+        int start = position;
+        while (position < limit && isNumberByte(buffer.get(position))) {
+            position++;
+        }
+        parseNumber(start, position);
+    }
+
+
+    /**
+     * Parses the time stamp key of a series, up to the closing quote
+     *
+     * @param end The closing character
+     * @return The time stamp
+     */
+    private long parseLongUntil(char end) {
+        int start = position;
+        while (position < limit && buffer.get(position) != end) {
+            position++;
+        }
+        parseNumber(start, position);
+        expect(end);
+        return numberIsInteger ? integerValue : (long) doubleValue;
+    }
+
+
+    /**
+     * Parses a value of a series that is written as a string, up to the closing quote
+     *
+     * @param end The closing character
+     * @return The value
+     */
+    private double parseDoubleUntil(char end) {
+        int start = position;
+        while (position < limit && buffer.get(position) != end) {
+            position++;
+        }
+        parseNumber(start, position);
+        expect(end);
+        return numberIsInteger ? integerValue : doubleValue;
+    }
+
+
+    /**
+     * Parses a number between two positions
+     * Numbers with up to 15 significant digits and no exponent are converted exactly with one division,
+     * the other numbers with Double.parseDouble.
+     *
+     * @param start The position of the first character
+     * @param end The position after the last character
+     */
+    private void parseNumber(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && buffer.get(i) == '-') {
+            negative = true;
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = 0;
+        boolean fraction = false;
+        boolean simple = i < end;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+                if (fraction) {
+                    decimals++;
+                }
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                simple = false;
+                break;
+            }
+        }
+
+        if (simple && digits <= 15 && decimals < POWERS_OF_TEN.length && mantissa < MAX_EXACT_MANTISSA) {
+            if (!fraction) {
+                numberIsInteger = true;
+                integerValue = negative ? -mantissa : mantissa;
+            } else {
+                numberIsInteger = false;
+                doubleValue = (negative ? -mantissa : mantissa) / POWERS_OF_TEN[decimals];
+            }
+            return;
+        }
+
+        chars.setLength(0);
+        for (int j = start; j < end; j++) {
+            chars.append((char) buffer.get(j));
+        }
+        String text = chars.toString();
+        try {
+            if (!fraction && simple) {
+                numberIsInteger = true;
+                integerValue = Long.parseLong(text);
+            } else {
+                numberIsInteger = false;
+                doubleValue = Double.parseDouble(text);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + text);
+        }
+    }
+
+
+    /**
+     * Skips a value of any type
+     */
+    private void skipValue() {
+        byte b = peek();
+        if (b == '"') {
+            readString();
+        } else if (b == '{' || b == '[') {
+            position++;
+            char close = b == '{' ? '}' : ']';
+            if (tryConsume(close)) {
+                return;
+            }
+            do {
+                if (close == '}') {
+                    readString();
+                    expect(':');
+                }
+                skipValue();
+            } while (tryConsume(','));
+            expect(close);
+        } else if (b == 't' || b == 'f') {
+            readBoolean();
+        } else if (b == 'n') {
+            expectWord("null");
+        } else {
+            readNumber();
+        }
+    }
+
+
+    private static NodeSnapshot snapshotAt(List<NodeSnapshot> snapshots, int index) {
+        while (snapshots.size() <= index) {
+            snapshots.add(new NodeSnapshot());
+        }
+        return snapshots.get(index);
+    }
+
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+
+    private static boolean isNumberByte(byte b) {
+        return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E';
+    }
+}
@@ -0,0 +1,381 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Encoder for the JSON data packets that are read by the monitor visualization process.
+ * The JSON is written directly into the buffer, without building JSON objects or strings first.
+ */
+public class JsonPacketEncoder implements PacketEncoder {
+
+    /* Amount of decimals of the fixed point format. */
+    private static final int DECIMALS = 6;
+    private static final long DECIMAL_FACTOR = 1000000L;
+
+    /* Values from this size are not written in the fixed point format. */
+    private static final double MAX_FIXED_POINT = 1e12;
+
+    /* Powers of ten that are exact doubles, and the largest mantissa of which every value is an exact double. */
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_DIGITS = 16;
+
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+    @Override
+    public void encode(NodeSnapshot snapshot, ByteBuffer buffer) {
+        writeAscii(buffer, "{\"type\":\"data\",\"node\":");
+        encodeNode(snapshot, buffer);
+        buffer.put((byte) '}');
+    }
+
+
+    @Override
+    public void beginBatch(ByteBuffer buffer) {
+        writeAscii(buffer, "{\"type\":\"batch\",\"packets\":[");
+    }
+
+
+    @Override
+    public void appendToBatch(ByteBuffer buffer, ByteBuffer packet, boolean first) {
+        if (!first) {
+            buffer.put((byte) ',');
+        }
+        buffer.put(packet);
+    }
+
+
+    @Override
+    public void endBatch(ByteBuffer buffer) {
+        writeAscii(buffer, "]}");
+    }
+
+
+    @Override
+    public int getBatchOverhead() {
+        /* The comma before the packet and the end of the batch. */
+        return 3;
+    }
+
+
+    /**
+     * Writes the node information of the snapshot as a JSON object
+     *
+     * @param snapshot The snapshot of the node
+     * @param buffer The buffer
+     */
+    public void encodeNode(NodeSnapshot snapshot, ByteBuffer buffer) {
+        /* Adds the metadata to the JSON object */
+        writeAscii(buffer, "{\"address\":");
+        writeString(buffer, snapshot.getAddress());
+        writeAscii(buffer, ",\"status\":");
+        writeString(buffer, snapshot.getStatus());
+        writeAscii(buffer, ",\"timeStamp\":");
+        writeLong(buffer, snapshot.getTimeStamp());
+        if (snapshot.getSequence() >= 0) {
+            writeAscii(buffer, ",\"seq\":");
+            writeLong(buffer, snapshot.getSequence());
+        }
+        if (snapshot.isAckRequested()) {
+            writeAscii(buffer, ",\"ack\":true");
+        }
+        if (snapshot.getRelay() != null) {
+            writeAscii(buffer, ",\"relay\":");
+            writeString(buffer, snapshot.getRelay());
+        }
+        if (snapshot.isDelta()) {
+            writeAscii(buffer, ",\"baseSeq\":");
+            writeLong(buffer, snapshot.getBaseSequence());
+            writeAscii(buffer, ",\"removedNeighbours\":");
+            writeStrings(buffer, snapshot.getRemovedNeighbours());
+            writeAscii(buffer, ",\"removedCustomValues\":");
+            writeStrings(buffer, snapshot.getRemovedCustomValues());
+        }
+
+        /* Adds the chart information to the JSON object, the values are strings like the original packets */
+        for (int i = 0; i < snapshot.getSeriesCount(); i++) {
+            NodeSnapshot.Series series = snapshot.getSeries(i);
+            buffer.put((byte) ',');
+            writeString(buffer, series.getName());
+            writeAscii(buffer, ":{");
+            for (int j = 0; j < series.size(); j++) {
+                if (j > 0) {
+                    buffer.put((byte) ',');
+                }
+                buffer.put((byte) '"');
+                writeLong(buffer, series.getTimeStamp(j));
+                writeAscii(buffer, "\":\"");
+                writeDouble(buffer, series.getValue(j));
+                buffer.put((byte) '"');
+            }
+            buffer.put((byte) '}');
+        }
+
+        /* Adds the neighbour array */
+        writeAscii(buffer, ",\"neighbours\":[");
+        for (int i = 0; i < snapshot.getNeighbourCount(); i++) {
+            if (i > 0) {
+                buffer.put((byte) ',');
+            }
+            writeAscii(buffer, "{\"address\":");
+            writeString(buffer, snapshot.getNeighbourAddress(i));
+            writeAscii(buffer, ",\"bytesSend\":");
+            writeLong(buffer, snapshot.getNeighbourBytesSend(i));
+            writeAscii(buffer, ",\"bytesReceived\":");
+            writeLong(buffer, snapshot.getNeighbourBytesReceived(i));
+            writeAscii(buffer, ",\"dataSend\":");
+            buffer.put((byte) (snapshot.isNeighbourDataSend(i) ? '1' : '0'));
+            buffer.put((byte) '}');
+        }
+
+        /* Adds the customValues */
+        writeAscii(buffer, "],\"customValues\":{");
+        boolean first = true;
+        for (Map.Entry<String, Object> entry : snapshot.getCustomValues().entrySet()) {
+            if (!first) {
+                buffer.put((byte) ',');
+            }
+            first = false;
+            writeString(buffer, entry.getKey());
+            buffer.put((byte) ':');
+            writeValue(buffer, entry.getValue());
+        }
+        writeAscii(buffer, "}}");
+    }
+
+
+    /**
+     * Writes a JSON array of strings
+     *
+     * @param buffer The buffer
+     * @param values The strings
+     */
+    private static void writeStrings(ByteBuffer buffer, List<String> values) {
+        buffer.put((byte) '[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                buffer.put((byte) ',');
+            }
+            writeString(buffer, values.get(i));
+        }
+        buffer.put((byte) ']');
+    }
+
+
+    /**
+     * Writes a custom value
+     *
+     * @param buffer The buffer
+     * @param value The value
+     */
+    private static void writeValue(ByteBuffer buffer, Object value) {
+        if (value instanceof Integer || value instanceof Long) {
+            writeLong(buffer, ((Number) value).longValue());
+        } else if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                writeAscii(buffer, "null");
+            } else {
+                writeDouble(buffer, number);
+            }
+        } else if (value instanceof Boolean) {
+            writeAscii(buffer, ((Boolean) value) ? "true" : "false");
+        } else if (value == null) {
+            writeAscii(buffer, "null");
+        } else {
+            writeString(buffer, value.toString());
+        }
+    }
+
+
+    /**
+     * Writes a string that only contains ASCII characters without escaping
+     *
+     * @param buffer The buffer
+     * @param value The string
+     */
+    static void writeAscii(ByteBuffer buffer, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+
+    /**
+     * Writes a quoted and escaped JSON string
+     * Non ASCII characters are written as unicode escapes, so the output is always ASCII.
+     *
+     * @param buffer The buffer
+     * @param value The string
+     */
+    static void writeString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            writeAscii(buffer, "null");
+            return;
+        }
+
+        buffer.put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                buffer.put((byte) '\\');
+                buffer.put((byte) c);
+            } else if (c >= 0x20 && c < 0x7F) {
+                buffer.put((byte) c);
+            } else {
+                buffer.put((byte) '\\');
+                buffer.put((byte) 'u');
+                buffer.put(HEX[(c >> 12) & 0xF]);
+                buffer.put(HEX[(c >> 8) & 0xF]);
+                buffer.put(HEX[(c >> 4) & 0xF]);
+                buffer.put(HEX[c & 0xF]);
+            }
+        }
+        buffer.put((byte) '"');
+    }
+
+
+    /**
+     * Writes a long as decimal digits
+     *
+     * @param buffer The buffer
+     * @param value The value
+     */
+    private static void writeLong(ByteBuffer buffer, long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(buffer, "-9223372036854775808");
+            return;
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+
+        /* Finds the highest power of ten of the value and writes the digits from there. */
+        long divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            buffer.put((byte) ('0' + (value / divisor) % 10));
+            divisor /= 10;
+        }
+    }
+
+
+    /**
+     * Writes a double, the value that is read back is the same double
+     * A value with at most six decimals is written in the fixed point format, other values are written with the
+     * least significant digits that read back as the same double, in exponent form. The digits are checked by
+     * converting them back with one exact multiplication or division, which is correctly rounded. Values that need
+     * more digits, and values that are not a number, fall back to String.valueOf.
+     *
+     * @param buffer The buffer
+     * @param value The value
+     */
+    private static void writeDouble(ByteBuffer buffer, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writeAscii(buffer, String.valueOf(value));
+            return;
+        }
+        double abs = Math.abs(value);
+        if (abs < MAX_FIXED_POINT) {
+            long scaled = Math.round(abs * DECIMAL_FACTOR);
+            if (scaled < MAX_EXACT_MANTISSA && scaled / (double) DECIMAL_FACTOR == abs) {
+                writeFixedPoint(buffer, value < 0 && scaled != 0, scaled);
+                return;
+            }
+        }
+
+        int exponent = (int) Math.floor(Math.log10(abs));
+        for (int digits = 1; digits <= MAX_DIGITS; digits++) {
+            int scale = exponent - digits + 1;
+            if (Math.abs(scale) >= POWERS_OF_TEN.length) {
+                break;
+            }
+            long mantissa = Math.round(scale >= 0 ? abs / POWERS_OF_TEN[scale] : abs * POWERS_OF_TEN[-scale]);
+            if (mantissa >= MAX_EXACT_MANTISSA) {
+                break;
+            }
+            double read = scale >= 0 ? mantissa * POWERS_OF_TEN[scale] : mantissa / POWERS_OF_TEN[-scale];
+            if (read == abs) {
+                writeExponent(buffer, value < 0, mantissa, scale);
+                return;
+            }
+        }
+        writeAscii(buffer, String.valueOf(value));
+    }
+
+
+    /**
+     * Writes a value in the fixed point format, with at least one decimal
+     *
+     * @param buffer The buffer
+     * @param negative true to write a minus sign
+     * @param scaled The absolute value multiplied by the decimal factor
+     */
+    private static void writeFixedPoint(ByteBuffer buffer, boolean negative, long scaled) {
+        if (negative) {
+            buffer.put((byte) '-');
+        }
+        writeLong(buffer, scaled / DECIMAL_FACTOR);
+        buffer.put((byte) '.');
+
+        /* Writes the decimals without the trailing zeros, but at least one decimal. */
+        long fraction = scaled % DECIMAL_FACTOR;
+        int decimals = DECIMALS;
+        while (decimals > 1 && fraction % 10 == 0) {
+            fraction /= 10;
+            decimals--;
+        }
+        long divisor = 1;
+        for (int i = 1; i < decimals; i++) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            buffer.put((byte) ('0' + (fraction / divisor) % 10));
+            divisor /= 10;
+        }
+    }
+
+
+    /**
+     * Writes a value in exponent form, like 1.5E-7
+     *
+     * @param buffer The buffer
+     * @param negative true to write a minus sign
+     * @param mantissa The digits of the value
+     * @param scale The power of ten of the last digit
+     */
+    private static void writeExponent(ByteBuffer buffer, boolean negative, long mantissa, int scale) {
+        while (mantissa >= 10 && mantissa % 10 == 0) {
+            mantissa /= 10;
+            scale++;
+        }
+        long divisor = 1;
+        int digits = 1;
+        while (divisor <= mantissa / 10) {
+            divisor *= 10;
+            digits++;
+        }
+
+        if (negative) {
+            buffer.put((byte) '-');
+        }
+        buffer.put((byte) ('0' + mantissa / divisor));
+        buffer.put((byte) '.');
+        if (digits == 1) {
+            buffer.put((byte) '0');
+        }
+        for (divisor /= 10; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + (mantissa / divisor) % 10));
+        }
+        buffer.put((byte) 'E');
+        writeLong(buffer, scale + digits - 1);
+    }
+}
@@ -0,0 +1,144 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Histogram of latencies with log-linear buckets, like an HDR histogram with a fixed precision.
+ * Every power of two is split in 16 buckets, so a percentile is accurate to about 6%. The unit of the latencies
+ * is chosen by the user, for instance nanoseconds or microseconds.
+ *
+ * Recording is lock-free and doesn't allocate. The buckets are moved to a snapshot, a plain array of counts,
+ * by the reader, so a snapshot holds the latencies of one interval. Snapshots are merged by draining multiple
+ * histograms, or intervals, into the same snapshot.
+ */
+public class LatencyHistogram {
+
+    /* Amount of buckets per power of two, as a shift. */
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /* Buckets up to 2^48, larger latencies are counted in the last bucket. */
+    private static final int BUCKETS = SUB_BUCKETS + (48 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+
+    /**
+     * Function to record a latency
+     * This function is thread-safe and can be called from multiple threads.
+     *
+     * @param value The latency, negative latencies are recorded as 0
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(bucketOf(value));
+
+        /* Only writes the maximum if it is larger, to keep the cache line shared. */
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+
+    /**
+     * Function to move the recorded latencies to a snapshot, the histogram is empty afterwards
+     *
+     * @param snapshot The snapshot, the counts are added to it
+     * @return The largest latency since the previous drain
+     */
+    public long drainTo(long[] snapshot) {
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts.get(i) != 0) {
+                snapshot[i] += counts.getAndSet(i, 0);
+            }
+        }
+        return max.getAndSet(0);
+    }
+
+
+    /**
+     * Function to create an empty snapshot for drainTo
+     *
+     * @return The snapshot
+     */
+    public static long[] newSnapshot() {
+        return new long[BUCKETS];
+    }
+
+
+    /**
+     * Function to get the amount of latencies in a snapshot
+     *
+     * @param snapshot The snapshot
+     * @return The amount of latencies
+     */
+    public static long count(long[] snapshot) {
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        return total;
+    }
+
+
+    /**
+     * Function to get a percentile of a snapshot
+     *
+     * @param snapshot The snapshot
+     * @param percentile The percentile, from 0 to 100
+     * @return The upper bound of the bucket of the percentile, 0 if the snapshot is empty
+     */
+    public static long percentile(long[] snapshot, double percentile) {
+        long total = count(snapshot);
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+
+    /**
+     * Function to get the bucket of a latency
+     *
+     * @param value The latency
+     * @return The index of the bucket
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return Math.min(BUCKETS - 1, SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub);
+    }
+
+
+    /**
+     * Function to get the largest latency of a bucket
+     *
+     * @param bucket The index of the bucket
+     * @return The largest latency in the bucket
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+        long sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+}
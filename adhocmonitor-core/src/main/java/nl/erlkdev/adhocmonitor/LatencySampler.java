@@ -0,0 +1,116 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Sampler to collect the latency percentiles of the operations of the application.
+ * Every operation has a latency histogram, which is drained on every tick into the p50, p90, p99 and max series
+ * of the operation. The series are named latencyP50Chart:operation, ..., in milliseconds, and only get a sample
+ * on the ticks in which the operation recorded a latency.
+ */
+class LatencySampler implements Sampler {
+
+    /* Maximum amount of operations, so a mistake in the operation names can't grow the packets without bounds. */
+    static final int MAX_OPERATIONS = 32;
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final MonitorNode monitorNode;
+    private final ConcurrentHashMap<String, Operation> operations = new ConcurrentHashMap<>();
+
+
+    /**
+     * Constructor for the latency sampler
+     *
+     * @param monitorNode The monitor node that gets the series of the operations
+     */
+    LatencySampler(MonitorNode monitorNode) {
+        this.monitorNode = monitorNode;
+    }
+
+
+    /**
+     * Function to get the histogram of an operation, it is created for the first latency of the operation
+     *
+     * @param operation The name of the operation
+     * @return The histogram, or null if the node has the maximum amount of operations
+     */
+    LatencyHistogram getHistogram(String operation) {
+        Operation entry = operations.get(operation);
+        if (entry == null) {
+            entry = register(operation);
+        }
+        return entry != null ? entry.histogram : null;
+    }
+
+
+    private synchronized Operation register(String operation) {
+        Operation entry = operations.get(operation);
+        if (entry == null && operations.size() < MAX_OPERATIONS) {
+            entry = new Operation(operation);
+            operations.put(operation, entry);
+        }
+        return entry;
+    }
+
+
+    @Override
+    public void reset() {
+        /* The latencies from before the start are not send. */
+        for (Operation entry : operations.values()) {
+            entry.histogram.drainTo(entry.interval);
+            Arrays.fill(entry.interval, 0);
+        }
+    }
+
+
+    @Override
+    public void sample(long timeStamp, long elapsed) {
+        for (Operation entry : operations.values()) {
+            entry.sample(timeStamp);
+        }
+    }
+
+
+    /**
+     * Histogram and series of an operation
+     */
+    private class Operation {
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final long[] interval = LatencyHistogram.newSnapshot();
+        final SampleRing p50;
+        final SampleRing p90;
+        final SampleRing p99;
+        final SampleRing max;
+
+        Operation(String operation) {
+            p50 = monitorNode.createSeries("latencyP50Chart:" + operation);
+            p90 = monitorNode.createSeries("latencyP90Chart:" + operation);
+            p99 = monitorNode.createSeries("latencyP99Chart:" + operation);
+            max = monitorNode.createSeries("latencyMaxChart:" + operation);
+        }
+
+        /**
+         * Drains the latencies of the tick and adds their percentiles to the series
+         *
+         * @param timeStamp The time stamp of the tick
+         */
+        void sample(long timeStamp) {
+            long maxLatency = histogram.drainTo(interval);
+            if (LatencyHistogram.count(interval) > 0) {
+                /* The percentiles are the upper bounds of their buckets, which can be above the exact maximum.
+                 * A latency that is recorded during the drain can put its maximum in the next tick. */
+                long ceiling = maxLatency > 0 ? maxLatency : LatencyHistogram.percentile(interval, 100);
+                p50.add(timeStamp, Math.min(LatencyHistogram.percentile(interval, 50), ceiling) / NANOS_PER_MILLI);
+                p90.add(timeStamp, Math.min(LatencyHistogram.percentile(interval, 90), ceiling) / NANOS_PER_MILLI);
+                p99.add(timeStamp, Math.min(LatencyHistogram.percentile(interval, 99), ceiling) / NANOS_PER_MILLI);
+                max.add(timeStamp, ceiling / NANOS_PER_MILLI);
+                Arrays.fill(interval, 0);
+            }
+        }
+    }
+}
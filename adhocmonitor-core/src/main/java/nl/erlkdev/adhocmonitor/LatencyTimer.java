@@ -0,0 +1,55 @@
+package nl.erlkdev.adhocmonitor;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Timer that measures the latency of one execution of an operation and records it in the monitor node.
+ * It is created with MonitorNode.startTimer, and can be used in a try-with-resources statement.
+ * The latency is recorded once, also when the timer is stopped inside a try-with-resources statement.
+ */
+public class LatencyTimer implements AutoCloseable {
+
+    private final MonitorNode monitorNode;
+    private final String operation;
+    private final long start;
+    private boolean stopped = false;
+    private long latency = 0;
+
+
+    /**
+     * Constructor for the timer, it starts measuring
+     *
+     * @param monitorNode The monitor node
+     * @param operation The name of the operation
+     */
+    LatencyTimer(MonitorNode monitorNode, String operation) {
+        this.monitorNode = monitorNode;
+        this.operation = operation;
+        this.start = System.nanoTime();
+    }
+
+
+    /**
+     * Function to stop the timer and record the latency of the operation
+     * Only the first stop records the latency, the next stops return the same latency.
+     *
+     * @return The latency in nanoseconds
+     */
+    public long stop() {
+        if (!stopped) {
+            stopped = true;
+            latency = System.nanoTime() - start;
+            monitorNode.recordLatency(operation, latency);
+        }
+        return latency;
+    }
+
+
+    /**
+     * Stops the timer, so the latency is recorded at the end of a try-with-resources statement
+     */
+    @Override
+    public void close() {
+        stop();
+    }
+}
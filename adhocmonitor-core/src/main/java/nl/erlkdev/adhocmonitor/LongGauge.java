@@ -0,0 +1,71 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Custom value with a long that can be set and changed, for instance the length of a queue.
+ * This class is thread-safe.
+ */
+public class LongGauge extends CustomValue {
+
+    private final AtomicLong value = new AtomicLong();
+
+
+    LongGauge(String key) {
+        super(key);
+    }
+
+
+    /**
+     * Function to set the value
+     *
+     * @param value the new value
+     */
+    public void set(long value) {
+        this.value.set(value);
+    }
+
+
+    /**
+     * Function to add an amount to the value
+     *
+     * @param amount the amount, negative to subtract
+     */
+    public void add(long amount) {
+        value.addAndGet(amount);
+    }
+
+
+    /**
+     * Function to add one to the value
+     */
+    public void increment() {
+        value.incrementAndGet();
+    }
+
+
+    /**
+     * Function to subtract one from the value
+     */
+    public void decrement() {
+        value.decrementAndGet();
+    }
+
+
+    /**
+     * Gets the current value
+     *
+     * @return the value
+     */
+    public long get() {
+        return value.get();
+    }
+
+
+    @Override
+    Object getSnapshotValue() {
+        return value.get();
+    }
+}
@@ -0,0 +1,1149 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Client that monitors a node and sends its data to the monitor system.
+ * It owns the monitor node, the time synchronization, the send timer and the adaptive rate controller, and has no
+ * dependencies on Android, so it runs on a plain JVM. The AdhocMonitorService is an adapter over this client.
+ */
+public class MonitorClient {
+
+    /* Default ports of the monitor system. */
+    public static final int DEFAULT_UDP_PORT = 7000;
+    public static final int DEFAULT_TCP_PORT = 7001;
+
+    /* Interval on which the dictionary of the compression is rebuilt, it is negotiated again when it changed. */
+    private static final int DICTIONARY_INTERVAL = 30000;
+
+    /* Connection information. */
+    private String address = null;
+    private String HOST = null;
+    private Integer UDP_PORT = null;
+    private Integer TCP_PORT = null;
+    private volatile ErrorListener errorListener = null;
+
+    /* Configuration. */
+    private boolean syncTimeEnabled = true;
+    private int monitorInterval = 500;
+    private int sampleInterval = 200;
+    private int seriesCapacity = MonitorNode.DEFAULT_SERIES_CAPACITY;
+    private int topNeighbours = 0;
+    private PacketFormat packetFormat = PacketFormat.JSON;
+    private boolean incrementalEnabled = false;
+    private int keyframeInterval = 10;
+    private int maxBatchLatency = 0;
+    private int maxDatagramSize = BatchingSender.DEFAULT_MAX_DATAGRAM_SIZE;
+    private int reliableWindow = 0;
+    private boolean compressionEnabled = false;
+    private boolean selfMetricsEnabled = false;
+    private boolean aggregatorEnabled = false;
+    private int aggregatorUdpPort = DEFAULT_UDP_PORT;
+    private int aggregatorTcpPort = DEFAULT_TCP_PORT;
+    private boolean adaptiveRateEnabled = false;
+    private int slowSampleInterval = 2000;
+    private int slowMonitorInterval = 5000;
+    private double cpuBudget = 0;
+    private int bandwidthBudget = 0;
+    private volatile OverheadBudgetController.DegradationListener degradationListener = null;
+    private int syncRounds = ClockSync.DEFAULT_ROUNDS;
+    private int resyncInterval = 60000;
+    private long monitorTimeOffset = 0;
+    private File recordingDirectory = null;
+
+    /* Generation of the started monitor, every stop increases it, guarded by this. A start thread only starts its
+     * parts while its generation is the current one, so a stop during the time sync can't be overtaken. */
+    private long startGeneration = 0;
+
+    /* Monitor sender thread. */
+    private Timer mMonitorSender;
+    private TimerTask mSendTask;
+    private PacketSender mPacketSender;
+
+    /* Negotiation of the compression dictionary. */
+    private Timer mCompressionTimer;
+
+    /* Aggregator of the packets of the neighbours. */
+    private volatile TelemetryAggregator mAggregator;
+
+    /* Recorder of the send snapshots. */
+    private volatile TelemetryRecorder mRecorder;
+
+    /* Adaptive rate controller. */
+    private volatile AdaptiveRateController mRateController;
+
+    /* Controller of the overhead budget. */
+    private volatile OverheadBudgetController mBudgetController;
+
+    /* Monitor node. */
+    private volatile MonitorNode monitorNode;
+
+    /* Clock sync between the node and the monitor. */
+    private volatile ClockSync mClockSync;
+
+
+    /**
+     * Function to set the listener that receives the errors of the monitor
+     *
+     * @param errorListener The error listener, or null to ignore the errors
+     */
+    public void setErrorListener(ErrorListener errorListener) {
+        this.errorListener = errorListener;
+    }
+
+    /**
+     * Function to enable or disable the time synchronization
+     *
+     * @param syncTimeEnabled Default value is true
+     */
+    public void setSyncTimeEnabled(boolean syncTimeEnabled) {
+        this.syncTimeEnabled = syncTimeEnabled;
+    }
+
+    /**
+     * Function that returns if time synchronization is enabled
+     *
+     * @return true if time synchronization is enabled, else false
+     */
+    public boolean isSyncTimeEnabled(){
+        return syncTimeEnabled;
+    }
+
+    /**
+     * Function to set the amount of exchanges of a time synchronization
+     * The exchange with the smallest round trip time is used.
+     *
+     * @param syncRounds Default value is 8
+     */
+    public void setSyncRounds(int syncRounds) {
+        this.syncRounds = syncRounds;
+    }
+
+    /**
+     * Function that returns the amount of exchanges of a time synchronization
+     *
+     * @return The amount of exchanges of a time synchronization
+     */
+    public int getSyncRounds() {
+        return syncRounds;
+    }
+
+    /**
+     * Function to set the interval on which the time is synchronized again in the background
+     * The offsets of the synchronizations are used to correct the drift of the node clock.
+     *
+     * @param resyncInterval Default value is 60000 milliseconds, 0 only synchronizes at the start
+     */
+    public void setResyncInterval(int resyncInterval) {
+        this.resyncInterval = resyncInterval;
+    }
+
+    /**
+     * Function that returns the interval on which the time is synchronized again
+     *
+     * @return The resync interval in milliseconds, 0 if the time is only synchronized at the start
+     */
+    public int getResyncInterval() {
+        return resyncInterval;
+    }
+
+    /**
+     * Function to set a fixed time offset between the monitor and the node, used when time synchronization is disabled
+     *
+     * @param monitorTimeOffset Default value is 0 milliseconds
+     */
+    public void setMonitorTimeOffset(long monitorTimeOffset) {
+        this.monitorTimeOffset = monitorTimeOffset;
+    }
+
+    /**
+     * Function to set the monitor interval
+     *
+     * @param monitorInterval Default value is 500 milliseconds
+     */
+    public void setMonitorInterval(int monitorInterval){
+        this.monitorInterval = monitorInterval;
+    }
+
+    /**
+     * Function that returns the interval on which the monitor sends the data
+     *
+     * @return The interval on which the monitor sends the data
+     */
+    public int getMonitorInterval() {
+        return monitorInterval;
+    }
+
+    /**
+     * Function to set the interval on which the node information is sampled
+     *
+     * @param sampleInterval Default value is 200 milliseconds
+     */
+    public void setSampleInterval(int sampleInterval){
+        this.sampleInterval = sampleInterval;
+        MonitorNode node = monitorNode;
+        if (node != null){
+            node.setSamplePeriod(sampleInterval);
+        }
+    }
+
+    /**
+     * Function that returns the interval on which the node information is sampled
+     *
+     * @return The interval on which the node information is sampled
+     */
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * Function to set the capacity of the series of the monitor node
+     * The capacity is the maximum amount of samples of each series that is kept between two packets.
+     * The setting is used by the next started monitor.
+     *
+     * @param seriesCapacity Default value is 64 samples
+     */
+    public void setSeriesCapacity(int seriesCapacity) {
+        this.seriesCapacity = seriesCapacity;
+    }
+
+    /**
+     * Function that returns the capacity of the series of the monitor node
+     *
+     * @return The maximum amount of samples of each series that is kept between two packets
+     */
+    public int getSeriesCapacity() {
+        return seriesCapacity;
+    }
+
+    /**
+     * Function to send only the busiest neighbours, with the send and receive rate of their links
+     * The other neighbours are added together, so the packets of a node in a dense mesh stay small.
+     * The setting is used by the next started monitor.
+     *
+     * @param topNeighbours Default value is 0, which sends all neighbours without link rates
+     */
+    public void setTopNeighbours(int topNeighbours) {
+        this.topNeighbours = topNeighbours;
+    }
+
+    /**
+     * Function that returns the amount of neighbours that is send
+     *
+     * @return The amount of top neighbours, 0 if all neighbours are send
+     */
+    public int getTopNeighbours() {
+        return topNeighbours;
+    }
+
+    /**
+     * Function to set the format of the data packets
+     * The format is used by the next started monitor.
+     *
+     * @param packetFormat Default value is JSON
+     */
+    public void setPacketFormat(PacketFormat packetFormat) {
+        this.packetFormat = packetFormat;
+    }
+
+    /**
+     * Function that returns the format of the data packets
+     *
+     * @return The format of the data packets
+     */
+    public PacketFormat getPacketFormat() {
+        return packetFormat;
+    }
+
+    /**
+     * Function to enable or disable the incremental mode
+     * In incremental mode only the neighbours and custom values that changed since the last keyframe are send.
+     * The setting is used by the next started monitor.
+     *
+     * @param incrementalEnabled Default value is false
+     */
+    public void setIncrementalEnabled(boolean incrementalEnabled) {
+        this.incrementalEnabled = incrementalEnabled;
+    }
+
+    /**
+     * Function that returns if the incremental mode is enabled
+     *
+     * @return true if the incremental mode is enabled, else false
+     */
+    public boolean isIncrementalEnabled() {
+        return incrementalEnabled;
+    }
+
+    /**
+     * Function to set the keyframe interval of the incremental mode
+     * A keyframe contains the full state of the node, so the monitor can recover from lost packets.
+     *
+     * @param keyframeInterval Default value is 10 packets
+     */
+    public void setKeyframeInterval(int keyframeInterval) {
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    /**
+     * Function that returns the keyframe interval of the incremental mode
+     *
+     * @return The amount of packets from one keyframe to the next
+     */
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    /**
+     * Function to set the maximum time a data packet waits to be send in a batch
+     * With a latency above 0 the packets of multiple monitor intervals are send together in one datagram.
+     * The setting is used by the next started monitor.
+     *
+     * @param maxBatchLatency Default value is 0 milliseconds, which disables batching
+     */
+    public void setMaxBatchLatency(int maxBatchLatency) {
+        this.maxBatchLatency = maxBatchLatency;
+    }
+
+    /**
+     * Function that returns the maximum time a data packet waits to be send in a batch
+     *
+     * @return The maximum batch latency in milliseconds, 0 if batching is disabled
+     */
+    public int getMaxBatchLatency() {
+        return maxBatchLatency;
+    }
+
+    /**
+     * Function to set the maximum size of a batch datagram
+     * Larger data packets are split. The setting is used by the next started monitor.
+     *
+     * @param maxDatagramSize Default value is 8000 bytes
+     */
+    public void setMaxDatagramSize(int maxDatagramSize) {
+        this.maxDatagramSize = maxDatagramSize;
+    }
+
+    /**
+     * Function that returns the maximum size of a batch datagram
+     *
+     * @return The maximum size of a batch datagram in bytes
+     */
+    public int getMaxDatagramSize() {
+        return maxDatagramSize;
+    }
+
+    /**
+     * Function to enable the reliable mode, in which the monitor acknowledges the data packets
+     * Packets that are not acknowledged are send again, until the window is full. The lost packets, the
+     * retransmits and the round trip time are send as custom values. The setting is used by the next started monitor.
+     *
+     * @param reliableWindow Default value is 0 packets, which sends plain UDP packets without acknowledgements
+     */
+    public void setReliableWindow(int reliableWindow) {
+        this.reliableWindow = reliableWindow;
+    }
+
+    /**
+     * Function that returns the window of the reliable mode
+     *
+     * @return The maximum amount of packets that wait for an acknowledgement, 0 if the reliable mode is disabled
+     */
+    public int getReliableWindow() {
+        return reliableWindow;
+    }
+
+    /**
+     * Function to enable or disable the compression of the data packets
+     * The packets are compressed with deflate and a dictionary of the packet schema and the neighbours of the node,
+     * which is negotiated with the monitor over the TCP port. Packets are send uncompressed when the monitor doesn't
+     * support compression or when the compression doesn't save enough. The setting is used by the next started monitor.
+     *
+     * @param compressionEnabled Default value is false
+     */
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    /**
+     * Function that returns if the compression of the data packets is enabled
+     *
+     * @return true if the compression is enabled, else false
+     */
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    /**
+     * Function to enable or disable sending the metrics of the overhead of the monitor itself
+     * The metrics are always collected and readable with getMetrics(), when enabled they are also send as the
+     * monitor custom values of every packet. The setting is used by the next started monitor.
+     *
+     * @param selfMetricsEnabled Default value is false
+     */
+    public void setSelfMetricsEnabled(boolean selfMetricsEnabled) {
+        this.selfMetricsEnabled = selfMetricsEnabled;
+    }
+
+    /**
+     * Function that returns if the metrics of the monitor overhead are send
+     *
+     * @return true if the metrics are send, else false
+     */
+    public boolean isSelfMetricsEnabled() {
+        return selfMetricsEnabled;
+    }
+
+    /**
+     * Function to enable or disable the aggregator role of the node
+     * An aggregator accepts the data packets of its current neighbours, which use this node as their monitor, and
+     * relays them to the monitor with its own packets, batched in one datagram per send. The setting is used by the
+     * next started monitor.
+     *
+     * @param aggregatorEnabled Default value is false
+     */
+    public void setAggregatorEnabled(boolean aggregatorEnabled) {
+        this.aggregatorEnabled = aggregatorEnabled;
+    }
+
+    /**
+     * Function that returns if the aggregator role is enabled
+     *
+     * @return true if the node is an aggregator, else false
+     */
+    public boolean isAggregatorEnabled() {
+        return aggregatorEnabled;
+    }
+
+    /**
+     * Function to set the ports on which the aggregator receives the packets and sync requests of the neighbours
+     *
+     * @param udpPort Default value is 7000
+     * @param tcpPort Default value is 7001
+     */
+    public void setAggregatorPorts(int udpPort, int tcpPort) {
+        this.aggregatorUdpPort = udpPort;
+        this.aggregatorTcpPort = tcpPort;
+    }
+
+    /**
+     * Function that returns the UDP port of the aggregator
+     *
+     * @return The UDP port on which the aggregator receives the packets of the neighbours
+     */
+    public int getAggregatorUdpPort() {
+        return aggregatorUdpPort;
+    }
+
+    /**
+     * Function that returns the TCP port of the aggregator
+     *
+     * @return The TCP port on which the aggregator answers the sync requests of the neighbours
+     */
+    public int getAggregatorTcpPort() {
+        return aggregatorTcpPort;
+    }
+
+    /**
+     * Function to enable or disable the adaptive rate controller
+     * The controller uses the sample and monitor interval when the node is active, and backs off to the slow
+     * intervals when the node is idle. The setting is used by the next started monitor.
+     *
+     * @param adaptiveRateEnabled Default value is false
+     */
+    public void setAdaptiveRateEnabled(boolean adaptiveRateEnabled) {
+        this.adaptiveRateEnabled = adaptiveRateEnabled;
+    }
+
+    /**
+     * Function that returns if the adaptive rate controller is enabled
+     *
+     * @return true if the adaptive rate controller is enabled, else false
+     */
+    public boolean isAdaptiveRateEnabled() {
+        return adaptiveRateEnabled;
+    }
+
+    /**
+     * Function to set the slow intervals of the adaptive rate controller, the floor of the rates when the node is idle
+     *
+     * @param slowSampleInterval Default value is 2000 milliseconds
+     * @param slowMonitorInterval Default value is 5000 milliseconds
+     */
+    public void setSlowIntervals(int slowSampleInterval, int slowMonitorInterval) {
+        this.slowSampleInterval = slowSampleInterval;
+        this.slowMonitorInterval = slowMonitorInterval;
+    }
+
+    /**
+     * Function that returns the slow sample interval of the adaptive rate controller
+     *
+     * @return The slow sample interval in milliseconds
+     */
+    public int getSlowSampleInterval() {
+        return slowSampleInterval;
+    }
+
+    /**
+     * Function that returns the slow monitor interval of the adaptive rate controller
+     *
+     * @return The slow monitor interval in milliseconds
+     */
+    public int getSlowMonitorInterval() {
+        return slowMonitorInterval;
+    }
+
+    /**
+     * Function to set the budget of the overhead of the monitor
+     * When the monitor uses more CPU or bandwidth, it drops the neighbour details, lowers the sample rate,
+     * lengthens the send interval and finally sends only summaries, one step at a time, see OverheadBudgetController.
+     * The setting is used by the next started monitor.
+     *
+     * @param cpuBudget The part of one core the monitor may use, for instance 0.01 for 1%, default value is 0 (no budget)
+     * @param bandwidthBudget The bytes per second the monitor may send, for instance 5120, default value is 0 (no budget)
+     */
+    public void setOverheadBudget(double cpuBudget, int bandwidthBudget) {
+        this.cpuBudget = cpuBudget;
+        this.bandwidthBudget = bandwidthBudget;
+    }
+
+    /**
+     * Function that returns the CPU budget of the monitor
+     *
+     * @return The part of one core the monitor may use, 0 if there is no budget
+     */
+    public double getCpuBudget() {
+        return cpuBudget;
+    }
+
+    /**
+     * Function that returns the bandwidth budget of the monitor
+     *
+     * @return The bytes per second the monitor may send, 0 if there is no budget
+     */
+    public int getBandwidthBudget() {
+        return bandwidthBudget;
+    }
+
+    /**
+     * Function to set the listener that is called on every degradation and recovery step of the overhead budget
+     *
+     * @param degradationListener The degradation listener, or null
+     */
+    public void setDegradationListener(OverheadBudgetController.DegradationListener degradationListener) {
+        this.degradationListener = degradationListener;
+    }
+
+    /**
+     * Function to record every snapshot of the node in a directory, for the analysis of an experiment afterwards
+     * The recording is written to memory mapped segments and can be replayed with the TelemetryReplayer.
+     * The setting is used by the next started monitor.
+     *
+     * @param recordingDirectory Default value is null, which disables recording
+     */
+    public void setRecordingDirectory(File recordingDirectory) {
+        this.recordingDirectory = recordingDirectory;
+    }
+
+    /**
+     * Function that returns the directory of the recording
+     *
+     * @return The directory of the recording, null if recording is disabled
+     */
+    public File getRecordingDirectory() {
+        return recordingDirectory;
+    }
+
+    /**
+     * Gets the recorder of the running monitor
+     *
+     * @return the recorder, or null if recording is disabled
+     */
+    public TelemetryRecorder getRecorder() {
+        return mRecorder;
+    }
+
+    /**
+     * Gets the packet sender of the running monitor, with the statistics of the send packets
+     *
+     * @return the packet sender, or null if the monitor isn't sending
+     */
+    public synchronized PacketSender getPacketSender() {
+        return mPacketSender;
+    }
+
+    /**
+     * Gets the aggregator of the running monitor, with the statistics of the relayed packets
+     *
+     * @return the aggregator, or null if the aggregator role is disabled
+     */
+    public TelemetryAggregator getAggregator() {
+        return mAggregator;
+    }
+
+    /**
+     * Gets the metrics of the overhead of the running monitor: the time of the samplers, snapshots and encoding,
+     * the send packets and failures, the allocated memory, the threads and the clock sync
+     *
+     * @return the metrics, or null if the monitor was never started
+     */
+    public MonitorMetrics getMetrics() {
+        MonitorNode node = monitorNode;
+        return node != null ? node.getMetrics() : null;
+    }
+
+    /**
+     * Gets the adaptive rate controller of the running monitor
+     *
+     * @return the adaptive rate controller, or null if it is not enabled
+     */
+    public AdaptiveRateController getRateController() {
+        return mRateController;
+    }
+
+    /**
+     * Gets the overhead budget controller of the running monitor
+     *
+     * @return the overhead budget controller, or null if there is no budget
+     */
+    public OverheadBudgetController getBudgetController() {
+        return mBudgetController;
+    }
+
+    /**
+     * Gets the ip address of the monitor system
+     *
+     * @return the ip address of the monitor system
+     */
+    public String getHOST(){
+        return HOST;
+    }
+
+    /**
+     * Gets the udp port used by the monitor system for transferring data
+     *
+     * @return the udp port number used by the monitor system
+     */
+    public Integer getUdpPORT() {
+        return UDP_PORT;
+    }
+
+    /**
+     * Gets the tcp port used by the monitor system to synchronize the time
+     *
+     * @return the tcp port number used by the monitor system
+     */
+    public Integer getTcpPORT() {
+        return TCP_PORT;
+    }
+
+    /**
+     * Gets the address of the node
+     *
+     * @return the address of the node
+     */
+    public String getAddress(){
+        return address;
+    }
+
+    /**
+     * Gets the monitor node
+     * @return MonitorNode
+     */
+    public MonitorNode getMonitorNode(){
+        return monitorNode;
+    }
+
+    /**
+     * Returns the time offset between the monitor and the node
+     *
+     * @return the time offset between the monitor and the node
+     */
+    public long getMonitorTimeOffset(){
+        ClockSync clockSync = mClockSync;
+        return clockSync != null ? clockSync.getOffset() : monitorTimeOffset;
+    }
+
+    /**
+     * Returns the uncertainty of the time offset, half the round trip time of the last time synchronization
+     *
+     * @return the uncertainty in milliseconds, NaN if the time is not synchronized
+     */
+    public double getMonitorTimeUncertainty(){
+        ClockSync clockSync = mClockSync;
+        return clockSync != null ? clockSync.getUncertainty() : Double.NaN;
+    }
+
+    /**
+     * Gets the clock sync of the running monitor
+     *
+     * @return the clock sync, or null if time synchronization is disabled
+     */
+    public ClockSync getClockSync(){
+        return mClockSync;
+    }
+
+
+    /**
+     * Stops the monitor
+     * Stops the send thread and the samplers of the monitor node
+     */
+    public void stopMonitor(){
+        ClockSync clockSync;
+        TelemetryAggregator aggregator;
+        PacketSender packetSender;
+        TelemetryRecorder recorder;
+        MonitorNode node;
+        synchronized (this) {
+            /* A start thread that is still running doesn't start anything after this. */
+            startGeneration++;
+            if (mMonitorSender != null){
+                mMonitorSender.cancel();
+                mMonitorSender = null;
+                mSendTask = null;
+            }
+            if (mCompressionTimer != null){
+                mCompressionTimer.cancel();
+                mCompressionTimer = null;
+            }
+            clockSync = mClockSync;
+            aggregator = mAggregator;
+            packetSender = mPacketSender;
+            recorder = mRecorder;
+            node = monitorNode;
+            mClockSync = null;
+            mRateController = null;
+            mBudgetController = null;
+            mAggregator = null;
+            mPacketSender = null;
+            mRecorder = null;
+        }
+        if (clockSync != null){
+            clockSync.stopResync();
+        }
+        if (aggregator != null){
+            aggregator.stop();
+        }
+        if (packetSender != null){
+            packetSender.close();
+        }
+        closeRecorder(recorder);
+        if (node != null){
+            node.stop();
+        }
+    }
+
+
+    /**
+     * Starts the monitor process using the default ports
+     *
+     * If time synchronization is enabled it first syncs the time between the monitor and the node
+     * It then start the send thread to send data to the monitor system on an interval
+     */
+    public void startMonitor(String address, String HOST) {
+        startMonitor(address, HOST, DEFAULT_UDP_PORT, DEFAULT_TCP_PORT);
+    }
+
+    /**
+     * Starts the monitor process
+     *
+     * If time synchronization is enabled it first syncs the time between the monitor and the node
+     * It then start the send thread to send data to the monitor system on an interval
+     */
+    public void startMonitor(String address, String HOST, int UDP_PORT, int TCP_PORT) {
+        this.address = address;
+        this.HOST = HOST;
+        this.UDP_PORT = UDP_PORT;
+        this.TCP_PORT = TCP_PORT;
+
+        /* Stops a previously started monitor. */
+        stopMonitor();
+        final MonitorNode node = new MonitorNode(address, null, seriesCapacity);
+        node.setSamplePeriod(sampleInterval);
+        node.setTopNeighbours(topNeighbours);
+        node.setErrorListener(new ErrorListener() {
+            @Override
+            public void onError(String errorMsg) {
+                reportError(errorMsg);
+            }
+        });
+        final long generation;
+        synchronized (this) {
+            generation = startGeneration;
+            this.monitorNode = node;
+        }
+        if (adaptiveRateEnabled){
+            startRateController(node);
+        }
+        if (cpuBudget > 0 || bandwidthBudget > 0){
+            startBudgetController(node);
+        }
+
+        Thread startMonitorThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                /* Syncs the time between the monitor and the node if enabled. */
+                node.setMonitorTimeOffset(monitorTimeOffset);
+                if (syncTimeEnabled && !syncTime(node, generation)){
+                    return;
+                }
+
+                /* Starts sampling the node information, unless the monitor was stopped during the time sync. */
+                synchronized (MonitorClient.this) {
+                    if (generation != startGeneration){
+                        return;
+                    }
+                    node.start();
+                }
+
+                /* Starts accepting the packets of the neighbours if the node is an aggregator. */
+                if (aggregatorEnabled && !startAggregator(node, generation)){
+                    return;
+                }
+
+                /* Starts the monitor send thread. */
+                try {
+                    startSendThread(node, generation);
+                } catch (UnknownHostException e) {
+                    reportError("Host not found");
+                } catch (IOException e) {
+                    reportError("Send channel couldn't be opened");
+                }
+            }
+        }, "AdhocMonitor-Start");
+        startMonitorThread.start();
+    }
+
+    /**
+     * Creates the adaptive rate controller, which reschedules the send task when the send period changes
+     *
+     * @param node The monitor node
+     */
+    private void startRateController(MonitorNode node){
+        AdaptiveRateController rateController = new AdaptiveRateController(node, sampleInterval,
+                Math.max(sampleInterval, slowSampleInterval), monitorInterval, Math.max(monitorInterval, slowMonitorInterval));
+        rateController.setSendPeriodListener(new AdaptiveRateController.SendPeriodListener() {
+            @Override
+            public void onSendPeriodChanged(long sendPeriod) {
+                scheduleSendTask(getSendPeriod());
+            }
+        });
+        node.addSampler(rateController);
+        mRateController = rateController;
+    }
+
+    /**
+     * Creates the overhead budget controller, which degrades the monitor step by step when it is over its budget
+     * The degradation steps are passed to the degradation listener.
+     *
+     * @param node The monitor node
+     */
+    private void startBudgetController(MonitorNode node){
+        OverheadBudgetController budgetController = new OverheadBudgetController(node, cpuBudget, bandwidthBudget,
+                sampleInterval, monitorInterval, mRateController);
+        budgetController.setSendPeriodListener(new AdaptiveRateController.SendPeriodListener() {
+            @Override
+            public void onSendPeriodChanged(long sendPeriod) {
+                scheduleSendTask(getSendPeriod());
+            }
+        });
+        budgetController.setDegradationListener(new OverheadBudgetController.DegradationListener() {
+            @Override
+            public void onDegradationChanged(OverheadBudgetController.Degradation degradation, double cpuUsage,
+                                             double bandwidth) {
+                OverheadBudgetController.DegradationListener listener = degradationListener;
+                if (listener != null){
+                    listener.onDegradationChanged(degradation, cpuUsage, bandwidth);
+                }
+            }
+        });
+        node.addSampler(budgetController);
+        mBudgetController = budgetController;
+    }
+
+    /**
+     * Gets the send period of the adaptive rate controller, or the monitor interval, lengthened by the overhead budget
+     *
+     * @return The send period in milliseconds
+     */
+    private long getSendPeriod(){
+        AdaptiveRateController rateController = mRateController;
+        long period = rateController != null ? rateController.getSendPeriod() : monitorInterval;
+        OverheadBudgetController budgetController = mBudgetController;
+        return budgetController != null ? Math.max(period, budgetController.getMinSendPeriod()) : period;
+    }
+
+    /**
+     * Thread to send data after to the monitor system on a fixed interval.
+     * The data is send over one datagram channel that stays open until the monitor is stopped.
+     * If the host couldn't be find it throws a exception.
+     *
+     * @param node The monitor node
+     * @param generation The generation of the start, the sender is closed again if the monitor was stopped
+     * @throws UnknownHostException
+     * @throws IOException If the datagram channel couldn't be opened
+     */
+    private void startSendThread(MonitorNode node, long generation) throws IOException {
+        PacketEncoder encoder = packetFormat == PacketFormat.BINARY ? new BinaryPacketEncoder() : new JsonPacketEncoder();
+        InetSocketAddress target = new InetSocketAddress(InetAddress.getByName(HOST), UDP_PORT);
+
+        /* An aggregator batches the packets of a send, also when batching over multiple sends is disabled. */
+        final PacketSender packetSender;
+        if (maxBatchLatency > 0) {
+            packetSender = new BatchingSender(target, encoder, maxBatchLatency, maxDatagramSize);
+        } else if (mAggregator != null) {
+            packetSender = new BatchingSender(target, encoder, monitorInterval, maxDatagramSize);
+        } else {
+            packetSender = new PacketSender(target, encoder);
+        }
+        if (incrementalEnabled) {
+            packetSender.setKeyframeInterval(keyframeInterval);
+        }
+        if (reliableWindow > 0) {
+            packetSender.setReliableWindow(reliableWindow);
+        }
+        TelemetryAggregator aggregator = mAggregator;
+        if (aggregator != null) {
+            packetSender.setRelayedAckListener(aggregator);
+        }
+        TelemetryRecorder recorder = recordingDirectory != null ? startRecorder(packetSender) : null;
+        packetSender.setMetrics(node.getMetrics());
+        try {
+            packetSender.open();
+        } catch (IOException e) {
+            closeRecorder(recorder);
+            throw e;
+        }
+
+        synchronized (this) {
+            if (generation != startGeneration) {
+                packetSender.close();
+                closeRecorder(recorder);
+                return;
+            }
+            mPacketSender = packetSender;
+            mRecorder = recorder;
+            mMonitorSender = new Timer("AdhocMonitor-Sender", true);
+            scheduleSendTask(getSendPeriod());
+            if (compressionEnabled) {
+                startCompression(node, packetSender);
+            }
+        }
+    }
+
+    /**
+     * Starts negotiating the compression dictionary with the monitor in the background
+     * The dictionary contains the neighbours of the node, so it is rebuilt on an interval and negotiated again
+     * when it changed. The packets are send uncompressed until the monitor accepted a dictionary.
+     *
+     * @param node The monitor node
+     * @param packetSender The packet sender
+     */
+    private synchronized void startCompression(final MonitorNode node, final PacketSender packetSender) {
+        if (mMonitorSender == null){
+            return;
+        }
+        final InetSocketAddress monitor = new InetSocketAddress(HOST, TCP_PORT);
+        final String nodeAddress = address;
+        mCompressionTimer = new Timer("AdhocMonitor-Compression", true);
+        mCompressionTimer.schedule(new TimerTask() {
+            private byte[] dictionary = null;
+
+            @Override
+            public void run() {
+                byte[] newDictionary = PacketCompressor.buildDictionary(node);
+                if (Arrays.equals(newDictionary, dictionary)) {
+                    return;
+                }
+                try {
+                    if (CompressionHandshake.negotiate(monitor, nodeAddress, newDictionary)) {
+                        packetSender.setCompressor(new PacketCompressor(newDictionary));
+                    }
+                    dictionary = newDictionary;
+                } catch (IOException e) {
+                    /* The monitor doesn't support compression or isn't reachable, it is tried again later. */
+                }
+            }
+        }, 0, DICTIONARY_INTERVAL);
+    }
+
+    /**
+     * Starts the aggregator on the aggregator ports
+     * The monitor keeps running without the aggregator if its ports couldn't be bound.
+     *
+     * @param node The monitor node
+     * @param generation The generation of the start, the aggregator is stopped again if the monitor was stopped
+     * @return false if the monitor was stopped in the meantime, else true
+     */
+    private boolean startAggregator(MonitorNode node, long generation) {
+        TelemetryAggregator aggregator = new TelemetryAggregator(node, address, new InetSocketAddress(aggregatorUdpPort),
+                new InetSocketAddress(aggregatorTcpPort), TelemetryAggregator.DEFAULT_MAX_PENDING);
+        try {
+            aggregator.start();
+        } catch (IOException e) {
+            reportError("Aggregator couldn't be started");
+            return true;
+        }
+        synchronized (this) {
+            if (generation == startGeneration) {
+                mAggregator = aggregator;
+                return true;
+            }
+        }
+        aggregator.stop();
+        return false;
+    }
+
+    /**
+     * Starts the recorder of the snapshots of the packet sender
+     * The monitor keeps running without recording if the recorder couldn't be started.
+     *
+     * @param packetSender The packet sender
+     * @return The started recorder, or null if it couldn't be started
+     */
+    private TelemetryRecorder startRecorder(PacketSender packetSender) {
+        TelemetryRecorder recorder = new TelemetryRecorder(recordingDirectory);
+        recorder.setErrorListener(new ErrorListener() {
+            @Override
+            public void onError(String errorMsg) {
+                reportError(errorMsg);
+            }
+        });
+        try {
+            recorder.start();
+        } catch (IOException e) {
+            reportError("Recorder couldn't be started");
+            return null;
+        }
+        packetSender.setRecorder(recorder);
+        return recorder;
+    }
+
+    /**
+     * Closes a recorder, after it wrote the snapshots that are still queued
+     *
+     * @param recorder The recorder, or null
+     */
+    private void closeRecorder(TelemetryRecorder recorder) {
+        if (recorder == null){
+            return;
+        }
+        try {
+            recorder.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Schedules the task that sends the data packets, a previously scheduled task is cancelled
+     *
+     * @param period The send period in milliseconds
+     */
+    private synchronized void scheduleSendTask(long period){
+        if (mMonitorSender == null){
+            return;
+        }
+        if (mSendTask != null){
+            mSendTask.cancel();
+        }
+
+        final PacketSender packetSender = mPacketSender;
+        final MonitorNode node = monitorNode;
+        final TelemetryAggregator aggregator = mAggregator;
+        final boolean flushBatch = aggregator != null && maxBatchLatency == 0;
+        final MonitorMetrics metrics = selfMetricsEnabled ? node.getMetrics() : null;
+        mSendTask = new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    /* Adds the overhead of the monitor to the snapshot if enabled. */
+                    if (metrics != null){
+                        metrics.updateValues(node);
+                    }
+
+                    /* Sends a snapshot of the node as datagram package. */
+                    packetSender.send(node);
+
+                    /* Adds the packets of the neighbours to the batch and sends it. */
+                    if (aggregator != null){
+                        aggregator.relay(packetSender);
+                        if (flushBatch){
+                            ((BatchingSender) packetSender).flush();
+                        }
+                    }
+                } catch (Exception e) {
+                    reportError("Data couldn't be send");
+                }
+            }
+
+        };
+        mMonitorSender.scheduleAtFixedRate(mSendTask, 0, period);
+    }
+
+    /**
+     * Function to synchronize the time between the node and the monitor
+     * It runs multiple rounds of the precision time protocol and repeats them in the background, see ClockSync.
+     *
+     * @param node The monitor node
+     * @param generation The generation of the start, the clock sync isn't used if the monitor was stopped
+     * @return false if the monitor was stopped during the sync, else true
+     */
+    private boolean syncTime(MonitorNode node, long generation){
+        ClockSync clockSync = new ClockSync(new InetSocketAddress(HOST, TCP_PORT), syncRounds, ClockSync.DEFAULT_HISTORY);
+        try {
+            clockSync.sync();
+        } catch (IOException e) {
+            reportError("Time synchronization failed");
+            e.printStackTrace();
+        }
+
+        /* The clock sync is used even if the first sync failed, so a later sync can still correct the time. */
+        synchronized (this) {
+            if (generation != startGeneration){
+                return false;
+            }
+            mClockSync = clockSync;
+            node.setClockSync(clockSync);
+            if (resyncInterval > 0){
+                clockSync.startResync(resyncInterval, new ClockSync.SyncErrorListener() {
+                    @Override
+                    public void onSyncError(IOException e) {
+                        reportError("Time synchronization failed");
+                    }
+                });
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Function to pass an error to the error listener
+     *
+     * @param errorMsg The error message
+     */
+    private void reportError(String errorMsg){
+        ErrorListener listener = errorListener;
+        if (listener != null){
+            listener.onError(errorMsg);
+        }
+    }
+
+    /**
+     * Interface for an error listener
+     *
+     * All the monitor errors will be send to the error listener
+     */
+    public interface ErrorListener {
+        void onError(String errorMsg);
+    }
+}
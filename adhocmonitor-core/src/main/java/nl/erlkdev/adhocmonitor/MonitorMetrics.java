@@ -0,0 +1,474 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Metrics of the overhead of the monitor itself on the node: the time spend in the samplers, in taking the
+ * snapshots, in encoding the packets, in sending them (with the compression) and in handling the received
+ * acknowledgements and packets of the neighbours, the send packets, bytes and failures, the failed samples, the memory
+ * allocated by the sampler and send threads, the amount of threads of the process and the state of the clock sync.
+ *
+ * The times, counts and bytes are totals since the node was created, a reader takes the difference of two reads
+ * for a rate. The metrics are always collected, they only cost a few clock reads per tick and send, and can be
+ * added to the data packets as custom values. The allocated memory is only measured on JVMs that report the
+ * allocated bytes of a thread, on Android it is -1.
+ */
+public class MonitorMetrics {
+
+    /* Names of the custom values, the times are in microseconds. */
+    public static final String SAMPLE_TIME = "monitorSampleTime";
+    public static final String SNAPSHOT_TIME = "monitorSnapshotTime";
+    public static final String ENCODE_TIME = "monitorEncodeTime";
+    public static final String SEND_TIME = "monitorSendTime";
+    public static final String RECEIVE_TIME = "monitorReceiveTime";
+    public static final String PACKETS_SEND = "monitorPacketsSend";
+    public static final String BYTES_SEND = "monitorBytesSend";
+    public static final String SEND_FAILURES = "monitorSendFailures";
+    public static final String SAMPLER_FAILURES = "monitorSamplerFailures";
+    public static final String ALLOCATED_BYTES = "monitorAllocatedBytes";
+    public static final String THREADS = "monitorThreads";
+    public static final String CLOCK_OFFSET = "clockOffset";
+    public static final String CLOCK_UNCERTAINTY = "clockUncertainty";
+
+    /* Maximum amount of samplers with an own sample time, like the maximum amount of latency operations. */
+    static final int MAX_SAMPLERS = 16;
+
+    private static final long NANOS_PER_MICRO = 1000;
+
+    /* Thread bean and its getThreadAllocatedBytes(long) method, null if the JVM doesn't have them. */
+    private static final Object threadBean;
+    private static final Method allocatedBytesMethod;
+
+    static {
+        Object bean = null;
+        Method method = null;
+        try {
+            bean = Class.forName("java.lang.management.ManagementFactory").getMethod("getThreadMXBean").invoke(null);
+            Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+            if (beanClass.isInstance(bean)
+                    && (Boolean) beanClass.getMethod("isThreadAllocatedMemorySupported").invoke(bean)
+                    && (Boolean) beanClass.getMethod("isThreadAllocatedMemoryEnabled").invoke(bean)) {
+                method = beanClass.getMethod("getThreadAllocatedBytes", long.class);
+            }
+        } catch (Exception e) {
+            /* Android and JVMs without the management extensions don't report the allocated bytes. */
+            method = null;
+        }
+        threadBean = bean;
+        allocatedBytesMethod = method;
+    }
+
+    private final AtomicLong sampleNanos = new AtomicLong();
+    private final AtomicLong snapshotNanos = new AtomicLong();
+    private final AtomicLong encodeNanos = new AtomicLong();
+    private final AtomicLong sendNanos = new AtomicLong();
+    private final AtomicLong receiveNanos = new AtomicLong();
+    private final AtomicLong packetsSend = new AtomicLong();
+    private final AtomicLong bytesSend = new AtomicLong();
+    private final AtomicLong sendFailures = new AtomicLong();
+    private final AtomicLong samplerFailures = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final ConcurrentHashMap<Sampler, SamplerTime> samplerTimes = new ConcurrentHashMap<>();
+    private volatile ClockSync clockSync = null;
+
+    /* Reader of the thread count, guarded by this. */
+    private final ProcStatReader processStat = new ProcStatReader("/proc/self/stat");
+
+    /* Custom values of the metrics, registered on the node of the first update, guarded by this. */
+    private MonitorNode valuesNode = null;
+    private LongGauge sampleTimeValue;
+    private LongGauge snapshotTimeValue;
+    private LongGauge encodeTimeValue;
+    private LongGauge sendTimeValue;
+    private LongGauge receiveTimeValue;
+    private LongGauge packetsSendValue;
+    private LongGauge bytesSendValue;
+    private LongGauge sendFailuresValue;
+    private LongGauge samplerFailuresValue;
+    private LongGauge allocatedBytesValue;
+    private LongGauge threadsValue;
+    private LongGauge clockOffsetValue;
+    private DoubleGauge clockUncertaintyValue;
+
+
+    /**
+     * Function to add the time of a sampler in a tick
+     *
+     * @param sampler The sampler
+     * @param nanos The time in nanoseconds
+     */
+    void recordSampler(Sampler sampler, long nanos) {
+        SamplerTime time = samplerTimes.get(sampler);
+        if (time == null) {
+            time = register(sampler);
+        }
+        if (time != null) {
+            time.nanos.addAndGet(nanos);
+        }
+    }
+
+
+    private synchronized SamplerTime register(Sampler sampler) {
+        SamplerTime time = samplerTimes.get(sampler);
+        if (time == null && samplerTimes.size() < MAX_SAMPLERS) {
+            time = new SamplerTime(samplerName(sampler));
+            samplerTimes.put(sampler, time);
+        }
+        return time;
+    }
+
+
+    /**
+     * Function to add the time of a complete tick, with all its samplers
+     *
+     * @param nanos The time in nanoseconds
+     */
+    void recordTick(long nanos) {
+        sampleNanos.addAndGet(nanos);
+    }
+
+
+    /**
+     * Function to add the time of taking a snapshot
+     *
+     * @param nanos The time in nanoseconds
+     */
+    void recordSnapshot(long nanos) {
+        snapshotNanos.addAndGet(nanos);
+    }
+
+
+    /**
+     * Function to add the time of encoding a packet
+     *
+     * @param nanos The time in nanoseconds
+     */
+    void recordEncode(long nanos) {
+        encodeNanos.addAndGet(nanos);
+    }
+
+
+    /**
+     * Function to add the time of writing a datagram, with the compression of the packet
+     *
+     * @param nanos The time in nanoseconds
+     */
+    void recordWrite(long nanos) {
+        sendNanos.addAndGet(nanos);
+    }
+
+
+    /**
+     * Function to add the time of handling a received datagram, an acknowledgement or a packet of a neighbour
+     *
+     * @param nanos The time in nanoseconds
+     */
+    void recordReceive(long nanos) {
+        receiveNanos.addAndGet(nanos);
+    }
+
+
+    /**
+     * Function to add a send datagram
+     *
+     * @param bytes The size of the datagram
+     */
+    void recordSend(int bytes) {
+        packetsSend.incrementAndGet();
+        bytesSend.addAndGet(bytes);
+    }
+
+
+    /**
+     * Function to add a packet that couldn't be send
+     */
+    void recordSendFailure() {
+        sendFailures.incrementAndGet();
+    }
+
+
+    /**
+     * Function to add a sample of a sampler that failed
+     */
+    void recordSamplerFailure() {
+        samplerFailures.incrementAndGet();
+    }
+
+
+    /**
+     * Function to add the memory that the current thread allocated since a start
+     *
+     * @param startBytes The allocated bytes of the thread at the start, from threadAllocatedBytes
+     */
+    void recordAllocation(long startBytes) {
+        if (startBytes >= 0) {
+            long bytes = threadAllocatedBytes();
+            if (bytes >= startBytes) {
+                allocatedBytes.addAndGet(bytes - startBytes);
+            }
+        }
+    }
+
+
+    /**
+     * Function to set the clock sync of the node
+     *
+     * @param clockSync The clock sync, or null if the time is not synchronized
+     */
+    void setClockSync(ClockSync clockSync) {
+        this.clockSync = clockSync;
+    }
+
+
+    /**
+     * Gets the total time spend in the samplers
+     *
+     * @return the time in nanoseconds
+     */
+    public long getSampleTime() {
+        return sampleNanos.get();
+    }
+
+
+    /**
+     * Gets the total time spend in a sampler
+     *
+     * @param sampler The sampler
+     * @return the time in nanoseconds, 0 if the sampler didn't run
+     */
+    public long getSampleTime(Sampler sampler) {
+        SamplerTime time = samplerTimes.get(sampler);
+        return time != null ? time.nanos.get() : 0;
+    }
+
+
+    /**
+     * Gets the total time spend in taking the snapshots of the node
+     *
+     * @return the time in nanoseconds
+     */
+    public long getSnapshotTime() {
+        return snapshotNanos.get();
+    }
+
+
+    /**
+     * Gets the total time spend in encoding the packets
+     *
+     * @return the time in nanoseconds
+     */
+    public long getEncodeTime() {
+        return encodeNanos.get();
+    }
+
+
+    /**
+     * Gets the total time spend in writing the datagrams, including the compression and the retransmits
+     *
+     * @return the time in nanoseconds
+     */
+    public long getSendTime() {
+        return sendNanos.get();
+    }
+
+
+    /**
+     * Gets the total time spend in handling the received acknowledgements and packets of the neighbours
+     *
+     * @return the time in nanoseconds
+     */
+    public long getReceiveTime() {
+        return receiveNanos.get();
+    }
+
+
+    /**
+     * Gets the amount of send datagrams, including batches and retransmits
+     *
+     * @return the amount of datagrams
+     */
+    public long getPacketsSend() {
+        return packetsSend.get();
+    }
+
+
+    /**
+     * Gets the amount of send bytes
+     *
+     * @return the amount of bytes
+     */
+    public long getBytesSend() {
+        return bytesSend.get();
+    }
+
+
+    /**
+     * Gets the amount of packets that couldn't be send, because they were too large or the write failed
+     *
+     * @return the amount of failures
+     */
+    public long getSendFailures() {
+        return sendFailures.get();
+    }
+
+
+    /**
+     * Gets the amount of samples that failed, because a sampler threw an exception
+     *
+     * @return the amount of failures
+     */
+    public long getSamplerFailures() {
+        return samplerFailures.get();
+    }
+
+
+    /**
+     * Gets the memory allocated by the sampler and send threads while they worked for the monitor
+     *
+     * @return the allocated bytes, -1 if the JVM doesn't report the allocated bytes of a thread
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytesMethod != null ? allocatedBytes.get() : -1;
+    }
+
+
+    /**
+     * Gets the amount of threads of the process
+     *
+     * @return the amount of threads, read from /proc/self/stat or else the threads of the current thread group
+     */
+    public synchronized int getThreadCount() {
+        try {
+            processStat.read();
+            if (processStat.skipPastLast(')')) {
+                processStat.skipFields(17);
+                return (int) processStat.nextLong();
+            }
+        } catch (IOException e) {
+            /* Not a Linux system, the estimate of the thread group is used. */
+            processStat.close();
+        }
+        return Thread.activeCount();
+    }
+
+
+    /**
+     * Gets the offset between the monitor and the node of the clock sync
+     *
+     * @return the offset in milliseconds, 0 if the time is not synchronized
+     */
+    public long getClockOffset() {
+        ClockSync clock = clockSync;
+        return clock != null ? clock.getOffset() : 0;
+    }
+
+
+    /**
+     * Gets the uncertainty of the clock offset, half the round trip time of the last time synchronization
+     *
+     * @return the uncertainty in milliseconds, NaN if the time is not synchronized
+     */
+    public double getClockUncertainty() {
+        ClockSync clock = clockSync;
+        return clock != null ? clock.getUncertainty() : Double.NaN;
+    }
+
+
+    /**
+     * Function to set the metrics as custom values on a node, so they are send with the next packet
+     * The times are send in microseconds, the sample time of every sampler as monitorSampleTime:name.
+     *
+     * @param monitorNode The monitor node
+     */
+    public synchronized void updateValues(MonitorNode monitorNode) {
+        if (valuesNode != monitorNode) {
+            valuesNode = monitorNode;
+            sampleTimeValue = monitorNode.registerLongGauge(SAMPLE_TIME);
+            snapshotTimeValue = monitorNode.registerLongGauge(SNAPSHOT_TIME);
+            encodeTimeValue = monitorNode.registerLongGauge(ENCODE_TIME);
+            sendTimeValue = monitorNode.registerLongGauge(SEND_TIME);
+            receiveTimeValue = monitorNode.registerLongGauge(RECEIVE_TIME);
+            packetsSendValue = monitorNode.registerLongGauge(PACKETS_SEND);
+            bytesSendValue = monitorNode.registerLongGauge(BYTES_SEND);
+            sendFailuresValue = monitorNode.registerLongGauge(SEND_FAILURES);
+            samplerFailuresValue = monitorNode.registerLongGauge(SAMPLER_FAILURES);
+            allocatedBytesValue = allocatedBytesMethod != null ? monitorNode.registerLongGauge(ALLOCATED_BYTES) : null;
+            threadsValue = monitorNode.registerLongGauge(THREADS);
+            clockOffsetValue = monitorNode.registerLongGauge(CLOCK_OFFSET);
+            clockUncertaintyValue = monitorNode.registerDoubleGauge(CLOCK_UNCERTAINTY);
+            for (SamplerTime time : samplerTimes.values()) {
+                time.value = null;
+            }
+        }
+        sampleTimeValue.set(getSampleTime() / NANOS_PER_MICRO);
+        snapshotTimeValue.set(getSnapshotTime() / NANOS_PER_MICRO);
+        encodeTimeValue.set(getEncodeTime() / NANOS_PER_MICRO);
+        sendTimeValue.set(getSendTime() / NANOS_PER_MICRO);
+        receiveTimeValue.set(getReceiveTime() / NANOS_PER_MICRO);
+        packetsSendValue.set(getPacketsSend());
+        bytesSendValue.set(getBytesSend());
+        sendFailuresValue.set(getSendFailures());
+        samplerFailuresValue.set(getSamplerFailures());
+        if (allocatedBytesValue != null) {
+            allocatedBytesValue.set(getAllocatedBytes());
+        }
+        threadsValue.set(getThreadCount());
+        clockOffsetValue.set(getClockOffset());
+        clockUncertaintyValue.set(getClockUncertainty());
+
+        for (SamplerTime time : samplerTimes.values()) {
+            if (time.value == null) {
+                time.value = monitorNode.registerLongGauge(SAMPLE_TIME + ":" + time.name);
+            }
+            time.value.set(time.nanos.get() / NANOS_PER_MICRO);
+        }
+    }
+
+
+    /**
+     * Function to get the bytes the current thread allocated since it started
+     *
+     * @return the allocated bytes, -1 if the JVM doesn't report the allocated bytes of a thread
+     */
+    static long threadAllocatedBytes() {
+        if (allocatedBytesMethod == null) {
+            return -1;
+        }
+        try {
+            return (Long) allocatedBytesMethod.invoke(threadBean, Thread.currentThread().getId());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+
+    /**
+     * Gets the name of a sampler, the simple name of its class
+     *
+     * @param sampler The sampler
+     * @return the name of the sampler
+     */
+    private static String samplerName(Sampler sampler) {
+        String name = sampler.getClass().getName();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+
+    /**
+     * Sample time of a sampler and its custom value
+     */
+    private static class SamplerTime {
+        private final String name;
+        private final AtomicLong nanos = new AtomicLong();
+        private LongGauge value = null;
+
+        SamplerTime(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,773 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+
+
+/**
+ * Created on 18-4-2016.
+ */
+public class MonitorNode {
+
+    /* MonitorNode settings*/
+    public static final int DEFAULT_SERIES_CAPACITY = 64;
+    private volatile long monitorTimeOffset = 0;
+    private volatile ClockSync clockSync = null;
+
+    /* node data */
+    private String address;
+    private volatile NodeStatus nodeStatus = NodeStatus.IDLE;
+    private volatile ConcurrentHashMap<String, NeighbourStats> currentNeighbours = new ConcurrentHashMap<>();
+    private final Map<String, Object> customValues = new LinkedHashMap<>();
+    private final CustomValueRegistry customValueRegistry = new CustomValueRegistry();
+
+
+    /* IO stats */
+    private final StripedLongAdder bytesSend = new StripedLongAdder();
+    private final StripedLongAdder bytesRecv = new StripedLongAdder();
+    private final SampleRing ioTotalArray;
+    private final SampleRing ioSendArray;
+    private final SampleRing ioReceivedArray;
+
+    /* Performance and cpu load */
+    private final StripedLongAdder processTicks = new StripedLongAdder();
+    private final SampleRing processArray;
+    private final SampleRing cpuUsageArray;
+    private final SampleRing cpuTotalUsageArray;
+    private final CpuUsageSampler cpuUsageSampler;
+    private final LatencySampler latencySampler;
+
+    /* Rates of the links to the busiest neighbours, null if all neighbours are send */
+    private volatile NeighbourSampler neighbourSampler = null;
+
+    /* Degradations of the packets, to keep the monitor within its overhead budget */
+    private volatile boolean neighbourDetailEnabled = true;
+    private volatile boolean summaryOnly = false;
+
+    /* All the series of the node, in the order they are send */
+    private final int seriesCapacity;
+    private final List<SampleRing> series = new CopyOnWriteArrayList<>();
+
+    /* Sampler engine that collects the series */
+    private final SamplerEngine samplerEngine;
+
+    /* Metrics of the overhead of the monitor itself */
+    private final MonitorMetrics metrics = new MonitorMetrics();
+
+    /* Lock of the snapshots, and the ends of the series of a snapshot that are guarded by it */
+    private final Object snapshotLock = new Object();
+    private long[] seriesEnds = new long[16];
+
+
+    /**
+     * Constructor to create a MonitorNode
+     * The node has its own sampler thread, which is started with start().
+     *
+     * @param address the address of the node
+     */
+    public MonitorNode(String address) {
+        this(address, null);
+    }
+
+
+    /**
+     * Constructor to create a MonitorNode that samples on a shared scheduler
+     *
+     * @param address the address of the node
+     * @param samplerExecutor the shared scheduler, or null to use an own sampler thread
+     */
+    public MonitorNode(String address, ScheduledExecutorService samplerExecutor) {
+        this(address, samplerExecutor, DEFAULT_SERIES_CAPACITY);
+    }
+
+
+    /**
+     * Constructor to create a MonitorNode with a series capacity
+     *
+     * @param address the address of the node
+     * @param samplerExecutor the shared scheduler, or null to use an own sampler thread
+     * @param seriesCapacity the maximum amount of samples of each series that is kept between two packets
+     */
+    public MonitorNode(String address, ScheduledExecutorService samplerExecutor, int seriesCapacity) {
+        this.address = address;
+        this.seriesCapacity = seriesCapacity;
+        this.samplerEngine = new SamplerEngine(this, samplerExecutor);
+
+        /* Creates the default series. */
+        ioTotalArray = createSeries(MonitorSeries.IO_TOTAL.toString());
+        ioReceivedArray = createSeries(MonitorSeries.IO_RECEIVED.toString());
+        ioSendArray = createSeries(MonitorSeries.IO_SEND.toString());
+        processArray = createSeries(MonitorSeries.SPEED.toString());
+        cpuUsageArray = createSeries(MonitorSeries.CPU_USAGE.toString());
+        cpuTotalUsageArray = createSeries(MonitorSeries.CPU_TOTAL_USAGE.toString());
+
+        /* Adds the default samplers. */
+        samplerEngine.addSampler(new IoSampler(this, ioTotalArray, ioSendArray, ioReceivedArray));
+        samplerEngine.addSampler(new ProcessTickSampler(this, processArray));
+        cpuUsageSampler = new CpuUsageSampler(this, cpuUsageArray, cpuTotalUsageArray);
+        samplerEngine.addSampler(cpuUsageSampler);
+        latencySampler = new LatencySampler(this);
+        samplerEngine.addSampler(latencySampler);
+    }
+
+
+    /**
+     * Starts sampling the node information
+     */
+    protected void start(){
+        samplerEngine.start();
+    }
+
+
+    /**
+     * Stops sampling the node information
+     */
+    protected void stop(){
+        samplerEngine.stop();
+    }
+
+
+    /**
+     * Function to set the listener for the failures of the samplers
+     *
+     * @param errorListener The error listener, or null to ignore the errors
+     */
+    public void setErrorListener(MonitorClient.ErrorListener errorListener){
+        samplerEngine.setErrorListener(errorListener);
+    }
+
+
+    /**
+     * Function to set the period on which the node information is sampled
+     *
+     * @param samplePeriod The sample period in milliseconds, default value is 200 milliseconds
+     */
+    public void setSamplePeriod(long samplePeriod){
+        samplerEngine.setPeriod(samplePeriod);
+    }
+
+
+    /**
+     * Function that returns the period on which the node information is sampled
+     *
+     * @return The sample period in milliseconds
+     */
+    public long getSamplePeriod(){
+        return samplerEngine.getPeriod();
+    }
+
+
+    /**
+     * Function to create a series that is send with the default series
+     * Custom samplers can use it to add their own charts.
+     *
+     * @param name the name of the series in the packets
+     * @return the ring buffer of the series
+     */
+    public SampleRing createSeries(String name){
+        SampleRing ring = new SampleRing(name, seriesCapacity);
+        series.add(ring);
+        return ring;
+    }
+
+
+    /**
+     * Function that returns the series of the node, in the order they are send
+     *
+     * @return the series of the node
+     */
+    List<SampleRing> getSeries(){
+        return series;
+    }
+
+
+    /**
+     * Function that returns the amount of samples that were overwritten before they were send
+     * This happens when the series capacity is too small for the sample and monitor intervals.
+     *
+     * @return the amount of overwritten samples of all the series
+     */
+    public long getOverwrittenSamples(){
+        long overwritten = 0;
+        for (int i = 0; i < series.size(); i++){
+            overwritten += series.get(i).getOverwrittenSamples();
+        }
+        return overwritten;
+    }
+
+
+    /**
+     * Function to enable or disable the CPU usage sampler
+     * Simulated nodes that run in one process disable it, they would all read the same /proc files.
+     * It should be called before the node is started.
+     *
+     * @param enabled true to sample the CPU usage, which is the default
+     */
+    void setCpuSamplingEnabled(boolean enabled){
+        samplerEngine.removeSampler(cpuUsageSampler);
+        if (enabled){
+            samplerEngine.addSampler(cpuUsageSampler);
+        } else {
+            cpuUsageSampler.close();
+        }
+    }
+
+
+    /**
+     * Function to send only the busiest neighbours, with the send and receive rate of their links
+     * The busiest neighbours are tracked with a Space-Saving sketch of the recent IO of the links. The other
+     * neighbours are added together in the other series and custom values, so the size of the packets doesn't
+     * grow with the amount of neighbours. It should be called before the node is started.
+     *
+     * @param topNeighbours the amount of neighbours that is send, 0 sends all neighbours without link rates
+     */
+    public synchronized void setTopNeighbours(int topNeighbours){
+        if (topNeighbours < 0){
+            throw new IllegalArgumentException("Top neighbours can't be negative");
+        }
+        NeighbourSampler previous = neighbourSampler;
+        if (previous != null){
+            samplerEngine.removeSampler(previous);
+        }
+        NeighbourSampler sampler = null;
+        if (topNeighbours > 0){
+            sampler = new NeighbourSampler(this, topNeighbours, seriesCapacity);
+            if (neighbourDetailEnabled){
+                samplerEngine.addSampler(sampler);
+            }
+        }
+        neighbourSampler = sampler;
+    }
+
+
+    /**
+     * Function to enable or disable the details of the neighbours in the packets
+     * Without details the neighbours are only send as their amount and their total send and received bytes, in the
+     * otherNeighbours, otherBytesSend and otherBytesRecv custom values, and the link rates are not sampled.
+     *
+     * @param neighbourDetailEnabled Default value is true
+     */
+    public synchronized void setNeighbourDetailEnabled(boolean neighbourDetailEnabled){
+        if (this.neighbourDetailEnabled == neighbourDetailEnabled){
+            return;
+        }
+        this.neighbourDetailEnabled = neighbourDetailEnabled;
+        NeighbourSampler sampler = neighbourSampler;
+        if (sampler != null){
+            if (neighbourDetailEnabled){
+                samplerEngine.addSampler(sampler);
+            } else {
+                samplerEngine.removeSampler(sampler);
+            }
+        }
+    }
+
+
+    /**
+     * Function that returns if the details of the neighbours are send
+     *
+     * @return true if every neighbour is send, false if only their totals are send
+     */
+    public boolean isNeighbourDetailEnabled(){
+        return neighbourDetailEnabled;
+    }
+
+
+    /**
+     * Function to send only a summary of the series
+     * In summary mode every series of a packet has one sample, the average of its samples at the time stamp of
+     * the last sample.
+     *
+     * @param summaryOnly Default value is false
+     */
+    public void setSummaryOnly(boolean summaryOnly){
+        this.summaryOnly = summaryOnly;
+    }
+
+
+    /**
+     * Function that returns if only a summary of the series is send
+     *
+     * @return true if the series are summarized, else false
+     */
+    public boolean isSummaryOnly(){
+        return summaryOnly;
+    }
+
+
+    /**
+     * Function that returns the amount of neighbours that is send
+     *
+     * @return the amount of top neighbours, 0 if all neighbours are send
+     */
+    public int getTopNeighbours(){
+        NeighbourSampler sampler = neighbourSampler;
+        return sampler != null ? sampler.getTopNeighbours() : 0;
+    }
+
+
+    /**
+     * Function to add a custom sampler
+     * The sampler is called on the same tick as the default samplers.
+     *
+     * @param sampler the sampler
+     */
+    public void addSampler(Sampler sampler){
+        samplerEngine.addSampler(sampler);
+    }
+
+
+    /**
+     * Function to remove a sampler
+     *
+     * @param sampler the sampler
+     */
+    public void removeSampler(Sampler sampler){
+        samplerEngine.removeSampler(sampler);
+    }
+
+
+    /**
+     * Function to set the monitor time offset
+     * This offset is used to mach the timestamps of the packets with the monitor.
+     *
+     * @param monitorTimeOffset The time offset of the node compared to the monitor.
+     */
+    protected void setMonitorTimeOffset(long monitorTimeOffset){
+        this.monitorTimeOffset = monitorTimeOffset;
+    }
+
+
+    /**
+     * Function to set the clock sync that converts the node time to the monitor time
+     * The clock sync replaces the fixed monitor time offset and corrects the drift of the node clock.
+     *
+     * @param clockSync The clock sync, or null to use the monitor time offset
+     */
+    protected void setClockSync(ClockSync clockSync){
+        this.clockSync = clockSync;
+        metrics.setClockSync(clockSync);
+    }
+
+
+    /**
+     * Function that returns the metrics of the overhead of the monitor on this node
+     *
+     * @return the metrics of the samplers and the send pipeline of the node
+     */
+    public MonitorMetrics getMetrics(){
+        return metrics;
+    }
+
+
+    /**
+     * Function to convert the node information to JSON
+     * The send pipeline doesn't use this function, it encodes the snapshots directly into its packet buffer.
+     *
+     * @return A JSON string of the node information
+     */
+    protected String getJson(){
+        NodeSnapshot snapshot = new NodeSnapshot();
+        takeSnapshot(snapshot);
+
+        ByteBuffer buffer = ByteBuffer.allocate(PacketSender.MAX_PACKET_SIZE);
+        new JsonPacketEncoder().encodeNode(snapshot, buffer);
+        return new String(buffer.array(), 0, buffer.position(), Charset.forName("UTF-8"));
+    }
+
+
+    /**
+     * Function to take a snapshot of the node information
+     * The samples of the series are moved to the snapshot, so each sample is only send once. All the series are
+     * cut at the same tick, so a snapshot covers the same complete ticks in every series.
+     *
+     * @param snapshot The snapshot, it is cleared first
+     */
+    protected void takeSnapshot(NodeSnapshot snapshot){
+        synchronized (snapshotLock) {
+            snapshot.clear();
+
+            /* Adds the metadata to the snapshot */
+            snapshot.setMetadata(address, nodeStatus.toString(), getMonitorTime());
+
+            /* Reads the ends of all the series at the same tick, without blocking the sampler thread. The samples
+             * of a tick that is running are send with the next snapshot, so every snapshot has complete ticks. */
+            boolean neighbourDetail = neighbourDetailEnabled;
+            NeighbourSampler sampler = neighbourDetail ? neighbourSampler : null;
+            int seriesCount;
+            long epoch;
+            do {
+                epoch = samplerEngine.beginRead();
+                seriesCount = series.size();
+                if (seriesEnds.length < seriesCount){
+                    seriesEnds = new long[seriesCount * 2];
+                }
+                for (int i = 0; i < seriesCount; i++){
+                    seriesEnds[i] = series.get(i).getWriteSequence();
+                }
+                if (sampler != null){
+                    sampler.markEnds();
+                }
+            } while (!samplerEngine.validateRead(epoch));
+
+            /* Adds the chart information to the snapshot */
+            boolean summarize = summaryOnly;
+            for (int i = 0; i < seriesCount; i++){
+                SampleRing ring = series.get(i);
+                NodeSnapshot.Series chart = snapshot.addSeries(ring.getName());
+                ring.drainTo(chart, seriesEnds[i]);
+                if (summarize){
+                    chart.summarize();
+                }
+            }
+
+            /* Adds the neighbours to the snapshot, only their totals, or only the busiest neighbours and their
+             * link series. */
+            if (!neighbourDetail){
+                long totalSend = 0;
+                long totalReceived = 0;
+                for (NeighbourStats neighbour : currentNeighbours.values()){
+                    totalSend += neighbour.bytesSend.sum();
+                    totalReceived += neighbour.bytesReceived.sum();
+                    neighbour.takeDataSend();
+                }
+                snapshot.putCustomValue(NeighbourSampler.OTHER_NEIGHBOURS, (long) currentNeighbours.size());
+                snapshot.putCustomValue(NeighbourSampler.OTHER_BYTES_SEND, totalSend);
+                snapshot.putCustomValue(NeighbourSampler.OTHER_BYTES_RECEIVED, totalReceived);
+            } else if (sampler != null){
+                sampler.takeSnapshot(snapshot, currentNeighbours);
+            } else {
+                for (Map.Entry<String, NeighbourStats> entry : currentNeighbours.entrySet()){
+                    NeighbourStats neighbour = entry.getValue();
+                    snapshot.addNeighbour(entry.getKey(), neighbour.bytesSend.sum(), neighbour.bytesReceived.sum(),
+                            neighbour.takeDataSend());
+                }
+            }
+
+            /* Adds the custom values to the snapshot. */
+            synchronized (customValues) {
+                for (Map.Entry<String, Object> entry : customValues.entrySet()){
+                    snapshot.putCustomValue(entry.getKey(), entry.getValue());
+                }
+            }
+            customValueRegistry.takeSnapshot(snapshot);
+        }
+    }
+
+
+    /**
+     * Function to get the monitor time
+     *
+     * @return The monitor time
+     */
+    long getMonitorTime(){
+        ClockSync clock = clockSync;
+        if (clock != null){
+            return clock.toMonitorTime(System.currentTimeMillis());
+        }
+        return System.currentTimeMillis() - monitorTimeOffset;
+    }
+
+
+    /**
+     * Function that returns the amount of bytes send
+     *
+     * @return the amount of bytes send
+     */
+    long getBytesSend(){
+        return bytesSend.sum();
+    }
+
+
+    /**
+     * Function that returns the amount of bytes received
+     *
+     * @return the amount of bytes received
+     */
+    long getBytesReceived(){
+        return bytesRecv.sum();
+    }
+
+
+    /**
+     * Function that returns the amount of process ticks
+     *
+     * @return the amount of process ticks
+     */
+    long getProcessTicks(){
+        return processTicks.sum();
+    }
+
+
+    /**
+     * Function to record the latency of an operation
+     * The latencies are send as the p50, p90, p99 and max series of the operation, in milliseconds.
+     * This function is lock-free and can be called from multiple threads. Only the first 32 operations are kept.
+     *
+     * @param operation the name of the operation
+     * @param nanos the latency in nanoseconds
+     */
+    public void recordLatency(String operation, long nanos){
+        if (operation == null){
+            return;
+        }
+        LatencyHistogram histogram = latencySampler.getHistogram(operation);
+        if (histogram != null){
+            histogram.record(nanos);
+        }
+    }
+
+
+    /**
+     * Function to start a timer that records the latency of an operation when it is stopped
+     *
+     * @param operation the name of the operation
+     * @return the started timer
+     */
+    public LatencyTimer startTimer(String operation){
+        return new LatencyTimer(this, operation);
+    }
+
+
+    /**
+     * Private function to set the custom value
+     *
+     * @param key the key of the custom value
+     * @param value the value of the custom value
+     * @param <T> the type of the custom value
+     */
+    private <T> void setCustomValuePrivate(String key, T value){
+        /* Values that can't be encoded are ignored, like null keys and NaN or infinite numbers. */
+        if (key == null || (value instanceof Double && (((Double) value).isNaN() || ((Double) value).isInfinite()))) {
+            return;
+        }
+
+        synchronized (customValues) {
+            if (value == null) {
+                this.customValues.remove(key);
+            } else {
+                this.customValues.put(key, value);
+            }
+        }
+    }
+
+
+    /**
+     * Function to set a custom String value
+     *
+     * @param key the key of the custom value
+     * @param value the String value of the custom value
+     */
+    public void setCustomValue(String key, String value){
+        setCustomValuePrivate(key, value);
+    }
+
+
+    /**
+     * Function to set a custom Integer value
+     *
+     * @param key the key of the custom value
+     * @param value the Integer value of the custom value
+     */
+    public void setCustomValue(String key, Integer value){
+        setCustomValuePrivate(key, value);
+    }
+
+
+    /**
+     * Function to set a custom Double value
+     *
+     * @param key the key of the custom value
+     * @param value the Double value of the custom value
+     */
+    public void setCustomValue(String key, Double value){
+        setCustomValuePrivate(key, value);
+    }
+
+
+    /**
+     * Function to set a custom Boolean value
+     *
+     * @param key the key of the custom value
+     * @param value the Boolean value of the custom value
+     */
+    public void setCustomValue(String key, Boolean value){
+        setCustomValuePrivate(key, value);
+    }
+
+
+    /**
+     * Function to set a custom Long value
+     *
+     * @param key the key of the custom value
+     * @param value the Long value of the custom value
+     */
+    public void setCustomValue(String key, Long value){
+        setCustomValuePrivate(key, value);
+    }
+
+
+    /**
+     * Function to register a custom long value that can be set and changed, for instance the length of a queue
+     * The handle is updated without boxing and without locks, so it can be updated thousands of times per second.
+     *
+     * @param key the key of the custom value
+     * @return the handle of the custom value, the same handle if the key is already registered
+     */
+    public LongGauge registerLongGauge(String key){
+        return customValueRegistry.registerLongGauge(key);
+    }
+
+
+    /**
+     * Function to register a custom double value
+     * The handle is updated without boxing and without locks, so it can be updated thousands of times per second.
+     *
+     * @param key the key of the custom value
+     * @return the handle of the custom value, the same handle if the key is already registered
+     */
+    public DoubleGauge registerDoubleGauge(String key){
+        return customValueRegistry.registerDoubleGauge(key);
+    }
+
+
+    /**
+     * Function to register a custom counter, the packets contain the total count
+     * The counter is striped like the IO counters, so it can be incremented from many threads at the same time.
+     *
+     * @param key the key of the custom value
+     * @return the handle of the custom value, the same handle if the key is already registered
+     */
+    public Counter registerCounter(String key){
+        return customValueRegistry.registerCounter(key);
+    }
+
+
+    /**
+     * Function to remove a custom value, set with setCustomValue or registered as a handle
+     *
+     * @param key the key of the custom value
+     */
+    public void removeCustomValue(String key){
+        if (key == null){
+            return;
+        }
+        synchronized (customValues) {
+            customValues.remove(key);
+        }
+        customValueRegistry.unregister(key);
+    }
+
+
+    /**
+     * Function to set the node status
+     *
+     * @param nodeStatus
+     */
+    public void setNodeStatus(NodeStatus nodeStatus) {
+        this.nodeStatus = nodeStatus;
+    }
+
+
+    /**
+     * Function that returns the address of the node
+     *
+     * @return the address of the node
+     */
+    String getAddress() {
+        return address;
+    }
+
+
+    /**
+     * Function that returns the node status
+     *
+     * @return the node status
+     */
+    NodeStatus getNodeStatus() {
+        return nodeStatus;
+    }
+
+
+    /**
+     * Function to set the current neighbours of the node
+     *
+     * @param currentNeighbours
+     */
+    public void setCurrentNeighbours(String[] currentNeighbours) {
+        ConcurrentHashMap<String, NeighbourStats> tmpNeighbours = new ConcurrentHashMap<>();
+        for (String neighbour: currentNeighbours) {
+            NeighbourStats stats = this.currentNeighbours.get(neighbour);
+            if(stats == null){
+                stats = new NeighbourStats();
+            }
+            tmpNeighbours.put(neighbour, stats);
+        }
+        this.currentNeighbours = tmpNeighbours;
+    }
+
+
+    /**
+     * Function that returns the current neighbours of the node
+     *
+     * @return the IO counters of the current neighbours by their address
+     */
+    Map<String, NeighbourStats> getCurrentNeighbours(){
+        return currentNeighbours;
+    }
+
+
+    /**
+     * Function to register data that is send to a neighbour
+     * This function is thread-safe and can be called from multiple network threads.
+     * Data send to an address that is not a current neighbour only counts for the node totals.
+     *
+     * @param address the address of the neighbour
+     * @param byteAmount the byte amount of the data that is send
+     */
+    public void addSendIO(String address, int byteAmount){
+        NeighbourStats neighbour = currentNeighbours.get(address);
+        if(neighbour != null){
+            neighbour.bytesSend.add(byteAmount);
+
+            /* Only writes the flag if it isn't set yet, to keep the cache line shared. */
+            if(!neighbour.dataSend.get()){
+                neighbour.dataSend.set(true);
+            }
+        }
+        bytesSend.add(byteAmount);
+    }
+
+
+    /**
+     * Function to register data that is received from a neighbour
+     * This function is thread-safe and can be called from multiple network threads.
+     * Data received from an address that is not a current neighbour only counts for the node totals.
+     *
+     * @param address the address of the neighbour
+     * @param byteAmount the byte amount of the data that is received
+     */
+    public void addRecieveIO(String address, int byteAmount){
+        NeighbourStats neighbour = currentNeighbours.get(address);
+        if(neighbour != null){
+            neighbour.bytesReceived.add(byteAmount);
+        }
+        bytesRecv.add(byteAmount);
+    }
+
+
+    /**
+     * Function to do a process tick
+     * This is used to measure the relative performance
+     * This function is thread-safe and can be called from multiple threads.
+     */
+    public void incrProcessTicks(){
+        processTicks.increment();
+    }
+}
@@ -0,0 +1,192 @@
+package nl.erlkdev.adhocmonitor;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * MonitorSeries enum to store the chart series of a node
+ * The id is used to identify the series in the binary packet format.
+ *
+ * A family of series has a parameter in its name, between a prefix and a suffix: the number of a CPU core, or
+ * the address of a neighbour or the name of an operation. In the binary packet its id is followed by the
+ * parameter, so only the parameter is send as text.
+ */
+public enum MonitorSeries {
+    /* The default series of a node. */
+    IO_TOTAL("ioTotalChart", 1), IO_RECEIVED("ioRecvChart", 2), IO_SEND("ioSendChart", 3),
+    SPEED("speedChart", 4), CPU_USAGE("cpuUsageChart", 5), CPU_TOTAL_USAGE("cpuTotalUsageChart", 6),
+
+    /* The series of the rate and overhead controllers. */
+    SAMPLE_PERIOD(AdaptiveRateController.SAMPLE_PERIOD_SERIES, 7),
+    SEND_PERIOD(AdaptiveRateController.SEND_PERIOD_SERIES, 8),
+    DEGRADATION(OverheadBudgetController.DEGRADATION_SERIES, 9),
+
+    /* The families of the samplers, the CPU cores have a number as parameter, the others a text. */
+    CPU_CORE_USAGE(CpuUsageSampler.CORE_SERIES_PREFIX, CpuUsageSampler.CORE_SERIES_SUFFIX, true, 16),
+    LINK_SEND(NeighbourSampler.LINK_SEND_PREFIX, "", false, 17),
+    LINK_RECEIVED(NeighbourSampler.LINK_RECEIVED_PREFIX, "", false, 18),
+    LATENCY_P50("latencyP50Chart:", "", false, 19), LATENCY_P90("latencyP90Chart:", "", false, 20),
+    LATENCY_P99("latencyP99Chart:", "", false, 21), LATENCY_MAX("latencyMaxChart:", "", false, 22);
+
+    /* Copy of values(), which creates a new array on every call. */
+    private static final MonitorSeries[] SERIES = values();
+
+    /* Largest amount of digits of a number parameter, so it fits in an int. */
+    private static final int MAX_NUMBER_DIGITS = 9;
+
+    private final String name;
+    private final String suffix;
+    private final boolean numbered;
+    private final int id;
+
+    /**
+     * Constructor for the series enum
+     * @param name The name of the series in the JSON packet
+     * @param id The id of the series in the binary packet
+     */
+    MonitorSeries(String name, int id) {
+        this(name, null, false, id);
+    }
+
+    /**
+     * Constructor for a family of series
+     * @param prefix The part of the name before the parameter
+     * @param suffix The part of the name after the parameter, null for a single series
+     * @param numbered true if the parameter is a number, false if it is a text
+     * @param id The id of the series in the binary packet
+     */
+    MonitorSeries(String prefix, String suffix, boolean numbered, int id) {
+        this.name = prefix;
+        this.suffix = suffix;
+        this.numbered = numbered;
+        this.id = id;
+    }
+
+    /**
+     * Returns the id of the series in the binary packet
+     * @return the id of the series
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns if this is a family of series with a parameter in the name
+     * @return true for a family, false for a single series
+     */
+    public boolean isFamily() {
+        return suffix != null;
+    }
+
+    /**
+     * Returns if the parameter of the family is a number
+     * @return true if the parameter is a number, false if it is a text or there is no parameter
+     */
+    public boolean isNumbered() {
+        return numbered;
+    }
+
+    /**
+     * Returns the position of the parameter in the name of a series of the family
+     * @return the index of the first character of the parameter
+     */
+    public int getParameterStart() {
+        return name.length();
+    }
+
+    /**
+     * Returns the end of the parameter in the name of a series of the family
+     * @param seriesName The name of the series
+     * @return the index after the last character of the parameter
+     */
+    public int getParameterEnd(String seriesName) {
+        return seriesName.length() - suffix.length();
+    }
+
+    /**
+     * Returns the number in the name of a series of a numbered family
+     * @param seriesName The name of the series
+     * @return the number
+     */
+    public int getNumber(String seriesName) {
+        int number = 0;
+        for (int i = getParameterStart(); i < getParameterEnd(seriesName); i++) {
+            number = number * 10 + (seriesName.charAt(i) - '0');
+        }
+        return number;
+    }
+
+    /**
+     * Returns the name of a series of the family
+     * @param parameter The parameter, a number for a numbered family
+     * @return the name of the series
+     */
+    public String getName(String parameter) {
+        return name + parameter + suffix;
+    }
+
+    /**
+     * Checks if a name is the name of this series, or of a series of this family
+     * A number parameter must be written without leading zeros, so the name is the same after decoding.
+     * @param seriesName The name of the series
+     * @return true if the name belongs to the series, else false
+     */
+    private boolean matches(String seriesName) {
+        if (suffix == null) {
+            return name.equals(seriesName);
+        }
+        int start = getParameterStart();
+        int end = getParameterEnd(seriesName);
+        if (end <= start || !seriesName.startsWith(name) || !seriesName.endsWith(suffix)) {
+            return false;
+        }
+        if (!numbered) {
+            return true;
+        }
+        if (end - start > MAX_NUMBER_DIGITS || (seriesName.charAt(start) == '0' && end - start > 1)) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = seriesName.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the series with a certain name
+     * @param name The name of the series
+     * @return the series or the family of the series, or null if there is no series with that name
+     */
+    public static MonitorSeries fromName(String name) {
+        for (MonitorSeries series : SERIES) {
+            if (series.matches(name)) {
+                return series;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the series with a certain id
+     * @param id The id of the series
+     * @return the series, or null if there is no series with that id
+     */
+    public static MonitorSeries fromId(int id) {
+        for (MonitorSeries series : SERIES) {
+            if (series.id == id) {
+                return series;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Converts the MonitorSeries into a string.
+     * @return returns the name of the series in the JSON packet, the prefix of the names for a family
+     */
+    public String toString() {
+        return this.name;
+    }
+}
@@ -0,0 +1,273 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Sampler to collect the send and receive rate of the links to the busiest neighbours.
+ * The busiest neighbours are tracked with a Space-Saving sketch of the recent IO of the links, so a node with
+ * hundreds of neighbours only samples and sends the top neighbours. The rates of the other neighbours are added
+ * together in the other series, and their counters are send as the other custom values.
+ *
+ * Every top neighbour has a slot with its link series. A neighbour that enters the sketch only takes the slot of
+ * the top neighbour with the smallest count when its count is a margin larger, so two neighbours with about the
+ * same traffic don't swap their slot on every tick. The series of a slot are reused for the new neighbour.
+ * The sketch has twice as many slots as there are top neighbours, so a neighbour just below the top keeps its
+ * count instead of being evicted by every newcomer.
+ *
+ * The rates are send as the series linkSendChart:address and linkRecvChart:address, in bytes per millisecond
+ * like the IO series of the node.
+ */
+class NeighbourSampler implements Sampler {
+
+    /* Names of the link series and the custom values of the other neighbours. */
+    static final String LINK_SEND_PREFIX = "linkSendChart:";
+    static final String LINK_RECEIVED_PREFIX = "linkRecvChart:";
+    static final String OTHER = "other";
+    static final String OTHER_NEIGHBOURS = "otherNeighbours";
+    static final String OTHER_BYTES_SEND = "otherBytesSend";
+    static final String OTHER_BYTES_RECEIVED = "otherBytesRecv";
+
+    /* Half-life of the IO in the sketch, the busiest neighbours follow the traffic of the last tens of seconds. */
+    private static final double HALF_LIFE = 10000;
+
+    /* Factor by which the count of a neighbour must exceed the count of a top neighbour to take its slot. */
+    static final double HYSTERESIS = 1.25;
+
+    private final MonitorNode monitorNode;
+    private final int topNeighbours;
+    private final int seriesCapacity;
+    private final HeavyHitterSketch sketch;
+
+    /* Top neighbours and their series, the slots are only changed during a tick. */
+    private int slotCount = 0;
+    private final HashMap<String, Integer> slotIndexes;
+    private final String[] slotAddresses;
+    private final SampleRing[] slotSend;
+    private final SampleRing[] slotReceived;
+    private final SampleRing otherSend;
+    private final SampleRing otherReceived;
+
+    /* Link series and their ends at the tick of the snapshot, only used by the thread that takes the snapshot. */
+    private int markedSize = 0;
+    private final String[] markedAddresses;
+    private final SampleRing[] markedSend;
+    private final SampleRing[] markedReceived;
+    private final long[] markedSendEnds;
+    private final long[] markedReceivedEnds;
+    private long otherSendEnd = 0;
+    private long otherReceivedEnd = 0;
+
+
+    /**
+     * Constructor for the neighbour sampler
+     *
+     * @param monitorNode The monitor node
+     * @param topNeighbours The amount of neighbours that is send
+     * @param seriesCapacity The capacity of the link series
+     */
+    NeighbourSampler(MonitorNode monitorNode, int topNeighbours, int seriesCapacity) {
+        this.monitorNode = monitorNode;
+        this.topNeighbours = topNeighbours;
+        this.seriesCapacity = seriesCapacity;
+        this.sketch = new HeavyHitterSketch(topNeighbours * 2);
+        this.slotIndexes = new HashMap<>(topNeighbours * 2);
+        this.slotAddresses = new String[topNeighbours];
+        this.slotSend = new SampleRing[topNeighbours];
+        this.slotReceived = new SampleRing[topNeighbours];
+        this.otherSend = new SampleRing(LINK_SEND_PREFIX + OTHER, seriesCapacity);
+        this.otherReceived = new SampleRing(LINK_RECEIVED_PREFIX + OTHER, seriesCapacity);
+        this.markedAddresses = new String[topNeighbours];
+        this.markedSend = new SampleRing[topNeighbours];
+        this.markedReceived = new SampleRing[topNeighbours];
+        this.markedSendEnds = new long[topNeighbours];
+        this.markedReceivedEnds = new long[topNeighbours];
+    }
+
+
+    @Override
+    public synchronized void reset() {
+        for (NeighbourStats neighbour : monitorNode.getCurrentNeighbours().values()) {
+            neighbour.lastSend = neighbour.bytesSend.sum();
+            neighbour.lastReceived = neighbour.bytesReceived.sum();
+        }
+    }
+
+
+    @Override
+    public synchronized void sample(long timeStamp, long elapsed) {
+        Map<String, NeighbourStats> neighbours = monitorNode.getCurrentNeighbours();
+
+        /* Adds the IO of the links since the previous tick to the sketch. */
+        sketch.decay(Math.pow(0.5, elapsed / HALF_LIFE));
+        for (Map.Entry<String, NeighbourStats> entry : neighbours.entrySet()) {
+            NeighbourStats neighbour = entry.getValue();
+            long send = neighbour.bytesSend.sum();
+            long received = neighbour.bytesReceived.sum();
+            neighbour.tickSend = send - neighbour.lastSend;
+            neighbour.tickReceived = received - neighbour.lastReceived;
+            neighbour.lastSend = send;
+            neighbour.lastReceived = received;
+
+            long bytes = neighbour.tickSend + neighbour.tickReceived;
+            if (bytes > 0) {
+                sketch.offer(entry.getKey(), bytes);
+            }
+        }
+
+        updateSlots();
+
+        /* Calculates the rates in bytes per millisecond. */
+        long otherSendBytes = 0;
+        long otherReceivedBytes = 0;
+        for (Map.Entry<String, NeighbourStats> entry : neighbours.entrySet()) {
+            NeighbourStats neighbour = entry.getValue();
+            Integer slot = slotIndexes.get(entry.getKey());
+            if (slot != null) {
+                slotSend[slot].add(timeStamp, (double) neighbour.tickSend / (double) elapsed);
+                slotReceived[slot].add(timeStamp, (double) neighbour.tickReceived / (double) elapsed);
+            } else {
+                otherSendBytes += neighbour.tickSend;
+                otherReceivedBytes += neighbour.tickReceived;
+            }
+        }
+        otherSend.add(timeStamp, (double) otherSendBytes / (double) elapsed);
+        otherReceived.add(timeStamp, (double) otherReceivedBytes / (double) elapsed);
+    }
+
+
+    /**
+     * Gives the neighbours in the sketch a slot
+     * A neighbour gets a free slot, or the slot of the top neighbour with the smallest count when its own count is
+     * larger by the hysteresis factor. The series of the slot are renamed, the samples of the old neighbour that
+     * aren't send yet are discarded.
+     */
+    private void updateSlots() {
+        for (int i = 0; i < sketch.size(); i++) {
+            String address = sketch.getKey(i);
+            if (slotIndexes.containsKey(address)) {
+                continue;
+            }
+
+            if (slotCount < topNeighbours) {
+                slotAddresses[slotCount] = address;
+                slotSend[slotCount] = new SampleRing(LINK_SEND_PREFIX + address, seriesCapacity);
+                slotReceived[slotCount] = new SampleRing(LINK_RECEIVED_PREFIX + address, seriesCapacity);
+                slotIndexes.put(address, slotCount);
+                slotCount++;
+                continue;
+            }
+
+            /* A top neighbour that left the sketch has no count, so it is always replaced. */
+            int min = 0;
+            double minCount = Double.MAX_VALUE;
+            for (int j = 0; j < slotCount; j++) {
+                int index = sketch.indexOf(slotAddresses[j]);
+                double count = index >= 0 ? sketch.getCount(index) : 0;
+                if (count < minCount) {
+                    min = j;
+                    minCount = count;
+                }
+            }
+            if (sketch.getCount(i) > minCount * HYSTERESIS) {
+                slotIndexes.remove(slotAddresses[min]);
+                slotAddresses[min] = address;
+                slotSend[min].rename(LINK_SEND_PREFIX + address);
+                slotReceived[min].rename(LINK_RECEIVED_PREFIX + address);
+                slotIndexes.put(address, min);
+            }
+        }
+    }
+
+
+    /**
+     * Function to mark the link series and their ends for the next snapshot
+     * It doesn't lock, so it must be called between beginRead and validateRead of the sampler engine: the slots
+     * are only changed during a tick.
+     */
+    void markEnds() {
+        markedSize = slotCount;
+        for (int i = 0; i < markedSize; i++) {
+            markedAddresses[i] = slotAddresses[i];
+            markedSend[i] = slotSend[i];
+            markedReceived[i] = slotReceived[i];
+            markedSendEnds[i] = slotSend[i].getWriteSequence();
+            markedReceivedEnds[i] = slotReceived[i].getWriteSequence();
+        }
+        otherSendEnd = otherSend.getWriteSequence();
+        otherReceivedEnd = otherReceived.getWriteSequence();
+    }
+
+
+    /**
+     * Function to add the link series and the top neighbours to a snapshot
+     * The link series are moved up to the ends of the last markEnds. The neighbours in the sketch are added first,
+     * the remaining places are filled with the other neighbours. The neighbours that don't fit are added together
+     * in the other custom values.
+     *
+     * @param snapshot The snapshot
+     * @param neighbours The current neighbours of the node
+     */
+    synchronized void takeSnapshot(NodeSnapshot snapshot, Map<String, NeighbourStats> neighbours) {
+        for (int i = 0; i < markedSize; i++) {
+            /* A slot that got another neighbour after the mark has discarded the samples of the old neighbour. */
+            if (markedAddresses[i].equals(slotAddresses[i]) && neighbours.containsKey(markedAddresses[i])) {
+                markedSend[i].drainTo(snapshot.addSeries(markedSend[i].getName()), markedSendEnds[i]);
+                markedReceived[i].drainTo(snapshot.addSeries(markedReceived[i].getName()), markedReceivedEnds[i]);
+            }
+        }
+        otherSend.drainTo(snapshot.addSeries(otherSend.getName()), otherSendEnd);
+        otherReceived.drainTo(snapshot.addSeries(otherReceived.getName()), otherReceivedEnd);
+
+        int reported = 0;
+        for (int i = 0; i < slotCount; i++) {
+            NeighbourStats neighbour = neighbours.get(slotAddresses[i]);
+            if (neighbour != null) {
+                addNeighbour(snapshot, slotAddresses[i], neighbour);
+                reported++;
+            }
+        }
+
+        int otherNeighbours = 0;
+        long otherBytesSend = 0;
+        long otherBytesReceived = 0;
+        for (Map.Entry<String, NeighbourStats> entry : neighbours.entrySet()) {
+            if (slotIndexes.containsKey(entry.getKey())) {
+                continue;
+            }
+            NeighbourStats neighbour = entry.getValue();
+            if (reported < topNeighbours) {
+                addNeighbour(snapshot, entry.getKey(), neighbour);
+                reported++;
+            } else {
+                otherNeighbours++;
+                otherBytesSend += neighbour.bytesSend.sum();
+                otherBytesReceived += neighbour.bytesReceived.sum();
+                neighbour.takeDataSend();
+            }
+        }
+        if (otherNeighbours > 0) {
+            snapshot.putCustomValue(OTHER_NEIGHBOURS, (long) otherNeighbours);
+            snapshot.putCustomValue(OTHER_BYTES_SEND, otherBytesSend);
+            snapshot.putCustomValue(OTHER_BYTES_RECEIVED, otherBytesReceived);
+        }
+    }
+
+
+    /**
+     * Gets the amount of neighbours that is send
+     *
+     * @return the amount of top neighbours
+     */
+    int getTopNeighbours() {
+        return topNeighbours;
+    }
+
+
+    private static void addNeighbour(NodeSnapshot snapshot, String address, NeighbourStats neighbour) {
+        snapshot.addNeighbour(address, neighbour.bytesSend.sum(), neighbour.bytesReceived.sum(),
+                neighbour.takeDataSend());
+    }
+}
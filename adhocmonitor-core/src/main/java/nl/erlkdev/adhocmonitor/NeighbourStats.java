@@ -0,0 +1,38 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * IO counters of a single neighbour of the node.
+ */
+class NeighbourStats {
+
+    /* Neighbours have a lot less traffic than the node itself, so they use less stripes. */
+    private static final int STRIPES = 2;
+
+    final StripedLongAdder bytesSend = new StripedLongAdder(STRIPES);
+    final StripedLongAdder bytesReceived = new StripedLongAdder(STRIPES);
+
+    /* Set when data is send to the neighbour since the last packet. */
+    final AtomicBoolean dataSend = new AtomicBoolean();
+
+    /* Counters of the previous tick and the bytes of the last tick, only used by the neighbour sampler. */
+    long lastSend = 0;
+    long lastReceived = 0;
+    long tickSend = 0;
+    long tickReceived = 0;
+
+
+    /**
+     * Function to read and clear the data send flag in one step
+     * A send that happens after the flag is read sets it again for the next packet.
+     *
+     * @return true if data is send to the neighbour since the previous call
+     */
+    boolean takeDataSend() {
+        /* Only writes the flag if it is set, to keep the cache line shared. */
+        return dataSend.get() && dataSend.getAndSet(false);
+    }
+}
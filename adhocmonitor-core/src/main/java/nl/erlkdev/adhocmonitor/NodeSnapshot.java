@@ -0,0 +1,571 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Snapshot of the node information that is send in a single packet.
+ * The packet encoders write a snapshot and the packet decoders read it back, so the monitor side
+ * can use the same data model as the node.
+ *
+ * A snapshot can be reused: clear() keeps the allocated arrays.
+ *
+ * A delta snapshot only contains the neighbours and custom values that changed since its base snapshot
+ * (a keyframe), and lists the neighbours and custom values that are removed since the base snapshot.
+ */
+public class NodeSnapshot {
+
+    /* Metadata */
+    private String address;
+    private String status;
+    private long timeStamp;
+
+    /* Sequence numbers, -1 if not set. The base sequence is the sequence of the keyframe of a delta. */
+    private long sequence = -1;
+    private long baseSequence = -1;
+
+    /* Set if the sender wants an acknowledgement of the packet. */
+    private boolean ackRequested = false;
+
+    /* Addresses of the aggregators that relayed the snapshot, from the node up, null if it is send directly. */
+    private String relay = null;
+
+    /* Chart series */
+    private Series[] series = new Series[0];
+    private int seriesCount = 0;
+
+    /* Neighbours */
+    private String[] neighbourAddresses = new String[4];
+    private long[] neighbourBytesSend = new long[4];
+    private long[] neighbourBytesReceived = new long[4];
+    private boolean[] neighbourDataSend = new boolean[4];
+    private int neighbourCount = 0;
+
+    /* Custom values */
+    private final Map<String, Object> customValues = new LinkedHashMap<>();
+
+    /* Neighbours and custom values that are removed since the base snapshot of a delta */
+    private final List<String> removedNeighbours = new ArrayList<>();
+    private final List<String> removedCustomValues = new ArrayList<>();
+
+
+    /**
+     * Clears the snapshot, so it can be reused
+     */
+    public void clear() {
+        address = null;
+        status = null;
+        timeStamp = 0;
+        sequence = -1;
+        baseSequence = -1;
+        ackRequested = false;
+        relay = null;
+        for (int i = 0; i < seriesCount; i++) {
+            series[i].clear();
+        }
+        seriesCount = 0;
+        Arrays.fill(neighbourAddresses, 0, neighbourCount, null);
+        neighbourCount = 0;
+        customValues.clear();
+        removedNeighbours.clear();
+        removedCustomValues.clear();
+    }
+
+
+    /**
+     * Copies another snapshot into this snapshot
+     *
+     * @param other The snapshot to copy
+     */
+    public void copyFrom(NodeSnapshot other) {
+        copyFrom(other, 0, 1, 1);
+    }
+
+
+    /**
+     * Copies another snapshot into this snapshot with only a slice of the samples of every series
+     * The samples are divided over the slices in order, so the slices of a snapshot together contain every sample once.
+     *
+     * @param other The snapshot to copy
+     * @param sliceFrom The first slice to copy
+     * @param sliceTo The slice after the last slice to copy
+     * @param slices The amount of slices the samples are divided in
+     */
+    void copyFrom(NodeSnapshot other, long sliceFrom, long sliceTo, long slices) {
+        clear();
+        setMetadata(other.address, other.status, other.timeStamp);
+        setSequence(other.sequence, other.baseSequence);
+        ackRequested = other.ackRequested;
+        relay = other.relay;
+        for (int i = 0; i < other.seriesCount; i++) {
+            Series source = other.series[i];
+            Series target = addSeries(source.name);
+            int to = (int) (source.count * sliceTo / slices);
+            for (int j = (int) (source.count * sliceFrom / slices); j < to; j++) {
+                target.add(source.timeStamps[j], source.values[j]);
+            }
+        }
+        for (int i = 0; i < other.neighbourCount; i++) {
+            addNeighbour(other.neighbourAddresses[i], other.neighbourBytesSend[i], other.neighbourBytesReceived[i],
+                    other.neighbourDataSend[i]);
+        }
+        customValues.putAll(other.customValues);
+        removedNeighbours.addAll(other.removedNeighbours);
+        removedCustomValues.addAll(other.removedCustomValues);
+    }
+
+
+    /**
+     * Function to set the metadata of the snapshot
+     *
+     * @param address The address of the node
+     * @param status The status of the node
+     * @param timeStamp The monitor time of the snapshot
+     */
+    public void setMetadata(String address, String status, long timeStamp) {
+        this.address = address;
+        this.status = status;
+        this.timeStamp = timeStamp;
+    }
+
+
+    /**
+     * Function to set the sequence numbers of the snapshot
+     *
+     * @param sequence The sequence number of the packet
+     * @param baseSequence The sequence number of the keyframe a delta is based on, equal to the sequence for a keyframe
+     */
+    public void setSequence(long sequence, long baseSequence) {
+        this.sequence = sequence;
+        this.baseSequence = baseSequence;
+    }
+
+
+    /**
+     * Function to request an acknowledgement of the packet, used by the reliable mode of the packet sender
+     *
+     * @param ackRequested true if the receiver should acknowledge the sequence number of the packet
+     */
+    public void setAckRequested(boolean ackRequested) {
+        this.ackRequested = ackRequested;
+    }
+
+
+    /**
+     * Function to set the aggregators that relayed the snapshot, used by the telemetry aggregator
+     *
+     * @param relay The addresses of the aggregators from the node up, separated by commas, or null if it is send directly
+     */
+    public void setRelay(String relay) {
+        this.relay = relay;
+    }
+
+
+    /**
+     * Adds a series to the snapshot
+     *
+     * @param name The name of the series
+     * @return The series, to which the samples can be added
+     */
+    public Series addSeries(String name) {
+        if (seriesCount == series.length) {
+            series = Arrays.copyOf(series, seriesCount + 8);
+        }
+        if (series[seriesCount] == null) {
+            series[seriesCount] = new Series();
+        }
+        Series result = series[seriesCount++];
+        result.name = name;
+        return result;
+    }
+
+
+    /**
+     * Adds a neighbour to the snapshot
+     *
+     * @param address The address of the neighbour
+     * @param bytesSend The amount of bytes send to the neighbour
+     * @param bytesReceived The amount of bytes received from the neighbour
+     * @param dataSend true if data is send to the neighbour since the previous snapshot
+     */
+    public void addNeighbour(String address, long bytesSend, long bytesReceived, boolean dataSend) {
+        if (neighbourCount == neighbourAddresses.length) {
+            int size = neighbourCount * 2;
+            neighbourAddresses = Arrays.copyOf(neighbourAddresses, size);
+            neighbourBytesSend = Arrays.copyOf(neighbourBytesSend, size);
+            neighbourBytesReceived = Arrays.copyOf(neighbourBytesReceived, size);
+            neighbourDataSend = Arrays.copyOf(neighbourDataSend, size);
+        }
+        neighbourAddresses[neighbourCount] = address;
+        neighbourBytesSend[neighbourCount] = bytesSend;
+        neighbourBytesReceived[neighbourCount] = bytesReceived;
+        neighbourDataSend[neighbourCount] = dataSend;
+        neighbourCount++;
+    }
+
+
+    /**
+     * Moves a neighbour to a lower index, used to remove neighbours from the snapshot
+     *
+     * @param from The index of the neighbour
+     * @param to The new index of the neighbour
+     */
+    void moveNeighbour(int from, int to) {
+        neighbourAddresses[to] = neighbourAddresses[from];
+        neighbourBytesSend[to] = neighbourBytesSend[from];
+        neighbourBytesReceived[to] = neighbourBytesReceived[from];
+        neighbourDataSend[to] = neighbourDataSend[from];
+    }
+
+
+    /**
+     * Removes the neighbours from an index
+     *
+     * @param count The new amount of neighbours
+     */
+    void truncateNeighbours(int count) {
+        Arrays.fill(neighbourAddresses, count, neighbourCount, null);
+        neighbourCount = count;
+    }
+
+
+    /**
+     * Adds a neighbour that is removed since the base snapshot
+     *
+     * @param address The address of the neighbour
+     */
+    public void addRemovedNeighbour(String address) {
+        removedNeighbours.add(address);
+    }
+
+
+    /**
+     * Adds a custom value that is removed since the base snapshot
+     *
+     * @param key The key of the custom value
+     */
+    public void addRemovedCustomValue(String key) {
+        removedCustomValues.add(key);
+    }
+
+
+    /**
+     * Function to set a custom value
+     *
+     * @param key The key of the custom value
+     * @param value The value, a String, Integer, Long, Double or Boolean
+     */
+    public void putCustomValue(String key, Object value) {
+        customValues.put(key, value);
+    }
+
+
+    /**
+     * Gets the address of the node
+     *
+     * @return the address of the node
+     */
+    public String getAddress() {
+        return address;
+    }
+
+
+    /**
+     * Gets the status of the node
+     *
+     * @return the status of the node
+     */
+    public String getStatus() {
+        return status;
+    }
+
+
+    /**
+     * Gets the monitor time of the snapshot
+     *
+     * @return the monitor time of the snapshot
+     */
+    public long getTimeStamp() {
+        return timeStamp;
+    }
+
+
+    /**
+     * Gets the sequence number of the packet
+     *
+     * @return the sequence number, or -1 if the packet has no sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+
+    /**
+     * Gets the sequence number of the keyframe a delta is based on
+     *
+     * @return the base sequence number, equal to the sequence number for a keyframe
+     */
+    public long getBaseSequence() {
+        return baseSequence;
+    }
+
+
+    /**
+     * Returns if the sender wants an acknowledgement of the packet
+     *
+     * @return true if the sequence number of the packet should be acknowledged, else false
+     */
+    public boolean isAckRequested() {
+        return ackRequested;
+    }
+
+
+    /**
+     * Returns the aggregators that relayed the snapshot
+     *
+     * @return the addresses of the aggregators from the node up, separated by commas, or null if it is send directly
+     */
+    public String getRelay() {
+        return relay;
+    }
+
+
+    /**
+     * Returns if the snapshot is a delta of a keyframe
+     *
+     * @return true if the snapshot is a delta, else false
+     */
+    public boolean isDelta() {
+        return baseSequence >= 0 && baseSequence != sequence;
+    }
+
+
+    /**
+     * Gets the amount of series in the snapshot
+     *
+     * @return the amount of series
+     */
+    public int getSeriesCount() {
+        return seriesCount;
+    }
+
+
+    /**
+     * Gets a series of the snapshot
+     *
+     * @param index The index of the series
+     * @return the series
+     */
+    public Series getSeries(int index) {
+        return series[index];
+    }
+
+
+    /**
+     * Gets the amount of neighbours in the snapshot
+     *
+     * @return the amount of neighbours
+     */
+    public int getNeighbourCount() {
+        return neighbourCount;
+    }
+
+
+    /**
+     * Gets the address of a neighbour
+     *
+     * @param index The index of the neighbour
+     * @return the address of the neighbour
+     */
+    public String getNeighbourAddress(int index) {
+        return neighbourAddresses[index];
+    }
+
+
+    /**
+     * Gets the amount of bytes send to a neighbour
+     *
+     * @param index The index of the neighbour
+     * @return the amount of bytes send to the neighbour
+     */
+    public long getNeighbourBytesSend(int index) {
+        return neighbourBytesSend[index];
+    }
+
+
+    /**
+     * Gets the amount of bytes received from a neighbour
+     *
+     * @param index The index of the neighbour
+     * @return the amount of bytes received from the neighbour
+     */
+    public long getNeighbourBytesReceived(int index) {
+        return neighbourBytesReceived[index];
+    }
+
+
+    /**
+     * Returns if data is send to a neighbour since the previous snapshot
+     *
+     * @param index The index of the neighbour
+     * @return true if data is send to the neighbour, else false
+     */
+    public boolean isNeighbourDataSend(int index) {
+        return neighbourDataSend[index];
+    }
+
+
+    /**
+     * Gets the custom values of the node
+     *
+     * @return the custom values
+     */
+    public Map<String, Object> getCustomValues() {
+        return customValues;
+    }
+
+
+    /**
+     * Gets the neighbours that are removed since the base snapshot
+     *
+     * @return the addresses of the removed neighbours
+     */
+    public List<String> getRemovedNeighbours() {
+        return removedNeighbours;
+    }
+
+
+    /**
+     * Gets the custom values that are removed since the base snapshot
+     *
+     * @return the keys of the removed custom values
+     */
+    public List<String> getRemovedCustomValues() {
+        return removedCustomValues;
+    }
+
+
+    /**
+     * A series of time value pairs in a snapshot
+     */
+    public static class Series {
+        private String name;
+        private long[] timeStamps = new long[16];
+        private double[] values = new double[16];
+        private int count = 0;
+
+        /**
+         * Adds a sample to the series
+         *
+         * @param timeStamp The time stamp of the sample
+         * @param value The value of the sample
+         */
+        public void add(long timeStamp, double value) {
+            if (count == timeStamps.length) {
+                timeStamps = Arrays.copyOf(timeStamps, count * 2);
+                values = Arrays.copyOf(values, count * 2);
+            }
+            timeStamps[count] = timeStamp;
+            values[count] = value;
+            count++;
+        }
+
+        /**
+         * Removes a range of samples from the series
+         *
+         * @param from The index of the first sample to remove
+         * @param to The index after the last sample to remove
+         */
+        void removeRange(int from, int to) {
+            System.arraycopy(timeStamps, to, timeStamps, from, count - to);
+            System.arraycopy(values, to, values, from, count - to);
+            count -= to - from;
+        }
+
+        /**
+         * Replaces the samples by one sample with their average value, at the time stamp of the last sample
+         */
+        void summarize() {
+            if (count <= 1) {
+                return;
+            }
+            double sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += values[i];
+            }
+            timeStamps[0] = timeStamps[count - 1];
+            values[0] = sum / count;
+            count = 1;
+        }
+
+        /**
+         * Sorts the samples on their time stamps
+         * This is an insertion sort, because the samples are almost always in order already.
+         */
+        void sortByTimeStamp() {
+            for (int i = 1; i < count; i++) {
+                long timeStamp = timeStamps[i];
+                double value = values[i];
+                int j = i;
+                while (j > 0 && timeStamps[j - 1] > timeStamp) {
+                    timeStamps[j] = timeStamps[j - 1];
+                    values[j] = values[j - 1];
+                    j--;
+                }
+                timeStamps[j] = timeStamp;
+                values[j] = value;
+            }
+        }
+
+        /**
+         * Clears the series, so it can be reused
+         */
+        void clear() {
+            name = null;
+            count = 0;
+        }
+
+        /**
+         * Gets the name of the series
+         *
+         * @return the name of the series
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the amount of samples in the series
+         *
+         * @return the amount of samples
+         */
+        public int size() {
+            return count;
+        }
+
+        /**
+         * Gets the time stamp of a sample
+         *
+         * @param index The index of the sample
+         * @return the time stamp of the sample
+         */
+        public long getTimeStamp(int index) {
+            return timeStamps[index];
+        }
+
+        /**
+         * Gets the value of a sample
+         *
+         * @param index The index of the sample
+         * @return the value of the sample
+         */
+        public double getValue(int index) {
+            return values[index];
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package nl.erlkdev.adhocmonitor;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Sampler that keeps the overhead of the monitor within a CPU and bandwidth budget.
+ *
+ * On every evaluation interval the controller reads the monitor metrics of the node: the time spend in the
+ * samplers, the snapshots, the encoding, the sending (with the compression and the retransmits) and the handling
+ * of the acknowledgements and relayed packets relative to the elapsed time, and the send bytes per second. When the
+ * monitor goes over a budget, it degrades one step further, in a fixed order:
+ * 1. the neighbours are only send as their totals, without the details of every neighbour
+ * 2. the sample period is multiplied by the slowdown factor
+ * 3. the send period is multiplied by the slowdown factor
+ * 4. only a summary of the series is send, one average sample per series in every packet
+ * When the overhead stayed below half of the budgets for the hold time, the controller recovers one step.
+ *
+ * Every step is passed to the degradation listener and added to the degradationChart series of the node, so the
+ * monitor sees when the data of the node is degraded. A budget of 0 is not enforced.
+ */
+public class OverheadBudgetController implements Sampler {
+
+    /* Name of the series with the degradation step of the controller. */
+    public static final String DEGRADATION_SERIES = "degradationChart";
+
+    /* Default settings */
+    public static final long DEFAULT_EVALUATION_INTERVAL = 5000;
+    public static final long DEFAULT_HOLD_TIME = 30000;
+    public static final int SLOWDOWN_FACTOR = 4;
+
+    /* Part of the budgets the overhead has to stay below before the controller recovers. */
+    private static final double RECOVERY_FRACTION = 0.5;
+
+    private static final double NANOS_PER_SECOND = 1000000000.0;
+
+    /**
+     * The degradation steps, in the order they are taken.
+     */
+    public enum Degradation {
+        NONE, NEIGHBOUR_DETAIL, SAMPLE_RATE, SEND_RATE, SUMMARY
+    }
+
+    private final MonitorNode monitorNode;
+    private final MonitorMetrics metrics;
+    private final double cpuBudget;
+    private final long bandwidthBudget;
+    private final long samplePeriod;
+    private final long sendPeriod;
+    private final AdaptiveRateController rateController;
+    private final SampleRing degradationArray;
+
+    /* Settings */
+    private volatile long evaluationInterval = DEFAULT_EVALUATION_INTERVAL;
+    private volatile long holdTime = DEFAULT_HOLD_TIME;
+    private volatile AdaptiveRateController.SendPeriodListener sendPeriodListener = null;
+    private volatile DegradationListener degradationListener = null;
+
+    /* State, only changed on the sampler thread. */
+    private volatile Degradation degradation = Degradation.NONE;
+    private volatile double cpuUsage = 0;
+    private volatile double bandwidth = 0;
+    private volatile long degradations = 0;
+    private volatile long recoveries = 0;
+    private long windowStart;
+    private long lastWork;
+    private long lastBytes;
+    private long lastChange;
+
+
+    /**
+     * Constructor for the overhead budget controller
+     *
+     * @param monitorNode The monitor node
+     * @param cpuBudget The maximum part of one core the monitor may use, for instance 0.01 for 1%, 0 to not enforce it
+     * @param bandwidthBudget The maximum amount of bytes per second the monitor may send, 0 to not enforce it
+     * @param samplePeriod The sample period in milliseconds without degradation
+     * @param sendPeriod The send period in milliseconds without degradation
+     * @param rateController The adaptive rate controller that sets the sample period, or null
+     */
+    public OverheadBudgetController(MonitorNode monitorNode, double cpuBudget, long bandwidthBudget,
+                                    long samplePeriod, long sendPeriod, AdaptiveRateController rateController) {
+        if (cpuBudget < 0 || bandwidthBudget < 0) {
+            throw new IllegalArgumentException("Budgets can't be negative");
+        }
+        if (samplePeriod <= 0 || sendPeriod <= 0) {
+            throw new IllegalArgumentException("Periods must be positive");
+        }
+        this.monitorNode = monitorNode;
+        this.metrics = monitorNode.getMetrics();
+        this.cpuBudget = cpuBudget;
+        this.bandwidthBudget = bandwidthBudget;
+        this.samplePeriod = samplePeriod;
+        this.sendPeriod = sendPeriod;
+        this.rateController = rateController;
+        this.degradationArray = monitorNode.createSeries(DEGRADATION_SERIES);
+    }
+
+
+    @Override
+    public void reset() {
+        windowStart = System.nanoTime();
+        lastWork = getWork();
+        lastBytes = metrics.getBytesSend();
+        lastChange = monitorNode.getMonitorTime();
+    }
+
+
+    @Override
+    public void sample(long timeStamp, long elapsed) {
+        /* The adaptive rate controller can lower the sample period while it is degraded. */
+        Degradation current = degradation;
+        if (current.compareTo(Degradation.SAMPLE_RATE) >= 0) {
+            long degradedPeriod = getDegradedSamplePeriod();
+            if (monitorNode.getSamplePeriod() < degradedPeriod) {
+                monitorNode.setSamplePeriod(degradedPeriod);
+            }
+        }
+        degradationArray.add(timeStamp, current.ordinal());
+
+        /* The window holds at least two sends, so the bandwidth isn't measured between two sends. */
+        long now = System.nanoTime();
+        long window = now - windowStart;
+        long currentSendPeriod = Math.max(sendPeriod, getMinSendPeriod());
+        if (window < Math.max(evaluationInterval, 2 * currentSendPeriod) * 1000000L) {
+            return;
+        }
+        long work = getWork();
+        long bytes = metrics.getBytesSend();
+        cpuUsage = (double) (work - lastWork) / (double) window;
+        bandwidth = (double) (bytes - lastBytes) * NANOS_PER_SECOND / (double) window;
+        windowStart = now;
+        lastWork = work;
+        lastBytes = bytes;
+
+        boolean over = (cpuBudget > 0 && cpuUsage > cpuBudget)
+                || (bandwidthBudget > 0 && bandwidth > bandwidthBudget);
+        boolean under = (cpuBudget == 0 || cpuUsage < cpuBudget * RECOVERY_FRACTION)
+                && (bandwidthBudget == 0 || bandwidth < bandwidthBudget * RECOVERY_FRACTION);
+        if (over) {
+            lastChange = timeStamp;
+            if (current != Degradation.SUMMARY) {
+                degradations++;
+                apply(Degradation.values()[current.ordinal() + 1]);
+            }
+        } else if (under && current != Degradation.NONE && timeStamp - lastChange >= holdTime) {
+            lastChange = timeStamp;
+            recoveries++;
+            apply(Degradation.values()[current.ordinal() - 1]);
+        }
+    }
+
+
+    /**
+     * Changes the degradation step of the node
+     *
+     * @param step The new degradation step
+     */
+    private void apply(Degradation step) {
+        Degradation previous = degradation;
+        degradation = step;
+
+        monitorNode.setNeighbourDetailEnabled(step == Degradation.NONE);
+        if (step.compareTo(Degradation.SAMPLE_RATE) >= 0) {
+            monitorNode.setSamplePeriod(getDegradedSamplePeriod());
+        } else if (previous.compareTo(Degradation.SAMPLE_RATE) >= 0) {
+            monitorNode.setSamplePeriod(getRestoredSamplePeriod());
+        }
+        if ((step.compareTo(Degradation.SEND_RATE) >= 0) != (previous.compareTo(Degradation.SEND_RATE) >= 0)) {
+            AdaptiveRateController.SendPeriodListener listener = sendPeriodListener;
+            if (listener != null) {
+                listener.onSendPeriodChanged(Math.max(sendPeriod, getMinSendPeriod()));
+            }
+        }
+        monitorNode.setSummaryOnly(step == Degradation.SUMMARY);
+
+        DegradationListener listener = degradationListener;
+        if (listener != null) {
+            listener.onDegradationChanged(step, cpuUsage, bandwidth);
+        }
+    }
+
+
+    /**
+     * Gets the time the monitor worked on the node
+     *
+     * @return the time of the samplers, snapshots, encoding, sending and receiving in nanoseconds
+     */
+    private long getWork() {
+        return metrics.getSampleTime() + metrics.getSnapshotTime() + metrics.getEncodeTime()
+                + metrics.getSendTime() + metrics.getReceiveTime();
+    }
+
+
+    /**
+     * Gets the sample period the node would have without degradation
+     *
+     * @return the sample period of the adaptive rate controller, or else the configured sample period
+     */
+    private long getRestoredSamplePeriod() {
+        return rateController != null ? rateController.getSamplePeriod() : samplePeriod;
+    }
+
+
+    /**
+     * Gets the sample period of the degraded node
+     *
+     * @return the sample period in milliseconds
+     */
+    private long getDegradedSamplePeriod() {
+        return Math.max(getRestoredSamplePeriod(), samplePeriod * SLOWDOWN_FACTOR);
+    }
+
+
+    /**
+     * Function that returns the minimum send period of the current degradation step
+     * The send timer uses the longest of this period and the period it would use without the budget.
+     *
+     * @return The minimum send period in milliseconds, 0 if the send period is not degraded
+     */
+    public long getMinSendPeriod() {
+        return degradation.compareTo(Degradation.SEND_RATE) >= 0 ? sendPeriod * SLOWDOWN_FACTOR : 0;
+    }
+
+
+    /**
+     * Function to set the interval on which the overhead is compared with the budgets
+     *
+     * @param evaluationInterval Default value is 5000 milliseconds
+     */
+    public void setEvaluationInterval(long evaluationInterval) {
+        this.evaluationInterval = evaluationInterval;
+    }
+
+
+    /**
+     * Function to set the time the overhead has to stay below half of the budgets before a step is recovered
+     * It is also the time between the last step and a recovery.
+     *
+     * @param holdTime Default value is 30000 milliseconds
+     */
+    public void setHoldTime(long holdTime) {
+        this.holdTime = holdTime;
+    }
+
+
+    /**
+     * Function to set the listener that reschedules the send timer
+     *
+     * @param sendPeriodListener The listener, or null
+     */
+    public void setSendPeriodListener(AdaptiveRateController.SendPeriodListener sendPeriodListener) {
+        this.sendPeriodListener = sendPeriodListener;
+    }
+
+
+    /**
+     * Function to set the listener that is called on every degradation and recovery step
+     *
+     * @param degradationListener The listener, or null
+     */
+    public void setDegradationListener(DegradationListener degradationListener) {
+        this.degradationListener = degradationListener;
+    }
+
+
+    /**
+     * Function that returns the current degradation step
+     *
+     * @return The degradation step
+     */
+    public Degradation getDegradation() {
+        return degradation;
+    }
+
+
+    /**
+     * Function that returns the CPU usage of the monitor in the last evaluation interval
+     *
+     * @return The part of one core used by the monitor
+     */
+    public double getCpuUsage() {
+        return cpuUsage;
+    }
+
+
+    /**
+     * Function that returns the bandwidth of the monitor in the last evaluation interval
+     *
+     * @return The send bytes per second
+     */
+    public double getBandwidth() {
+        return bandwidth;
+    }
+
+
+    /**
+     * Function that returns how often the controller degraded a step
+     *
+     * @return The amount of degradation steps
+     */
+    public long getDegradations() {
+        return degradations;
+    }
+
+
+    /**
+     * Function that returns how often the controller recovered a step
+     *
+     * @return The amount of recovery steps
+     */
+    public long getRecoveries() {
+        return recoveries;
+    }
+
+
+    /**
+     * Interface for a listener that is called when the degradation step changes
+     */
+    public interface DegradationListener {
+        void onDegradationChanged(Degradation degradation, double cpuUsage, double bandwidth);
+    }
+}
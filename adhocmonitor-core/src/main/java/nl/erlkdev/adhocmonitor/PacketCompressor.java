@@ -0,0 +1,302 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Compressor of the data packets, with deflate and a preset dictionary.
+ * A data packet is too small for deflate to find many repeats in itself, but most of its bytes are the keys of
+ * the packet schema, the names of the series and the addresses of the neighbours. Those strings are put in a
+ * dictionary that the monitor receives once, so deflate can refer to them from the first byte of every packet.
+ * Every packet is compressed on its own, so a lost packet doesn't affect the next packets.
+ *
+ * A packet is only compressed when it saves at least an eighth of its size, else the original packet is send.
+ * Small packets are never compressed, and after a packet that didn't compress well the next packets are send
+ * uncompressed, with a backoff that doubles up to 64 packets, so the CPU isn't spend on data that doesn't compress.
+ *
+ * The compressor is not thread-safe, it is used by the send thread of a packet sender.
+ */
+public class PacketCompressor {
+
+    /* Packets smaller than this are send uncompressed. */
+    public static final int MIN_PACKET_SIZE = 128;
+
+    /* Maximum size of a dictionary, so its hex encoding fits in one request of the monitor. */
+    public static final int MAX_DICTIONARY_SIZE = 2048;
+
+    /* Maximum amount of packets that is send uncompressed after a packet that didn't compress well. */
+    private static final int MAX_BACKOFF = 64;
+
+    /* Size of the magic byte, the version, the flags and the dictionary id. */
+    private static final int HEADER_SIZE = 7;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /* Strings of the packet schema, the most common strings are at the end of the dictionary. */
+    private static final String[] SCHEMA = {
+            "\"removedNeighbours\":[],\"removedCustomValues\":[],\"baseSeq\":",
+            "\"status\":\"error\"\"status\":\"starting\"\"status\":\"waiting\"\"status\":\"processing\"",
+            "\"" + PacketSender.LOST_PACKETS + "\":\"" + PacketSender.RETRANSMITTED_PACKETS + "\":\""
+                    + PacketSender.ROUND_TRIP_TIME + "\":\"" + PacketSender.COMPRESSION_RATIO + "\":",
+            "{\"type\":\"batch\",\"packets\":[",
+            ",\"dataSend\":0},{\"address\":\",\"dataSend\":1}],\"customValues\":{\"",
+            "{\"type\":\"data\",\"node\":{\"address\":\"",
+            "\",\"status\":\"idle\",\"timeStamp\":",
+            ",\"seq\":",
+            ",\"ack\":true,\"ioTotalChart\":{\"",
+            "\"},\"ioRecvChart\":{\"",
+            "\"},\"ioSendChart\":{\"",
+            "\"},\"speedChart\":{\"",
+            "\"},\"cpuUsageChart\":{\"",
+            "\"},\"cpuTotalUsageChart\":{\"",
+            "\"},\"neighbours\":[{\"address\":\"",
+            "\",\"bytesSend\":",
+            ",\"bytesReceived\":",
+    };
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+    private final byte[] dictionary;
+    private final int dictionaryId;
+    private byte[] input = new byte[0];
+    private byte[] output = new byte[0];
+
+    /* Backoff after packets that didn't compress well. */
+    private int backoff = 0;
+    private int skip = 0;
+
+    /* Statistics */
+    private long inputBytes = 0;
+    private long outputBytes = 0;
+    private long compressedPackets = 0;
+
+
+    /**
+     * Constructor for the packet compressor
+     *
+     * @param dictionary The preset dictionary, which must be known by the receiver
+     */
+    public PacketCompressor(byte[] dictionary) {
+        if (dictionary.length == 0 || dictionary.length > MAX_DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("Dictionary must have 1 to " + MAX_DICTIONARY_SIZE + " bytes");
+        }
+        this.dictionary = dictionary.clone();
+        this.dictionaryId = dictionaryId(dictionary);
+    }
+
+
+    /**
+     * Function to compress a packet, if it is worth it
+     *
+     * @param packet The packet between its position and limit, its position is moved to its limit when it is compressed
+     * @return The compressed packet, which is reused by the next call, or the packet itself if it isn't compressed
+     */
+    public ByteBuffer compress(ByteBuffer packet) {
+        int length = packet.remaining();
+        inputBytes += length;
+        if (length < MIN_PACKET_SIZE || skip > 0) {
+            skip = Math.max(0, skip - 1);
+            outputBytes += length;
+            return packet;
+        }
+
+        if (input.length < length) {
+            input = new byte[length];
+            output = new byte[length];
+        }
+        int position = packet.position();
+        packet.get(input, 0, length);
+        packet.position(position);
+
+        /* The compressed packet must fit in 7/8 of the original, else the deflate output is cut off. */
+        int headerSize = HEADER_SIZE + varLongSize(length);
+        int maxSize = length - length / 8;
+        deflater.reset();
+        deflater.setDictionary(dictionary);
+        deflater.setInput(input, 0, length);
+        deflater.finish();
+        int size = maxSize > headerSize ? deflater.deflate(output, headerSize, maxSize - headerSize) : 0;
+        if (!deflater.finished()) {
+            backoff = Math.min(MAX_BACKOFF, Math.max(1, backoff * 2));
+            skip = backoff;
+            outputBytes += length;
+            return packet;
+        }
+        backoff = 0;
+
+        ByteBuffer compressed = ByteBuffer.wrap(output, 0, headerSize + size);
+        compressed.put(BinaryPacketEncoder.MAGIC);
+        compressed.put(BinaryPacketEncoder.VERSION);
+        compressed.put((byte) BinaryPacketEncoder.FLAG_COMPRESSED);
+        compressed.putInt(dictionaryId);
+        BinaryCodec.writeVarLong(compressed, length);
+        compressed.position(0);
+
+        packet.position(packet.limit());
+        outputBytes += compressed.remaining();
+        compressedPackets++;
+        return compressed;
+    }
+
+
+    /**
+     * Function to release the native memory of the compressor, it can't be used afterwards
+     */
+    public void end() {
+        deflater.end();
+    }
+
+
+    /**
+     * Gets the id of the dictionary, which is send in the compressed packets
+     *
+     * @return the dictionary id
+     */
+    public int getDictionaryId() {
+        return dictionaryId;
+    }
+
+
+    /**
+     * Gets the amount of bytes of the packets that were passed to the compressor
+     *
+     * @return the amount of uncompressed bytes
+     */
+    public long getInputBytes() {
+        return inputBytes;
+    }
+
+
+    /**
+     * Gets the amount of bytes of the packets that were returned by the compressor, compressed or not
+     *
+     * @return the amount of send bytes
+     */
+    public long getOutputBytes() {
+        return outputBytes;
+    }
+
+
+    /**
+     * Gets the amount of packets that is compressed
+     *
+     * @return the amount of compressed packets
+     */
+    public long getCompressedPackets() {
+        return compressedPackets;
+    }
+
+
+    /**
+     * Gets the size of the send packets relative to the size of the original packets
+     *
+     * @return the compression ratio, 1 if no packet is passed to the compressor yet
+     */
+    public double getCompressionRatio() {
+        return inputBytes > 0 ? (double) outputBytes / inputBytes : 1;
+    }
+
+
+    /**
+     * Function to get the id of a dictionary, the Adler-32 checksum like the zlib format uses
+     *
+     * @param dictionary The dictionary
+     * @return The id of the dictionary
+     */
+    public static int dictionaryId(byte[] dictionary) {
+        Adler32 adler = new Adler32();
+        adler.update(dictionary, 0, dictionary.length);
+        return (int) adler.getValue();
+    }
+
+
+    /**
+     * Function to build the dictionary of a node
+     * It contains the strings of the packet schema, the names of the series and the addresses of the neighbours,
+     * in JSON and binary form. Neighbours that don't fit in the maximum size are left out.
+     *
+     * @param monitorNode The monitor node
+     * @return The dictionary
+     */
+    static byte[] buildDictionary(MonitorNode monitorNode) {
+        /* The schema and the node address are always added, at the end of the dictionary. */
+        String address = monitorNode.getAddress();
+        ByteBuffer tail = ByteBuffer.allocate(MAX_DICTIONARY_SIZE);
+        BinaryCodec.writeAddress(tail, address);
+        for (String part : SCHEMA) {
+            tail.put(part.getBytes(UTF8));
+        }
+        tail.put(("{\"type\":\"data\",\"node\":{\"address\":\"" + address + "\",\"status\":\"").getBytes(UTF8));
+        tail.flip();
+
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_DICTIONARY_SIZE);
+        buffer.limit(Math.max(0, MAX_DICTIONARY_SIZE - tail.remaining()));
+        ByteBuffer value = ByteBuffer.allocate(MAX_DICTIONARY_SIZE);
+
+        /* The series of the samplers, like the link and latency series. */
+        for (SampleRing ring : monitorNode.getSeries()) {
+            MonitorSeries known = MonitorSeries.fromName(ring.getName());
+            if (known == null || known.isFamily()) {
+                value.clear();
+                BinaryPacketEncoder.writeSeriesName(value, ring.getName());
+                value.put(("\"},\"" + ring.getName() + "\":{\"").getBytes(UTF8));
+                value.flip();
+                if (!putIfFits(buffer, value)) {
+                    break;
+                }
+            }
+        }
+
+        /* The neighbours, in binary and JSON form. */
+        for (String neighbour : monitorNode.getCurrentNeighbours().keySet()) {
+            value.clear();
+            BinaryCodec.writeAddress(value, neighbour);
+            value.put(("{\"address\":\"" + neighbour + "\",\"bytesSend\":").getBytes(UTF8));
+            value.flip();
+            if (!putIfFits(buffer, value)) {
+                break;
+            }
+        }
+
+        buffer.limit(buffer.capacity());
+        putIfFits(buffer, tail);
+        byte[] dictionary = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(dictionary);
+        return dictionary;
+    }
+
+
+    /**
+     * Adds bytes to a dictionary if there is space for them
+     *
+     * @param buffer The dictionary
+     * @param value The bytes between the position and limit
+     * @return true if the bytes are added, else false
+     */
+    private static boolean putIfFits(ByteBuffer buffer, ByteBuffer value) {
+        if (buffer.remaining() < value.remaining()) {
+            return false;
+        }
+        buffer.put(value);
+        return true;
+    }
+
+
+    /**
+     * Gets the size of a varint
+     *
+     * @param value The value
+     * @return The amount of bytes of the varint
+     */
+    private static int varLongSize(long value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,127 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Decompressor of the packets written by the PacketCompressor.
+ * The dictionaries of the nodes are added by their id. The decompressor is not thread-safe, a receive thread
+ * has its own decompressor, but the decompressors of multiple threads can share their dictionaries.
+ */
+public class PacketDecompressor {
+
+    private final ConcurrentHashMap<Integer, byte[]> dictionaries;
+    private final Inflater inflater = new Inflater(true);
+    private byte[] input = new byte[0];
+    private byte[] output = new byte[0];
+
+
+    /**
+     * Constructor for a decompressor without dictionaries
+     */
+    public PacketDecompressor() {
+        this.dictionaries = new ConcurrentHashMap<>();
+    }
+
+
+    /**
+     * Constructor for a decompressor that shares the dictionaries of another decompressor
+     *
+     * @param shared The decompressor with the dictionaries
+     */
+    public PacketDecompressor(PacketDecompressor shared) {
+        this.dictionaries = shared.dictionaries;
+    }
+
+
+    /**
+     * Function to add a dictionary
+     *
+     * @param dictionary The dictionary
+     * @return The id of the dictionary
+     */
+    public int addDictionary(byte[] dictionary) {
+        int id = PacketCompressor.dictionaryId(dictionary);
+        dictionaries.put(id, dictionary.clone());
+        return id;
+    }
+
+
+    /**
+     * Checks if a packet is a compressed packet
+     *
+     * @param buffer The buffer with the packet at its position
+     * @return true if the packet is a compressed packet, else false
+     */
+    public static boolean isCompressedPacket(ByteBuffer buffer) {
+        return buffer.remaining() > 2 && BinaryPacketDecoder.isBinaryPacket(buffer)
+                && (buffer.get(buffer.position() + 2) & BinaryPacketEncoder.FLAG_COMPRESSED) != 0;
+    }
+
+
+    /**
+     * Function to decompress a packet
+     *
+     * @param packet The buffer with the compressed packet at its position, the position is moved to its limit
+     * @return The original packet, which is reused by the next call
+     * @throws IllegalArgumentException If the packet is not valid or its dictionary is unknown
+     */
+    public ByteBuffer decompress(ByteBuffer packet) {
+        if (!isCompressedPacket(packet)) {
+            throw new IllegalArgumentException("Not a compressed packet");
+        }
+        int length;
+        byte[] dictionary;
+        try {
+            packet.position(packet.position() + 3);
+            int dictionaryId = packet.getInt();
+            dictionary = dictionaries.get(dictionaryId);
+            if (dictionary == null) {
+                throw new IllegalArgumentException("Unknown dictionary: " + Integer.toHexString(dictionaryId));
+            }
+            long originalLength = BinaryCodec.readVarLong(packet);
+            if (originalLength < 1 || originalLength > PacketSender.MAX_PACKET_SIZE) {
+                throw new IllegalArgumentException("Invalid length of compressed packet: " + originalLength);
+            }
+            length = (int) originalLength;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated compressed packet", e);
+        }
+
+        int compressedLength = packet.remaining();
+        if (input.length < compressedLength) {
+            input = new byte[Math.max(compressedLength, input.length * 2)];
+        }
+        if (output.length < length) {
+            output = new byte[Math.max(length, output.length * 2)];
+        }
+        packet.get(input, 0, compressedLength);
+
+        inflater.reset();
+        inflater.setInput(input, 0, compressedLength);
+        int size;
+        try {
+            inflater.setDictionary(dictionary);
+            size = inflater.inflate(output, 0, length);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Invalid compressed packet", e);
+        }
+        if (size != length || !inflater.finished()) {
+            throw new IllegalArgumentException("Compressed packet has a wrong length");
+        }
+        return ByteBuffer.wrap(output, 0, length);
+    }
+
+
+    /**
+     * Function to release the native memory of the decompressor, it can't be used afterwards
+     */
+    public void end() {
+        inflater.end();
+    }
+}
@@ -0,0 +1,55 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Interface for an encoder that writes a node snapshot as a data packet.
+ */
+public interface PacketEncoder {
+
+    /**
+     * Writes the snapshot as a data packet into the buffer
+     *
+     * @param snapshot The snapshot of the node
+     * @param buffer The buffer, the packet is written from its position
+     * @throws java.nio.BufferOverflowException If the packet doesn't fit in the buffer
+     */
+    void encode(NodeSnapshot snapshot, ByteBuffer buffer);
+
+
+    /**
+     * Writes the start of a batch packet, a packet that contains multiple data packets
+     *
+     * @param buffer The buffer, the batch is written from its position
+     */
+    void beginBatch(ByteBuffer buffer);
+
+
+    /**
+     * Appends an encoded data packet to a batch packet
+     *
+     * @param buffer The buffer with the batch packet
+     * @param packet The encoded data packet between its position and limit
+     * @param first true if it is the first data packet of the batch
+     * @throws java.nio.BufferOverflowException If the packet doesn't fit in the buffer
+     */
+    void appendToBatch(ByteBuffer buffer, ByteBuffer packet, boolean first);
+
+
+    /**
+     * Writes the end of a batch packet
+     *
+     * @param buffer The buffer with the batch packet
+     */
+    void endBatch(ByteBuffer buffer);
+
+
+    /**
+     * Gets the maximum amount of bytes a batch adds to a data packet, including the end of the batch
+     *
+     * @return the overhead of a data packet in a batch
+     */
+    int getBatchOverhead();
+}
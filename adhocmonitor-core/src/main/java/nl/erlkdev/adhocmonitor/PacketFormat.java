@@ -0,0 +1,14 @@
+package nl.erlkdev.adhocmonitor;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * PacketFormat enum to select the encoding of the node data packets
+ */
+public enum PacketFormat {
+    /* JSON packets, readable by every version of the monitor visualization process. */
+    JSON,
+
+    /* Compact binary packets, see BinaryPacketEncoder. */
+    BINARY
+}
@@ -0,0 +1,666 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Send pipeline for the data packets of a monitor node.
+ * It keeps one datagram channel open for the whole run and reuses the snapshot and the packet buffers,
+ * so a send doesn't allocate in the steady state.
+ *
+ * Every packet gets a sequence number, so the receiver can detect lost packets. In incremental mode
+ * only every keyframe interval a full snapshot is send, the packets in between are deltas of that keyframe.
+ *
+ * In reliable mode the packets request an acknowledgement of their sequence number from the receiver. The
+ * packets are kept in a bounded retransmit window until they are acknowledged, and are send again on the next
+ * send when their retransmit timeout has passed. The acknowledgements are read by a separate thread, so the
+ * round trip time isn't rounded to the send interval. The loss and round trip time are added to the snapshots
+ * as custom values.
+ *
+ * Relayed packets of an aggregator keep the acknowledgement request of their node, they are not retained: the
+ * acknowledgements of the receiver are passed to the relayed acknowledgement listener, which passes them back to
+ * the node that retransmits them.
+ *
+ * With a packet compressor the packets are compressed right before they are written, so batches and retransmits
+ * are compressed too. The compression ratio is added to the snapshots as custom value.
+ *
+ * With monitor metrics the time of the snapshots and the encoding, the send datagrams and the failed sends are
+ * added to the metrics of the node.
+ *
+ * The send function is called from a single send thread.
+ */
+public class PacketSender {
+
+    /* Maximum size of a data packet, the size of an UDP datagram. */
+    public static final int MAX_PACKET_SIZE = 65507;
+
+    /* Names of the custom values of the reliable mode. */
+    public static final String LOST_PACKETS = "lostPackets";
+    public static final String RETRANSMITTED_PACKETS = "retransmittedPackets";
+    public static final String ROUND_TRIP_TIME = "roundTripTime";
+    public static final String COMPRESSION_RATIO = "compressionRatio";
+
+    /* Maximum size of an acknowledgement and the amount of sequence numbers that is read from it. */
+    static final int ACK_BUFFER_SIZE = 8192;
+    private static final int MAX_ACK_SEQUENCES = 256;
+
+    private final InetSocketAddress target;
+    private final PacketEncoder encoder;
+    private final ByteBufferPool bufferPool;
+    private final NodeSnapshot snapshot = new NodeSnapshot();
+
+    private DatagramChannel channel = null;
+    private boolean sharedChannel = false;
+    private long sequence = 0;
+    private DeltaTracker deltaTracker = null;
+    private volatile TelemetryRecorder recorder = null;
+    private volatile MonitorMetrics metrics = null;
+
+    /* Reliable mode, null if the packets are not acknowledged. */
+    private RetransmitWindow retransmitWindow = null;
+    private RelayedAckListener relayedAckListener = null;
+
+    /* Custom values with the statistics of the reliable mode, registered on the node of the first send. */
+    private MonitorNode reliableNode = null;
+    private LongGauge lostPacketsValue;
+    private LongGauge retransmittedPacketsValue;
+    private DoubleGauge roundTripTimeValue;
+
+    /* Compression of the packets, null if the packets are send uncompressed. */
+    private PacketCompressor compressor = null;
+    private MonitorNode compressionNode = null;
+    private DoubleGauge compressionRatioValue;
+
+    /* Statistics of the send datagrams, only written by the sending thread. */
+    private volatile long datagramsSend = 0;
+    private volatile long bytesSend = 0;
+
+
+    /**
+     * Constructor for the packet sender
+     *
+     * @param target The address of the monitor system
+     * @param encoder The encoder of the data packets
+     */
+    public PacketSender(InetSocketAddress target, PacketEncoder encoder) {
+        this(target, encoder, new ByteBufferPool(MAX_PACKET_SIZE, 2));
+    }
+
+
+    /**
+     * Constructor for the packet sender with a buffer pool
+     *
+     * @param target The address of the monitor system
+     * @param encoder The encoder of the data packets
+     * @param bufferPool The pool of the packet buffers
+     */
+    public PacketSender(InetSocketAddress target, PacketEncoder encoder, ByteBufferPool bufferPool) {
+        this.target = target;
+        this.encoder = encoder;
+        this.bufferPool = bufferPool;
+    }
+
+
+    /**
+     * Function to enable the incremental mode
+     * The next packet is a keyframe.
+     *
+     * @param keyframeInterval The amount of packets from one keyframe to the next, 1 sends only full snapshots
+     */
+    public synchronized void setKeyframeInterval(int keyframeInterval) {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("Keyframe interval must be at least 1");
+        }
+        deltaTracker = keyframeInterval > 1 ? new DeltaTracker(keyframeInterval) : null;
+    }
+
+
+    /**
+     * Function to enable the reliable mode, it is used by the next open of the sender
+     * It needs an own channel, so it is not used on a shared channel.
+     *
+     * @param windowSize The maximum amount of packets that wait for an acknowledgement, 0 disables the reliable mode
+     */
+    public synchronized void setReliableWindow(int windowSize) {
+        if (windowSize < 0) {
+            throw new IllegalArgumentException("Window size can't be negative");
+        }
+        retransmitWindow = windowSize > 0 ? new RetransmitWindow(windowSize) : null;
+    }
+
+
+    /**
+     * Function to set the compressor of the packets
+     * The dictionary of the compressor must be known by the receiver, the previous compressor is released.
+     *
+     * @param compressor The compressor, or null to send the packets uncompressed
+     */
+    public synchronized void setCompressor(PacketCompressor compressor) {
+        if (this.compressor != null && this.compressor != compressor) {
+            this.compressor.end();
+        }
+        this.compressor = compressor;
+    }
+
+
+    /**
+     * Function to set the recorder of the snapshots
+     * Every snapshot is recorded in full before it is turned into a delta, so a recording doesn't depend on keyframes.
+     *
+     * @param recorder The recorder, or null to stop recording
+     */
+    public void setRecorder(TelemetryRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+
+    /**
+     * Function to set the metrics that get the overhead of the sender
+     *
+     * @param metrics The metrics, or null to not measure the sender
+     */
+    public void setMetrics(MonitorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+
+    /**
+     * Function to set the listener for the acknowledgements of relayed packets
+     * It must be set before the channel is opened.
+     *
+     * @param relayedAckListener The listener, or null
+     */
+    public synchronized void setRelayedAckListener(RelayedAckListener relayedAckListener) {
+        this.relayedAckListener = relayedAckListener;
+    }
+
+
+    /**
+     * Opens the datagram channel
+     *
+     * @throws IOException If the channel couldn't be opened
+     */
+    public synchronized void open() throws IOException {
+        if (channel == null) {
+            channel = DatagramChannel.open();
+            channel.connect(target);
+            sharedChannel = false;
+            if (retransmitWindow != null || relayedAckListener != null) {
+                startAckThread(channel, retransmitWindow, relayedAckListener);
+            }
+        }
+    }
+
+
+    /**
+     * Opens the sender on a datagram channel that is shared with other senders
+     * The packets are send to the target with an unconnected send, and the channel isn't closed by the sender.
+     * This is used to run many simulated nodes in one process without a socket for each node.
+     *
+     * @param sharedChannel The shared datagram channel, it must not be connected
+     */
+    public synchronized void open(DatagramChannel sharedChannel) {
+        if (retransmitWindow != null || relayedAckListener != null) {
+            throw new IllegalStateException("The acknowledgements need an own channel");
+        }
+        if (channel == null) {
+            channel = sharedChannel;
+            this.sharedChannel = true;
+        }
+    }
+
+
+    /**
+     * Closes the datagram channel and releases the compressor
+     */
+    public synchronized void close() {
+        setCompressor(null);
+        if (channel == null) {
+            return;
+        }
+        if (!sharedChannel) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        channel = null;
+    }
+
+
+    /**
+     * Takes a snapshot of the node and sends it as a data packet
+     *
+     * @param monitorNode The monitor node
+     * @return The size of the send packet in bytes
+     * @throws IOException If the packet couldn't be send
+     */
+    public synchronized int send(MonitorNode monitorNode) throws IOException {
+        MonitorMetrics metrics = this.metrics;
+        long allocated = metrics != null ? MonitorMetrics.threadAllocatedBytes() : -1;
+        try {
+            int bytes = 0;
+            if (retransmitWindow != null && channel != null) {
+                updateReliableValues(monitorNode);
+                bytes = retransmitWindow.retransmitDue(this, System.nanoTime());
+            }
+            if (compressor != null) {
+                updateCompressionValues(monitorNode);
+            }
+            return bytes + send(nextSnapshot(monitorNode));
+        } finally {
+            if (metrics != null) {
+                metrics.recordAllocation(allocated);
+            }
+        }
+    }
+
+
+    /**
+     * Sends a snapshot as a data packet, as it is
+     * This is used to replay recorded snapshots, the snapshot keeps its sequence number.
+     *
+     * @param snapshot The snapshot
+     * @return The size of the send packet in bytes
+     * @throws IOException If the packet couldn't be send
+     */
+    public synchronized int send(NodeSnapshot snapshot) throws IOException {
+        ByteBuffer buffer = bufferPool.acquire();
+        try {
+            try {
+                encode(snapshot, buffer);
+            } catch (BufferOverflowException e) {
+                recordSendFailure();
+                throw new IOException("Data packet is larger than " + buffer.capacity() + " bytes");
+            }
+            buffer.flip();
+
+            /* The packet is only kept after a successful write, a failed send is dropped. */
+            int position = buffer.position();
+            int limit = buffer.limit();
+            int bytes = write(buffer);
+            buffer.limit(limit);
+            buffer.position(position);
+            retain(snapshot, buffer);
+            return bytes;
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+
+    /**
+     * Takes a snapshot of the node and gives it the next sequence number
+     * In incremental mode the snapshot is turned into a keyframe or a delta.
+     *
+     * @param monitorNode The monitor node
+     * @return The snapshot, which is reused by the next call
+     * @throws IOException If the channel is not open
+     */
+    protected NodeSnapshot nextSnapshot(MonitorNode monitorNode) throws IOException {
+        if (channel == null) {
+            throw new IOException("Packet sender is not open");
+        }
+
+        MonitorMetrics metrics = this.metrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        monitorNode.takeSnapshot(snapshot);
+        if (metrics != null) {
+            metrics.recordSnapshot(System.nanoTime() - start);
+        }
+        TelemetryRecorder recorder = this.recorder;
+        if (recorder != null) {
+            snapshot.setSequence(sequence, sequence);
+            start = System.nanoTime();
+            recorder.record(snapshot);
+            if (metrics != null) {
+                metrics.recordEncode(System.nanoTime() - start);
+            }
+        }
+        if (deltaTracker != null) {
+            deltaTracker.apply(snapshot, sequence);
+        } else {
+            snapshot.setSequence(sequence, sequence);
+        }
+        snapshot.setAckRequested(retransmitWindow != null);
+        sequence++;
+        return snapshot;
+    }
+
+
+    /**
+     * Encodes a snapshot into a packet buffer, and adds the time to the metrics
+     *
+     * @param snapshot The snapshot
+     * @param buffer The packet buffer, the packet is written at its position
+     * @throws BufferOverflowException If the packet doesn't fit in the buffer
+     */
+    protected void encode(NodeSnapshot snapshot, ByteBuffer buffer) {
+        MonitorMetrics metrics = this.metrics;
+        if (metrics == null) {
+            encoder.encode(snapshot, buffer);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            encoder.encode(snapshot, buffer);
+        } finally {
+            metrics.recordEncode(System.nanoTime() - start);
+        }
+    }
+
+
+    /**
+     * Keeps a copy of an encoded packet in the retransmit window, if the snapshot requests an acknowledgement
+     *
+     * @param snapshot The snapshot of the packet
+     * @param packet The encoded packet between its position and limit, the position is not changed
+     */
+    protected void retain(NodeSnapshot snapshot, ByteBuffer packet) {
+        if (isRetained(snapshot)) {
+            retain(snapshot.getSequence(), packet);
+        }
+    }
+
+
+    /**
+     * Checks if the packet of a snapshot is kept in the retransmit window
+     * A relayed packet is retransmitted by its own node, its sequence number isn't a sequence number of this sender.
+     *
+     * @param snapshot The snapshot of the packet
+     * @return true if the snapshot requests an acknowledgement and isn't relayed, else false
+     */
+    protected static boolean isRetained(NodeSnapshot snapshot) {
+        return snapshot.isAckRequested() && snapshot.getRelay() == null;
+    }
+
+
+    /**
+     * Keeps a copy of an encoded packet that requests an acknowledgement in the retransmit window
+     * The retransmit timeout of the packet starts now, so it is called right after the packet is written.
+     *
+     * @param sequence The sequence number of the packet
+     * @param packet The encoded packet between its position and limit, the position is not changed
+     */
+    protected void retain(long sequence, ByteBuffer packet) {
+        if (retransmitWindow != null) {
+            retransmitWindow.add(sequence, packet, System.nanoTime());
+        }
+    }
+
+
+    /**
+     * Writes a packet to the datagram channel
+     *
+     * @param buffer The buffer with the packet between its position and limit
+     * @return The size of the send packet in bytes
+     * @throws IOException If the packet couldn't be send
+     */
+    protected int write(ByteBuffer buffer) throws IOException {
+        if (channel == null) {
+            throw new IOException("Packet sender is not open");
+        }
+        MonitorMetrics metrics = this.metrics;
+        long start = System.nanoTime();
+        int bytes;
+        try {
+            if (compressor != null) {
+                buffer = compressor.compress(buffer);
+            }
+            bytes = sharedChannel ? channel.send(buffer, target) : channel.write(buffer);
+        } catch (IOException e) {
+            recordSendFailure();
+            throw e;
+        } finally {
+            if (metrics != null) {
+                metrics.recordWrite(System.nanoTime() - start);
+            }
+        }
+        datagramsSend++;
+        bytesSend += bytes;
+        if (metrics != null) {
+            metrics.recordSend(bytes);
+        }
+        return bytes;
+    }
+
+
+    /**
+     * Adds a packet that couldn't be send to the metrics
+     */
+    protected void recordSendFailure() {
+        MonitorMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordSendFailure();
+        }
+    }
+
+
+    /**
+     * Gets the amount of datagrams that is send since the sender was created
+     *
+     * @return the amount of send datagrams
+     */
+    public long getDatagramsSend() {
+        return datagramsSend;
+    }
+
+
+    /**
+     * Gets the amount of bytes that is send since the sender was created
+     *
+     * @return the amount of send bytes
+     */
+    public long getBytesSend() {
+        return bytesSend;
+    }
+
+
+    /**
+     * Gets the amount of packets that were given up in reliable mode, because they were not acknowledged before
+     * the retransmit window was full
+     *
+     * @return the amount of lost packets, 0 if the reliable mode is disabled
+     */
+    public synchronized long getLostPackets() {
+        return retransmitWindow != null ? retransmitWindow.getLostSequences() : 0;
+    }
+
+
+    /**
+     * Gets the amount of packets that are acknowledged in reliable mode
+     *
+     * @return the amount of acknowledged packets, 0 if the reliable mode is disabled
+     */
+    public synchronized long getAcknowledgedPackets() {
+        return retransmitWindow != null ? retransmitWindow.getAcknowledgedSequences() : 0;
+    }
+
+
+    /**
+     * Gets the amount of retransmits in reliable mode
+     *
+     * @return the amount of retransmitted packets, 0 if the reliable mode is disabled
+     */
+    public synchronized long getRetransmittedPackets() {
+        return retransmitWindow != null ? retransmitWindow.getRetransmits() : 0;
+    }
+
+
+    /**
+     * Gets the amount of packets that are waiting for an acknowledgement in reliable mode
+     *
+     * @return the amount of pending packets, 0 if the reliable mode is disabled
+     */
+    public synchronized int getPendingPackets() {
+        return retransmitWindow != null ? retransmitWindow.getPendingSequences() : 0;
+    }
+
+
+    /**
+     * Gets the smoothed round trip time to the receiver in reliable mode
+     *
+     * @return the round trip time in milliseconds, NaN if it is not measured
+     */
+    public synchronized double getRoundTripTime() {
+        return retransmitWindow != null ? retransmitWindow.getSmoothedRtt() : Double.NaN;
+    }
+
+
+    /**
+     * Gets the size of the send packets relative to their uncompressed size
+     *
+     * @return the compression ratio, 1 if the packets are not compressed
+     */
+    public synchronized double getCompressionRatio() {
+        return compressor != null ? compressor.getCompressionRatio() : 1;
+    }
+
+
+    /**
+     * Sets the custom values with the statistics of the reliable mode on a node
+     *
+     * @param monitorNode The monitor node
+     */
+    private void updateReliableValues(MonitorNode monitorNode) {
+        if (reliableNode != monitorNode) {
+            reliableNode = monitorNode;
+            lostPacketsValue = monitorNode.registerLongGauge(LOST_PACKETS);
+            retransmittedPacketsValue = monitorNode.registerLongGauge(RETRANSMITTED_PACKETS);
+            roundTripTimeValue = monitorNode.registerDoubleGauge(ROUND_TRIP_TIME);
+        }
+        lostPacketsValue.set(retransmitWindow.getLostSequences());
+        retransmittedPacketsValue.set(retransmitWindow.getRetransmits());
+        roundTripTimeValue.set(retransmitWindow.getSmoothedRtt());
+    }
+
+
+    /**
+     * Sets the custom value with the compression ratio on a node
+     *
+     * @param monitorNode The monitor node
+     */
+    private void updateCompressionValues(MonitorNode monitorNode) {
+        if (compressionNode != monitorNode) {
+            compressionNode = monitorNode;
+            compressionRatioValue = monitorNode.registerDoubleGauge(COMPRESSION_RATIO);
+        }
+        compressionRatioValue.set(compressor.getCompressionRatio());
+    }
+
+
+    /**
+     * Starts the thread that reads the acknowledgements of the receiver
+     * The thread stops when the channel is closed.
+     *
+     * @param channel The connected channel
+     * @param window The retransmit window, or null
+     * @param relayedListener The listener for the acknowledgements of relayed packets, or null
+     */
+    private void startAckThread(final DatagramChannel channel, final RetransmitWindow window,
+                                final RelayedAckListener relayedListener) {
+        Thread ackThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ByteBuffer buffer = ByteBuffer.allocate(ACK_BUFFER_SIZE);
+                long[] sequences = new long[MAX_ACK_SEQUENCES];
+                String[] addresses = new String[MAX_ACK_SEQUENCES];
+                while (channel.isOpen()) {
+                    buffer.clear();
+                    try {
+                        channel.read(buffer);
+                    } catch (PortUnreachableException e) {
+                        /* The receiver isn't running, the packets are retransmitted when it is. */
+                        continue;
+                    } catch (IOException e) {
+                        /* The channel is closed. */
+                        break;
+                    }
+                    buffer.flip();
+                    long start = System.nanoTime();
+                    try {
+                        handleAck(buffer, addresses, sequences, window, relayedListener);
+                    } finally {
+                        MonitorMetrics metrics = PacketSender.this.metrics;
+                        if (metrics != null) {
+                            metrics.recordReceive(System.nanoTime() - start);
+                        }
+                    }
+                }
+            }
+        }, "AdhocMonitor-Acks");
+        ackThread.setDaemon(true);
+        ackThread.start();
+    }
+
+
+    /**
+     * Handles an acknowledgement on the acknowledgement thread
+     * The acknowledgements of relayed packets are passed to the listener, the others to the retransmit window.
+     *
+     * @param buffer The buffer with the datagram
+     * @param addresses The array for the addresses of the relayed packets
+     * @param sequences The array for the sequence numbers
+     * @param window The retransmit window, or null
+     * @param relayedListener The listener for the acknowledgements of relayed packets, or null
+     */
+    private static void handleAck(ByteBuffer buffer, String[] addresses, long[] sequences, RetransmitWindow window,
+                                  RelayedAckListener relayedListener) {
+        int count;
+        boolean relayed = BinaryPacketDecoder.isRelayedAckPacket(buffer);
+        try {
+            count = relayed ? BinaryPacketDecoder.decodeRelayedAck(buffer, addresses, sequences)
+                    : BinaryPacketDecoder.decodeAck(buffer, sequences);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        if (relayed) {
+            if (relayedListener != null) {
+                relayedListener.onRelayedAck(addresses, sequences, count);
+            }
+            return;
+        }
+        if (window != null) {
+            long now = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                window.acknowledge(sequences[i], now);
+            }
+        }
+    }
+
+
+    /**
+     * Gets the encoder of the data packets
+     *
+     * @return the encoder
+     */
+    protected PacketEncoder getEncoder() {
+        return encoder;
+    }
+
+
+    /**
+     * Gets the pool of the packet buffers
+     *
+     * @return the buffer pool
+     */
+    protected ByteBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+
+    /**
+     * Interface for a listener of the acknowledgements of relayed packets
+     * It is called on the acknowledgement thread, the arrays are reused by the next acknowledgement.
+     */
+    public interface RelayedAckListener {
+        void onRelayedAck(String[] addresses, long[] sequences, int count);
+    }
+}
@@ -0,0 +1,193 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Reader for the stat files in /proc that keeps the file open and parses the content in place.
+ * Every read is a positional read from the start of the file into the same buffer, so the kernel
+ * generates the file again without reopening it. The fields are parsed directly from the bytes,
+ * so reading and parsing doesn't allocate once the buffer is large enough.
+ *
+ * A reader is used from one thread at a time.
+ */
+class ProcStatReader {
+
+    private final String path;
+    private RandomAccessFile file = null;
+    private FileChannel channel = null;
+
+    /* Content of the last read and the parse position in it */
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+    private byte[] data = buffer.array();
+    private int length = 0;
+    private int position = 0;
+
+
+    /**
+     * Constructor for the proc stat reader
+     *
+     * @param path The path of the file
+     */
+    ProcStatReader(String path) {
+        this.path = path;
+    }
+
+
+    /**
+     * Reads the file again and moves the parse position to the start
+     * The file is opened on the first read, and opened again if it was closed.
+     *
+     * @throws IOException If the file couldn't be read
+     */
+    void read() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            close();
+            file = new RandomAccessFile(path, "r");
+            channel = file.getChannel();
+        }
+
+        buffer.clear();
+        long filePosition = 0;
+        while (true) {
+            int read = channel.read(buffer, filePosition);
+            if (read < 0) {
+                break;
+            }
+            filePosition += read;
+
+            /* Doubles the buffer if the file doesn't fit, the file is read again from the start. */
+            if (!buffer.hasRemaining()) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                data = buffer.array();
+                filePosition = 0;
+            }
+        }
+        length = buffer.position();
+        position = 0;
+    }
+
+
+    /**
+     * Closes the file
+     */
+    void close() {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        file = null;
+        channel = null;
+    }
+
+
+    /**
+     * Checks if the line at the parse position starts with a prefix
+     *
+     * @param prefix The prefix, only ASCII characters
+     * @return true if the line starts with the prefix, else false
+     */
+    boolean startsWith(String prefix) {
+        if (position + prefix.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (data[position + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Moves the parse position to the start of the next line
+     *
+     * @return true if there is a next line, else false
+     */
+    boolean nextLine() {
+        while (position < length && data[position] != '\n') {
+            position++;
+        }
+        if (position < length) {
+            position++;
+        }
+        return position < length;
+    }
+
+
+    /**
+     * Moves the parse position after the last occurrence of a character in the content
+     * Used to skip the command name of a process stat file, which can contain spaces and parentheses.
+     *
+     * @param c The character
+     * @return true if the character was found, else false
+     */
+    boolean skipPastLast(char c) {
+        for (int i = length - 1; i >= position; i--) {
+            if (data[i] == c) {
+                position = i + 1;
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Skips fields on the current line
+     *
+     * @param count The amount of fields to skip
+     */
+    void skipFields(int count) {
+        for (int i = 0; i < count; i++) {
+            skipSpaces();
+            while (position < length && data[position] != ' ' && data[position] != '\n') {
+                position++;
+            }
+        }
+    }
+
+
+    /**
+     * Parses the next field on the current line as a positive long
+     * The field may start with letters, which are skipped (like the "cpu" of "cpu3").
+     *
+     * @return The value of the field
+     * @throws IOException If the field has no digits
+     */
+    long nextLong() throws IOException {
+        skipSpaces();
+        while (position < length && data[position] != ' ' && data[position] != '\n'
+                && (data[position] < '0' || data[position] > '9')) {
+            position++;
+        }
+
+        if (position >= length || data[position] < '0' || data[position] > '9') {
+            throw new IOException("Number expected in " + path);
+        }
+        long value = 0;
+        while (position < length && data[position] >= '0' && data[position] <= '9') {
+            value = value * 10 + (data[position++] - '0');
+        }
+        return value;
+    }
+
+
+    /**
+     * Skips the spaces at the parse position, but not the end of the line
+     */
+    private void skipSpaces() {
+        while (position < length && data[position] == ' ') {
+            position++;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package nl.erlkdev.adhocmonitor;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Sampler to collect the performance information of the node.
+ * This data is used to create an performance graph
+ */
+class ProcessTickSampler implements Sampler {
+
+    private final MonitorNode monitorNode;
+    private final SampleRing processArray;
+
+    /* Ticks of the previous tick. */
+    private long lastTicks;
+
+
+    /**
+     * Constructor for the process tick sampler
+     *
+     * @param monitorNode The monitor node
+     * @param processArray The series for the process ticks
+     */
+    ProcessTickSampler(MonitorNode monitorNode, SampleRing processArray) {
+        this.monitorNode = monitorNode;
+        this.processArray = processArray;
+    }
+
+
+    @Override
+    public void reset() {
+        lastTicks = monitorNode.getProcessTicks();
+    }
+
+
+    @Override
+    public void sample(long timeStamp, long elapsed) {
+        long ticks = monitorNode.getProcessTicks();
+
+        /* Calculates the ticks per millisecond */
+        double processSpeed = (double) (ticks - lastTicks) / (double) elapsed;
+        lastTicks = ticks;
+
+        /* Stores the new time value pair */
+        processArray.add(timeStamp, processSpeed);
+    }
+}
@@ -0,0 +1,279 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Window of the data packets that are send in reliable mode and not acknowledged yet.
+ * Every sequence number has a slot with a copy of its encoded packets, a snapshot that is split in slices has
+ * more than one packet. A sequence that isn't acknowledged within the retransmit timeout is send again, with a
+ * doubled timeout for every retransmit. When the window is full the oldest sequence is given up and counted as
+ * lost, so the memory of the window is bounded.
+ *
+ * The round trip time is estimated like TCP (RFC 6298), only from the acknowledgements of sequences that are
+ * not retransmitted. The window is shared by the send thread and the acknowledgement thread of a packet sender.
+ */
+class RetransmitWindow {
+
+    /* Retransmit timeouts in milliseconds. */
+    static final long INITIAL_TIMEOUT = 1000;
+    static final long MIN_TIMEOUT = 200;
+    static final long MAX_TIMEOUT = 10000;
+
+    /* Maximum amount of sequences that is retransmitted at once, so a long outage doesn't cause a burst. */
+    static final int MAX_RETRANSMITS = 8;
+
+    private final Slot[] slots;
+    private long newestSequence = -1;
+
+    /* Round trip time estimation in milliseconds, NaN until the first measurement. */
+    private double smoothedRtt = Double.NaN;
+    private double rttVariance = Double.NaN;
+
+    /* Statistics */
+    private long sendSequences = 0;
+    private long acknowledgedSequences = 0;
+    private long retransmits = 0;
+    private long lostSequences = 0;
+
+
+    /**
+     * Constructor for the retransmit window
+     *
+     * @param size The maximum amount of sequences that are not acknowledged
+     */
+    RetransmitWindow(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Window size must be at least 1");
+        }
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+
+    /**
+     * Function to keep a copy of a send packet until its sequence is acknowledged
+     * A packet with the same sequence as the previous packet is added to its slot. A new sequence replaces the
+     * oldest slot, a sequence in that slot that isn't acknowledged is lost.
+     *
+     * @param sequence The sequence number of the packet
+     * @param packet The encoded packet between its position and limit, the position is not changed
+     * @param now The time of the send, from System.nanoTime
+     */
+    synchronized void add(long sequence, ByteBuffer packet, long now) {
+        Slot slot = slots[(int) (sequence % slots.length)];
+        if (slot.sequence != sequence) {
+            if (slot.sequence >= 0 && !slot.acknowledged) {
+                lostSequences++;
+            }
+            slot.sequence = sequence;
+            slot.acknowledged = false;
+            slot.sendTime = now;
+            slot.retransmits = 0;
+            slot.length = 0;
+            slot.packets = 0;
+            sendSequences++;
+            newestSequence = Math.max(newestSequence, sequence);
+        }
+
+        int length = packet.remaining();
+        if (slot.data.length < slot.length + 4 + length) {
+            byte[] data = new byte[Math.max(slot.data.length * 2, slot.length + 4 + length)];
+            System.arraycopy(slot.data, 0, data, 0, slot.length);
+            slot.data = data;
+        }
+        ByteBuffer.wrap(slot.data, slot.length, 4).putInt(length);
+        int position = packet.position();
+        packet.get(slot.data, slot.length + 4, length);
+        packet.position(position);
+        slot.length += 4 + length;
+        slot.packets++;
+    }
+
+
+    /**
+     * Function to mark a sequence as acknowledged
+     *
+     * @param sequence The acknowledged sequence number
+     * @param now The time of the acknowledgement, from System.nanoTime
+     * @return true if the sequence was waiting for its acknowledgement, false for a late or duplicate acknowledgement
+     */
+    synchronized boolean acknowledge(long sequence, long now) {
+        if (sequence < 0) {
+            return false;
+        }
+        Slot slot = slots[(int) (sequence % slots.length)];
+        if (slot.sequence != sequence || slot.acknowledged) {
+            return false;
+        }
+        slot.acknowledged = true;
+        acknowledgedSequences++;
+
+        /* The round trip of a retransmitted sequence is ambiguous, it is not measured (Karn's algorithm). */
+        if (slot.retransmits == 0) {
+            updateRtt((now - slot.sendTime) / 1000000.0);
+        }
+        return true;
+    }
+
+
+    /**
+     * Function to send the packets of the oldest sequences again when their retransmit timeout has passed
+     *
+     * @param sender The packet sender that writes the packets
+     * @param now The current time, from System.nanoTime
+     * @return The amount of bytes that is send
+     * @throws IOException If a packet couldn't be send
+     */
+    synchronized int retransmitDue(PacketSender sender, long now) throws IOException {
+        int bytes = 0;
+        int count = 0;
+        for (long sequence = Math.max(0, newestSequence - slots.length + 1);
+             sequence <= newestSequence && count < MAX_RETRANSMITS; sequence++) {
+            Slot slot = slots[(int) (sequence % slots.length)];
+            if (slot.sequence != sequence || slot.acknowledged) {
+                continue;
+            }
+            long timeout = Math.min(MAX_TIMEOUT, getTimeout() << Math.min(slot.retransmits, 16));
+            if (now - slot.sendTime < timeout * 1000000L) {
+                continue;
+            }
+
+            ByteBuffer data = ByteBuffer.wrap(slot.data, 0, slot.length);
+            for (int i = 0; i < slot.packets; i++) {
+                int length = data.getInt();
+                ByteBuffer packet = ByteBuffer.wrap(slot.data, data.position(), length);
+                data.position(data.position() + length);
+                bytes += sender.write(packet);
+            }
+            slot.sendTime = now;
+            slot.retransmits++;
+            retransmits++;
+            count++;
+        }
+        return bytes;
+    }
+
+
+    /**
+     * Gets the retransmit timeout of a sequence that is not retransmitted yet
+     *
+     * @return the timeout in milliseconds
+     */
+    synchronized long getTimeout() {
+        if (Double.isNaN(smoothedRtt)) {
+            return INITIAL_TIMEOUT;
+        }
+        return Math.max(MIN_TIMEOUT, Math.min(MAX_TIMEOUT, (long) Math.ceil(smoothedRtt + 4 * rttVariance)));
+    }
+
+
+    /**
+     * Gets the smoothed round trip time
+     *
+     * @return the round trip time in milliseconds, NaN if it is not measured yet
+     */
+    synchronized double getSmoothedRtt() {
+        return smoothedRtt;
+    }
+
+
+    /**
+     * Gets the variation of the round trip time
+     *
+     * @return the mean deviation of the round trip time in milliseconds, NaN if it is not measured yet
+     */
+    synchronized double getRttVariance() {
+        return rttVariance;
+    }
+
+
+    /**
+     * Gets the amount of sequences that is send for the first time
+     *
+     * @return the amount of send sequences
+     */
+    synchronized long getSendSequences() {
+        return sendSequences;
+    }
+
+
+    /**
+     * Gets the amount of sequences that is acknowledged
+     *
+     * @return the amount of acknowledged sequences
+     */
+    synchronized long getAcknowledgedSequences() {
+        return acknowledgedSequences;
+    }
+
+
+    /**
+     * Gets the amount of times a sequence is send again
+     *
+     * @return the amount of retransmits
+     */
+    synchronized long getRetransmits() {
+        return retransmits;
+    }
+
+
+    /**
+     * Gets the amount of sequences that were given up without an acknowledgement
+     *
+     * @return the amount of lost sequences
+     */
+    synchronized long getLostSequences() {
+        return lostSequences;
+    }
+
+
+    /**
+     * Gets the amount of sequences in the window that are not acknowledged yet
+     *
+     * @return the amount of pending sequences
+     */
+    synchronized int getPendingSequences() {
+        int pending = 0;
+        for (Slot slot : slots) {
+            if (slot.sequence >= 0 && !slot.acknowledged) {
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+
+    /**
+     * Adds a round trip measurement to the estimation
+     *
+     * @param rtt The round trip time in milliseconds
+     */
+    private void updateRtt(double rtt) {
+        if (Double.isNaN(smoothedRtt)) {
+            smoothedRtt = rtt;
+            rttVariance = rtt / 2;
+        } else {
+            rttVariance = 0.75 * rttVariance + 0.25 * Math.abs(smoothedRtt - rtt);
+            smoothedRtt = 0.875 * smoothedRtt + 0.125 * rtt;
+        }
+    }
+
+
+    /**
+     * Slot of a sequence: its packets, each preceded by its length as int.
+     */
+    private static class Slot {
+        long sequence = -1;
+        boolean acknowledged = false;
+        long sendTime = 0;
+        int retransmits = 0;
+        byte[] data = new byte[0];
+        int length = 0;
+        int packets = 0;
+    }
+}
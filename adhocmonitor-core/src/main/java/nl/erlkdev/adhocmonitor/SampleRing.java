@@ -0,0 +1,187 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Fixed capacity ring buffer of time value pairs, stored as primitive longs (the values as raw double bits).
+ *
+ * The ring has a single writer (the sampler thread) and any amount of readers. The writer fills a slot and
+ * then publishes it by increasing the write sequence. A reader copies the published slots and checks the write
+ * sequence again afterwards: slots that the writer could have overwritten during the copy are discarded.
+ * Readers never block the writer. The slots are atomic arrays, so the reads of the slots can't be reordered
+ * after the check of the write sequence.
+ *
+ * When the ring is full the oldest samples are overwritten. The samples that are overwritten before they
+ * are drained are counted, so the loss is visible.
+ */
+public class SampleRing {
+
+    private volatile String name;
+    private final int capacity;
+    private final AtomicLongArray timeStamps;
+    private final AtomicLongArray values;
+
+    /* Amount of samples that is written, the next sample is written at this sequence. */
+    private final AtomicLong writeSequence = new AtomicLong();
+
+    /* Sequence of the next sample to drain, guarded by this. */
+    private long drainSequence = 0;
+    private long overwrittenSamples = 0;
+
+
+    /**
+     * Constructor for the sample ring
+     *
+     * @param name The name of the series
+     * @param capacity The maximum amount of samples in the ring
+     */
+    public SampleRing(String name, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.timeStamps = new AtomicLongArray(capacity);
+        this.values = new AtomicLongArray(capacity);
+    }
+
+
+    /**
+     * Adds a sample to the ring, overwriting the oldest sample when the ring is full
+     * This function may only be called from one thread.
+     *
+     * @param timeStamp The time stamp of the sample
+     * @param value The value of the sample
+     */
+    public void add(long timeStamp, double value) {
+        long sequence = writeSequence.get();
+        int index = (int) (sequence % capacity);
+        timeStamps.lazySet(index, timeStamp);
+        values.lazySet(index, Double.doubleToRawLongBits(value));
+        writeSequence.lazySet(sequence + 1);
+    }
+
+
+    /**
+     * Copies the samples from a sequence to the end of the ring into a snapshot series, in the order they were added
+     * Samples that are already overwritten are skipped.
+     *
+     * @param fromSequence The sequence of the first sample to copy
+     * @param series The series to which the samples are added
+     * @return The sequence after the last copied sample
+     */
+    public long read(long fromSequence, NodeSnapshot.Series series) {
+        long end = writeSequence.get();
+        copy(Math.max(fromSequence, end - capacity), end, series);
+        return end;
+    }
+
+
+    /**
+     * Moves the samples that are added since the previous drain to a snapshot series
+     * The samples that were overwritten since the previous drain are counted.
+     *
+     * @param series The series to which the samples are added
+     */
+    public void drainTo(NodeSnapshot.Series series) {
+        drainTo(series, writeSequence.get());
+    }
+
+
+    /**
+     * Moves the samples that are added since the previous drain, up to a sequence, to a snapshot series
+     * The samples after the sequence stay in the ring for the next drain.
+     *
+     * @param series The series to which the samples are added
+     * @param endSequence The sequence after the last sample to move, for instance the write sequence at a tick
+     */
+    public synchronized void drainTo(NodeSnapshot.Series series, long endSequence) {
+        long end = Math.min(endSequence, writeSequence.get());
+        if (end <= drainSequence) {
+            return;
+        }
+        long first = copy(Math.max(drainSequence, end - capacity), end, series);
+        overwrittenSamples += first - drainSequence;
+        drainSequence = end;
+    }
+
+
+    /**
+     * Copies a range of samples into a snapshot series and removes the samples that were overwritten during the copy
+     *
+     * @param start The sequence of the first sample
+     * @param end The sequence after the last sample
+     * @param series The series to which the samples are added
+     * @return The sequence of the first sample that is kept
+     */
+    private long copy(long start, long end, NodeSnapshot.Series series) {
+        int first = series.size();
+        for (long sequence = start; sequence < end; sequence++) {
+            int index = (int) (sequence % capacity);
+            series.add(timeStamps.get(index), Double.longBitsToDouble(values.get(index)));
+        }
+
+        /* The writer may be writing the slot of the sequence after the write sequence, so that slot counts as well. */
+        long overwritten = Math.min(writeSequence.get() + 1 - capacity - start, end - start);
+        if (overwritten > 0) {
+            series.removeRange(first, first + (int) overwritten);
+            return start + overwritten;
+        }
+        return start;
+    }
+
+
+    /**
+     * Function to give the ring to another series, the samples that aren't drained yet are discarded
+     * This function may only be called from the writer thread.
+     *
+     * @param name The name of the other series
+     */
+    synchronized void rename(String name) {
+        this.name = name;
+        drainSequence = writeSequence.get();
+    }
+
+
+    /**
+     * Gets the name of the series
+     *
+     * @return the name of the series
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Gets the capacity of the ring
+     *
+     * @return the maximum amount of samples in the ring
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+
+    /**
+     * Gets the sequence of the next sample, which is the amount of samples that are added to the ring
+     *
+     * @return the write sequence
+     */
+    public long getWriteSequence() {
+        return writeSequence.get();
+    }
+
+
+    /**
+     * Gets the amount of samples that were overwritten before they were drained
+     *
+     * @return the amount of overwritten samples
+     */
+    public synchronized long getOverwrittenSamples() {
+        return overwrittenSamples;
+    }
+}
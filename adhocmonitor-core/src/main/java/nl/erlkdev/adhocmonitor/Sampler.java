@@ -0,0 +1,24 @@
+package nl.erlkdev.adhocmonitor;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Interface for a sampler that is run by the sampler engine.
+ * The sampler engine calls all its samplers on the same tick, so the samples of the different samplers line up.
+ */
+public interface Sampler {
+
+    /**
+     * Function that is called when the sampler engine starts
+     * It should store the start values that are used to calculate the first sample.
+     */
+    void reset();
+
+    /**
+     * Function that is called by the sampler engine on every tick
+     *
+     * @param timeStamp The monitor time of the tick
+     * @param elapsed The time in milliseconds since the previous tick
+     */
+    void sample(long timeStamp, long elapsed);
+}
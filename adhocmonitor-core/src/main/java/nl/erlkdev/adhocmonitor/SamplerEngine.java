@@ -0,0 +1,363 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Engine that runs all the samplers of a monitor node on a single scheduler thread.
+ * A shared scheduler can be provided to run the samplers of multiple nodes on the same thread(s).
+ *
+ * Every tick is an epoch: the epoch is odd while the samplers of a tick are running and even between the ticks.
+ * A reader that wants the samples of complete ticks reads the ends of the series between beginRead and
+ * validateRead, and reads them again if a tick ran in the meantime. The samplers never wait for a reader.
+ *
+ * A sampler that throws an exception is kept, as the failure can be transient (for instance a failed read of
+ * /proc). The failures are counted in the metrics and the first failure of a sampler is passed to the error
+ * listener. A sampler that fails on MAX_CONSECUTIVE_FAILURES ticks in a row is disabled until the next start.
+ */
+public class SamplerEngine {
+
+    /* Default sample period in milliseconds. */
+    public static final long DEFAULT_PERIOD = 200;
+
+    /* Amount of ticks in a row a sampler can fail before it is disabled. */
+    public static final int MAX_CONSECUTIVE_FAILURES = 10;
+
+    private final MonitorNode monitorNode;
+    private final MonitorMetrics metrics;
+    private final ScheduledExecutorService sharedExecutor;
+    private final List<Sampler> samplers = new CopyOnWriteArrayList<>();
+
+    /* Samplers that are disabled after their failures, and the failures in a row of the failing samplers. */
+    private final List<Sampler> disabledSamplers = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<Sampler, Integer> failures = new ConcurrentHashMap<>();
+    private volatile MonitorClient.ErrorListener errorListener = null;
+
+    /* Scheduler state, guarded by this. */
+    private ScheduledExecutorService executor = null;
+    private ScheduledFuture<?> tickTask = null;
+    private long period = DEFAULT_PERIOD;
+
+    /* Time of the previous tick, only used on the scheduler thread. */
+    private long lastTick;
+
+    /* Epoch of the ticks, odd while a tick is running. */
+    private final AtomicLong epoch = new AtomicLong();
+
+
+    /**
+     * Constructor for a sampler engine with its own scheduler thread
+     *
+     * @param monitorNode The monitor node that provides the monitor time
+     */
+    public SamplerEngine(MonitorNode monitorNode) {
+        this(monitorNode, null);
+    }
+
+
+    /**
+     * Constructor for a sampler engine that runs on a shared scheduler
+     * The shared scheduler is not shut down when the engine stops.
+     *
+     * @param monitorNode The monitor node that provides the monitor time
+     * @param sharedExecutor The shared scheduler, or null to use an own scheduler thread
+     */
+    public SamplerEngine(MonitorNode monitorNode, ScheduledExecutorService sharedExecutor) {
+        this.monitorNode = monitorNode;
+        this.metrics = monitorNode.getMetrics();
+        this.sharedExecutor = sharedExecutor;
+    }
+
+
+    /**
+     * Function to add a sampler to the engine
+     *
+     * @param sampler The sampler
+     */
+    public void addSampler(Sampler sampler) {
+        sampler.reset();
+        samplers.add(sampler);
+    }
+
+
+    /**
+     * Function to remove a sampler from the engine
+     *
+     * @param sampler The sampler
+     */
+    public void removeSampler(Sampler sampler) {
+        samplers.remove(sampler);
+        disabledSamplers.remove(sampler);
+        failures.remove(sampler);
+    }
+
+
+    /**
+     * Function to set the listener for the failures of the samplers
+     *
+     * @param errorListener The error listener, or null to ignore the errors
+     */
+    public void setErrorListener(MonitorClient.ErrorListener errorListener) {
+        this.errorListener = errorListener;
+    }
+
+
+    /**
+     * Function that returns if a sampler is disabled after its failures
+     *
+     * @param sampler The sampler
+     * @return true if the sampler is disabled until the next start, else false
+     */
+    public boolean isDisabled(Sampler sampler) {
+        return disabledSamplers.contains(sampler);
+    }
+
+
+    /**
+     * Function to set the sample period
+     * If the engine is running, the samplers are rescheduled on the new period.
+     *
+     * @param period The sample period in milliseconds
+     */
+    public synchronized void setPeriod(long period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Sample period must be positive");
+        }
+        this.period = period;
+
+        if (tickTask != null) {
+            tickTask.cancel(false);
+            tickTask = executor.scheduleAtFixedRate(tick, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    /**
+     * Function that returns the sample period
+     *
+     * @return The sample period in milliseconds
+     */
+    public synchronized long getPeriod() {
+        return period;
+    }
+
+
+    /**
+     * Function that returns if the engine is running
+     *
+     * @return true if the engine is running, else false
+     */
+    public synchronized boolean isRunning() {
+        return tickTask != null;
+    }
+
+
+    /**
+     * Starts the sampler engine
+     * The samplers are reset and then called on every period.
+     */
+    public synchronized void start() {
+        if (tickTask != null) {
+            return;
+        }
+
+        executor = sharedExecutor;
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        }
+
+        executor.execute(reset);
+        tickTask = executor.scheduleAtFixedRate(tick, period, period, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Stops the sampler engine
+     * Samplers that implement Closeable are closed on the scheduler thread after the last tick.
+     * If the engine uses its own scheduler thread, the thread is stopped.
+     */
+    public synchronized void stop() {
+        if (tickTask == null) {
+            return;
+        }
+
+        tickTask.cancel(false);
+        tickTask = null;
+
+        executor.execute(close);
+        if (executor != sharedExecutor) {
+            executor.shutdown();
+        }
+        executor = null;
+    }
+
+
+    /**
+     * Function to start a read of the samples of the complete ticks
+     * If a tick is running, it waits until the tick is finished. A tick only takes the time to run the samplers.
+     *
+     * @return The epoch of the read, to validate it with
+     */
+    long beginRead() {
+        long current = epoch.get();
+        while ((current & 1) != 0) {
+            Thread.yield();
+            current = epoch.get();
+        }
+        return current;
+    }
+
+
+    /**
+     * Function to check that no tick ran during a read
+     *
+     * @param readEpoch The epoch that is returned by beginRead
+     * @return true if the read is consistent, false if it has to be done again
+     */
+    boolean validateRead(long readEpoch) {
+        return epoch.get() == readEpoch;
+    }
+
+
+    /**
+     * Runs a sampler and counts its failures
+     * The time of the sampler is added to the metrics of the node. A sampler that keeps failing (for instance
+     * a sampler for a file that does not exist) is disabled, so it doesn't fail on every tick.
+     *
+     * @param sampler The sampler
+     * @param timeStamp The monitor time of the tick
+     * @param elapsed The time in milliseconds since the previous tick
+     */
+    private void runSampler(Sampler sampler, long timeStamp, long elapsed) {
+        long start = System.nanoTime();
+        try {
+            sampler.sample(timeStamp, elapsed);
+            metrics.recordSampler(sampler, System.nanoTime() - start);
+            if (!failures.isEmpty()) {
+                failures.remove(sampler);
+            }
+        } catch (Exception e) {
+            metrics.recordSamplerFailure();
+            Integer previous = failures.get(sampler);
+            int count = previous != null ? previous + 1 : 1;
+            String name = sampler.getClass().getSimpleName();
+            if (count >= MAX_CONSECUTIVE_FAILURES) {
+                failures.remove(sampler);
+                samplers.remove(sampler);
+                disabledSamplers.add(sampler);
+                reportError("Sampler " + name + " is disabled after " + count + " failures in a row: " + e);
+            } else {
+                failures.put(sampler, count);
+                if (count == 1) {
+                    reportError("Sampler " + name + " failed: " + e);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Function to pass an error to the error listener
+     *
+     * @param errorMsg The error message
+     */
+    private void reportError(String errorMsg) {
+        MonitorClient.ErrorListener listener = errorListener;
+        if (listener != null) {
+            listener.onError(errorMsg);
+        }
+    }
+
+
+    /**
+     * Task that resets the samplers when the engine starts, the disabled samplers get a new chance.
+     */
+    private final Runnable reset = new Runnable() {
+        @Override
+        public void run() {
+            lastTick = System.nanoTime();
+            for (Sampler sampler : disabledSamplers) {
+                disabledSamplers.remove(sampler);
+                samplers.add(sampler);
+            }
+            failures.clear();
+            for (Sampler sampler : samplers) {
+                sampler.reset();
+            }
+        }
+    };
+
+
+    /**
+     * Task that closes the samplers when the engine stops, they are opened again on the next reset.
+     */
+    private final Runnable close = new Runnable() {
+        @Override
+        public void run() {
+            for (Sampler sampler : samplers) {
+                if (sampler instanceof Closeable) {
+                    try {
+                        ((Closeable) sampler).close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+    };
+
+
+    /**
+     * Task that runs all the samplers with the same time stamp.
+     */
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            /* Calculates the time since the previous tick. */
+            long now = System.nanoTime();
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(now - lastTick);
+            if (elapsed <= 0) {
+                return;
+            }
+            lastTick = now;
+
+            long timeStamp = monitorNode.getMonitorTime();
+            long allocated = MonitorMetrics.threadAllocatedBytes();
+            epoch.incrementAndGet();
+            try {
+                for (Sampler sampler : samplers) {
+                    runSampler(sampler, timeStamp, elapsed);
+                }
+            } finally {
+                epoch.incrementAndGet();
+            }
+            metrics.recordTick(System.nanoTime() - now);
+            metrics.recordAllocation(allocated);
+        }
+    };
+
+
+    /**
+     * Thread factory for the scheduler thread.
+     * The thread is a daemon thread, so it never keeps the application alive.
+     */
+    private static final ThreadFactory threadFactory = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "AdhocMonitor-Sampler");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+}
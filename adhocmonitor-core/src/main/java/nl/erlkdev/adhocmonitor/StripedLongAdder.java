@@ -0,0 +1,93 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Lock-free long counter that spreads concurrent updates over multiple stripes.
+ * Each thread adds to its own stripe, so threads that update the counter at the same time rarely contend.
+ * The sum of all stripes is the exact total of all the additions.
+ */
+public class StripedLongAdder {
+
+    /* Each stripe uses its own cache line (8 longs of 8 bytes), to prevent false sharing. */
+    private static final int PADDING = 8;
+
+    /* Maximum amount of stripes. */
+    private static final int MAX_STRIPES = 16;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+
+    /**
+     * Constructor for an adder with a stripe for each available processor
+     */
+    public StripedLongAdder() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+
+    /**
+     * Constructor for an adder with a given amount of stripes
+     * The amount of stripes is rounded up to a power of two.
+     *
+     * @param stripes The amount of stripes
+     */
+    public StripedLongAdder(int stripes) {
+        int size = 1;
+        while (size < stripes && size < MAX_STRIPES) {
+            size <<= 1;
+        }
+        this.cells = new AtomicLongArray(size * PADDING);
+        this.mask = size - 1;
+    }
+
+
+    /**
+     * Adds a value to the counter
+     *
+     * @param value The value to add
+     */
+    public void add(long value) {
+        cells.getAndAdd(stripe() * PADDING, value);
+    }
+
+
+    /**
+     * Increments the counter by one
+     */
+    public void increment() {
+        add(1);
+    }
+
+
+    /**
+     * Returns the sum of all the stripes
+     * Additions that happen during the call may or may not be included.
+     *
+     * @return The total of the counter
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i <= mask; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+
+    /**
+     * Returns the stripe of the current thread
+     *
+     * @return The stripe index
+     */
+    private int stripe() {
+        long id = Thread.currentThread().getId();
+
+        /* Mixes the bits of the thread id, because thread ids are often sequential. */
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
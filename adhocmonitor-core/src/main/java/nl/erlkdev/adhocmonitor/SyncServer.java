@@ -0,0 +1,238 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * TCP server that answers the sync and codec requests of the nodes, like the TCP receiver of the monitor
+ * visualization process. It is used by an aggregator for its neighbours, and by the collector for the nodes.
+ *
+ * A sync request is answered with the time of the time source when the request was read and when the response is
+ * send. The dictionary of a codec request is added to the decompressor, so the compressed packets of the node can be
+ * decompressed by the receiver that shares the decompressor.
+ *
+ * Every connection is served by its own thread, a node can send multiple requests over one connection.
+ */
+public class SyncServer {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int READ_TIMEOUT = 10000;
+    private static final int MAX_REQUEST_SIZE = 8192;
+
+    private final InetSocketAddress address;
+    private final TimeSource timeSource;
+    private final PacketDecompressor decompressor;
+    private final String threadName;
+
+    private ServerSocket serverSocket = null;
+
+
+    /**
+     * Constructor for the sync server
+     *
+     * @param address The address of the TCP port, port 0 binds to a free port
+     * @param timeSource The time that is send in the sync responses
+     * @param decompressor The decompressor the dictionaries of the codec requests are added to
+     * @param threadName The name of the threads of the server
+     */
+    public SyncServer(InetSocketAddress address, TimeSource timeSource, PacketDecompressor decompressor,
+                      String threadName) {
+        this.address = address;
+        this.timeSource = timeSource;
+        this.decompressor = decompressor;
+        this.threadName = threadName;
+    }
+
+
+    /**
+     * Binds the port and starts the accept thread
+     *
+     * @throws IOException If the port couldn't be bound
+     */
+    public synchronized void start() throws IOException {
+        if (serverSocket != null) {
+            return;
+        }
+        ServerSocket newServerSocket = new ServerSocket();
+        try {
+            newServerSocket.setReuseAddress(true);
+            newServerSocket.bind(address);
+        } catch (IOException e) {
+            newServerSocket.close();
+            throw e;
+        }
+        serverSocket = newServerSocket;
+
+        final ServerSocket server = newServerSocket;
+        startThread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop(server);
+            }
+        });
+    }
+
+
+    /**
+     * Closes the port, the accept thread stops and the open connections are closed when their read times out
+     */
+    public synchronized void stop() {
+        if (serverSocket == null) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        serverSocket = null;
+    }
+
+
+    /**
+     * Gets the address of the TCP port
+     *
+     * @return the bound address, or null if the server isn't started
+     */
+    public synchronized InetSocketAddress getLocalAddress() {
+        return serverSocket != null ? (InetSocketAddress) serverSocket.getLocalSocketAddress() : null;
+    }
+
+
+    /**
+     * Accepts the TCP connections until the server socket is closed
+     *
+     * @param server The server socket
+     */
+    private void acceptLoop(ServerSocket server) {
+        while (!server.isClosed()) {
+            final Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                /* The server socket is closed. */
+                break;
+            }
+            startThread(new Runnable() {
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            });
+        }
+    }
+
+
+    /**
+     * Answers the sync and codec requests of a node until it closes the connection
+     * A request is a JSON object, the responses are JSON lines like the responses of the monitor.
+     *
+     * @param socket The connection
+     */
+    private void serve(Socket socket) {
+        byte[] request = new byte[MAX_REQUEST_SIZE];
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(READ_TIMEOUT);
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            while (true) {
+                /* A request ends with a closing brace, a codec request can take multiple reads. */
+                int length = 0;
+                long time1d = 0;
+                do {
+                    int read = in.read(request, length, request.length - length);
+                    if (read < 0) {
+                        return;
+                    }
+                    if (length == 0) {
+                        time1d = timeSource.getTime();
+                    }
+                    length += read;
+                } while (request[length - 1] != '}' && length < request.length);
+
+                String text = new String(request, 0, length, UTF8);
+                String response;
+                if (text.contains("\"type\":\"sync\"")) {
+                    response = "{\"type\":\"sync\",\"time1d\":" + time1d + ",\"time2\":" + timeSource.getTime() + "}\n";
+                } else if (text.contains("\"type\":\"codec\"")) {
+                    response = negotiate(text);
+                } else {
+                    continue;
+                }
+                out.write(response.getBytes(UTF8));
+                out.flush();
+            }
+        } catch (IOException e) {
+            /* The node closed the connection or stopped responding. */
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+
+    /**
+     * Keeps the compression dictionary of a codec request
+     *
+     * @param request The codec request
+     * @return The response with the chosen codec
+     */
+    private String negotiate(String request) {
+        String key = "\"dictionary\":\"";
+        int start = request.indexOf(key);
+        int end = start >= 0 ? request.indexOf('"', start + key.length()) : -1;
+        if (!request.contains("\"deflate\"") || end < 0 || (end - start - key.length()) % 2 != 0) {
+            return "{\"type\":\"codec\",\"codec\":\"none\"}\n";
+        }
+
+        byte[] dictionary = new byte[(end - start - key.length()) / 2];
+        for (int i = 0; i < dictionary.length; i++) {
+            int position = start + key.length() + i * 2;
+            int high = Character.digit(request.charAt(position), 16);
+            int low = Character.digit(request.charAt(position + 1), 16);
+            if (high < 0 || low < 0) {
+                return "{\"type\":\"codec\",\"codec\":\"none\"}\n";
+            }
+            dictionary[i] = (byte) ((high << 4) | low);
+        }
+        int id = decompressor.addDictionary(dictionary);
+        return "{\"type\":\"codec\",\"codec\":\"deflate\",\"dictionaryId\":" + (id & 0xFFFFFFFFL) + "}\n";
+    }
+
+
+    /**
+     * Starts a daemon thread
+     *
+     * @param runnable The task of the thread
+     */
+    private void startThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+
+    /**
+     * The time of the sync responses.
+     */
+    public interface TimeSource {
+
+        /**
+         * Gets the current time
+         *
+         * @return the time in milliseconds
+         */
+        long getTime();
+    }
+}
@@ -0,0 +1,463 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Aggregator role of a node: it receives the data packets of its neighbours and relays them upstream with its own
+ * packets, so nodes that are several hops away from the monitor can be monitored, and the monitor receives a few
+ * large datagrams instead of many small ones.
+ *
+ * The neighbours use the aggregator as their monitor: they send their data packets to its UDP port, and sync
+ * their time and negotiate their compression over its TCP port. The aggregator answers the time sync with its own
+ * monitor time, so the neighbours are synchronized with the monitor through the aggregator.
+ *
+ * Only the packets of the current neighbours of the node are accepted, and the packets that those neighbours
+ * relayed for nodes further away. The received packets are queued and added to the send pipeline of the node on
+ * its next send, so with batching they are send together with the own packet of the node in one datagram, which
+ * is compressed if compression is enabled. Every relayed packet keeps the address, time stamp and sequence number
+ * of its node, and gets the address of the aggregator in its relay path.
+ *
+ * The relayed packets keep the acknowledgement request of their node, and the monitor acknowledges them with the
+ * address of their node. The aggregator only acknowledges a packet to the neighbour when that acknowledgement
+ * arrives, so a packet that is lost upstream is retransmitted by its node. The aggregator remembers where the
+ * newest packet of every node came from, and passes the acknowledgement back along the relay path: to the node
+ * itself, or as an acknowledgement of relayed packets to the neighbour that relayed it. The packet sender of the
+ * node passes the acknowledgements to the aggregator, see PacketSender.setRelayedAckListener.
+ *
+ * When the queue is full the oldest packets are dropped.
+ */
+public class TelemetryAggregator implements PacketSender.RelayedAckListener {
+
+    /* Default maximum amount of packets that waits for the next send. */
+    public static final int DEFAULT_MAX_PENDING = 1024;
+
+    private final MonitorNode monitorNode;
+    private final String address;
+    private final InetSocketAddress udpAddress;
+    private final InetSocketAddress tcpAddress;
+    private final int maxPending;
+
+    /* Receive state, only used by the receive thread. */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(PacketSender.MAX_PACKET_SIZE);
+    private final List<NodeSnapshot> decoded = new ArrayList<>();
+    private final BinaryPacketDecoder binaryDecoder = new BinaryPacketDecoder();
+    private final JsonPacketDecoder jsonDecoder = new JsonPacketDecoder();
+    private final PacketDecompressor decompressor = new PacketDecompressor();
+
+    /* Queued snapshots and the reused snapshots, guarded by this. */
+    private ArrayDeque<NodeSnapshot> pending = new ArrayDeque<>();
+    private ArrayDeque<NodeSnapshot> sending = new ArrayDeque<>();
+    private final ArrayDeque<NodeSnapshot> free = new ArrayDeque<>();
+
+    /* The route back to every node that requested an acknowledgement, guarded by routes. */
+    private final HashMap<String, Route> routes = new HashMap<>();
+
+    /* Acknowledgement state, only used by the acknowledgement thread of the packet sender. */
+    private final ByteBuffer ackBuffer = ByteBuffer.allocate(PacketSender.ACK_BUFFER_SIZE);
+    private final long[] ackSequences = new long[128];
+    private final String[] ackAddresses = new String[128];
+    private boolean[] forwarded = new boolean[128];
+
+    private DatagramChannel channel = null;
+    private SyncServer syncServer = null;
+
+    /* Statistics */
+    private volatile long relayedPackets = 0;
+    private volatile long rejectedPackets = 0;
+    private volatile long droppedPackets = 0;
+    private volatile long decodeErrors = 0;
+
+
+    /**
+     * Constructor for the aggregator
+     *
+     * @param monitorNode The monitor node of the aggregator, its current neighbours are accepted
+     * @param address The address of the node, which is added to the relay path
+     * @param udpAddress The address of the UDP port for the data packets of the neighbours
+     * @param tcpAddress The address of the TCP port for the time sync and compression of the neighbours
+     * @param maxPending The maximum amount of packets that waits for the next send
+     */
+    public TelemetryAggregator(MonitorNode monitorNode, String address, InetSocketAddress udpAddress,
+                               InetSocketAddress tcpAddress, int maxPending) {
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("Max pending must be at least 1");
+        }
+        this.monitorNode = monitorNode;
+        this.address = address;
+        this.udpAddress = udpAddress;
+        this.tcpAddress = tcpAddress;
+        this.maxPending = maxPending;
+    }
+
+
+    /**
+     * Binds the ports and starts the receive threads
+     *
+     * @throws IOException If a port couldn't be bound
+     */
+    public synchronized void start() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        DatagramChannel newChannel = DatagramChannel.open();
+        SyncServer newSyncServer = new SyncServer(tcpAddress, new SyncServer.TimeSource() {
+            @Override
+            public long getTime() {
+                return monitorNode.getMonitorTime();
+            }
+        }, decompressor, "AdhocMonitor-AggregatorSync");
+        try {
+            newChannel.bind(udpAddress);
+            newSyncServer.start();
+        } catch (IOException e) {
+            newChannel.close();
+            throw e;
+        }
+        channel = newChannel;
+        syncServer = newSyncServer;
+
+        final DatagramChannel receiveChannel = newChannel;
+        startThread(new Runnable() {
+            @Override
+            public void run() {
+                receiveLoop(receiveChannel);
+            }
+        }, "AdhocMonitor-Aggregator");
+    }
+
+
+    /**
+     * Closes the ports, the receive threads stop
+     */
+    public synchronized void stop() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        syncServer.stop();
+        channel = null;
+        syncServer = null;
+    }
+
+
+    /**
+     * Function to send the queued packets of the neighbours with a packet sender
+     * This is called on the send thread, after the own packet of the node is send.
+     *
+     * @param sender The packet sender of the node
+     * @return The amount of bytes that is send
+     * @throws IOException If a packet couldn't be send, the remaining packets of this send are dropped
+     */
+    public int relay(PacketSender sender) throws IOException {
+        ArrayDeque<NodeSnapshot> snapshots;
+        synchronized (this) {
+            snapshots = pending;
+            pending = sending;
+            sending = snapshots;
+        }
+
+        int bytes = 0;
+        try {
+            for (NodeSnapshot snapshot : snapshots) {
+                bytes += sender.send(snapshot);
+                relayedPackets++;
+            }
+        } finally {
+            synchronized (this) {
+                while (!snapshots.isEmpty()) {
+                    free.add(snapshots.pollFirst());
+                }
+            }
+        }
+        return bytes;
+    }
+
+
+    /**
+     * Gets the amount of packets of the neighbours that is relayed
+     *
+     * @return the amount of relayed packets
+     */
+    public long getRelayedPackets() {
+        return relayedPackets;
+    }
+
+
+    /**
+     * Gets the amount of packets that is rejected, because they came from a node that isn't a neighbour
+     *
+     * @return the amount of rejected packets
+     */
+    public long getRejectedPackets() {
+        return rejectedPackets;
+    }
+
+
+    /**
+     * Gets the amount of packets that is dropped, because the queue was full
+     *
+     * @return the amount of dropped packets
+     */
+    public long getDroppedPackets() {
+        return droppedPackets;
+    }
+
+
+    /**
+     * Gets the amount of datagrams that couldn't be decoded
+     *
+     * @return the amount of decode errors
+     */
+    public long getDecodeErrors() {
+        return decodeErrors;
+    }
+
+
+    /**
+     * Gets the local address of the UDP port
+     *
+     * @return the address, or null if the aggregator isn't started
+     * @throws IOException If the address couldn't be read
+     */
+    public synchronized InetSocketAddress getUdpAddress() throws IOException {
+        return channel != null ? (InetSocketAddress) channel.getLocalAddress() : null;
+    }
+
+
+    /**
+     * Gets the local address of the TCP port
+     *
+     * @return the address, or null if the aggregator isn't started
+     */
+    public synchronized InetSocketAddress getTcpAddress() {
+        return syncServer != null ? syncServer.getLocalAddress() : null;
+    }
+
+
+    /**
+     * Receives the datagrams of the neighbours until the channel is closed
+     *
+     * @param channel The channel of the UDP port
+     */
+    private void receiveLoop(DatagramChannel channel) {
+        while (channel.isOpen()) {
+            buffer.clear();
+            SocketAddress source;
+            try {
+                source = channel.receive(buffer);
+            } catch (IOException e) {
+                /* The channel is closed. */
+                break;
+            }
+            buffer.flip();
+            long start = System.nanoTime();
+            handle(buffer, source);
+            monitorNode.getMetrics().recordReceive(System.nanoTime() - start);
+        }
+    }
+
+
+    /**
+     * Decodes a datagram of a neighbour and queues its data packets
+     *
+     * @param datagram The datagram
+     * @param source The address the datagram came from, the acknowledgements of its packets are send to it
+     */
+    private void handle(ByteBuffer datagram, SocketAddress source) {
+        int count;
+        try {
+            if (PacketDecompressor.isCompressedPacket(datagram)) {
+                datagram = decompressor.decompress(datagram);
+            }
+            if (BinaryPacketDecoder.isBatchPacket(datagram)) {
+                count = binaryDecoder.decodeBatch(datagram, decoded);
+            } else if (BinaryPacketDecoder.isBinaryPacket(datagram)) {
+                if (decoded.isEmpty()) {
+                    decoded.add(new NodeSnapshot());
+                }
+                binaryDecoder.decode(datagram, decoded.get(0));
+                count = 1;
+            } else {
+                count = jsonDecoder.decodePackets(datagram, decoded);
+            }
+        } catch (IllegalArgumentException e) {
+            decodeErrors++;
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            NodeSnapshot packet = decoded.get(i);
+            if (!isAccepted(packet)) {
+                rejectedPackets++;
+                continue;
+            }
+            if (packet.isAckRequested() && packet.getSequence() >= 0) {
+                addRoute(packet, source);
+            }
+            enqueue(packet);
+        }
+    }
+
+
+    /**
+     * Remembers where the packets of a node come from, for its acknowledgements
+     *
+     * @param packet The packet that requests an acknowledgement
+     * @param source The address the packet came from
+     */
+    private void addRoute(NodeSnapshot packet, SocketAddress source) {
+        synchronized (routes) {
+            Route route = routes.get(packet.getAddress());
+            if (route == null) {
+                /* The routes of nodes that left are forgotten at once, they are added again on their next packet. */
+                if (routes.size() >= maxPending) {
+                    routes.clear();
+                }
+                route = new Route();
+                routes.put(packet.getAddress(), route);
+            }
+            route.source = source;
+            route.relayed = packet.getRelay() != null;
+        }
+    }
+
+
+    /**
+     * Function to pass the acknowledgements of the relayed packets back to the neighbours they came from
+     * The acknowledgements of a node that send its packets itself are send to it as normal acknowledgements,
+     * the acknowledgements of the nodes behind a neighbour are send to that neighbour as one acknowledgement of
+     * relayed packets.
+     *
+     * @param addresses The addresses of the nodes of the packets
+     * @param sequences The sequence numbers of the packets
+     * @param count The amount of sequence numbers
+     */
+    @Override
+    public void onRelayedAck(String[] addresses, long[] sequences, int count) {
+        DatagramChannel channel;
+        synchronized (this) {
+            channel = this.channel;
+        }
+        if (channel == null) {
+            return;
+        }
+        if (forwarded.length < count) {
+            forwarded = new boolean[count];
+        }
+        Arrays.fill(forwarded, 0, count, false);
+
+        synchronized (routes) {
+            for (int i = 0; i < count; i++) {
+                Route route = routes.get(addresses[i]);
+                if (forwarded[i] || route == null) {
+                    continue;
+                }
+
+                /* Collects the acknowledgements that go to the same neighbour. */
+                int acks = 0;
+                for (int j = i; j < count && acks < ackSequences.length; j++) {
+                    if (forwarded[j]) {
+                        continue;
+                    }
+                    Route other = j == i ? route : routes.get(addresses[j]);
+                    boolean same = route.relayed ? other != null && other.relayed && other.source.equals(route.source)
+                            : addresses[j].equals(addresses[i]);
+                    if (same) {
+                        forwarded[j] = true;
+                        ackAddresses[acks] = addresses[j];
+                        ackSequences[acks++] = sequences[j];
+                    }
+                }
+
+                ackBuffer.clear();
+                try {
+                    if (route.relayed) {
+                        BinaryPacketEncoder.encodeRelayedAck(ackAddresses, ackSequences, acks, ackBuffer);
+                    } else {
+                        BinaryPacketEncoder.encodeAck(ackSequences, acks, ackBuffer);
+                    }
+                    ackBuffer.flip();
+                    channel.send(ackBuffer, route.source);
+                } catch (BufferOverflowException e) {
+                    /* The addresses are too long for one acknowledgement, the nodes retransmit the packets. */
+                } catch (IOException e) {
+                    /* The neighbour retransmits the packets. */
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Checks if a packet comes from a neighbour, directly or relayed by the neighbour
+     *
+     * @param packet The packet
+     * @return true if the packet is accepted, else false
+     */
+    private boolean isAccepted(NodeSnapshot packet) {
+        String relay = packet.getRelay();
+        String sender = relay != null ? relay.substring(relay.lastIndexOf(',') + 1) : packet.getAddress();
+        return monitorNode.getCurrentNeighbours().containsKey(sender);
+    }
+
+
+    /**
+     * Queues a copy of a packet for the next send, with the aggregator added to its relay path
+     *
+     * @param packet The packet
+     */
+    private synchronized void enqueue(NodeSnapshot packet) {
+        NodeSnapshot snapshot = free.pollFirst();
+        if (pending.size() >= maxPending) {
+            if (snapshot != null) {
+                free.add(snapshot);
+            }
+            snapshot = pending.pollFirst();
+            droppedPackets++;
+        }
+        if (snapshot == null) {
+            snapshot = new NodeSnapshot();
+        }
+        snapshot.copyFrom(packet);
+        snapshot.setRelay(packet.getRelay() != null ? packet.getRelay() + "," + address : address);
+        pending.add(snapshot);
+    }
+
+
+    /**
+     * The neighbour the acknowledgements of a node are send to.
+     */
+    private static class Route {
+        private SocketAddress source;
+        private boolean relayed;
+    }
+
+
+    /**
+     * Starts a daemon thread
+     *
+     * @param runnable The task of the thread
+     * @param name The name of the thread
+     */
+    private static void startThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
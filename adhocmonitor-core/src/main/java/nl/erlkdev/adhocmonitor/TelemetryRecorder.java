@@ -0,0 +1,280 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Recorder that writes every snapshot to a segmented, memory mapped, append-only log, for the analysis of an
+ * experiment after it is finished. The snapshots are stored as binary data packets, see TelemetrySegment for
+ * the layout, and a new segment is started when a segment is full or older than the segment duration.
+ *
+ * The snapshot is encoded on the calling thread into a pooled buffer, and written to the log by the recorder
+ * thread, so recording never waits for the disk. When the recorder thread can't keep up, the snapshots that
+ * don't fit in its queue are dropped and counted. The recording is replayed with the TelemetryReplayer.
+ */
+public class TelemetryRecorder {
+
+    /* Default size of a segment, and the time after which a new segment is started. */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final long DEFAULT_SEGMENT_DURATION = 10 * 60 * 1000;
+
+    /* Size of the queue of the recorder thread, and of the pooled buffers of the encoded snapshots. */
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int RECORD_BUFFER_SIZE = 16 * 1024;
+
+    /* Marker in the queue that stops the recorder thread. */
+    private static final ByteBuffer CLOSE = ByteBuffer.allocate(0);
+
+    private final File directory;
+    private final int segmentSize;
+    private final long segmentDuration;
+    private final BinaryPacketEncoder encoder = new BinaryPacketEncoder();
+    private final ByteBufferPool bufferPool = new ByteBufferPool(RECORD_BUFFER_SIZE, QUEUE_CAPACITY);
+    private final ArrayBlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    private Thread recorderThread = null;
+    private volatile boolean recording = false;
+    private volatile MonitorClient.ErrorListener errorListener = null;
+
+    /* Segment that is written, only used by the recorder thread. */
+    private TelemetrySegment segment = null;
+    private int nextSegment = 0;
+
+    /* Statistics */
+    private volatile long recordedSnapshots = 0;
+    private final AtomicLong droppedSnapshots = new AtomicLong();
+
+
+    /**
+     * Constructor for a recorder with the default segment size and duration
+     *
+     * @param directory The directory of the recording, it is created if it doesn't exist
+     */
+    public TelemetryRecorder(File directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_SEGMENT_DURATION);
+    }
+
+
+    /**
+     * Constructor for the recorder
+     *
+     * @param directory The directory of the recording, it is created if it doesn't exist
+     * @param segmentSize The size of a segment in bytes
+     * @param segmentDuration The time in milliseconds after which a new segment is started
+     */
+    public TelemetryRecorder(File directory, int segmentSize, long segmentDuration) {
+        int minimumSize = TelemetrySegment.HEADER_SIZE + TelemetrySegment.RECORD_HEADER_SIZE
+                + PacketSender.MAX_PACKET_SIZE + 4;
+        if (segmentSize < minimumSize) {
+            throw new IllegalArgumentException("Segment size must be at least " + minimumSize + " bytes");
+        }
+        if (segmentDuration <= 0) {
+            throw new IllegalArgumentException("Segment duration must be positive");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.segmentDuration = segmentDuration;
+    }
+
+
+    /**
+     * Function to set the listener that receives the write errors of the recorder
+     *
+     * @param errorListener The error listener, or null to ignore the errors
+     */
+    public void setErrorListener(MonitorClient.ErrorListener errorListener) {
+        this.errorListener = errorListener;
+    }
+
+
+    /**
+     * Function to start the recorder thread
+     * The segments are numbered after the segments that are already in the directory, so a recording can be
+     * continued.
+     *
+     * @throws IOException If the directory couldn't be created
+     */
+    public synchronized void start() throws IOException {
+        if (recorderThread != null) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Recording directory couldn't be created: " + directory);
+        }
+        int[] segments = TelemetrySegment.listSegments(directory);
+        nextSegment = segments.length > 0 ? segments[segments.length - 1] + 1 : 0;
+
+        recording = true;
+        recorderThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "AdhocMonitor-Recorder");
+        recorderThread.setDaemon(true);
+        recorderThread.start();
+    }
+
+
+    /**
+     * Function to record a snapshot
+     * The snapshot is encoded and queued for the recorder thread, the call doesn't wait for the disk.
+     *
+     * @param snapshot The snapshot, it can be reused after the call
+     * @return true if the snapshot is queued, false if it is dropped
+     */
+    public boolean record(NodeSnapshot snapshot) {
+        if (!recording) {
+            return false;
+        }
+
+        /* The time stamp is put before the packet, so the recorder thread doesn't decode it. */
+        ByteBuffer buffer = bufferPool.acquire();
+        buffer.putLong(snapshot.getTimeStamp());
+        try {
+            encoder.encode(snapshot, buffer);
+        } catch (BufferOverflowException e) {
+            /* A rare large snapshot gets its own buffer, the pool doesn't keep it. */
+            bufferPool.release(buffer);
+            buffer = ByteBuffer.allocate(8 + PacketSender.MAX_PACKET_SIZE);
+            buffer.putLong(snapshot.getTimeStamp());
+            try {
+                encoder.encode(snapshot, buffer);
+            } catch (BufferOverflowException e2) {
+                droppedSnapshots.incrementAndGet();
+                return false;
+            }
+        }
+        buffer.flip();
+
+        if (!queue.offer(buffer)) {
+            bufferPool.release(buffer);
+            droppedSnapshots.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Function to stop the recorder, the queued snapshots are written and the last segment is closed
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting for the recorder thread
+     */
+    public void close() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            thread = recorderThread;
+            if (thread == null || !recording) {
+                return;
+            }
+            recording = false;
+        }
+        queue.put(CLOSE);
+        thread.join();
+    }
+
+
+    /**
+     * Gets the directory of the recording
+     *
+     * @return the directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+
+    /**
+     * Gets the amount of snapshots that is written to the log
+     *
+     * @return the amount of recorded snapshots
+     */
+    public long getRecordedSnapshots() {
+        return recordedSnapshots;
+    }
+
+
+    /**
+     * Gets the amount of snapshots that is dropped, because the queue of the recorder thread was full or
+     * the recorder failed
+     *
+     * @return the amount of dropped snapshots
+     */
+    public long getDroppedSnapshots() {
+        return droppedSnapshots.get();
+    }
+
+
+    /**
+     * Loop of the recorder thread, it writes the queued snapshots until the recorder is closed or fails
+     */
+    private void writeLoop() {
+        try {
+            while (true) {
+                ByteBuffer buffer = queue.take();
+                if (buffer == CLOSE) {
+                    break;
+                }
+                write(buffer);
+                bufferPool.release(buffer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            recording = false;
+            droppedSnapshots.addAndGet(queue.size());
+            queue.clear();
+            reportError("Recording failed: " + e.getMessage());
+        } finally {
+            try {
+                closeSegment();
+            } catch (IOException e) {
+                reportError("Recording couldn't be closed: " + e.getMessage());
+            }
+        }
+    }
+
+
+    /**
+     * Writes a queued snapshot to the current segment, a new segment is started when it is full or too old
+     *
+     * @param buffer The buffer with the time stamp and the encoded snapshot
+     * @throws IOException If a segment couldn't be created or closed
+     */
+    private void write(ByteBuffer buffer) throws IOException {
+        long timeStamp = buffer.getLong();
+        if (segment != null && System.currentTimeMillis() - segment.getCreatedTime() >= segmentDuration) {
+            closeSegment();
+        }
+        if (segment == null || !segment.append(buffer, timeStamp)) {
+            closeSegment();
+            segment = TelemetrySegment.create(directory, nextSegment++, segmentSize);
+            segment.append(buffer, timeStamp);
+        }
+        recordedSnapshots++;
+    }
+
+
+    private void closeSegment() throws IOException {
+        if (segment != null) {
+            TelemetrySegment closed = segment;
+            segment = null;
+            closed.close();
+        }
+    }
+
+
+    private void reportError(String errorMsg) {
+        MonitorClient.ErrorListener listener = errorListener;
+        if (listener != null) {
+            listener.onError(errorMsg);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Replayer of a recording of the TelemetryRecorder.
+ * It reads the segments in order and passes the snapshots of a time range to a listener, at the original speed
+ * of the recording, faster, or as fast as possible. The index of a segment is used to skip the blocks of records
+ * outside the time range, so a part of a long experiment is found without reading the whole recording.
+ *
+ * The pace follows the time stamps of the snapshots. A snapshot with a time stamp before the previous one, for
+ * instance from another node with a different clock offset, is passed on without waiting.
+ */
+public class TelemetryReplayer {
+
+    private final File directory;
+    private final BinaryPacketDecoder decoder = new BinaryPacketDecoder();
+    private final NodeSnapshot snapshot = new NodeSnapshot();
+
+
+    /**
+     * Constructor for the replayer
+     *
+     * @param directory The directory of the recording
+     */
+    public TelemetryReplayer(File directory) {
+        this.directory = directory;
+    }
+
+
+    /**
+     * Function to replay the whole recording into a packet sender
+     * The snapshots are send as they are recorded, with their original sequence numbers.
+     *
+     * @param speed The speed of the replay, 1 is the original speed, 0 sends as fast as possible
+     * @param packetSender The open packet sender
+     * @return The amount of replayed snapshots
+     * @throws IOException If the recording couldn't be read or a snapshot couldn't be send
+     * @throws InterruptedException If the thread is interrupted while it waits for the next snapshot
+     */
+    public long replay(double speed, final PacketSender packetSender) throws IOException, InterruptedException {
+        return replay(Long.MIN_VALUE, Long.MAX_VALUE, speed, new SnapshotListener() {
+            @Override
+            public void onSnapshot(NodeSnapshot snapshot) throws IOException {
+                packetSender.send(snapshot);
+            }
+        });
+    }
+
+
+    /**
+     * Function to replay the snapshots of a time range
+     *
+     * @param from The first time stamp of the range
+     * @param to The last time stamp of the range
+     * @param speed The speed of the replay, 1 is the original speed, 0 replays as fast as possible
+     * @param listener The listener of the snapshots
+     * @return The amount of replayed snapshots
+     * @throws IOException If the recording couldn't be read or the listener failed
+     * @throws InterruptedException If the thread is interrupted while it waits for the next snapshot
+     */
+    public synchronized long replay(long from, long to, double speed, SnapshotListener listener)
+            throws IOException, InterruptedException {
+        if (speed < 0 || Double.isNaN(speed)) {
+            throw new IllegalArgumentException("Speed can't be negative");
+        }
+
+        long count = 0;
+        long firstTimeStamp = 0;
+        long startTime = 0;
+        for (int number : TelemetrySegment.listSegments(directory)) {
+            ByteBuffer log = mapLog(number);
+            for (long[] block : readBlocks(number, log)) {
+                if (block[3] < from || block[2] > to) {
+                    continue;
+                }
+
+                log.position((int) block[0]);
+                while (log.position() < block[1] && log.remaining() >= TelemetrySegment.RECORD_HEADER_SIZE) {
+                    int length = log.getInt();
+                    if (length <= 0 || length > log.remaining() - 8) {
+                        /* The end of a segment that wasn't closed. */
+                        break;
+                    }
+                    long timeStamp = log.getLong();
+                    int end = log.position() + length;
+                    if (timeStamp < from || timeStamp > to) {
+                        log.position(end);
+                        continue;
+                    }
+
+                    /* Waits until the snapshot is due at the replay speed. */
+                    if (count == 0) {
+                        firstTimeStamp = timeStamp;
+                        startTime = System.nanoTime();
+                    } else if (speed > 0) {
+                        long due = startTime + (long) ((timeStamp - firstTimeStamp) * 1000000L / speed);
+                        long wait = due - System.nanoTime();
+                        if (wait > 0) {
+                            Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+                        }
+                    }
+
+                    log.limit(end);
+                    try {
+                        decoder.decode(log, snapshot);
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("Corrupt record in segment " + number, e);
+                    } finally {
+                        log.limit(log.capacity());
+                        log.position(end);
+                    }
+                    listener.onSnapshot(snapshot);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Maps the log file of a segment and checks its header
+     *
+     * @param number The number of the segment
+     * @return The mapped log, positioned after the header
+     * @throws IOException If the log couldn't be read or is not a segment
+     */
+    private ByteBuffer mapLog(int number) throws IOException {
+        ByteBuffer log;
+        RandomAccessFile file = new RandomAccessFile(TelemetrySegment.getLogFile(directory, number), "r");
+        try {
+            log = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        } finally {
+            file.close();
+        }
+        if (log.remaining() < TelemetrySegment.HEADER_SIZE || log.getInt() != TelemetrySegment.MAGIC) {
+            throw new IOException("Not a segment of a recording: " + number);
+        }
+        short version = log.getShort();
+        if (version != TelemetrySegment.VERSION) {
+            throw new IOException("Unsupported segment version: " + version);
+        }
+        log.position(TelemetrySegment.HEADER_SIZE);
+        return log;
+    }
+
+
+    /**
+     * Reads the index of a segment
+     * The records after the last index entry, of a segment that wasn't closed, are added as a block without
+     * time range, so they are always read.
+     *
+     * @param number The number of the segment
+     * @param log The mapped log of the segment
+     * @return The blocks as start and end offset, smallest and largest time stamp
+     * @throws IOException If the index couldn't be read
+     */
+    private List<long[]> readBlocks(int number, ByteBuffer log) throws IOException {
+        List<long[]> blocks = new ArrayList<>();
+        File indexFile = TelemetrySegment.getIndexFile(directory, number);
+        int end = TelemetrySegment.HEADER_SIZE;
+        if (indexFile.exists()) {
+            RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+            try {
+                ByteBuffer index = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+                while (index.remaining() >= TelemetrySegment.INDEX_ENTRY_SIZE) {
+                    long[] block = {index.getInt(), index.getInt(), index.getLong(), index.getLong()};
+                    blocks.add(block);
+                    end = (int) block[1];
+                }
+            } finally {
+                file.close();
+            }
+        }
+        blocks.add(new long[]{end, log.capacity(), Long.MIN_VALUE, Long.MAX_VALUE});
+        return blocks;
+    }
+
+
+    /**
+     * Interface for the listener of the replayed snapshots
+     */
+    public interface SnapshotListener {
+
+        /**
+         * Called for every replayed snapshot
+         *
+         * @param snapshot The snapshot, it is reused for the next snapshot
+         * @throws IOException If the snapshot couldn't be handled, this stops the replay
+         */
+        void onSnapshot(NodeSnapshot snapshot) throws IOException;
+    }
+}
@@ -0,0 +1,218 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Segment of a telemetry recording: a memory mapped, append-only log file with an index file next to it.
+ *
+ * Layout of the log file (big endian):
+ * <pre>
+ * int     magic (0x41444D52)
+ * short   version (1)
+ * short   reserved
+ * long    creation time of the segment (wall clock, milliseconds)
+ * records: int length of the packet, long time stamp of the packet, binary data packet
+ * int     0 after the last record, the mapped file is zero filled
+ * </pre>
+ *
+ * The index file has an entry for every block of about 64 KB of records: int offset of the first record,
+ * int offset after the last record, long smallest and long largest time stamp of the records. The entries are
+ * written when a block is full and when the segment is closed, so the last block of a segment that wasn't closed
+ * has no entry.
+ */
+class TelemetrySegment {
+
+    static final int MAGIC = 0x41444D52;
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_HEADER_SIZE = 12;
+    static final int INDEX_ENTRY_SIZE = 24;
+
+    /* Amount of log bytes that is covered by one index entry. */
+    static final int INDEX_BLOCK_SIZE = 64 * 1024;
+
+    private static final String PREFIX = "segment-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private final MappedByteBuffer log;
+    private final FileChannel indexChannel;
+    private final ByteBuffer indexEntry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+    private final long createdTime;
+
+    /* The block of records without an index entry. */
+    private int blockStart = 0;
+    private int blockCount = 0;
+    private long blockMin = 0;
+    private long blockMax = 0;
+
+
+    private TelemetrySegment(MappedByteBuffer log, FileChannel indexChannel, long createdTime) {
+        this.log = log;
+        this.indexChannel = indexChannel;
+        this.createdTime = createdTime;
+    }
+
+
+    /**
+     * Function to create a new segment
+     *
+     * @param directory The directory of the recording
+     * @param number The number of the segment
+     * @param size The size of the log file in bytes
+     * @return The segment, ready to append records
+     * @throws IOException If the files couldn't be created or mapped
+     */
+    static TelemetrySegment create(File directory, int number, int size) throws IOException {
+        long createdTime = System.currentTimeMillis();
+        MappedByteBuffer log;
+        RandomAccessFile logFile = new RandomAccessFile(getLogFile(directory, number), "rw");
+        try {
+            logFile.setLength(size);
+            log = logFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            /* The mapping stays valid after the channel is closed. */
+            logFile.close();
+        }
+        log.putInt(MAGIC);
+        log.putShort(VERSION);
+        log.putShort((short) 0);
+        log.putLong(createdTime);
+
+        RandomAccessFile indexFile = new RandomAccessFile(getIndexFile(directory, number), "rw");
+        try {
+            indexFile.setLength(0);
+        } catch (IOException e) {
+            indexFile.close();
+            throw e;
+        }
+        return new TelemetrySegment(log, indexFile.getChannel(), createdTime);
+    }
+
+
+    /**
+     * Function to append a record to the segment
+     *
+     * @param packet The binary data packet between its position and limit
+     * @param timeStamp The time stamp of the packet
+     * @return true if the record is appended, false if the segment is full
+     * @throws IOException If the index entry of a full block couldn't be written
+     */
+    boolean append(ByteBuffer packet, long timeStamp) throws IOException {
+        int length = packet.remaining();
+        if (log.remaining() < RECORD_HEADER_SIZE + length + 4) {
+            return false;
+        }
+
+        if (blockCount > 0 && log.position() - blockStart >= INDEX_BLOCK_SIZE) {
+            writeIndexEntry();
+        }
+        if (blockCount == 0) {
+            blockStart = log.position();
+            blockMin = timeStamp;
+            blockMax = timeStamp;
+        }
+
+        log.putInt(length);
+        log.putLong(timeStamp);
+        log.put(packet);
+        blockMin = Math.min(blockMin, timeStamp);
+        blockMax = Math.max(blockMax, timeStamp);
+        blockCount++;
+        return true;
+    }
+
+
+    /**
+     * Function to close the segment, it writes the index entry of the last block and flushes the log to the disk
+     *
+     * @throws IOException If the index couldn't be written
+     */
+    void close() throws IOException {
+        try {
+            if (blockCount > 0) {
+                writeIndexEntry();
+            }
+            log.force();
+            indexChannel.force(false);
+        } finally {
+            indexChannel.close();
+        }
+    }
+
+
+    /**
+     * Gets the creation time of the segment
+     *
+     * @return the wall clock time in milliseconds
+     */
+    long getCreatedTime() {
+        return createdTime;
+    }
+
+
+    private void writeIndexEntry() throws IOException {
+        indexEntry.clear();
+        indexEntry.putInt(blockStart);
+        indexEntry.putInt(log.position());
+        indexEntry.putLong(blockMin);
+        indexEntry.putLong(blockMax);
+        indexEntry.flip();
+        while (indexEntry.hasRemaining()) {
+            indexChannel.write(indexEntry);
+        }
+        blockCount = 0;
+    }
+
+
+    /**
+     * Function to get the numbers of the segments in a directory
+     *
+     * @param directory The directory of the recording
+     * @return The numbers of the segments in ascending order
+     */
+    static int[] listSegments(File directory) {
+        List<Integer> numbers = new ArrayList<>();
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(PREFIX) && name.endsWith(LOG_SUFFIX)) {
+                    try {
+                        numbers.add(Integer.parseInt(name.substring(PREFIX.length(),
+                                name.length() - LOG_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        /* Not a segment of a recording. */
+                    }
+                }
+            }
+        }
+
+        int[] output = new int[numbers.size()];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = numbers.get(i);
+        }
+        Arrays.sort(output);
+        return output;
+    }
+
+
+    static File getLogFile(File directory, int number) {
+        return new File(directory, String.format(Locale.US, "%s%08d%s", PREFIX, number, LOG_SUFFIX));
+    }
+
+
+    static File getIndexFile(File directory, int number) {
+        return new File(directory, String.format(Locale.US, "%s%08d%s", PREFIX, number, INDEX_SUFFIX));
+    }
+}
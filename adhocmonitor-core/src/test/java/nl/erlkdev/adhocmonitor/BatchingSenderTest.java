@@ -0,0 +1,190 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests of the batches and the splitting of large snapshots of the batching sender, on the loopback interface.
+ */
+public class BatchingSenderTest {
+
+    private static final int MAX_DATAGRAM_SIZE = 1000;
+
+    private final BinaryPacketDecoder decoder = new BinaryPacketDecoder();
+    private DatagramSocket receiver;
+    private BatchingSender sender;
+
+
+    @Before
+    public void setUp() throws IOException {
+        receiver = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        receiver.setSoTimeout(2000);
+        InetSocketAddress target = new InetSocketAddress(InetAddress.getLoopbackAddress(), receiver.getLocalPort());
+        sender = new BatchingSender(target, new BinaryPacketEncoder(), 60000, MAX_DATAGRAM_SIZE);
+    }
+
+
+    @After
+    public void tearDown() {
+        sender.close();
+        receiver.close();
+    }
+
+
+    @Test
+    public void smallSnapshotsAreSendInOneBatch() throws IOException {
+        sender.open();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, sender.send(snapshot(i, 2)));
+        }
+        assertEquals(0, sender.getDatagramsSend());
+        assertTrue(sender.flush() > 0);
+        assertEquals(0, sender.flush());
+
+        List<NodeSnapshot> snapshots = new ArrayList<NodeSnapshot>();
+        ByteBuffer packet = receive();
+        assertTrue(BinaryPacketDecoder.isBatchPacket(packet));
+        assertEquals(3, decoder.decodeBatch(packet, snapshots));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, snapshots.get(i).getSequence());
+        }
+    }
+
+
+    @Test
+    public void singlePacketIsSendWithoutBatchHeader() throws IOException {
+        sender.open();
+        sender.send(snapshot(5, 2));
+        sender.flush();
+
+        ByteBuffer packet = receive();
+        assertFalse(BinaryPacketDecoder.isBatchPacket(packet));
+        NodeSnapshot snapshot = new NodeSnapshot();
+        decoder.decode(packet, snapshot);
+        assertEquals(5, snapshot.getSequence());
+        assertEquals(2, snapshot.getSeries(0).size());
+    }
+
+
+    @Test
+    public void largeSnapshotIsSplitRecursively() throws IOException {
+        sender.open();
+        int samples = 1000;
+        sender.send(snapshot(1, samples));
+        sender.flush();
+        assertTrue(sender.getDatagramsSend() > 1);
+
+        /* Every part has the full node state and the next samples of the series. */
+        List<NodeSnapshot> snapshots = new ArrayList<NodeSnapshot>();
+        int received = 0;
+        for (long i = 0; i < sender.getDatagramsSend(); i++) {
+            ByteBuffer packet = receive();
+            assertTrue(packet.remaining() <= MAX_DATAGRAM_SIZE);
+            int count = 1;
+            if (BinaryPacketDecoder.isBatchPacket(packet)) {
+                count = decoder.decodeBatch(packet, snapshots);
+            } else {
+                if (snapshots.isEmpty()) {
+                    snapshots.add(new NodeSnapshot());
+                }
+                decoder.decode(packet, snapshots.get(0));
+            }
+            for (int j = 0; j < count; j++) {
+                NodeSnapshot part = snapshots.get(j);
+                assertEquals(1, part.getSequence());
+                assertEquals(2, part.getNeighbourCount());
+                NodeSnapshot.Series series = part.getSeries(0);
+                for (int k = 0; k < series.size(); k++) {
+                    assertEquals(received++, series.getTimeStamp(k));
+                }
+            }
+        }
+        assertEquals(samples, received);
+    }
+
+
+    @Test
+    public void sampleLargerThanDatagramIsRejected() throws IOException {
+        sender.open();
+        NodeSnapshot snapshot = snapshot(1, 4);
+        StringBuilder status = new StringBuilder();
+        for (int i = 0; i < MAX_DATAGRAM_SIZE; i++) {
+            status.append('x');
+        }
+        snapshot.setMetadata("10.0.0.1", status.toString(), 0);
+        try {
+            sender.send(snapshot);
+            fail("The snapshot doesn't fit in a datagram");
+        } catch (IOException e) {
+            assertEquals(0, sender.getDatagramsSend());
+        }
+    }
+
+
+    @Test
+    public void packetsAreRetainedWhenTheBatchIsSend() throws IOException {
+        sender.setReliableWindow(8);
+        sender.open();
+        for (int i = 0; i < 2; i++) {
+            NodeSnapshot snapshot = snapshot(i, 2);
+            snapshot.setAckRequested(true);
+            sender.send(snapshot);
+        }
+
+        /* The retransmit timeout doesn't include the time in the batch. */
+        assertEquals(0, sender.getPendingPackets());
+        sender.flush();
+        assertEquals(2, sender.getPendingPackets());
+    }
+
+
+    /**
+     * Creates a snapshot with two neighbours and a series with samples at the time stamps 0, 1, 2, ...
+     *
+     * @param sequence The sequence number of the snapshot
+     * @param samples The amount of samples
+     * @return The snapshot
+     */
+    private static NodeSnapshot snapshot(long sequence, int samples) {
+        NodeSnapshot snapshot = new NodeSnapshot();
+        snapshot.setMetadata("10.0.0.1", "RUNNING", 0);
+        snapshot.setSequence(sequence, sequence);
+        NodeSnapshot.Series series = snapshot.addSeries("cpuUsageChart");
+        for (int i = 0; i < samples; i++) {
+            series.add(i, i * 0.5);
+        }
+        snapshot.addNeighbour("10.0.0.2", 100, 200, true);
+        snapshot.addNeighbour("10.0.0.3", 300, 400, false);
+        return snapshot;
+    }
+
+
+    /**
+     * Receives a datagram of the sender
+     *
+     * @return The buffer with the datagram
+     * @throws IOException If no datagram is received
+     */
+    private ByteBuffer receive() throws IOException {
+        DatagramPacket packet = new DatagramPacket(new byte[65536], 65536);
+        receiver.receive(packet);
+        return ByteBuffer.wrap(packet.getData(), 0, packet.getLength());
+    }
+}
@@ -0,0 +1,122 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.Test;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests of the primitive types of the binary packets.
+ */
+public class BinaryCodecTest {
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(256);
+
+
+    @Test
+    public void varLongRoundTrip() {
+        long[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+        for (long value : values) {
+            BinaryCodec.writeVarLong(buffer, value);
+        }
+        buffer.flip();
+        for (long value : values) {
+            assertEquals(value, BinaryCodec.readVarLong(buffer));
+        }
+        assertEquals(0, buffer.remaining());
+    }
+
+
+    @Test
+    public void varLongUsesSevenBitsPerByte() {
+        BinaryCodec.writeVarLong(buffer, 127);
+        assertEquals(1, buffer.position());
+        BinaryCodec.writeVarLong(buffer, 128);
+        assertEquals(3, buffer.position());
+        assertEquals((byte) 0x80, buffer.get(1));
+        assertEquals((byte) 0x01, buffer.get(2));
+    }
+
+
+    @Test
+    public void zigZagRoundTrip() {
+        long[] values = {0, -1, 1, -64, 64, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : values) {
+            BinaryCodec.writeZigZag(buffer, value);
+        }
+        buffer.flip();
+        for (long value : values) {
+            assertEquals(value, BinaryCodec.readZigZag(buffer));
+        }
+    }
+
+
+    @Test
+    public void zigZagKeepsSmallNegativeValuesShort() {
+        BinaryCodec.writeZigZag(buffer, -64);
+        assertEquals(1, buffer.position());
+    }
+
+
+    @Test
+    public void stringRoundTrip() {
+        String[] values = {"", "node", "café", "€", "😀"};
+        for (String value : values) {
+            BinaryCodec.writeString(buffer, value);
+        }
+        buffer.flip();
+        for (String value : values) {
+            assertEquals(value, BinaryCodec.readString(buffer));
+        }
+    }
+
+
+    @Test
+    public void stringPart() {
+        BinaryCodec.writeString(buffer, "linkSendChart:10.0.0.2", 14, 22);
+        buffer.flip();
+        assertEquals("10.0.0.2", BinaryCodec.readString(buffer));
+    }
+
+
+    @Test
+    public void macAddressIsWrittenAsSixBytes() {
+        BinaryCodec.writeAddress(buffer, "02:00:5e:10:00:01");
+        assertEquals(7, buffer.position());
+        buffer.flip();
+        assertEquals("02:00:5e:10:00:01", BinaryCodec.readAddress(buffer));
+    }
+
+
+    @Test
+    public void otherAddressesAreWrittenAsString() {
+        String[] addresses = {"192.168.1.1", "02:00:5E:10:00:01", "fe80::1"};
+        for (String address : addresses) {
+            BinaryCodec.writeAddress(buffer, address);
+        }
+        buffer.flip();
+        for (String address : addresses) {
+            assertEquals(address, BinaryCodec.readAddress(buffer));
+        }
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void countLargerThanBufferIsRejected() {
+        BinaryCodec.writeVarLong(buffer, 1000);
+        buffer.flip();
+        BinaryCodec.readCount(buffer);
+    }
+
+
+    @Test(expected = BufferUnderflowException.class)
+    public void truncatedVarLongIsRejected() {
+        buffer.put((byte) 0x80);
+        buffer.flip();
+        BinaryCodec.readVarLong(buffer);
+    }
+}
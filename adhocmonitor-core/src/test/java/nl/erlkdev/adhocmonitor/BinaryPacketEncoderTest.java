@@ -0,0 +1,252 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Round trip tests of the binary data packets, batches and acknowledgements.
+ */
+public class BinaryPacketEncoderTest {
+
+    private final BinaryPacketEncoder encoder = new BinaryPacketEncoder();
+    private final BinaryPacketDecoder decoder = new BinaryPacketDecoder();
+    private final ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+
+    @Test
+    public void keyframeRoundTrip() {
+        NodeSnapshot snapshot = new NodeSnapshot();
+        snapshot.setMetadata("02:00:5e:10:00:01", "RUNNING", 100000);
+        snapshot.setSequence(7, 7);
+        NodeSnapshot.Series series = snapshot.addSeries("cpuUsageChart");
+        series.add(100000, 12.5);
+        series.add(99800, 0.25);
+        snapshot.addNeighbour("02:00:5e:10:00:02", 1000, 2000, true);
+        snapshot.addNeighbour("10.0.0.3", 0, 5, false);
+        snapshot.putCustomValue("long", 42L);
+        snapshot.putCustomValue("negative", -3L);
+        snapshot.putCustomValue("double", 1.5);
+        snapshot.putCustomValue("boolean", true);
+        snapshot.putCustomValue("string", "state");
+
+        NodeSnapshot decoded = roundTrip(snapshot);
+        assertEquals("02:00:5e:10:00:01", decoded.getAddress());
+        assertEquals("RUNNING", decoded.getStatus());
+        assertEquals(100000, decoded.getTimeStamp());
+        assertEquals(7, decoded.getSequence());
+        assertFalse(decoded.isDelta());
+        assertFalse(decoded.isAckRequested());
+        assertNull(decoded.getRelay());
+
+        assertEquals(1, decoded.getSeriesCount());
+        NodeSnapshot.Series decodedSeries = decoded.getSeries(0);
+        assertEquals("cpuUsageChart", decodedSeries.getName());
+        assertEquals(2, decodedSeries.size());
+        assertEquals(100000, decodedSeries.getTimeStamp(0));
+        assertEquals(12.5, decodedSeries.getValue(0), 0);
+        assertEquals(99800, decodedSeries.getTimeStamp(1));
+        assertEquals(0.25, decodedSeries.getValue(1), 0);
+
+        assertEquals(2, decoded.getNeighbourCount());
+        assertEquals("02:00:5e:10:00:02", decoded.getNeighbourAddress(0));
+        assertEquals(1000, decoded.getNeighbourBytesSend(0));
+        assertEquals(2000, decoded.getNeighbourBytesReceived(0));
+        assertTrue(decoded.isNeighbourDataSend(0));
+        assertEquals("10.0.0.3", decoded.getNeighbourAddress(1));
+        assertFalse(decoded.isNeighbourDataSend(1));
+
+        assertEquals(42L, decoded.getCustomValues().get("long"));
+        assertEquals(-3L, decoded.getCustomValues().get("negative"));
+        assertEquals(1.5, decoded.getCustomValues().get("double"));
+        assertEquals(true, decoded.getCustomValues().get("boolean"));
+        assertEquals("state", decoded.getCustomValues().get("string"));
+    }
+
+
+    @Test
+    public void flagsRoundTrip() {
+        NodeSnapshot snapshot = new NodeSnapshot();
+        snapshot.setMetadata("10.0.0.1", "IDLE", 5);
+        snapshot.setSequence(12, 10);
+        snapshot.setAckRequested(true);
+        snapshot.setRelay("10.0.0.2,10.0.0.3");
+        snapshot.addRemovedNeighbour("10.0.0.4");
+        snapshot.addRemovedCustomValue("old");
+
+        encoder.encode(snapshot, buffer);
+        assertEquals(BinaryPacketEncoder.FLAG_SEQUENCE | BinaryPacketEncoder.FLAG_DELTA
+                | BinaryPacketEncoder.FLAG_ACK_REQUEST | BinaryPacketEncoder.FLAG_RELAYED, buffer.get(2));
+
+        NodeSnapshot decoded = decode();
+        assertEquals(12, decoded.getSequence());
+        assertEquals(10, decoded.getBaseSequence());
+        assertTrue(decoded.isDelta());
+        assertTrue(decoded.isAckRequested());
+        assertEquals("10.0.0.2,10.0.0.3", decoded.getRelay());
+        assertEquals(1, decoded.getRemovedNeighbours().size());
+        assertEquals("10.0.0.4", decoded.getRemovedNeighbours().get(0));
+        assertEquals(1, decoded.getRemovedCustomValues().size());
+        assertEquals("old", decoded.getRemovedCustomValues().get(0));
+    }
+
+
+    @Test
+    public void packetWithoutSequenceHasNoFlags() {
+        NodeSnapshot snapshot = new NodeSnapshot();
+        snapshot.setMetadata("10.0.0.1", "IDLE", 5);
+        snapshot.setSequence(-1, -1);
+
+        encoder.encode(snapshot, buffer);
+        assertEquals(0, buffer.get(2));
+        assertEquals(-1, decode().getSequence());
+    }
+
+
+    @Test
+    public void seriesNamesRoundTrip() {
+        String[] names = {"ioTotalChart", "cpuTotalUsageChart", "samplePeriodChart", "degradationChart",
+                "cpuCore0UsageChart", "cpuCore12UsageChart", "cpuCore01UsageChart", "linkSendChart:10.0.0.2",
+                "linkRecvChart:02:00:5e:10:00:02", "latencyP99Chart:query", "latencyMaxChart:", "customChart"};
+        NodeSnapshot snapshot = new NodeSnapshot();
+        snapshot.setMetadata("10.0.0.1", "IDLE", 5);
+        for (String name : names) {
+            snapshot.addSeries(name).add(5, 1);
+        }
+
+        NodeSnapshot decoded = roundTrip(snapshot);
+        assertEquals(names.length, decoded.getSeriesCount());
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(names[i], decoded.getSeries(i).getName());
+        }
+    }
+
+
+    @Test
+    public void knownSeriesAreWrittenAsId() {
+        NodeSnapshot snapshot = new NodeSnapshot();
+        snapshot.setMetadata("10.0.0.1", "IDLE", 5);
+        snapshot.addSeries("cpuCore3UsageChart");
+        encoder.encode(snapshot, buffer);
+        int withId = buffer.position();
+
+        buffer.clear();
+        snapshot.clear();
+        snapshot.setMetadata("10.0.0.1", "IDLE", 5);
+        snapshot.addSeries("cpuCore03UsageChart");
+        encoder.encode(snapshot, buffer);
+        assertTrue(withId + 10 < buffer.position());
+    }
+
+
+    @Test
+    public void batchRoundTrip() {
+        ByteBuffer packet = ByteBuffer.allocate(1024);
+        encoder.beginBatch(buffer);
+        for (int i = 0; i < 3; i++) {
+            NodeSnapshot snapshot = new NodeSnapshot();
+            snapshot.setMetadata("10.0.0." + i, "IDLE", i);
+            snapshot.setSequence(i, i);
+            packet.clear();
+            encoder.encode(snapshot, packet);
+            packet.flip();
+            encoder.appendToBatch(buffer, packet, i == 0);
+        }
+        encoder.endBatch(buffer);
+        buffer.flip();
+
+        assertTrue(BinaryPacketDecoder.isBatchPacket(buffer));
+        List<NodeSnapshot> snapshots = new ArrayList<>();
+        assertEquals(3, decoder.decodeBatch(buffer, snapshots));
+        for (int i = 0; i < 3; i++) {
+            assertEquals("10.0.0." + i, snapshots.get(i).getAddress());
+            assertEquals(i, snapshots.get(i).getSequence());
+        }
+    }
+
+
+    @Test
+    public void ackRoundTrip() {
+        long[] sequences = {0, 300, Long.MAX_VALUE};
+        BinaryPacketEncoder.encodeAck(sequences, sequences.length, buffer);
+        buffer.flip();
+
+        assertTrue(BinaryPacketDecoder.isAckPacket(buffer));
+        assertFalse(BinaryPacketDecoder.isRelayedAckPacket(buffer));
+        long[] decoded = new long[2];
+        assertEquals(2, BinaryPacketDecoder.decodeAck(buffer, decoded));
+        assertEquals(0, decoded[0]);
+        assertEquals(300, decoded[1]);
+    }
+
+
+    @Test
+    public void relayedAckRoundTrip() {
+        String[] addresses = {"10.0.0.2", "10.0.0.3"};
+        long[] sequences = {4, 9};
+        BinaryPacketEncoder.encodeRelayedAck(addresses, sequences, 2, buffer);
+        buffer.flip();
+
+        assertTrue(BinaryPacketDecoder.isRelayedAckPacket(buffer));
+        String[] decodedAddresses = new String[2];
+        long[] decodedSequences = new long[2];
+        assertEquals(2, BinaryPacketDecoder.decodeRelayedAck(buffer, decodedAddresses, decodedSequences));
+        assertEquals("10.0.0.3", decodedAddresses[1]);
+        assertEquals(9, decodedSequences[1]);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void relayedAckIsNotAPlainAck() {
+        BinaryPacketEncoder.encodeRelayedAck(new String[]{"10.0.0.2"}, new long[]{1}, 1, buffer);
+        buffer.flip();
+        BinaryPacketDecoder.decodeAck(buffer, new long[1]);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedPacketIsRejected() {
+        NodeSnapshot snapshot = new NodeSnapshot();
+        snapshot.setMetadata("10.0.0.1", "IDLE", 5);
+        snapshot.addSeries("cpuUsageChart").add(5, 1);
+        encoder.encode(snapshot, buffer);
+        buffer.flip();
+        buffer.limit(buffer.limit() - 2);
+        decoder.decode(buffer, new NodeSnapshot());
+    }
+
+
+    /**
+     * Encodes a snapshot and decodes it again
+     *
+     * @param snapshot The snapshot
+     * @return The decoded snapshot
+     */
+    private NodeSnapshot roundTrip(NodeSnapshot snapshot) {
+        encoder.encode(snapshot, buffer);
+        return decode();
+    }
+
+
+    /**
+     * Decodes the packet in the buffer
+     *
+     * @return The decoded snapshot
+     */
+    private NodeSnapshot decode() {
+        buffer.flip();
+        assertTrue(BinaryPacketDecoder.isBinaryPacket(buffer));
+        NodeSnapshot decoded = new NodeSnapshot();
+        decoder.decode(buffer, decoded);
+        return decoded;
+    }
+}
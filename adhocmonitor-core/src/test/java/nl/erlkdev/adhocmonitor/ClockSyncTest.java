@@ -0,0 +1,202 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests of the clock sync: the sign of the offset, the round with the smallest round trip time, the drift fit
+ * and the parsing of the sync responses.
+ */
+public class ClockSyncTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private SyncServer server = null;
+
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+
+    @Test
+    public void offsetIsNodeTimeMinusMonitorTime() throws IOException {
+        /* The monitor clock is 5 seconds behind the node clock. */
+        ClockSync clockSync = new ClockSync(startServer(new SyncServer.TimeSource() {
+            @Override
+            public long getTime() {
+                return System.currentTimeMillis() - 5000;
+            }
+        }), 4, 4);
+        clockSync.sync();
+
+        assertEquals(5000, clockSync.getOffset(), 5);
+        long nodeTime = System.currentTimeMillis();
+        assertEquals(nodeTime - 5000, clockSync.toMonitorTime(nodeTime), 5);
+        assertTrue(clockSync.getUncertainty() >= 0 && clockSync.getUncertainty() < 5);
+    }
+
+
+    @Test
+    public void roundWithTheSmallestRoundTripIsUsed() throws IOException {
+        /* Every round but the third stamps its request 100 ms late, as if the request was queued on the way. */
+        final AtomicInteger calls = new AtomicInteger();
+        ClockSync clockSync = new ClockSync(startServer(new SyncServer.TimeSource() {
+            @Override
+            public long getTime() {
+                int call = calls.getAndIncrement();
+                if (call % 2 == 0 && call / 2 != 2) {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return System.currentTimeMillis();
+            }
+        }), 5, 4);
+        clockSync.sync();
+
+        /* The late rounds have an offset of about -50 ms and an uncertainty of about 50 ms. */
+        assertEquals(10, calls.get());
+        assertEquals(0, clockSync.getOffset(), 5);
+        assertTrue(clockSync.getUncertainty() < 5);
+    }
+
+
+    @Test
+    public void failedSyncKeepsTheModel() throws IOException {
+        InetSocketAddress address = startServer(new SyncServer.TimeSource() {
+            @Override
+            public long getTime() {
+                return System.currentTimeMillis();
+            }
+        });
+        server.stop();
+        server = null;
+
+        ClockSync clockSync = new ClockSync(address, 2, 4);
+        try {
+            clockSync.sync();
+            fail("The monitor is not reachable");
+        } catch (IOException e) {
+            assertTrue(Double.isNaN(clockSync.getUncertainty()));
+            assertEquals(0, clockSync.getLastSyncTime());
+        }
+    }
+
+
+    @Test
+    public void driftIsRecoveredFromTheOffsets() {
+        ClockSync clockSync = new ClockSync(new InetSocketAddress(0), 1, 8);
+
+        /* The node clock runs 1 ms per second fast, with +-0.5 ms of noise on the offsets. */
+        long start = 1760000000000L;
+        for (int i = 0; i < 8; i++) {
+            long time = start + i * 5000;
+            double noise = i % 2 == 0 ? 0.5 : -0.5;
+            clockSync.addSync(time, 20 + 0.001 * (time - start) + noise, 1);
+        }
+
+        assertEquals(0.001, clockSync.getDrift(), 0.0001);
+        long last = start + 7 * 5000;
+        assertEquals(20 + 0.001 * (last - start), clockSync.getOffset(last), 1);
+
+        /* The offset is extrapolated between the syncs. */
+        assertEquals(20 + 0.001 * (last + 60000 - start), clockSync.getOffset(last + 60000), 2);
+        assertEquals(last, clockSync.getLastSyncTime());
+    }
+
+
+    @Test
+    public void driftIsNotEstimatedFromAShortSpan() {
+        ClockSync clockSync = new ClockSync(new InetSocketAddress(0), 1, 8);
+        clockSync.addSync(1000, 10, 1);
+        clockSync.addSync(6000, 15, 1);
+        assertEquals(0, clockSync.getDrift(), 0);
+        assertEquals(15, clockSync.getOffset(6000), 0);
+        assertEquals(15, clockSync.getOffset(100000), 0);
+    }
+
+
+    @Test
+    public void driftFollowsTheNewestSyncsOfTheHistory() {
+        ClockSync clockSync = new ClockSync(new InetSocketAddress(0), 1, 4);
+
+        /* The first syncs have another drift, they leave the history of 4 syncs. */
+        for (int i = 0; i < 4; i++) {
+            clockSync.addSync(i * 10000, -0.002 * i * 10000, 1);
+        }
+        for (int i = 4; i < 8; i++) {
+            clockSync.addSync(i * 10000, 100 + 0.0005 * i * 10000, 1);
+        }
+        assertEquals(0.0005, clockSync.getDrift(), 1e-9);
+        assertEquals(100 + 0.0005 * 70000, clockSync.getOffset(70000), 1e-6);
+    }
+
+
+    @Test
+    public void parseFieldReadsJson() throws IOException {
+        byte[] data = "{\"type\":\"sync\",\"time1d\":1760000000123,\"time2\":-45}\n".getBytes(UTF8);
+        assertEquals(1760000000123L, ClockSync.parseField(data, data.length, "time1d"));
+        assertEquals(-45, ClockSync.parseField(data, data.length, "time2"));
+    }
+
+
+    @Test
+    public void parseFieldReadsThePythonRepresentation() throws IOException {
+        byte[] data = "{'type': 'sync', 'time1d': 1760000000123L, 'time2': 1760000000124L}".getBytes(UTF8);
+        assertEquals(1760000000123L, ClockSync.parseField(data, data.length, "time1d"));
+        assertEquals(1760000000124L, ClockSync.parseField(data, data.length, "time2"));
+    }
+
+
+    @Test
+    public void parseFieldOnlyMatchesTheWholeName() throws IOException {
+        byte[] data = "{\"time1dx\":1,\"time1d\":2}".getBytes(UTF8);
+        assertEquals(2, ClockSync.parseField(data, data.length, "time1d"));
+        try {
+            ClockSync.parseField(data, data.length, "time1");
+            fail("time1 is not a field");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("time1"));
+        }
+    }
+
+
+    @Test(expected = IOException.class)
+    public void parseFieldRejectsAFieldWithoutNumber() throws IOException {
+        byte[] data = "{\"time2\":\"soon\"}".getBytes(UTF8);
+        ClockSync.parseField(data, data.length, "time2");
+    }
+
+
+    /**
+     * Starts a sync server on a free port of the loopback address
+     *
+     * @param timeSource The monitor time of the server
+     * @return The address of the server
+     * @throws IOException If the server couldn't be started
+     */
+    private InetSocketAddress startServer(SyncServer.TimeSource timeSource) throws IOException {
+        server = new SyncServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), timeSource,
+                new PacketDecompressor(), "ClockSyncTest");
+        server.start();
+        return server.getLocalAddress();
+    }
+}
@@ -0,0 +1,150 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests of the custom value handles and their registry.
+ */
+public class CustomValueRegistryTest {
+
+    private final CustomValueRegistry registry = new CustomValueRegistry();
+
+
+    @Test
+    public void handlesAreSendInRegistrationOrder() {
+        LongGauge gauge = registry.registerLongGauge("queue");
+        DoubleGauge ratio = registry.registerDoubleGauge("ratio");
+        Counter counter = registry.registerCounter("messages");
+        gauge.set(10);
+        gauge.add(5);
+        gauge.increment();
+        gauge.decrement();
+        ratio.set(0.25);
+        ratio.add(0.5);
+        counter.increment();
+        counter.add(41);
+
+        NodeSnapshot snapshot = takeSnapshot();
+        List<String> keys = new ArrayList<String>(snapshot.getCustomValues().keySet());
+        assertEquals(3, keys.size());
+        assertEquals("queue", keys.get(0));
+        assertEquals("ratio", keys.get(1));
+        assertEquals("messages", keys.get(2));
+        assertEquals(15L, snapshot.getCustomValues().get("queue"));
+        assertEquals(0.75, snapshot.getCustomValues().get("ratio"));
+        assertEquals(42L, snapshot.getCustomValues().get("messages"));
+        assertEquals(42, counter.get());
+    }
+
+
+    @Test
+    public void registeringAgainReturnsTheSameHandle() {
+        Counter counter = registry.registerCounter("messages");
+        assertSame(counter, registry.registerCounter("messages"));
+        assertEquals(1, takeSnapshot().getCustomValues().size());
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void keyCanOnlyHaveOneType() {
+        registry.registerCounter("messages");
+        registry.registerLongGauge("messages");
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullKeyIsRejected() {
+        registry.registerDoubleGauge(null);
+    }
+
+
+    @Test
+    public void invalidDoublesAreNotSend() {
+        DoubleGauge gauge = registry.registerDoubleGauge("ratio");
+        double[] invalid = {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (double value : invalid) {
+            gauge.set(value);
+            assertFalse(takeSnapshot().getCustomValues().containsKey("ratio"));
+        }
+
+        /* The handle is send again when it has a valid value. */
+        gauge.set(-1.5);
+        assertEquals(-1.5, takeSnapshot().getCustomValues().get("ratio"));
+    }
+
+
+    @Test
+    public void unregisteredHandleIsNotSend() {
+        registry.registerLongGauge("queue");
+        assertTrue(registry.unregister("queue"));
+        assertFalse(registry.unregister("queue"));
+        assertTrue(takeSnapshot().getCustomValues().isEmpty());
+
+        /* The key can be registered with another type afterwards. */
+        registry.registerCounter("queue").increment();
+        assertEquals(1L, takeSnapshot().getCustomValues().get("queue"));
+    }
+
+
+    @Test
+    public void handlesCanBeRemovedDuringSnapshots() throws InterruptedException {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int i = 0; i < 16; i++) {
+            registry.registerCounter("counter" + i);
+        }
+
+        /* The node is sampled while an other thread registers and removes handles. */
+        Thread snapshots = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                NodeSnapshot snapshot = new NodeSnapshot();
+                try {
+                    while (running.get()) {
+                        snapshot.clear();
+                        registry.takeSnapshot(snapshot);
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        });
+        snapshots.start();
+        for (int round = 0; round < 2000; round++) {
+            for (int i = 0; i < 16; i++) {
+                registry.unregister("counter" + i);
+            }
+            for (int i = 0; i < 16; i++) {
+                registry.registerCounter("counter" + i);
+            }
+        }
+        running.set(false);
+        snapshots.join();
+        assertNull(failure.get());
+    }
+
+
+    /**
+     * Takes a snapshot of the registered handles
+     *
+     * @return The snapshot
+     */
+    private NodeSnapshot takeSnapshot() {
+        NodeSnapshot snapshot = new NodeSnapshot();
+        registry.takeSnapshot(snapshot);
+        return snapshot;
+    }
+}
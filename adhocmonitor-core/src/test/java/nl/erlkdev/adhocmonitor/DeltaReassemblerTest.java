@@ -0,0 +1,123 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests of the reassembly of the deltas of the delta tracker into the full state.
+ */
+public class DeltaReassemblerTest {
+
+    private final DeltaTracker tracker = new DeltaTracker(3);
+    private final DeltaReassembler reassembler = new DeltaReassembler();
+
+
+    @Test
+    public void deltaIsRestoredToFullState() {
+        assertTrue(reassembler.reassemble(next(100, "up", 0)));
+
+        NodeSnapshot delta = next(150, "up", 1);
+        assertTrue(delta.isDelta());
+        assertTrue(reassembler.reassemble(delta));
+        assertEquals(2, delta.getNeighbourCount());
+        assertEquals(150, bytesSend(delta, "10.0.0.2"));
+        assertEquals(300, bytesSend(delta, "10.0.0.3"));
+        assertEquals("up", delta.getCustomValues().get("state"));
+        assertEquals(5L, delta.getCustomValues().get("count"));
+    }
+
+
+    @Test
+    public void removedValuesAreNotRestored() {
+        reassembler.reassemble(next(100, "up", 0));
+
+        NodeSnapshot delta = new NodeSnapshot();
+        delta.setMetadata("10.0.0.1", "IDLE", 1);
+        delta.addNeighbour("10.0.0.2", 100, 200, false);
+        delta.putCustomValue("state", "down");
+        tracker.apply(delta, 1);
+        assertTrue(reassembler.reassemble(delta));
+        assertEquals(1, delta.getNeighbourCount());
+        assertEquals("10.0.0.2", delta.getNeighbourAddress(0));
+        assertEquals("down", delta.getCustomValues().get("state"));
+        assertFalse(delta.getCustomValues().containsKey("count"));
+    }
+
+
+    @Test
+    public void deltaOfLostKeyframeIsDropped() {
+        reassembler.reassemble(next(100, "up", 0));
+        reassembler.reassemble(next(100, "up", 1));
+        reassembler.reassemble(next(100, "up", 2));
+
+        /* The keyframe 3 is lost, its deltas can't be restored with keyframe 0. */
+        next(110, "up", 3);
+        assertFalse(reassembler.reassemble(next(120, "up", 4)));
+        assertFalse(reassembler.reassemble(next(130, "up", 5)));
+        assertEquals(2, reassembler.getDroppedDeltas());
+        assertEquals(1, reassembler.getMissedPackets());
+
+        /* The next keyframe restores the state. */
+        NodeSnapshot keyframe = next(140, "up", 6);
+        assertFalse(keyframe.isDelta());
+        assertTrue(reassembler.reassemble(keyframe));
+        assertTrue(reassembler.reassemble(next(150, "up", 7)));
+    }
+
+
+    @Test
+    public void lostDeltaOnlyCountsAsMissed() {
+        reassembler.reassemble(next(100, "up", 0));
+        next(110, "up", 1);
+        NodeSnapshot delta = next(120, "up", 2);
+        assertTrue(reassembler.reassemble(delta));
+        assertEquals(120, bytesSend(delta, "10.0.0.2"));
+        assertEquals(1, reassembler.getMissedPackets());
+        assertEquals(0, reassembler.getDroppedDeltas());
+    }
+
+
+    @Test
+    public void packetWithoutSequenceIsComplete() {
+        NodeSnapshot packet = DeltaTrackerTest.snapshot(100, "up");
+        packet.setSequence(-1, -1);
+        assertTrue(reassembler.reassemble(packet));
+    }
+
+
+    /**
+     * Creates the next packet of the node with the delta tracker
+     *
+     * @param bytesSend The bytes send to the first neighbour
+     * @param state The value of the state custom value
+     * @param sequence The sequence number
+     * @return The keyframe or delta
+     */
+    private NodeSnapshot next(long bytesSend, String state, long sequence) {
+        NodeSnapshot snapshot = DeltaTrackerTest.snapshot(bytesSend, state);
+        tracker.apply(snapshot, sequence);
+        return snapshot;
+    }
+
+
+    /**
+     * Gets the bytes send to a neighbour in a snapshot
+     *
+     * @param snapshot The snapshot
+     * @param address The address of the neighbour
+     * @return The bytes send, or -1 if the neighbour is not in the snapshot
+     */
+    private static long bytesSend(NodeSnapshot snapshot, String address) {
+        for (int i = 0; i < snapshot.getNeighbourCount(); i++) {
+            if (snapshot.getNeighbourAddress(i).equals(address)) {
+                return snapshot.getNeighbourBytesSend(i);
+            }
+        }
+        return -1;
+    }
+}
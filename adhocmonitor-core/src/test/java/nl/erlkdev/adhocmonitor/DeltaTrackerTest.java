@@ -0,0 +1,95 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests of the keyframes and deltas of the delta tracker.
+ */
+public class DeltaTrackerTest {
+
+    @Test
+    public void keyframeEveryInterval() {
+        DeltaTracker tracker = new DeltaTracker(3);
+        for (long sequence = 0; sequence < 7; sequence++) {
+            NodeSnapshot snapshot = snapshot(100, "up");
+            tracker.apply(snapshot, sequence);
+            long keyframe = sequence - sequence % 3;
+            assertEquals(sequence, snapshot.getSequence());
+            assertEquals(keyframe, snapshot.getBaseSequence());
+            assertEquals(sequence % 3 != 0, snapshot.isDelta());
+        }
+    }
+
+
+    @Test
+    public void deltaOnlyContainsChanges() {
+        DeltaTracker tracker = new DeltaTracker(10);
+        tracker.apply(snapshot(100, "up"), 0);
+
+        NodeSnapshot delta = snapshot(150, "up");
+        tracker.apply(delta, 1);
+        assertTrue(delta.isDelta());
+        assertEquals(1, delta.getNeighbourCount());
+        assertEquals("10.0.0.2", delta.getNeighbourAddress(0));
+        assertEquals(150, delta.getNeighbourBytesSend(0));
+        assertTrue(delta.getCustomValues().isEmpty());
+        assertTrue(delta.getRemovedNeighbours().isEmpty());
+        assertTrue(delta.getRemovedCustomValues().isEmpty());
+    }
+
+
+    @Test
+    public void deltaListsRemovedNeighboursAndCustomValues() {
+        DeltaTracker tracker = new DeltaTracker(10);
+        tracker.apply(snapshot(100, "up"), 0);
+
+        NodeSnapshot delta = new NodeSnapshot();
+        delta.setMetadata("10.0.0.1", "IDLE", 1);
+        delta.addNeighbour("10.0.0.2", 100, 200, false);
+        delta.putCustomValue("state", "down");
+        tracker.apply(delta, 1);
+        assertEquals(0, delta.getNeighbourCount());
+        assertEquals(1, delta.getRemovedNeighbours().size());
+        assertEquals("10.0.0.3", delta.getRemovedNeighbours().get(0));
+        assertEquals("down", delta.getCustomValues().get("state"));
+        assertEquals(1, delta.getRemovedCustomValues().size());
+        assertEquals("count", delta.getRemovedCustomValues().get(0));
+    }
+
+
+    @Test
+    public void deltasAreBasedOnTheKeyframeOnly() {
+        DeltaTracker tracker = new DeltaTracker(10);
+        tracker.apply(snapshot(100, "up"), 0);
+        tracker.apply(snapshot(150, "up"), 1);
+
+        /* The same change is send again, a lost delta doesn't affect the next one. */
+        NodeSnapshot delta = snapshot(150, "up");
+        tracker.apply(delta, 2);
+        assertEquals(0, delta.getBaseSequence());
+        assertEquals(1, delta.getNeighbourCount());
+    }
+
+
+    /**
+     * Creates a full snapshot with two neighbours and two custom values
+     *
+     * @param bytesSend The bytes send to the first neighbour
+     * @param state The value of the state custom value
+     * @return The snapshot
+     */
+    static NodeSnapshot snapshot(long bytesSend, String state) {
+        NodeSnapshot snapshot = new NodeSnapshot();
+        snapshot.setMetadata("10.0.0.1", "IDLE", 1);
+        snapshot.addNeighbour("10.0.0.2", bytesSend, 200, false);
+        snapshot.addNeighbour("10.0.0.3", 300, 400, true);
+        snapshot.putCustomValue("state", state);
+        snapshot.putCustomValue("count", 5L);
+        return snapshot;
+    }
+}
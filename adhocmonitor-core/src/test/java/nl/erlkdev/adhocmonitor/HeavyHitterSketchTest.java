@@ -0,0 +1,120 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests of the Space-Saving sketch: the guarantee for the heavy keys, the bounds of the counts and the decay.
+ */
+public class HeavyHitterSketchTest {
+
+    @Test
+    public void heavyKeysAreAlwaysInTheSketch() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(8);
+        Map<String, Double> weights = new HashMap<>();
+        Random random = new Random(42);
+
+        /* Three keys with a fifth of the weight each, between a thousand light keys. */
+        for (int i = 0; i < 20000; i++) {
+            String key = random.nextInt(5) < 3 ? "heavy" + random.nextInt(3) : "light" + random.nextInt(1000);
+            double weight = 1 + random.nextInt(10);
+            sketch.offer(key, weight);
+            add(weights, key, weight);
+        }
+
+        double total = 0;
+        for (double weight : weights.values()) {
+            total += weight;
+        }
+        for (int i = 0; i < 3; i++) {
+            String key = "heavy" + i;
+            assertTrue(weights.get(key) > total / 8);
+            assertTrue(key + " is evicted", sketch.indexOf(key) >= 0);
+        }
+    }
+
+
+    @Test
+    public void countsAreBoundedByTheirErrors() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(4);
+        Map<String, Double> weights = new HashMap<>();
+        Random random = new Random(7);
+        double total = 0;
+        for (int i = 0; i < 5000; i++) {
+            /* A skewed stream, key k has a weight of about 1/(k+1). */
+            String key = "key" + (int) Math.floor(Math.pow(random.nextDouble(), 3) * 50);
+            sketch.offer(key, 1);
+            add(weights, key, 1);
+            total++;
+        }
+
+        assertEquals(4, sketch.size());
+        for (int slot = 0; slot < sketch.size(); slot++) {
+            double weight = weights.get(sketch.getKey(slot));
+            double count = sketch.getCount(slot);
+            double error = sketch.getError(slot);
+
+            /* The count overestimates the weight by at most the error, and the error is at most total/capacity. */
+            assertTrue(count >= weight);
+            assertTrue(count - error <= weight);
+            assertTrue(error <= total / 4);
+        }
+    }
+
+
+    @Test
+    public void newKeyReplacesTheSmallestCount() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(2);
+        assertEquals(0, sketch.offer("a", 10));
+        assertEquals(1, sketch.offer("b", 3));
+        assertEquals(0, sketch.offer("a", 1));
+
+        /* c takes the slot of b and its count as overestimation. */
+        assertEquals(1, sketch.offer("c", 2));
+        assertEquals(-1, sketch.indexOf("b"));
+        assertEquals("c", sketch.getKey(1));
+        assertEquals(5, sketch.getCount(1), 0);
+        assertEquals(3, sketch.getError(1), 0);
+        assertEquals(11, sketch.getCount(0), 0);
+    }
+
+
+    @Test
+    public void decayLetsRecentKeysOvertakeOldKeys() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(2);
+        sketch.offer("old", 1000);
+        sketch.offer("other", 500);
+
+        sketch.decay(0.5);
+        assertEquals(500, sketch.getCount(sketch.indexOf("old")), 0);
+        assertEquals(250, sketch.getCount(sketch.indexOf("other")), 0);
+
+        /* Without the decay the recent key would stay below the old key. */
+        for (int i = 0; i < 10; i++) {
+            sketch.decay(0.5);
+            sketch.offer("other", 100);
+        }
+        assertTrue(sketch.getCount(sketch.indexOf("other")) > sketch.getCount(sketch.indexOf("old")));
+        assertTrue(sketch.getCount(sketch.indexOf("old")) < 1);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptySketchIsRejected() {
+        new HeavyHitterSketch(0);
+    }
+
+
+    private static void add(Map<String, Double> weights, String key, double weight) {
+        Double current = weights.get(key);
+        weights.put(key, current != null ? current + weight : weight);
+    }
+}
@@ -0,0 +1,188 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests of the JSON decoder, with packets of the JSON encoder and hand written packets.
+ */
+public class JsonPacketDecoderTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final JsonPacketEncoder encoder = new JsonPacketEncoder();
+    private final JsonPacketDecoder decoder = new JsonPacketDecoder();
+    private final ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+
+    @Test
+    public void dataPacketRoundTrip() {
+        NodeSnapshot snapshot = new NodeSnapshot();
+        snapshot.setMetadata("10.0.0.1", "RUNNING", 100000);
+        snapshot.setSequence(7, 7);
+        snapshot.setAckRequested(true);
+        NodeSnapshot.Series series = snapshot.addSeries("cpuUsageChart");
+        series.add(100000, 12.5);
+        series.add(100200, 0.1);
+        series.add(100400, 1e-300);
+        snapshot.addNeighbour("10.0.0.2", 1000, 2000, true);
+        snapshot.putCustomValue("long", 42L);
+        snapshot.putCustomValue("double", 0.1 + 0.2);
+        snapshot.putCustomValue("boolean", false);
+        snapshot.putCustomValue("string", "a \"quoted\"\nvalue \u00e9\u20ac");
+
+        encoder.encode(snapshot, buffer);
+        buffer.flip();
+        assertTrue(JsonPacketDecoder.isJsonPacket(buffer));
+        NodeSnapshot decoded = new NodeSnapshot();
+        decoder.decode(buffer, decoded);
+        assertFalse(buffer.hasRemaining());
+
+        assertEquals("10.0.0.1", decoded.getAddress());
+        assertEquals("RUNNING", decoded.getStatus());
+        assertEquals(100000, decoded.getTimeStamp());
+        assertEquals(7, decoded.getSequence());
+        assertFalse(decoded.isDelta());
+        assertTrue(decoded.isAckRequested());
+        assertNull(decoded.getRelay());
+
+        /* The values are written without losing precision. */
+        NodeSnapshot.Series decodedSeries = decoded.getSeries(0);
+        assertEquals("cpuUsageChart", decodedSeries.getName());
+        assertEquals(3, decodedSeries.size());
+        for (int i = 0; i < series.size(); i++) {
+            assertEquals(series.getTimeStamp(i), decodedSeries.getTimeStamp(i));
+            assertEquals(series.getValue(i), decodedSeries.getValue(i), 0);
+        }
+
+        assertEquals(1, decoded.getNeighbourCount());
+        assertEquals("10.0.0.2", decoded.getNeighbourAddress(0));
+        assertEquals(1000, decoded.getNeighbourBytesSend(0));
+        assertEquals(2000, decoded.getNeighbourBytesReceived(0));
+        assertTrue(decoded.isNeighbourDataSend(0));
+        assertEquals(42L, decoded.getCustomValues().get("long"));
+        assertEquals(0.1 + 0.2, decoded.getCustomValues().get("double"));
+        assertEquals(false, decoded.getCustomValues().get("boolean"));
+        assertEquals("a \"quoted\"\nvalue \u00e9\u20ac", decoded.getCustomValues().get("string"));
+    }
+
+
+    @Test
+    public void deltaRoundTrip() {
+        NodeSnapshot snapshot = new NodeSnapshot();
+        snapshot.setMetadata("10.0.0.1", "RUNNING", 100);
+        snapshot.setSequence(12, 10);
+        snapshot.setRelay("10.0.0.9");
+        snapshot.addRemovedNeighbour("10.0.0.3");
+        snapshot.addRemovedCustomValue("state");
+
+        encoder.encode(snapshot, buffer);
+        buffer.flip();
+        NodeSnapshot decoded = new NodeSnapshot();
+        decoder.decode(buffer, decoded);
+        assertEquals(12, decoded.getSequence());
+        assertEquals(10, decoded.getBaseSequence());
+        assertTrue(decoded.isDelta());
+        assertEquals("10.0.0.9", decoded.getRelay());
+        assertEquals("10.0.0.3", decoded.getRemovedNeighbours().get(0));
+        assertEquals("state", decoded.getRemovedCustomValues().get(0));
+    }
+
+
+    @Test
+    public void batchRoundTrip() {
+        ByteBuffer packet = ByteBuffer.allocate(1024);
+        encoder.beginBatch(buffer);
+        for (int i = 0; i < 3; i++) {
+            NodeSnapshot snapshot = new NodeSnapshot();
+            snapshot.setMetadata("10.0.0." + i, "RUNNING", i);
+            packet.clear();
+            encoder.encode(snapshot, packet);
+            packet.flip();
+            encoder.appendToBatch(buffer, packet, i == 0);
+        }
+        encoder.endBatch(buffer);
+        buffer.flip();
+
+        /* The list is reused, it only grows when it is too short. */
+        List<NodeSnapshot> snapshots = new ArrayList<NodeSnapshot>();
+        snapshots.add(new NodeSnapshot());
+        assertEquals(3, decoder.decodePackets(buffer, snapshots));
+        assertEquals(3, snapshots.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals("10.0.0." + i, snapshots.get(i).getAddress());
+            assertEquals(i, snapshots.get(i).getTimeStamp());
+        }
+    }
+
+
+    @Test
+    public void handWrittenPacket() {
+        /* Members in another order, numeric chart values, escapes and unknown members of every type. */
+        String json = " { \"extra\" : [1, {\"a\": null}], \"node\" : { \"memoryChart\" : {\"5\": 2.5e3, \"6\": -1},"
+                + " \"customValues\": {\"nested\": {\"b\": [true]}, \"escaped\": \"\\u0041\\t\\\\\"},"
+                + " \"address\": \"n1\", \"status\": null, \"unknown\": 1.5 } , \"type\" : \"data\" } ";
+        List<NodeSnapshot> snapshots = new ArrayList<NodeSnapshot>();
+        assertEquals(1, decoder.decodePackets(wrap(json), snapshots));
+
+        NodeSnapshot snapshot = snapshots.get(0);
+        assertEquals("n1", snapshot.getAddress());
+        assertNull(snapshot.getStatus());
+        assertEquals(-1, snapshot.getSequence());
+        assertEquals(1, snapshot.getSeriesCount());
+        assertEquals(2500, snapshot.getSeries(0).getValue(0), 0);
+        assertEquals(-1, snapshot.getSeries(0).getValue(1), 0);
+        assertEquals(1, snapshot.getCustomValues().size());
+        assertEquals("A\t\\", snapshot.getCustomValues().get("escaped"));
+    }
+
+
+    @Test
+    public void otherPacketTypesAreSkipped() {
+        List<NodeSnapshot> snapshots = new ArrayList<NodeSnapshot>();
+        assertEquals(0, decoder.decodePackets(wrap("{\"type\":\"ack\",\"seq\":[1,2]}"), snapshots));
+        assertEquals(0, decoder.decodePackets(wrap("{}"), snapshots));
+        assertFalse(JsonPacketDecoder.isJsonPacket(wrap("  [1]")));
+        assertFalse(JsonPacketDecoder.isJsonPacket(wrap("   ")));
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedPacketIsRejected() {
+        decoder.decode(wrap("{\"node\":{\"address\":\"n1\",\"cpuUsageChart\":{\"1\":\"2"), new NodeSnapshot());
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void packetWithoutAddressIsRejected() {
+        decoder.decode(wrap("{\"node\":{\"status\":\"RUNNING\"}}"), new NodeSnapshot());
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void packetWithoutNodeIsRejected() {
+        decoder.decode(wrap("{\"type\":\"data\"}"), new NodeSnapshot());
+    }
+
+
+    /**
+     * Wraps a JSON string in a buffer
+     *
+     * @param json The JSON string
+     * @return The buffer with the UTF-8 bytes
+     */
+    private static ByteBuffer wrap(String json) {
+        return ByteBuffer.wrap(json.getBytes(UTF8));
+    }
+}
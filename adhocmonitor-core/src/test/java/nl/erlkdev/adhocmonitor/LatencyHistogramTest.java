@@ -0,0 +1,130 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests of the buckets and percentiles of the latency histogram, and of the latency timer.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallLatenciesHaveTheirOwnBucket() {
+        for (int value = 0; value < 16; value++) {
+            assertEquals(value, LatencyHistogram.bucketOf(value));
+            assertEquals(value, LatencyHistogram.upperBound(value));
+        }
+    }
+
+
+    @Test
+    public void latencyIsInTheRangeOfItsBucket() {
+        long[] values = {16, 17, 31, 32, 33, 100, 1000, 999999, 1000000, 123456789L, (1L << 40) + 12345};
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            long upper = LatencyHistogram.upperBound(bucket);
+            long lower = LatencyHistogram.upperBound(bucket - 1) + 1;
+            assertTrue(value + " above " + upper, value <= upper);
+            assertTrue(value + " below " + lower, value >= lower);
+
+            /* 16 buckets per power of two, the width of a bucket is at most a sixteenth of its values. */
+            assertTrue(upper - lower + 1 <= Math.max(1, lower / 16));
+        }
+    }
+
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (int bucket = 1; bucket < 16 * 40; bucket++) {
+            long lower = LatencyHistogram.upperBound(bucket - 1) + 1;
+            assertEquals(bucket, LatencyHistogram.bucketOf(lower));
+            assertEquals(bucket, LatencyHistogram.bucketOf(LatencyHistogram.upperBound(bucket)));
+        }
+    }
+
+
+    @Test
+    public void hugeLatencyIsCountedInTheLastBucket() {
+        int last = LatencyHistogram.newSnapshot().length - 1;
+        assertEquals(last, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+        assertEquals(last, LatencyHistogram.bucketOf(1L << 50));
+    }
+
+
+    @Test
+    public void percentilesOfUniformLatencies() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        histogram.record(-5);
+
+        long[] snapshot = LatencyHistogram.newSnapshot();
+        assertEquals(1000000, histogram.drainTo(snapshot));
+        assertEquals(1001, LatencyHistogram.count(snapshot));
+        assertEquals(0, LatencyHistogram.percentile(snapshot, 0));
+        assertNear(500000, LatencyHistogram.percentile(snapshot, 50));
+        assertNear(900000, LatencyHistogram.percentile(snapshot, 90));
+        assertNear(990000, LatencyHistogram.percentile(snapshot, 99));
+        assertNear(1000000, LatencyHistogram.percentile(snapshot, 100));
+    }
+
+
+    @Test
+    public void drainEmptiesTheHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        long[] snapshot = LatencyHistogram.newSnapshot();
+        histogram.drainTo(snapshot);
+
+        long[] next = LatencyHistogram.newSnapshot();
+        assertEquals(0, histogram.drainTo(next));
+        assertEquals(0, LatencyHistogram.count(next));
+        assertEquals(0, LatencyHistogram.percentile(next, 99));
+
+        /* A second drain into the same snapshot merges the intervals. */
+        histogram.record(5000);
+        assertEquals(5000, histogram.drainTo(snapshot));
+        assertEquals(2, LatencyHistogram.count(snapshot));
+        assertNear(5000, LatencyHistogram.percentile(snapshot, 100));
+    }
+
+
+    @Test
+    public void timerRecordsOnce() {
+        final List<Long> recorded = new ArrayList<>();
+        MonitorNode monitorNode = new MonitorNode("10.0.0.1") {
+            @Override
+            public void recordLatency(String operation, long nanos) {
+                recorded.add(nanos);
+            }
+        };
+
+        /* Stopped inside a try-with-resources statement, which closes it again. */
+        LatencyTimer timer = monitorNode.startTimer("route");
+        long latency = timer.stop();
+        timer.close();
+        assertEquals(latency, timer.stop());
+        assertEquals(1, recorded.size());
+        assertEquals(latency, (long) recorded.get(0));
+    }
+
+
+    /**
+     * Asserts that a percentile is within the precision of the histogram
+     *
+     * @param expected The exact value
+     * @param actual The percentile of the histogram
+     */
+    private static void assertNear(long expected, long actual) {
+        assertTrue(actual + " is below " + expected, actual >= expected);
+        assertTrue(actual + " is too far above " + expected, actual <= expected + expected / 16);
+    }
+}
@@ -0,0 +1,138 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests of the slots of the top neighbours: the hysteresis of a replacement and the renamed series of a slot.
+ */
+public class NeighbourSamplerTest {
+
+    private static final long TICK = 200;
+
+    private MonitorNode monitorNode;
+    private NeighbourSampler sampler;
+    private long timeStamp = 0;
+
+
+    @Before
+    public void setUp() {
+        monitorNode = new MonitorNode("10.0.0.1");
+        monitorNode.setCurrentNeighbours(new String[]{"a", "b", "c"});
+        sampler = new NeighbourSampler(monitorNode, 2, 1024);
+        sampler.reset();
+    }
+
+
+    @Test
+    public void slightlyBusierNeighbourDoesNotTakeASlot() {
+        tick(1000, 1000, 0, 50);
+        assertEquals(linkSeries("a", "b"), takeLinkSeries());
+
+        /* c has 10% more IO than a and b, which is within the hysteresis. */
+        tick(1000, 1000, 1100, 500);
+        assertEquals(linkSeries("a", "b"), takeLinkSeries());
+    }
+
+
+    @Test
+    public void muchBusierNeighbourTakesTheSlotWithTheSmallestCount() {
+        tick(1000, 2000, 0, 50);
+        takeLinkSeries();
+
+        tick(1000, 2000, 5000, 20);
+        List<String> series = takeLinkSeries();
+        assertEquals(linkSeries("c", "b"), series);
+        assertFalse(series.contains(NeighbourSampler.LINK_SEND_PREFIX + "a"));
+    }
+
+
+    @Test
+    public void renamedSlotOnlySendsTheSamplesOfItsNewNeighbour() {
+        tick(1000, 2000, 0, 5);
+        takeLinkSeries();
+
+        /* The samples of a since the previous snapshot are discarded with the slot. */
+        tick(1000, 2000, 0, 5);
+        tick(1000, 2000, 5000, 10);
+        NodeSnapshot snapshot = snapshot();
+        NodeSnapshot.Series link = find(snapshot, NeighbourSampler.LINK_SEND_PREFIX + "c");
+        assertTrue(link.size() > 0 && link.size() < 10);
+        for (int i = 0; i < link.size(); i++) {
+            assertEquals(5000.0 / TICK, link.getValue(i), 0);
+        }
+    }
+
+
+    /**
+     * Adds the IO of the neighbours and runs the ticks of the sampler
+     *
+     * @param a The bytes send to neighbour a on every tick
+     * @param b The bytes send to neighbour b on every tick
+     * @param c The bytes send to neighbour c on every tick
+     * @param ticks The amount of ticks
+     */
+    private void tick(long a, long b, long c, int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            monitorNode.getCurrentNeighbours().get("a").bytesSend.add(a);
+            monitorNode.getCurrentNeighbours().get("b").bytesSend.add(b);
+            monitorNode.getCurrentNeighbours().get("c").bytesSend.add(c);
+            timeStamp += TICK;
+            sampler.sample(timeStamp, TICK);
+        }
+    }
+
+
+    private NodeSnapshot snapshot() {
+        NodeSnapshot snapshot = new NodeSnapshot();
+        sampler.markEnds();
+        sampler.takeSnapshot(snapshot, monitorNode.getCurrentNeighbours());
+        return snapshot;
+    }
+
+
+    /**
+     * Takes a snapshot and gets the link send series of the top neighbours in it
+     *
+     * @return The names of the series in the order of their slots
+     */
+    private List<String> takeLinkSeries() {
+        NodeSnapshot snapshot = snapshot();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < snapshot.getSeriesCount(); i++) {
+            String name = snapshot.getSeries(i).getName();
+            if (name.startsWith(NeighbourSampler.LINK_SEND_PREFIX)
+                    && !name.equals(NeighbourSampler.LINK_SEND_PREFIX + NeighbourSampler.OTHER)) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+
+    private static List<String> linkSeries(String first, String second) {
+        List<String> names = new ArrayList<>();
+        names.add(NeighbourSampler.LINK_SEND_PREFIX + first);
+        names.add(NeighbourSampler.LINK_SEND_PREFIX + second);
+        return names;
+    }
+
+
+    private static NodeSnapshot.Series find(NodeSnapshot snapshot, String name) {
+        for (int i = 0; i < snapshot.getSeriesCount(); i++) {
+            if (snapshot.getSeries(i).getName().equals(name)) {
+                return snapshot.getSeries(i);
+            }
+        }
+        throw new AssertionError("No series " + name);
+    }
+}
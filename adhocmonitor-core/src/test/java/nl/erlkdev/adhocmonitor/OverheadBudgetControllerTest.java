@@ -0,0 +1,59 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests of the overhead that the budget controller compares with the CPU budget.
+ */
+public class OverheadBudgetControllerTest {
+
+    private final MonitorNode monitorNode = new MonitorNode("10.0.0.1");
+    private final OverheadBudgetController controller =
+            new OverheadBudgetController(monitorNode, 0.01, 0, 200, 1, null);
+
+
+    @Test
+    public void lowOverheadIsNotDegraded() throws InterruptedException {
+        controller.setEvaluationInterval(1);
+        controller.reset();
+        evaluate();
+        assertEquals(OverheadBudgetController.Degradation.NONE, controller.getDegradation());
+    }
+
+
+    @Test
+    public void sendTimeCountsForTheBudget() throws InterruptedException {
+        /* The compression and the writes of the datagrams run on the send thread. */
+        controller.setEvaluationInterval(1);
+        controller.reset();
+        monitorNode.getMetrics().recordWrite(1000000000L);
+        evaluate();
+        assertEquals(OverheadBudgetController.Degradation.NEIGHBOUR_DETAIL, controller.getDegradation());
+    }
+
+
+    @Test
+    public void receiveTimeCountsForTheBudget() throws InterruptedException {
+        /* The acknowledgements and the packets of the neighbours are handled on the receive threads. */
+        controller.setEvaluationInterval(1);
+        controller.reset();
+        monitorNode.getMetrics().recordReceive(1000000000L);
+        evaluate();
+        assertEquals(OverheadBudgetController.Degradation.NEIGHBOUR_DETAIL, controller.getDegradation());
+    }
+
+
+    /**
+     * Runs the controller after its evaluation interval
+     *
+     * @throws InterruptedException If the wait is interrupted
+     */
+    private void evaluate() throws InterruptedException {
+        Thread.sleep(10);
+        controller.sample(monitorNode.getMonitorTime(), 10);
+    }
+}
@@ -0,0 +1,182 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Round trip tests of the packet compression with the dictionary of a node.
+ */
+public class PacketCompressorTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String[] NEIGHBOURS = {"10.0.0.2", "10.0.0.3", "02:00:5e:10:00:04"};
+
+    private MonitorNode monitorNode;
+    private byte[] dictionary;
+    private PacketCompressor compressor;
+    private PacketDecompressor decompressor;
+
+
+    @Before
+    public void setUp() {
+        monitorNode = new MonitorNode("10.0.0.1");
+        monitorNode.setCurrentNeighbours(NEIGHBOURS);
+        monitorNode.createSeries(NeighbourSampler.LINK_SEND_PREFIX + NEIGHBOURS[0]);
+        monitorNode.createSeries("customChart");
+        dictionary = PacketCompressor.buildDictionary(monitorNode);
+        compressor = new PacketCompressor(dictionary);
+        decompressor = new PacketDecompressor();
+    }
+
+
+    @After
+    public void tearDown() {
+        compressor.end();
+        decompressor.end();
+    }
+
+
+    @Test
+    public void dictionaryContainsTheNodeStrings() {
+        assertTrue(dictionary.length <= PacketCompressor.MAX_DICTIONARY_SIZE);
+        String text = new String(dictionary, UTF8);
+        assertTrue(text.contains("\"address\":\"10.0.0.1\""));
+        assertTrue(text.contains("\"address\":\"" + NEIGHBOURS[1] + "\""));
+        assertTrue(text.contains("\"customChart\":{\""));
+        assertEquals(compressor.getDictionaryId(), decompressor.addDictionary(dictionary));
+    }
+
+
+    @Test
+    public void jsonPacketRoundTrip() {
+        decompressor.addDictionary(dictionary);
+        ByteBuffer packet = encode(new JsonPacketEncoder());
+        byte[] original = bytes(packet.duplicate());
+
+        ByteBuffer compressed = compressor.compress(packet);
+        assertFalse(packet.hasRemaining());
+        assertTrue(PacketDecompressor.isCompressedPacket(compressed));
+        assertTrue(compressed.remaining() <= original.length - original.length / 8);
+        assertEquals(1, compressor.getCompressedPackets());
+        assertTrue(compressor.getCompressionRatio() < 1);
+
+        ByteBuffer decompressed = decompressor.decompress(compressed);
+        assertEquals(ByteBuffer.wrap(original), decompressed);
+    }
+
+
+    @Test
+    public void binaryPacketRoundTrip() {
+        ByteBuffer packet = encode(new BinaryPacketEncoder());
+        byte[] original = bytes(packet.duplicate());
+        ByteBuffer compressed = compressor.compress(packet);
+        assertTrue(PacketDecompressor.isCompressedPacket(compressed));
+
+        /* A decompressor of another receive thread shares the dictionaries. */
+        PacketDecompressor shared = new PacketDecompressor(decompressor);
+        decompressor.addDictionary(dictionary);
+        try {
+            assertEquals(ByteBuffer.wrap(original), shared.decompress(compressed));
+        } finally {
+            shared.end();
+        }
+    }
+
+
+    @Test
+    public void unknownDictionaryIsRejected() {
+        ByteBuffer compressed = compressor.compress(encode(new JsonPacketEncoder()));
+        try {
+            decompressor.decompress(compressed);
+            fail("The dictionary is not added");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Unknown dictionary"));
+        }
+    }
+
+
+    @Test
+    public void smallPacketIsNotCompressed() {
+        ByteBuffer packet = ByteBuffer.allocate(PacketCompressor.MIN_PACKET_SIZE - 1);
+        assertSame(packet, compressor.compress(packet));
+        assertEquals(PacketCompressor.MIN_PACKET_SIZE - 1, packet.remaining());
+        assertFalse(PacketDecompressor.isCompressedPacket(packet));
+        assertEquals(0, compressor.getCompressedPackets());
+    }
+
+
+    @Test
+    public void packetsAreSkippedAfterBadCompression() {
+        byte[] noise = new byte[512];
+        new Random(1).nextBytes(noise);
+        ByteBuffer packet = ByteBuffer.wrap(noise);
+        assertSame(packet, compressor.compress(packet));
+        assertEquals(noise.length, packet.remaining());
+
+        /* The backoff skips the next packet, even when it compresses well. */
+        ByteBuffer skipped = encode(new JsonPacketEncoder());
+        assertSame(skipped, compressor.compress(skipped));
+        ByteBuffer next = encode(new JsonPacketEncoder());
+        assertTrue(PacketDecompressor.isCompressedPacket(compressor.compress(next)));
+        assertEquals(1, compressor.getCompressedPackets());
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooLargeDictionaryIsRejected() {
+        new PacketCompressor(new byte[PacketCompressor.MAX_DICTIONARY_SIZE + 1]);
+    }
+
+
+    /**
+     * Encodes a snapshot of the node with samples and the neighbours
+     *
+     * @param encoder The encoder
+     * @return The buffer with the packet between its position and limit
+     */
+    private static ByteBuffer encode(PacketEncoder encoder) {
+        NodeSnapshot snapshot = new NodeSnapshot();
+        snapshot.setMetadata("10.0.0.1", "idle", 1760000000000L);
+        snapshot.setSequence(3, 3);
+        NodeSnapshot.Series series = snapshot.addSeries(MonitorSeries.CPU_USAGE.toString());
+        NodeSnapshot.Series link = snapshot.addSeries(NeighbourSampler.LINK_SEND_PREFIX + NEIGHBOURS[0]);
+        for (int i = 0; i < 5; i++) {
+            series.add(1760000000000L + i * 200, i * 1.5);
+            link.add(1760000000000L + i * 200, i * 100);
+        }
+        for (int i = 0; i < NEIGHBOURS.length; i++) {
+            snapshot.addNeighbour(NEIGHBOURS[i], 1000 * i, 2000 * i, i % 2 == 0);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        encoder.encode(snapshot, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+
+    /**
+     * Copies the bytes of a buffer
+     *
+     * @param buffer The buffer, its position is moved to its limit
+     * @return The bytes between the position and limit
+     */
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
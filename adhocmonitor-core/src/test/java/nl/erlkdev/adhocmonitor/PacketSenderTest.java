@@ -0,0 +1,135 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests of the packets that the packet sender keeps in the retransmit window.
+ */
+public class PacketSenderTest {
+
+    @Test
+    public void packetIsRetainedAfterTheWrite() throws IOException {
+        RecordingSender sender = new RecordingSender();
+        sender.setReliableWindow(8);
+        int bytes = sender.send(snapshot(0, true));
+        assertEquals(1, sender.getPendingPackets());
+
+        /* The retained packet is the packet as it is written. */
+        assertEquals(1, sender.retained.size());
+        assertEquals(bytes, sender.retained.get(0).length);
+        assertArrayEquals(sender.packets.get(0), sender.retained.get(0));
+    }
+
+
+    @Test
+    public void failedWriteIsNotRetained() {
+        RecordingSender sender = new RecordingSender();
+        sender.setReliableWindow(8);
+        sender.failing = true;
+        try {
+            sender.send(snapshot(0, true));
+            fail("The write fails");
+        } catch (IOException e) {
+            assertEquals(0, sender.getPendingPackets());
+        }
+    }
+
+
+    @Test
+    public void packetWithoutAckRequestIsNotRetained() throws IOException {
+        RecordingSender sender = new RecordingSender();
+        sender.setReliableWindow(8);
+        sender.send(snapshot(0, false));
+        NodeSnapshot relayed = snapshot(1, true);
+        relayed.setRelay("10.0.0.9");
+        sender.send(relayed);
+        assertEquals(0, sender.getPendingPackets());
+        assertEquals(2, sender.packets.size());
+    }
+
+
+    @Test
+    public void writeTimeIsAddedToTheMetrics() throws IOException {
+        DatagramSocket receiver = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        PacketSender sender = new PacketSender(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                receiver.getLocalPort()), new BinaryPacketEncoder());
+        MonitorMetrics metrics = new MonitorMetrics();
+        sender.setMetrics(metrics);
+        try {
+            sender.open();
+            sender.send(snapshot(0, false));
+            assertTrue(metrics.getSendTime() > 0);
+            assertEquals(1, metrics.getPacketsSend());
+        } finally {
+            sender.close();
+            receiver.close();
+        }
+    }
+
+
+    /**
+     * Creates a snapshot with a sequence number
+     *
+     * @param sequence The sequence number
+     * @param ackRequested true if the snapshot requests an acknowledgement
+     * @return The snapshot
+     */
+    private static NodeSnapshot snapshot(long sequence, boolean ackRequested) {
+        NodeSnapshot snapshot = new NodeSnapshot();
+        snapshot.setMetadata("10.0.0.1", "RUNNING", 100);
+        snapshot.setSequence(sequence, sequence);
+        snapshot.setAckRequested(ackRequested);
+        snapshot.addSeries("cpuUsageChart").add(100, 1.5);
+        return snapshot;
+    }
+
+
+    /**
+     * Packet sender that keeps the written packets instead of sending them, or fails every write.
+     */
+    private static class RecordingSender extends PacketSender {
+
+        private final List<byte[]> packets = new ArrayList<byte[]>();
+        private final List<byte[]> retained = new ArrayList<byte[]>();
+        private boolean failing = false;
+
+        RecordingSender() {
+            super(new InetSocketAddress("127.0.0.1", 9), new BinaryPacketEncoder());
+        }
+
+        @Override
+        protected int write(ByteBuffer buffer) throws IOException {
+            if (failing) {
+                buffer.position(buffer.limit());
+                throw new IOException("Network is unreachable");
+            }
+            byte[] packet = new byte[buffer.remaining()];
+            buffer.get(packet);
+            packets.add(packet);
+            return packet.length;
+        }
+
+        @Override
+        protected void retain(long sequence, ByteBuffer packet) {
+            byte[] copy = new byte[packet.remaining()];
+            packet.duplicate().get(copy);
+            retained.add(copy);
+            super.retain(sequence, packet);
+        }
+    }
+}
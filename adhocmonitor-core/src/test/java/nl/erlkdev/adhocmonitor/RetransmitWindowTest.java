@@ -0,0 +1,206 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests of the retransmit timeouts, the round trip time estimation and the bounds of the retransmit window.
+ */
+public class RetransmitWindowTest {
+
+    private static final long MILLIS = 1000000L;
+
+    private final RecordingSender sender = new RecordingSender();
+
+
+    @Test
+    public void retransmitAfterInitialTimeout() throws Exception {
+        RetransmitWindow window = new RetransmitWindow(8);
+        window.add(0, packet(1, 2, 3), 0);
+        assertEquals(RetransmitWindow.INITIAL_TIMEOUT, window.getTimeout());
+
+        assertEquals(0, window.retransmitDue(sender, 999 * MILLIS));
+        assertEquals(3, window.retransmitDue(sender, 1000 * MILLIS));
+        assertEquals(1, sender.packets.size());
+        assertArrayEquals(new byte[]{1, 2, 3}, sender.packets.get(0));
+        assertEquals(1, window.getRetransmits());
+    }
+
+
+    @Test
+    public void timeoutDoublesForEveryRetransmit() throws Exception {
+        RetransmitWindow window = new RetransmitWindow(8);
+        window.add(0, packet(1), 0);
+        long now = 0;
+        long timeout = RetransmitWindow.INITIAL_TIMEOUT;
+        for (int i = 0; i < 6; i++) {
+            now += timeout * MILLIS;
+            assertEquals(0, window.retransmitDue(sender, now - 1));
+            assertEquals(1, window.retransmitDue(sender, now));
+            timeout = Math.min(RetransmitWindow.MAX_TIMEOUT, timeout * 2);
+        }
+        assertEquals(6, window.getRetransmits());
+
+        /* The timeout is limited to the maximum timeout. */
+        assertEquals(RetransmitWindow.MAX_TIMEOUT, timeout);
+    }
+
+
+    @Test
+    public void roundTripTimeIsEstimatedLikeTcp() {
+        RetransmitWindow window = new RetransmitWindow(8);
+        window.add(0, packet(1), 0);
+        assertTrue(window.acknowledge(0, 100 * MILLIS));
+        assertEquals(100, window.getSmoothedRtt(), 1e-9);
+        assertEquals(50, window.getRttVariance(), 1e-9);
+        assertEquals(300, window.getTimeout());
+
+        window.add(1, packet(1), 1000 * MILLIS);
+        assertTrue(window.acknowledge(1, 1200 * MILLIS));
+        assertEquals(112.5, window.getSmoothedRtt(), 1e-9);
+        assertEquals(62.5, window.getRttVariance(), 1e-9);
+        assertEquals(363, window.getTimeout());
+    }
+
+
+    @Test
+    public void timeoutIsAtLeastTheMinimumTimeout() {
+        RetransmitWindow window = new RetransmitWindow(8);
+        window.add(0, packet(1), 0);
+        window.acknowledge(0, 10 * MILLIS);
+        assertEquals(RetransmitWindow.MIN_TIMEOUT, window.getTimeout());
+    }
+
+
+    @Test
+    public void retransmittedSequenceIsNotMeasured() throws Exception {
+        RetransmitWindow window = new RetransmitWindow(8);
+        window.add(0, packet(1), 0);
+        window.retransmitDue(sender, 1000 * MILLIS);
+
+        /* Karn's algorithm: the acknowledgement can be of the first send or of the retransmit. */
+        assertTrue(window.acknowledge(0, 1050 * MILLIS));
+        assertTrue(Double.isNaN(window.getSmoothedRtt()));
+        assertEquals(RetransmitWindow.INITIAL_TIMEOUT, window.getTimeout());
+        assertEquals(1, window.getAcknowledgedSequences());
+    }
+
+
+    @Test
+    public void acknowledgedSequenceIsNotRetransmitted() throws Exception {
+        RetransmitWindow window = new RetransmitWindow(8);
+        window.add(0, packet(1), 0);
+        window.add(1, packet(2), 0);
+        window.acknowledge(0, 10 * MILLIS);
+
+        assertEquals(1, window.retransmitDue(sender, 10000 * MILLIS));
+        assertArrayEquals(new byte[]{2}, sender.packets.get(0));
+        assertEquals(1, window.getPendingSequences());
+    }
+
+
+    @Test
+    public void duplicateAndLateAcknowledgementsAreIgnored() {
+        RetransmitWindow window = new RetransmitWindow(2);
+        window.add(0, packet(1), 0);
+        assertTrue(window.acknowledge(0, 10 * MILLIS));
+        assertFalse(window.acknowledge(0, 20 * MILLIS));
+        assertFalse(window.acknowledge(-1, 20 * MILLIS));
+
+        /* Sequence 1 is replaced by sequence 3 before its acknowledgement. */
+        window.add(1, packet(1), 0);
+        window.add(2, packet(1), 0);
+        window.add(3, packet(1), 0);
+        assertFalse(window.acknowledge(1, 30 * MILLIS));
+        assertEquals(1, window.getAcknowledgedSequences());
+    }
+
+
+    @Test
+    public void oldestSequenceIsLostWhenTheWindowIsFull() {
+        RetransmitWindow window = new RetransmitWindow(2);
+        window.add(0, packet(1), 0);
+        window.add(1, packet(1), 0);
+        window.add(2, packet(1), 0);
+        assertEquals(1, window.getLostSequences());
+        assertEquals(2, window.getPendingSequences());
+        assertEquals(3, window.getSendSequences());
+    }
+
+
+    @Test
+    public void retransmitsAreLimitedPerCall() throws Exception {
+        RetransmitWindow window = new RetransmitWindow(32);
+        for (int i = 0; i < 20; i++) {
+            window.add(i, packet(i), 0);
+        }
+        window.retransmitDue(sender, 1000 * MILLIS);
+        assertEquals(RetransmitWindow.MAX_RETRANSMITS, sender.packets.size());
+        assertArrayEquals(new byte[]{0}, sender.packets.get(0));
+    }
+
+
+    @Test
+    public void allSlicesOfASequenceAreRetransmitted() throws Exception {
+        RetransmitWindow window = new RetransmitWindow(8);
+        window.add(5, packet(1, 2), 0);
+        window.add(5, packet(3), 10 * MILLIS);
+        assertEquals(1, window.getSendSequences());
+
+        /* The timeout starts at the first slice. */
+        assertEquals(3, window.retransmitDue(sender, 1000 * MILLIS));
+        assertEquals(2, sender.packets.size());
+        assertArrayEquals(new byte[]{1, 2}, sender.packets.get(0));
+        assertArrayEquals(new byte[]{3}, sender.packets.get(1));
+    }
+
+
+    /**
+     * Creates a packet with the given bytes, after a byte that is not part of the packet
+     *
+     * @param bytes The bytes of the packet
+     * @return The buffer with the packet between its position and limit
+     */
+    private static ByteBuffer packet(int... bytes) {
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 1);
+        buffer.put((byte) -1);
+        for (int b : bytes) {
+            buffer.put((byte) b);
+        }
+        buffer.flip();
+        buffer.position(1);
+        return buffer;
+    }
+
+
+    /**
+     * Packet sender that keeps the written packets instead of sending them.
+     */
+    private static class RecordingSender extends PacketSender {
+
+        private final List<byte[]> packets = new ArrayList<byte[]>();
+
+        RecordingSender() {
+            super(new InetSocketAddress("127.0.0.1", 9), new BinaryPacketEncoder());
+        }
+
+        @Override
+        protected int write(ByteBuffer buffer) {
+            byte[] packet = new byte[buffer.remaining()];
+            buffer.get(packet);
+            packets.add(packet);
+            return packet.length;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests of the drains and reads of the sample ring, before and after the ring wraps around.
+ */
+public class SampleRingTest {
+
+    @Test
+    public void drainReturnsSamplesInOrder() {
+        SampleRing ring = new SampleRing("test", 8);
+        add(ring, 0, 5);
+        NodeSnapshot.Series series = new NodeSnapshot().addSeries("test");
+        ring.drainTo(series);
+        assertSamples(series, 0, 5);
+        assertEquals(0, ring.getOverwrittenSamples());
+
+        /* The next drain only returns the new samples. */
+        add(ring, 5, 8);
+        series = new NodeSnapshot().addSeries("test");
+        ring.drainTo(series);
+        assertSamples(series, 5, 8);
+        assertEquals(8, ring.getWriteSequence());
+    }
+
+
+    @Test
+    public void drainAfterWraparoundCountsOverwrittenSamples() {
+        SampleRing ring = new SampleRing("test", 4);
+        add(ring, 0, 10);
+        NodeSnapshot.Series series = new NodeSnapshot().addSeries("test");
+        ring.drainTo(series);
+
+        /* The slot after the write sequence may be written, so the oldest sample in the ring is skipped too. */
+        assertSamples(series, 7, 10);
+        assertEquals(7, ring.getOverwrittenSamples());
+
+        add(ring, 10, 12);
+        series = new NodeSnapshot().addSeries("test");
+        ring.drainTo(series);
+        assertSamples(series, 10, 12);
+        assertEquals(7, ring.getOverwrittenSamples());
+    }
+
+
+    @Test
+    public void drainUpToSequenceKeepsLaterSamples() {
+        SampleRing ring = new SampleRing("test", 4);
+        add(ring, 0, 3);
+        NodeSnapshot.Series series = new NodeSnapshot().addSeries("test");
+        ring.drainTo(series, 2);
+        assertSamples(series, 0, 2);
+
+        /* The ring wraps around, the kept sample stays until it is overwritten. */
+        add(ring, 3, 5);
+        series = new NodeSnapshot().addSeries("test");
+        ring.drainTo(series);
+        assertSamples(series, 2, 5);
+        assertEquals(0, ring.getOverwrittenSamples());
+    }
+
+
+    @Test
+    public void readDoesNotDrain() {
+        SampleRing ring = new SampleRing("test", 4);
+        add(ring, 0, 6);
+        NodeSnapshot.Series series = new NodeSnapshot().addSeries("test");
+        assertEquals(6, ring.read(4, series));
+        assertSamples(series, 4, 6);
+
+        series = new NodeSnapshot().addSeries("test");
+        assertEquals(6, ring.read(0, series));
+        assertSamples(series, 3, 6);
+
+        series = new NodeSnapshot().addSeries("test");
+        ring.drainTo(series);
+        assertSamples(series, 3, 6);
+        assertEquals(3, ring.getOverwrittenSamples());
+    }
+
+
+    @Test
+    public void renameDiscardsTheSamplesThatAreNotDrained() {
+        SampleRing ring = new SampleRing("old", 8);
+        add(ring, 0, 3);
+        ring.rename("new");
+        assertEquals("new", ring.getName());
+
+        add(ring, 3, 5);
+        NodeSnapshot.Series series = new NodeSnapshot().addSeries("new");
+        ring.drainTo(series);
+        assertSamples(series, 3, 5);
+        assertEquals(0, ring.getOverwrittenSamples());
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyRingIsRejected() {
+        new SampleRing("test", 0);
+    }
+
+
+    /**
+     * Adds the samples of a range to the ring, the time stamp of a sample is its number and the value is half of it
+     *
+     * @param ring The ring
+     * @param start The number of the first sample
+     * @param end The number after the last sample
+     */
+    private static void add(SampleRing ring, int start, int end) {
+        for (int i = start; i < end; i++) {
+            ring.add(i, i / 2.0);
+        }
+    }
+
+
+    /**
+     * Checks that a series contains the samples of a range, as added by add
+     *
+     * @param series The series
+     * @param start The number of the first sample
+     * @param end The number after the last sample
+     */
+    private static void assertSamples(NodeSnapshot.Series series, int start, int end) {
+        assertEquals(end - start, series.size());
+        for (int i = 0; i < series.size(); i++) {
+            assertEquals(start + i, series.getTimeStamp(i));
+            assertEquals((start + i) / 2.0, series.getValue(i), 0);
+        }
+    }
+}
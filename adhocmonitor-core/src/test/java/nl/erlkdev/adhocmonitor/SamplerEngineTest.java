@@ -0,0 +1,129 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests of the handling of the failures of the samplers by the sampler engine.
+ */
+public class SamplerEngineTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private final MonitorNode monitorNode = new MonitorNode("10.0.0.1");
+    private final SamplerEngine engine = new SamplerEngine(monitorNode);
+    private final List<String> errors = new CopyOnWriteArrayList<String>();
+
+
+    @After
+    public void tearDown() {
+        engine.stop();
+    }
+
+
+    @Test
+    public void transientFailuresKeepTheSampler() throws InterruptedException {
+        FailingSampler sampler = new FailingSampler(3);
+        start(sampler);
+        waitFor(sampler, 10);
+        assertFalse(engine.isDisabled(sampler));
+        assertEquals(3, monitorNode.getMetrics().getSamplerFailures());
+
+        /* Only the first failure of the failures in a row is reported. */
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).startsWith("Sampler FailingSampler failed"));
+    }
+
+
+    @Test
+    public void repeatedFailuresDisableTheSampler() throws InterruptedException {
+        FailingSampler sampler = new FailingSampler(Integer.MAX_VALUE);
+        FailingSampler other = new FailingSampler(0);
+        engine.addSampler(other);
+        start(sampler);
+        waitFor(sampler, SamplerEngine.MAX_CONSECUTIVE_FAILURES);
+        waitFor(other, 2 * SamplerEngine.MAX_CONSECUTIVE_FAILURES);
+        assertTrue(engine.isDisabled(sampler));
+        assertEquals(SamplerEngine.MAX_CONSECUTIVE_FAILURES, sampler.calls.get());
+        assertEquals(SamplerEngine.MAX_CONSECUTIVE_FAILURES, monitorNode.getMetrics().getSamplerFailures());
+        assertEquals(2, errors.size());
+        assertTrue(errors.get(1).contains("disabled"));
+
+        /* A new start resets the sampler and gives it a new chance. */
+        engine.stop();
+        engine.start();
+        waitFor(sampler, SamplerEngine.MAX_CONSECUTIVE_FAILURES + 1);
+        assertEquals(3, sampler.resets.get());
+    }
+
+
+    /**
+     * Adds a sampler to the engine and starts it with a short period
+     *
+     * @param sampler The sampler
+     */
+    private void start(Sampler sampler) {
+        engine.setErrorListener(new MonitorClient.ErrorListener() {
+            @Override
+            public void onError(String errorMsg) {
+                errors.add(errorMsg);
+            }
+        });
+        engine.addSampler(sampler);
+        engine.setPeriod(5);
+        engine.start();
+    }
+
+
+    /**
+     * Waits until a sampler is called an amount of times
+     *
+     * @param sampler The sampler
+     * @param calls The amount of calls
+     * @throws InterruptedException If the wait is interrupted
+     */
+    private static void waitFor(FailingSampler sampler, int calls) throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (sampler.calls.get() < calls) {
+            assertTrue("Sampler is not called " + calls + " times", System.currentTimeMillis() < end);
+            Thread.sleep(5);
+        }
+    }
+
+
+    /**
+     * Sampler that fails on its first calls.
+     */
+    private static class FailingSampler implements Sampler {
+
+        private final int failures;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger resets = new AtomicInteger();
+
+        FailingSampler(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public void reset() {
+            resets.incrementAndGet();
+        }
+
+        @Override
+        public void sample(long timeStamp, long elapsed) {
+            if (calls.incrementAndGet() <= failures) {
+                throw new IllegalStateException("Sample failed");
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package nl.erlkdev.adhocmonitor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Tests that the striped adder, and the counters of the monitor node that use it, keep the exact total of
+ * concurrent updates, also above the range of an int.
+ */
+public class StripedLongAdderTest {
+
+    private static final int THREADS = 8;
+    private static final int UPDATES = 100000;
+
+
+    @Test
+    public void concurrentIncrementsAndAddsAreExact() throws Exception {
+        final StripedLongAdder adder = new StripedLongAdder(4);
+        runConcurrently(new Task() {
+            @Override
+            public void run(int thread) {
+                for (int i = 0; i < UPDATES; i++) {
+                    adder.increment();
+                    adder.add(thread + 1);
+                }
+            }
+        });
+
+        /* Every thread adds UPDATES times one, and UPDATES times its number plus one. */
+        long expected = (long) THREADS * UPDATES + (long) UPDATES * (THREADS * (THREADS + 1) / 2);
+        assertEquals(expected, adder.sum());
+    }
+
+
+    @Test
+    public void sumAboveIntegerRangeIsExact() throws Exception {
+        final StripedLongAdder adder = new StripedLongAdder();
+        runConcurrently(new Task() {
+            @Override
+            public void run(int thread) {
+                for (int i = 0; i < 1000; i++) {
+                    adder.add(Integer.MAX_VALUE);
+                }
+            }
+        });
+        assertEquals((long) THREADS * 1000 * Integer.MAX_VALUE, adder.sum());
+
+        adder.add(-((long) THREADS * 1000 * Integer.MAX_VALUE) - 1);
+        assertEquals(-1, adder.sum());
+    }
+
+
+    @Test
+    public void singleStripeIsExact() throws Exception {
+        final StripedLongAdder adder = new StripedLongAdder(1);
+        runConcurrently(new Task() {
+            @Override
+            public void run(int thread) {
+                for (int i = 0; i < UPDATES; i++) {
+                    adder.increment();
+                }
+            }
+        });
+        assertEquals((long) THREADS * UPDATES, adder.sum());
+    }
+
+
+    @Test
+    public void monitorNodeCountersAreExact() throws Exception {
+        final MonitorNode monitorNode = new MonitorNode("10.0.0.1");
+        monitorNode.setCurrentNeighbours(new String[]{"10.0.0.2", "10.0.0.3"});
+        final int largeAmount = Integer.MAX_VALUE / 2;
+        runConcurrently(new Task() {
+            @Override
+            public void run(int thread) {
+                String neighbour = thread % 2 == 0 ? "10.0.0.2" : "10.0.0.3";
+                for (int i = 0; i < UPDATES; i++) {
+                    monitorNode.addSendIO(neighbour, largeAmount);
+                    monitorNode.addRecieveIO(neighbour, 3);
+                    monitorNode.addRecieveIO("10.0.0.99", 1);
+                    monitorNode.incrProcessTicks();
+                }
+            }
+        });
+
+        /* The totals are far above Integer.MAX_VALUE. */
+        long updates = (long) THREADS * UPDATES;
+        assertEquals(updates * largeAmount, monitorNode.getBytesSend());
+        assertEquals(updates * 4, monitorNode.getBytesReceived());
+        assertEquals(updates, monitorNode.getProcessTicks());
+
+        /* Data of an address that is not a neighbour only counts for the node totals. */
+        NeighbourStats neighbour = monitorNode.getCurrentNeighbours().get("10.0.0.2");
+        assertEquals(updates / 2 * largeAmount, neighbour.bytesSend.sum());
+        assertEquals(updates / 2 * 3, neighbour.bytesReceived.sum());
+    }
+
+
+    /**
+     * Runs a task on multiple threads at the same time and waits for them
+     *
+     * @param task The task, it gets the number of its thread
+     * @throws Exception If a thread failed
+     */
+    private static void runConcurrently(final Task task) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int number = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        task.run(number);
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+
+    /**
+     * Task of one of the concurrent threads.
+     */
+    private interface Task {
+        void run(int thread);
+    }
+}
@@ -0,0 +1,404 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Load simulator that runs many virtual monitor nodes in one process and sends their packets to a UDP sink on
+ * the loopback interface. The nodes sample and send on one shared scheduler, so the amount of threads doesn't
+ * grow with the amount of nodes. A traffic generator adds synthetic IO, process ticks and neighbour churn.
+ *
+ * The simulation runs a step for every node count, and reports the packets per second, the loss and the
+ * percentiles of the send latency. The send lag is the delay of a send after its scheduled time, it grows when
+ * the scheduler can't keep up. The throughput ceiling is the highest node count without loss and with the
+ * send lag below the send interval.
+ *
+ * Usage: LoadSimulator [--nodes 500,1000,2000,5000] [--duration 20] [--warmup 5] [--format JSON|BINARY]
+ *        [--send-interval 500] [--sample-interval 200] [--neighbours 8] [--churn 0.01] [--traffic 10000]
+ *        [--ticks 1000] [--batch 0] [--datagram 8000] [--keyframe 1] [--capacity 64] [--threads n]
+ *        [--decode] [--seed 1]
+ */
+public class LoadSimulator {
+
+    /* Period of the traffic generator and of the reports. */
+    private static final long GENERATOR_PERIOD = 50;
+    private static final long REPORT_PERIOD = 1000;
+
+    /* Loss above which a step is over the throughput ceiling. */
+    private static final double MAX_LOSS = 0.001;
+
+    private final Config config;
+
+
+    public static void main(String[] args) throws Exception {
+        Config config;
+        try {
+            config = Config.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        new LoadSimulator(config).run();
+    }
+
+
+    /**
+     * Constructor for the load simulator
+     *
+     * @param config The configuration of the simulation
+     */
+    LoadSimulator(Config config) {
+        this.config = config;
+    }
+
+
+    /**
+     * Function to run a step for every node count and print the results
+     *
+     * @throws IOException If the sink or the send channel couldn't be opened
+     * @throws InterruptedException If the simulation is interrupted
+     */
+    void run() throws IOException, InterruptedException {
+        UdpSink sink = new UdpSink(config.decode);
+        sink.start();
+        config.target = sink.getAddress();
+
+        System.out.println(String.format(Locale.US, "Simulating %s nodes, format %s, send interval %d ms, "
+                        + "sample interval %d ms, %d scheduler threads, sink %s", joinCounts(config.nodeCounts),
+                config.format, config.sendInterval, config.sampleInterval, config.threads, config.target));
+
+        List<StepResult> results = new ArrayList<>();
+        try {
+            for (int nodes : config.nodeCounts) {
+                results.add(runStep(nodes, sink));
+            }
+        } finally {
+            sink.close();
+        }
+
+        System.out.println();
+        System.out.println(StepResult.HEADER);
+        StepResult ceiling = null;
+        for (StepResult result : results) {
+            System.out.println(result);
+            if (result.loss <= MAX_LOSS && result.lagP99 < config.sendInterval * 1000L
+                    && (ceiling == null || result.receivedPerSecond > ceiling.receivedPerSecond)) {
+                ceiling = result;
+            }
+        }
+        System.out.println();
+        if (ceiling == null) {
+            System.out.println("Throughput ceiling: below " + results.get(0).nodes + " nodes");
+        } else {
+            System.out.println(String.format(Locale.US, "Throughput ceiling: %d nodes, %.0f packets/s",
+                    ceiling.nodes, ceiling.receivedPerSecond));
+        }
+    }
+
+
+    /**
+     * Function to run the simulation with an amount of nodes
+     *
+     * @param nodeCount The amount of nodes
+     * @param sink The UDP sink
+     * @return The results of the step
+     * @throws IOException If the send channel couldn't be opened
+     * @throws InterruptedException If the simulation is interrupted
+     */
+    private StepResult runStep(int nodeCount, UdpSink sink) throws IOException, InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(config.threads, threadFactory);
+        DatagramChannel channel = DatagramChannel.open();
+        ByteBufferPool bufferPool = new ByteBufferPool(PacketSender.MAX_PACKET_SIZE, config.threads);
+        LatencyHistogram sendLatency = new LatencyHistogram();
+        LatencyHistogram sendLag = new LatencyHistogram();
+        AtomicLong sendErrors = new AtomicLong();
+
+        /* Creates the nodes and spreads their sends over the send interval. */
+        final SimulatedNode[] nodes = new SimulatedNode[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            nodes[i] = new SimulatedNode(i, config, scheduler, bufferPool, sendLatency, sendLag, sendErrors);
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            nodes[i].start(scheduler, channel, config.sendInterval, config.sendInterval * i / nodeCount);
+        }
+
+        /* Starts the traffic generator. */
+        final int bytesPerStep = (int) (config.traffic * GENERATOR_PERIOD / 1000);
+        final int ticksPerStep = (int) (config.ticks * GENERATOR_PERIOD / 1000);
+        final double churnChance = config.churn * GENERATOR_PERIOD / 1000.0;
+        ScheduledExecutorService generator = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        generator.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                for (SimulatedNode node : nodes) {
+                    node.generate(bytesPerStep, ticksPerStep, churnChance);
+                }
+            }
+        }, 0, GENERATOR_PERIOD, TimeUnit.MILLISECONDS);
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(config.warmup));
+
+        /* Measures the step, with a report every second. */
+        long[] latencies = LatencyHistogram.newSnapshot();
+        long[] lags = LatencyHistogram.newSnapshot();
+        sendLatency.drainTo(LatencyHistogram.newSnapshot());
+        sendLag.drainTo(LatencyHistogram.newSnapshot());
+        long startTime = System.nanoTime();
+        long startSend = datagramsSend(nodes);
+        long startReceived = sink.getDatagramsReceived();
+        long startBytes = sink.getBytesReceived();
+        long startErrors = sendErrors.get();
+
+        long lastSend = startSend;
+        long lastReceived = startReceived;
+        long end = startTime + TimeUnit.SECONDS.toNanos(config.duration);
+        while (System.nanoTime() < end) {
+            Thread.sleep(REPORT_PERIOD);
+            long[] interval = LatencyHistogram.newSnapshot();
+            sendLatency.drainTo(interval);
+            addTo(latencies, interval);
+            long[] intervalLags = LatencyHistogram.newSnapshot();
+            sendLag.drainTo(intervalLags);
+            addTo(lags, intervalLags);
+
+            long send = datagramsSend(nodes);
+            long received = sink.getDatagramsReceived();
+            System.out.println(String.format(Locale.US, "%6d nodes  send %8d/s  received %8d/s  "
+                            + "latency p50 %6d us  p99 %6d us  lag p99 %8d us", nodeCount, send - lastSend,
+                    received - lastReceived, LatencyHistogram.percentile(interval, 50),
+                    LatencyHistogram.percentile(interval, 99), LatencyHistogram.percentile(intervalLags, 99)));
+            lastSend = send;
+            lastReceived = received;
+        }
+
+        /* Stops the generator and the nodes, and waits for the sink to receive the last datagrams.
+         * The errors are counted first, a send that runs while its node stops fails on the closed sender. */
+        long errors = sendErrors.get() - startErrors;
+        generator.shutdownNow();
+        for (SimulatedNode node : nodes) {
+            node.stop();
+        }
+        scheduler.shutdown();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        Thread.sleep(200);
+        channel.close();
+        sendLatency.drainTo(latencies);
+        sendLag.drainTo(lags);
+
+        long send = datagramsSend(nodes) - startSend;
+        long received = sink.getDatagramsReceived() - startReceived;
+        return new StepResult(nodeCount, send / seconds, received / seconds,
+                send > 0 ? Math.max(0, 1.0 - (double) received / send) : 0,
+                (sink.getBytesReceived() - startBytes) / seconds, latencies, lags, errors);
+    }
+
+
+    private static long datagramsSend(SimulatedNode[] nodes) {
+        long send = 0;
+        for (SimulatedNode node : nodes) {
+            send += node.getDatagramsSend();
+        }
+        return send;
+    }
+
+
+    private static void addTo(long[] total, long[] counts) {
+        for (int i = 0; i < total.length; i++) {
+            total[i] += counts[i];
+        }
+    }
+
+
+    private static String joinCounts(int[] counts) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < counts.length; i++) {
+            builder.append(i > 0 ? "," : "").append(counts[i]);
+        }
+        return builder.toString();
+    }
+
+
+    /**
+     * Thread factory for the scheduler and generator threads, they are daemon threads.
+     */
+    private static final ThreadFactory threadFactory = new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "LoadSimulator-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+
+    /**
+     * Results of a step of the simulation.
+     */
+    private static class StepResult {
+        static final String HEADER = String.format(Locale.US, "%6s %10s %10s %8s %8s %8s %8s %8s %8s %10s %7s",
+                "nodes", "send/s", "recv/s", "loss %", "MB/s", "p50 us", "p99 us", "p99.9 us", "max us",
+                "lag p99 us", "errors");
+
+        final int nodes;
+        final double sendPerSecond;
+        final double receivedPerSecond;
+        final double loss;
+        final double bytesPerSecond;
+        final long latencyP50;
+        final long latencyP99;
+        final long latencyP999;
+        final long latencyMax;
+        final long lagP99;
+        final long errors;
+
+        StepResult(int nodes, double sendPerSecond, double receivedPerSecond, double loss, double bytesPerSecond,
+                   long[] latencies, long[] lags, long errors) {
+            this.nodes = nodes;
+            this.sendPerSecond = sendPerSecond;
+            this.receivedPerSecond = receivedPerSecond;
+            this.loss = loss;
+            this.bytesPerSecond = bytesPerSecond;
+            this.latencyP50 = LatencyHistogram.percentile(latencies, 50);
+            this.latencyP99 = LatencyHistogram.percentile(latencies, 99);
+            this.latencyP999 = LatencyHistogram.percentile(latencies, 99.9);
+            this.latencyMax = LatencyHistogram.percentile(latencies, 100);
+            this.lagP99 = LatencyHistogram.percentile(lags, 99);
+            this.errors = errors;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%6d %10.0f %10.0f %8.3f %8.2f %8d %8d %8d %8d %10d %7d", nodes,
+                    sendPerSecond, receivedPerSecond, loss * 100, bytesPerSecond / 1e6, latencyP50, latencyP99,
+                    latencyP999, latencyMax, lagP99, errors);
+        }
+    }
+
+
+    /**
+     * Configuration of the simulation.
+     */
+    static class Config {
+        int[] nodeCounts = {500, 1000, 2000, 5000};
+        long duration = 20;
+        long warmup = 5;
+        PacketFormat format = PacketFormat.JSON;
+        long sendInterval = 500;
+        long sampleInterval = 200;
+        int neighbours = 8;
+        double churn = 0.01;
+        int traffic = 10000;
+        int ticks = 1000;
+        int maxBatchLatency = 0;
+        int maxDatagramSize = BatchingSender.DEFAULT_MAX_DATAGRAM_SIZE;
+        int keyframeInterval = 1;
+        int seriesCapacity = MonitorNode.DEFAULT_SERIES_CAPACITY;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean decode = false;
+        long seed = 1;
+        InetSocketAddress target;
+
+        /**
+         * Function to parse the command line arguments
+         *
+         * @param args The arguments
+         * @return The configuration
+         * @throws IllegalArgumentException If an argument is unknown or invalid
+         */
+        static Config parse(String[] args) {
+            Config config = new Config();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--decode")) {
+                    config.decode = true;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value of " + arg);
+                }
+                String value = args[++i];
+                try {
+                    switch (arg) {
+                        case "--nodes":
+                            String[] counts = value.split(",");
+                            config.nodeCounts = new int[counts.length];
+                            for (int j = 0; j < counts.length; j++) {
+                                config.nodeCounts[j] = Integer.parseInt(counts[j].trim());
+                            }
+                            break;
+                        case "--duration":
+                            config.duration = Long.parseLong(value);
+                            break;
+                        case "--warmup":
+                            config.warmup = Long.parseLong(value);
+                            break;
+                        case "--format":
+                            config.format = PacketFormat.valueOf(value.toUpperCase(Locale.US));
+                            break;
+                        case "--send-interval":
+                            config.sendInterval = Long.parseLong(value);
+                            break;
+                        case "--sample-interval":
+                            config.sampleInterval = Long.parseLong(value);
+                            break;
+                        case "--neighbours":
+                            config.neighbours = Integer.parseInt(value);
+                            break;
+                        case "--churn":
+                            config.churn = Double.parseDouble(value);
+                            break;
+                        case "--traffic":
+                            config.traffic = Integer.parseInt(value);
+                            break;
+                        case "--ticks":
+                            config.ticks = Integer.parseInt(value);
+                            break;
+                        case "--batch":
+                            config.maxBatchLatency = Integer.parseInt(value);
+                            break;
+                        case "--datagram":
+                            config.maxDatagramSize = Integer.parseInt(value);
+                            break;
+                        case "--keyframe":
+                            config.keyframeInterval = Integer.parseInt(value);
+                            break;
+                        case "--capacity":
+                            config.seriesCapacity = Integer.parseInt(value);
+                            break;
+                        case "--threads":
+                            config.threads = Integer.parseInt(value);
+                            break;
+                        case "--seed":
+                            config.seed = Long.parseLong(value);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unknown argument " + arg);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid value of " + arg + ": " + value);
+                }
+            }
+            if (config.nodeCounts.length == 0 || config.sendInterval <= 0 || config.sampleInterval <= 0
+                    || config.threads <= 0 || config.duration <= 0) {
+                throw new IllegalArgumentException("Node counts, intervals, threads and duration must be positive");
+            }
+            return config;
+        }
+    }
+}
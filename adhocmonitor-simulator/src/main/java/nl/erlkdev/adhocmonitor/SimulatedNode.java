@@ -0,0 +1,209 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Virtual monitor node of the load simulator.
+ * It runs a real MonitorNode and send pipeline, but samples and sends on the shared scheduler of the simulator
+ * and writes its packets to the shared datagram channel, so a node doesn't need its own threads or socket.
+ * The CPU usage sampler is disabled, every node in the process would read the same /proc files.
+ */
+class SimulatedNode {
+
+    private final MonitorNode monitorNode;
+    private final PacketSender packetSender;
+    private final Random random;
+
+    /* Current neighbours and the pool of addresses they are taken from. */
+    private final String[] neighbours;
+    private final String[] neighbourPool;
+
+    /* Send statistics, shared by all the nodes. */
+    private final LatencyHistogram sendLatency;
+    private final LatencyHistogram sendLag;
+    private final AtomicLong sendErrors;
+
+    private ScheduledFuture<?> sendTask = null;
+    private long sendPeriodNanos;
+    private long firstSendNanos;
+    private long sends;
+
+
+    /**
+     * Constructor for a simulated node
+     *
+     * @param index The index of the node, used for its address and the seed of its traffic
+     * @param config The configuration of the simulation
+     * @param scheduler The shared scheduler of the samplers and senders
+     * @param bufferPool The shared pool of the packet buffers
+     * @param sendLatency The recorder of the duration of the sends
+     * @param sendLag The recorder of the delay of the sends after their scheduled time
+     * @param sendErrors The counter of the failed sends
+     */
+    SimulatedNode(int index, LoadSimulator.Config config, ScheduledExecutorService scheduler,
+                  ByteBufferPool bufferPool, LatencyHistogram sendLatency, LatencyHistogram sendLag, AtomicLong sendErrors) {
+        this.random = new Random(config.seed * 31 + index);
+        this.sendLatency = sendLatency;
+        this.sendLag = sendLag;
+        this.sendErrors = sendErrors;
+
+        monitorNode = new MonitorNode(address(index), scheduler, config.seriesCapacity);
+        monitorNode.setCpuSamplingEnabled(false);
+        monitorNode.setSamplePeriod(config.sampleInterval);
+
+        /* The neighbours are taken from the nodes around this node. */
+        neighbourPool = new String[Math.max(config.neighbours * 2, 1)];
+        for (int i = 0; i < neighbourPool.length; i++) {
+            neighbourPool[i] = address(index + 1 + i);
+        }
+        neighbours = new String[config.neighbours];
+        System.arraycopy(neighbourPool, 0, neighbours, 0, neighbours.length);
+        monitorNode.setCurrentNeighbours(neighbours.clone());
+        monitorNode.setCustomValue("simulated", true);
+
+        PacketEncoder encoder = config.format == PacketFormat.BINARY ? new BinaryPacketEncoder() : new JsonPacketEncoder();
+        InetSocketAddress target = config.target;
+        if (config.maxBatchLatency > 0) {
+            packetSender = new BatchingSender(target, encoder, config.maxBatchLatency, config.maxDatagramSize);
+        } else {
+            packetSender = new PacketSender(target, encoder, bufferPool);
+        }
+        if (config.keyframeInterval > 1) {
+            packetSender.setKeyframeInterval(config.keyframeInterval);
+        }
+    }
+
+
+    /**
+     * Function to start sampling and sending
+     *
+     * @param scheduler The shared scheduler
+     * @param channel The shared datagram channel
+     * @param sendInterval The send interval in milliseconds
+     * @param delay The delay of the first send in milliseconds, to spread the nodes over the interval
+     */
+    void start(ScheduledExecutorService scheduler, DatagramChannel channel, long sendInterval, long delay) {
+        packetSender.open(channel);
+        monitorNode.start();
+
+        sendPeriodNanos = TimeUnit.MILLISECONDS.toNanos(sendInterval);
+        firstSendNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        sends = 0;
+        sendTask = scheduler.scheduleAtFixedRate(send, delay, sendInterval, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Function to stop sampling and sending
+     */
+    void stop() {
+        if (sendTask != null) {
+            sendTask.cancel(false);
+            sendTask = null;
+        }
+        monitorNode.stop();
+        packetSender.close();
+    }
+
+
+    /**
+     * Function to generate the traffic of one step of the traffic generator
+     *
+     * @param bytesPerStep The average amount of bytes that is send and received in the step
+     * @param ticksPerStep The average amount of process ticks in the step
+     * @param churnChance The chance that a neighbour is replaced in the step
+     */
+    void generate(int bytesPerStep, int ticksPerStep, double churnChance) {
+        if (neighbours.length > 0) {
+            String neighbour = neighbours[random.nextInt(neighbours.length)];
+            monitorNode.addSendIO(neighbour, random.nextInt(2 * bytesPerStep + 1));
+            monitorNode.addRecieveIO(neighbour, random.nextInt(2 * bytesPerStep + 1));
+
+            /* Replaces a neighbour by an address of the pool that isn't a neighbour. */
+            if (random.nextDouble() < churnChance) {
+                int replaced = random.nextInt(neighbours.length);
+                String candidate = neighbourPool[random.nextInt(neighbourPool.length)];
+                if (!contains(neighbours, candidate)) {
+                    neighbours[replaced] = candidate;
+                    monitorNode.setCurrentNeighbours(neighbours.clone());
+                }
+            }
+        }
+
+        int ticks = random.nextInt(2 * ticksPerStep + 1);
+        for (int i = 0; i < ticks; i++) {
+            monitorNode.incrProcessTicks();
+        }
+    }
+
+
+    /**
+     * Gets the amount of datagrams the node has send
+     *
+     * @return the amount of send datagrams
+     */
+    long getDatagramsSend() {
+        return packetSender.getDatagramsSend();
+    }
+
+
+    /**
+     * Gets the amount of bytes the node has send
+     *
+     * @return the amount of send bytes
+     */
+    long getBytesSend() {
+        return packetSender.getBytesSend();
+    }
+
+
+    /**
+     * Task that sends a packet and records its latency and its delay after the scheduled time.
+     */
+    private final Runnable send = new Runnable() {
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            long scheduled = firstSendNanos + sends * sendPeriodNanos;
+            sends++;
+            sendLag.record(TimeUnit.NANOSECONDS.toMicros(start - scheduled));
+
+            try {
+                packetSender.send(monitorNode);
+            } catch (IOException e) {
+                sendErrors.incrementAndGet();
+            }
+            sendLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+    };
+
+
+    /**
+     * Function to create the address of a node
+     *
+     * @param index The index of the node
+     * @return The address of the node
+     */
+    static String address(int index) {
+        return "10." + ((index >> 16) & 0xff) + "." + ((index >> 8) & 0xff) + "." + (index & 0xff);
+    }
+
+
+    private static boolean contains(String[] addresses, String address) {
+        for (String value : addresses) {
+            if (value.equals(address)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
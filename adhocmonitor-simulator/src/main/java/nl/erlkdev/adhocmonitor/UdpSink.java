@@ -0,0 +1,149 @@
+package nl.erlkdev.adhocmonitor;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created on 18-10-2026.
+ *
+ * Receiver of the load simulator on the loopback interface.
+ * It counts the received datagrams and bytes, and can decode the binary packets to include the cost of the
+ * decoder in the receiver stack. The counters are only written by the receive thread.
+ */
+class UdpSink implements Runnable {
+
+    /* Receive buffer of the socket, large enough to absorb the bursts of many nodes. */
+    private static final int RECEIVE_BUFFER_SIZE = 8 * 1024 * 1024;
+
+    private final DatagramChannel channel;
+    private final boolean decode;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(PacketSender.MAX_PACKET_SIZE);
+    private final BinaryPacketDecoder decoder = new BinaryPacketDecoder();
+    private final NodeSnapshot snapshot = new NodeSnapshot();
+    private final List<NodeSnapshot> snapshots = new ArrayList<>();
+    private Thread thread;
+
+    private volatile long datagramsReceived = 0;
+    private volatile long bytesReceived = 0;
+    private volatile long packetsDecoded = 0;
+    private volatile long decodeErrors = 0;
+
+
+    /**
+     * Constructor for the sink, the channel is bound to a free port on the loopback interface
+     *
+     * @param decode true to decode the binary packets
+     * @throws IOException If the channel couldn't be bound
+     */
+    UdpSink(boolean decode) throws IOException {
+        this.decode = decode;
+        channel = DatagramChannel.open();
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER_SIZE);
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+
+    /**
+     * Function to start the receive thread
+     */
+    void start() {
+        thread = new Thread(this, "LoadSimulator-Sink");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+
+    /**
+     * Function to close the channel, which stops the receive thread
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting for the receive thread
+     */
+    void close() throws InterruptedException {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                buffer.clear();
+                if (channel.receive(buffer) == null) {
+                    continue;
+                }
+                buffer.flip();
+                bytesReceived += buffer.remaining();
+                datagramsReceived++;
+                if (decode) {
+                    decode();
+                }
+            }
+        } catch (ClosedChannelException e) {
+            /* The sink is closed. */
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+
+    /**
+     * Function to decode the received packet, JSON packets are only counted
+     */
+    private void decode() {
+        try {
+            if (BinaryPacketDecoder.isBatchPacket(buffer)) {
+                packetsDecoded += decoder.decodeBatch(buffer, snapshots);
+            } else if (BinaryPacketDecoder.isBinaryPacket(buffer)) {
+                decoder.decode(buffer, snapshot);
+                packetsDecoded++;
+            }
+        } catch (RuntimeException e) {
+            decodeErrors++;
+        }
+    }
+
+
+    /**
+     * Gets the address of the sink
+     *
+     * @return the loopback address and port of the sink
+     * @throws IOException If the address couldn't be read
+     */
+    InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) channel.getLocalAddress();
+    }
+
+
+    long getDatagramsReceived() {
+        return datagramsReceived;
+    }
+
+
+    long getBytesReceived() {
+        return bytesReceived;
+    }
+
+
+    long getPacketsDecoded() {
+        return packetsDecoded;
+    }
+
+
+    long getDecodeErrors() {
+        return decodeErrors;
+    }
+}
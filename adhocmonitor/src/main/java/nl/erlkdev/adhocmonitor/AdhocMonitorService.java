@@ -1,47 +1,31 @@
 package nl.erlkdev.adhocmonitor;
 
 import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.os.IBinder;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
-import org.json.JSONObject;
-
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.net.UnknownHostException;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.io.File;
 
 /**
  * Created on 18-4-2016.
+ *
+ * Android service that runs the monitor, an adapter over the MonitorClient of the core module.
+ * The service adds the binder, logs the errors and tells the adaptive rate controller when the battery is low.
  */
 public class AdhocMonitorService extends Service{
     private final String TAG = this.getClass().getSimpleName();
 
-    /* Connection information. */
-    private String address = null;
-    private String HOST = null;
-    private Integer UDP_PORT = null;
-    private Integer TCP_PORT = null;
+    /* The monitor client that does the work. */
+    private final MonitorClient monitorClient = new MonitorClient();
     private MonitorErrorListener monitorErrorListener = null;
 
-    /* Configuration. */
-    private boolean syncTimeEnabled = true;
-    private int monitorInterval = 500;
-    private long monitorTimeOffset = 0;
-
-    /* Monitor sender thread. */
-    private Timer mMonitorSender;
-
-    /* Monitor node. */
-    private MonitorNode monitorNode;
+    /* Battery receiver that informs the adaptive rate controller. */
+    private BroadcastReceiver mBatteryReceiver;
 
 
     /**
@@ -50,6 +34,25 @@ public class AdhocMonitorService extends Service{
      */
     public AdhocMonitorService() {
         Log.d(TAG, "Monitor service started");
+        monitorClient.setErrorListener(new MonitorClient.ErrorListener() {
+            @Override
+            public void onError(String errorMsg) {
+                Log.e(TAG, errorMsg);
+                MonitorErrorListener listener = monitorErrorListener;
+                if (listener != null){
+                    listener.onError(errorMsg);
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the monitor client of the service
+     *
+     * @return the monitor client
+     */
+    public MonitorClient getMonitorClient() {
+        return monitorClient;
     }
 
     /**
@@ -58,7 +61,7 @@ public class AdhocMonitorService extends Service{
      * @param syncTimeEnabled Default value is true
      */
     public void setSyncTimeEnabled(boolean syncTimeEnabled) {
-        this.syncTimeEnabled = syncTimeEnabled;
+        monitorClient.setSyncTimeEnabled(syncTimeEnabled);
     }
 
     /**
@@ -66,8 +69,55 @@ public class AdhocMonitorService extends Service{
      *
      * @return true if time synchronization is enabled, else false
      */
-    public boolean isSyncTimeEnabled(){
-        return syncTimeEnabled;
+    public boolean isSyncTimeEnabled() {
+        return monitorClient.isSyncTimeEnabled();
+    }
+
+    /**
+     * Function to set the amount of exchanges of a time synchronization
+     * The exchange with the smallest round trip time is used.
+     *
+     * @param syncRounds Default value is 8
+     */
+    public void setSyncRounds(int syncRounds) {
+        monitorClient.setSyncRounds(syncRounds);
+    }
+
+    /**
+     * Function that returns the amount of exchanges of a time synchronization
+     *
+     * @return The amount of exchanges of a time synchronization
+     */
+    public int getSyncRounds() {
+        return monitorClient.getSyncRounds();
+    }
+
+    /**
+     * Function to set the interval on which the time is synchronized again in the background
+     * The offsets of the synchronizations are used to correct the drift of the node clock.
+     *
+     * @param resyncInterval Default value is 60000 milliseconds, 0 only synchronizes at the start
+     */
+    public void setResyncInterval(int resyncInterval) {
+        monitorClient.setResyncInterval(resyncInterval);
+    }
+
+    /**
+     * Function that returns the interval on which the time is synchronized again
+     *
+     * @return The resync interval in milliseconds, 0 if the time is only synchronized at the start
+     */
+    public int getResyncInterval() {
+        return monitorClient.getResyncInterval();
+    }
+
+    /**
+     * Function to set a fixed time offset between the monitor and the node, used when time synchronization is disabled
+     *
+     * @param monitorTimeOffset Default value is 0 milliseconds
+     */
+    public void setMonitorTimeOffset(long monitorTimeOffset) {
+        monitorClient.setMonitorTimeOffset(monitorTimeOffset);
     }
 
     /**
@@ -75,8 +125,8 @@ public class AdhocMonitorService extends Service{
      *
      * @param monitorInterval Default value is 500 milliseconds
      */
-    public void setMonitorInterval(int monitorInterval){
-        this.monitorInterval = monitorInterval;
+    public void setMonitorInterval(int monitorInterval) {
+        monitorClient.setMonitorInterval(monitorInterval);
     }
 
     /**
@@ -85,7 +135,433 @@ public class AdhocMonitorService extends Service{
      * @return The interval on which the monitor sends the data
      */
     public int getMonitorInterval() {
-        return monitorInterval;
+        return monitorClient.getMonitorInterval();
+    }
+
+    /**
+     * Function to set the interval on which the node information is sampled
+     *
+     * @param sampleInterval Default value is 200 milliseconds
+     */
+    public void setSampleInterval(int sampleInterval) {
+        monitorClient.setSampleInterval(sampleInterval);
+    }
+
+    /**
+     * Function that returns the interval on which the node information is sampled
+     *
+     * @return The interval on which the node information is sampled
+     */
+    public int getSampleInterval() {
+        return monitorClient.getSampleInterval();
+    }
+
+    /**
+     * Function to set the capacity of the series of the monitor node
+     * The capacity is the maximum amount of samples of each series that is kept between two packets.
+     * The setting is used by the next started monitor.
+     *
+     * @param seriesCapacity Default value is 64 samples
+     */
+    public void setSeriesCapacity(int seriesCapacity) {
+        monitorClient.setSeriesCapacity(seriesCapacity);
+    }
+
+    /**
+     * Function that returns the capacity of the series of the monitor node
+     *
+     * @return The maximum amount of samples of each series that is kept between two packets
+     */
+    public int getSeriesCapacity() {
+        return monitorClient.getSeriesCapacity();
+    }
+
+    /**
+     * Function to send only the busiest neighbours, with the send and receive rate of their links
+     * The setting is used by the next started monitor.
+     *
+     * @param topNeighbours Default value is 0, which sends all neighbours without link rates
+     */
+    public void setTopNeighbours(int topNeighbours) {
+        monitorClient.setTopNeighbours(topNeighbours);
+    }
+
+    /**
+     * Function that returns the amount of neighbours that is send
+     *
+     * @return The amount of top neighbours, 0 if all neighbours are send
+     */
+    public int getTopNeighbours() {
+        return monitorClient.getTopNeighbours();
+    }
+
+    /**
+     * Function to set the format of the data packets
+     * The format is used by the next started monitor.
+     *
+     * @param packetFormat Default value is JSON
+     */
+    public void setPacketFormat(PacketFormat packetFormat) {
+        monitorClient.setPacketFormat(packetFormat);
+    }
+
+    /**
+     * Function that returns the format of the data packets
+     *
+     * @return The format of the data packets
+     */
+    public PacketFormat getPacketFormat() {
+        return monitorClient.getPacketFormat();
+    }
+
+    /**
+     * Function to enable or disable the incremental mode
+     * In incremental mode only the neighbours and custom values that changed since the last keyframe are send.
+     * The setting is used by the next started monitor.
+     *
+     * @param incrementalEnabled Default value is false
+     */
+    public void setIncrementalEnabled(boolean incrementalEnabled) {
+        monitorClient.setIncrementalEnabled(incrementalEnabled);
+    }
+
+    /**
+     * Function that returns if the incremental mode is enabled
+     *
+     * @return true if the incremental mode is enabled, else false
+     */
+    public boolean isIncrementalEnabled() {
+        return monitorClient.isIncrementalEnabled();
+    }
+
+    /**
+     * Function to set the keyframe interval of the incremental mode
+     * A keyframe contains the full state of the node, so the monitor can recover from lost packets.
+     *
+     * @param keyframeInterval Default value is 10 packets
+     */
+    public void setKeyframeInterval(int keyframeInterval) {
+        monitorClient.setKeyframeInterval(keyframeInterval);
+    }
+
+    /**
+     * Function that returns the keyframe interval of the incremental mode
+     *
+     * @return The amount of packets from one keyframe to the next
+     */
+    public int getKeyframeInterval() {
+        return monitorClient.getKeyframeInterval();
+    }
+
+    /**
+     * Function to set the maximum time a data packet waits to be send in a batch
+     * With a latency above 0 the packets of multiple monitor intervals are send together in one datagram.
+     * The setting is used by the next started monitor.
+     *
+     * @param maxBatchLatency Default value is 0 milliseconds, which disables batching
+     */
+    public void setMaxBatchLatency(int maxBatchLatency) {
+        monitorClient.setMaxBatchLatency(maxBatchLatency);
+    }
+
+    /**
+     * Function that returns the maximum time a data packet waits to be send in a batch
+     *
+     * @return The maximum batch latency in milliseconds, 0 if batching is disabled
+     */
+    public int getMaxBatchLatency() {
+        return monitorClient.getMaxBatchLatency();
+    }
+
+    /**
+     * Function to set the maximum size of a batch datagram
+     * Larger data packets are split. The setting is used by the next started monitor.
+     *
+     * @param maxDatagramSize Default value is 8000 bytes
+     */
+    public void setMaxDatagramSize(int maxDatagramSize) {
+        monitorClient.setMaxDatagramSize(maxDatagramSize);
+    }
+
+    /**
+     * Function that returns the maximum size of a batch datagram
+     *
+     * @return The maximum size of a batch datagram in bytes
+     */
+    public int getMaxDatagramSize() {
+        return monitorClient.getMaxDatagramSize();
+    }
+
+    /**
+     * Function to enable the reliable mode, in which the monitor acknowledges the data packets
+     * Packets that are not acknowledged are send again, until the window is full. The lost packets, the
+     * retransmits and the round trip time are send as custom values. The setting is used by the next started monitor.
+     *
+     * @param reliableWindow Default value is 0 packets, which sends plain UDP packets without acknowledgements
+     */
+    public void setReliableWindow(int reliableWindow) {
+        monitorClient.setReliableWindow(reliableWindow);
+    }
+
+    /**
+     * Function that returns the window of the reliable mode
+     *
+     * @return The maximum amount of packets that wait for an acknowledgement, 0 if the reliable mode is disabled
+     */
+    public int getReliableWindow() {
+        return monitorClient.getReliableWindow();
+    }
+
+    /**
+     * Function to enable or disable the compression of the data packets
+     * The packets are compressed with deflate and a dictionary of the packet schema and the neighbours of the node,
+     * which is negotiated with the monitor over the TCP port. Packets are send uncompressed when the monitor doesn't
+     * support compression or when the compression doesn't save enough. The setting is used by the next started monitor.
+     *
+     * @param compressionEnabled Default value is false
+     */
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        monitorClient.setCompressionEnabled(compressionEnabled);
+    }
+
+    /**
+     * Function that returns if the compression of the data packets is enabled
+     *
+     * @return true if the compression is enabled, else false
+     */
+    public boolean isCompressionEnabled() {
+        return monitorClient.isCompressionEnabled();
+    }
+
+    /**
+     * Function to enable or disable sending the metrics of the overhead of the monitor itself
+     * The metrics are always collected and readable with getMetrics(), when enabled they are also send as the
+     * monitor custom values of every packet. The setting is used by the next started monitor.
+     *
+     * @param selfMetricsEnabled Default value is false
+     */
+    public void setSelfMetricsEnabled(boolean selfMetricsEnabled) {
+        monitorClient.setSelfMetricsEnabled(selfMetricsEnabled);
+    }
+
+    /**
+     * Function that returns if the metrics of the monitor overhead are send
+     *
+     * @return true if the metrics are send, else false
+     */
+    public boolean isSelfMetricsEnabled() {
+        return monitorClient.isSelfMetricsEnabled();
+    }
+
+    /**
+     * Function to enable or disable the aggregator role of the node
+     * An aggregator accepts the data packets of its current neighbours, which use this node as their monitor, and
+     * relays them to the monitor with its own packets, batched in one datagram per send. The setting is used by the
+     * next started monitor.
+     *
+     * @param aggregatorEnabled Default value is false
+     */
+    public void setAggregatorEnabled(boolean aggregatorEnabled) {
+        monitorClient.setAggregatorEnabled(aggregatorEnabled);
+    }
+
+    /**
+     * Function that returns if the aggregator role is enabled
+     *
+     * @return true if the node is an aggregator, else false
+     */
+    public boolean isAggregatorEnabled() {
+        return monitorClient.isAggregatorEnabled();
+    }
+
+    /**
+     * Function to set the ports on which the aggregator receives the packets and sync requests of the neighbours
+     *
+     * @param udpPort Default value is 7000
+     * @param tcpPort Default value is 7001
+     */
+    public void setAggregatorPorts(int udpPort, int tcpPort) {
+        monitorClient.setAggregatorPorts(udpPort, tcpPort);
+    }
+
+    /**
+     * Function that returns the UDP port of the aggregator
+     *
+     * @return The UDP port on which the aggregator receives the packets of the neighbours
+     */
+    public int getAggregatorUdpPort() {
+        return monitorClient.getAggregatorUdpPort();
+    }
+
+    /**
+     * Function that returns the TCP port of the aggregator
+     *
+     * @return The TCP port on which the aggregator answers the sync requests of the neighbours
+     */
+    public int getAggregatorTcpPort() {
+        return monitorClient.getAggregatorTcpPort();
+    }
+
+    /**
+     * Function to enable or disable the adaptive rate controller
+     * The controller uses the sample and monitor interval when the node is active, and backs off to the slow
+     * intervals when the node is idle. The setting is used by the next started monitor.
+     *
+     * @param adaptiveRateEnabled Default value is false
+     */
+    public void setAdaptiveRateEnabled(boolean adaptiveRateEnabled) {
+        monitorClient.setAdaptiveRateEnabled(adaptiveRateEnabled);
+    }
+
+    /**
+     * Function that returns if the adaptive rate controller is enabled
+     *
+     * @return true if the adaptive rate controller is enabled, else false
+     */
+    public boolean isAdaptiveRateEnabled() {
+        return monitorClient.isAdaptiveRateEnabled();
+    }
+
+    /**
+     * Function to set the slow intervals of the adaptive rate controller, the floor of the rates when the node is idle
+     *
+     * @param slowSampleInterval Default value is 2000 milliseconds
+     * @param slowMonitorInterval Default value is 5000 milliseconds
+     */
+    public void setSlowIntervals(int slowSampleInterval, int slowMonitorInterval) {
+        monitorClient.setSlowIntervals(slowSampleInterval, slowMonitorInterval);
+    }
+
+    /**
+     * Function that returns the slow sample interval of the adaptive rate controller
+     *
+     * @return The slow sample interval in milliseconds
+     */
+    public int getSlowSampleInterval() {
+        return monitorClient.getSlowSampleInterval();
+    }
+
+    /**
+     * Function that returns the slow monitor interval of the adaptive rate controller
+     *
+     * @return The slow monitor interval in milliseconds
+     */
+    public int getSlowMonitorInterval() {
+        return monitorClient.getSlowMonitorInterval();
+    }
+
+    /**
+     * Function to set the budget of the overhead of the monitor
+     * When the monitor uses more CPU or bandwidth, it drops the neighbour details, lowers the sample rate,
+     * lengthens the send interval and finally sends only summaries, one step at a time, see OverheadBudgetController.
+     * The setting is used by the next started monitor.
+     *
+     * @param cpuBudget The part of one core the monitor may use, for instance 0.01 for 1%, default value is 0 (no budget)
+     * @param bandwidthBudget The bytes per second the monitor may send, for instance 5120, default value is 0 (no budget)
+     */
+    public void setOverheadBudget(double cpuBudget, int bandwidthBudget) {
+        monitorClient.setOverheadBudget(cpuBudget, bandwidthBudget);
+    }
+
+    /**
+     * Function that returns the CPU budget of the monitor
+     *
+     * @return The part of one core the monitor may use, 0 if there is no budget
+     */
+    public double getCpuBudget() {
+        return monitorClient.getCpuBudget();
+    }
+
+    /**
+     * Function that returns the bandwidth budget of the monitor
+     *
+     * @return The bytes per second the monitor may send, 0 if there is no budget
+     */
+    public int getBandwidthBudget() {
+        return monitorClient.getBandwidthBudget();
+    }
+
+    /**
+     * Function to set the listener that is called on every degradation and recovery step of the overhead budget
+     *
+     * @param degradationListener The degradation listener, or null
+     */
+    public void setDegradationListener(OverheadBudgetController.DegradationListener degradationListener) {
+        monitorClient.setDegradationListener(degradationListener);
+    }
+
+    /**
+     * Function to record every snapshot of the node in a directory, for the analysis of an experiment afterwards
+     * The setting is used by the next started monitor.
+     *
+     * @param recordingDirectory Default value is null, which disables recording
+     */
+    public void setRecordingDirectory(File recordingDirectory) {
+        monitorClient.setRecordingDirectory(recordingDirectory);
+    }
+
+    /**
+     * Function that returns the directory of the recording
+     *
+     * @return The directory of the recording, null if recording is disabled
+     */
+    public File getRecordingDirectory() {
+        return monitorClient.getRecordingDirectory();
+    }
+
+    /**
+     * Gets the recorder of the running monitor
+     *
+     * @return the recorder, or null if recording is disabled
+     */
+    public TelemetryRecorder getRecorder() {
+        return monitorClient.getRecorder();
+    }
+
+    /**
+     * Gets the packet sender of the running monitor, with the statistics of the send packets
+     *
+     * @return the packet sender, or null if the monitor isn't sending
+     */
+    public PacketSender getPacketSender() {
+        return monitorClient.getPacketSender();
+    }
+
+    /**
+     * Gets the aggregator of the running monitor, with the statistics of the relayed packets
+     *
+     * @return the aggregator, or null if the aggregator role is disabled
+     */
+    public TelemetryAggregator getAggregator() {
+        return monitorClient.getAggregator();
+    }
+
+    /**
+     * Gets the metrics of the overhead of the running monitor: the time of the samplers, snapshots and encoding,
+     * the send packets and failures, the allocated memory, the threads and the clock sync
+     *
+     * @return the metrics, or null if the monitor was never started
+     */
+    public MonitorMetrics getMetrics() {
+        return monitorClient.getMetrics();
+    }
+
+    /**
+     * Gets the overhead budget controller of the running monitor
+     *
+     * @return the overhead budget controller, or null if there is no budget
+     */
+    public OverheadBudgetController getBudgetController() {
+        return monitorClient.getBudgetController();
+    }
+
+    /**
+     * Gets the adaptive rate controller of the running monitor
+     *
+     * @return the adaptive rate controller, or null if it is not enabled
+     */
+    public AdaptiveRateController getRateController() {
+        return monitorClient.getRateController();
     }
 
     /**
@@ -93,8 +569,8 @@ public class AdhocMonitorService extends Service{
      *
      * @return the ip address of the monitor system
      */
-    public String getHOST(){
-        return HOST;
+    public String getHOST() {
+        return monitorClient.getHOST();
     }
 
     /**
@@ -103,7 +579,7 @@ public class AdhocMonitorService extends Service{
      * @return the udp port number used by the monitor system
      */
     public Integer getUdpPORT() {
-        return UDP_PORT;
+        return monitorClient.getUdpPORT();
     }
 
     /**
@@ -112,7 +588,7 @@ public class AdhocMonitorService extends Service{
      * @return the tcp port number used by the monitor system
      */
     public Integer getTcpPORT() {
-        return TCP_PORT;
+        return monitorClient.getTcpPORT();
     }
 
     /**
@@ -120,16 +596,16 @@ public class AdhocMonitorService extends Service{
      *
      * @return the address of the node
      */
-    public String getAddress(){
-        return address;
+    public String getAddress() {
+        return monitorClient.getAddress();
     }
 
     /**
      * Gets the monitor node
      * @return MonitorNode
      */
-    public MonitorNode getMonitorNode(){
-        return monitorNode;
+    public MonitorNode getMonitorNode() {
+        return monitorClient.getMonitorNode();
     }
 
     /**
@@ -137,16 +613,39 @@ public class AdhocMonitorService extends Service{
      *
      * @return the time offset between the monitor and the node
      */
-    public long getMonitorTimeOffset(){
-        return monitorTimeOffset;
+    public long getMonitorTimeOffset() {
+        return monitorClient.getMonitorTimeOffset();
+    }
+
+    /**
+     * Returns the uncertainty of the time offset, half the round trip time of the last time synchronization
+     *
+     * @return the uncertainty in milliseconds, NaN if the time is not synchronized
+     */
+    public double getMonitorTimeUncertainty() {
+        return monitorClient.getMonitorTimeUncertainty();
+    }
+
+    /**
+     * Gets the clock sync of the running monitor
+     *
+     * @return the clock sync, or null if time synchronization is disabled
+     */
+    public ClockSync getClockSync() {
+        return monitorClient.getClockSync();
     }
 
 
     /**
      * Stops the monitor
+     * Stops the send thread and the samplers of the monitor node
      */
     public void stopMonitor(){
-        mMonitorSender.cancel();
+        if (mBatteryReceiver != null){
+            unregisterReceiver(mBatteryReceiver);
+            mBatteryReceiver = null;
+        }
+        monitorClient.stopMonitor();
     }
 
 
@@ -157,7 +656,7 @@ public class AdhocMonitorService extends Service{
      * It then start the send thread to send data to the monitor system on an interval
      */
     public void startMonitor(String address, String HOST) {
-        startMonitor(address, HOST, 7000, 7001);
+        startMonitor(address, HOST, MonitorClient.DEFAULT_UDP_PORT, MonitorClient.DEFAULT_TCP_PORT);
     }
 
     /**
@@ -168,7 +667,7 @@ public class AdhocMonitorService extends Service{
      */
     public void startMonitor(String address, String HOST, MonitorErrorListener monitorErrorListener) {
         this.monitorErrorListener = monitorErrorListener;
-        startMonitor(address, HOST, 7000, 7001);
+        startMonitor(address, HOST, MonitorClient.DEFAULT_UDP_PORT, MonitorClient.DEFAULT_TCP_PORT);
     }
 
     /**
@@ -182,6 +681,17 @@ public class AdhocMonitorService extends Service{
         startMonitor(address, HOST, UDP_PORT, TCP_PORT);
     }
 
+    /**
+     * Starts the monitor process with a packet format
+     *
+     * If time synchronization is enabled it first syncs the time between the monitor and the node
+     * It then start the send thread to send data to the monitor system on an interval
+     */
+    public void startMonitor(String address, String HOST, int UDP_PORT, int TCP_PORT, PacketFormat packetFormat) {
+        monitorClient.setPacketFormat(packetFormat);
+        startMonitor(address, HOST, UDP_PORT, TCP_PORT);
+    }
+
     /**
      * Starts the monitor process
      *
@@ -189,119 +699,40 @@ public class AdhocMonitorService extends Service{
      * It then start the send thread to send data to the monitor system on an interval
      */
     public void startMonitor(String address, String HOST, int UDP_PORT, int TCP_PORT) {
-        this.address = address;
-        this.HOST = HOST;
-        this.UDP_PORT = UDP_PORT;
-        this.TCP_PORT = TCP_PORT;
-        this.monitorNode = new MonitorNode(address);
+        stopMonitor();
+        monitorClient.startMonitor(address, HOST, UDP_PORT, TCP_PORT);
 
-        Thread startMonitorThread = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                /* Syncs the time between the monitor and the node if enabled. */
-                if (syncTimeEnabled){
-                    syncTime();
-                }
-                monitorNode.setMonitorTimeOffset(monitorTimeOffset);
-
-                /* Starts the monitor send thread. */
-                try {
-                    mMonitorSender = startSendThread();
-                } catch (UnknownHostException e) {
-                    if (monitorErrorListener != null){
-                        monitorErrorListener.onError("Host not found");
-                    }
-                }
-            }
-        });
-        startMonitorThread.start();
+        final AdaptiveRateController rateController = monitorClient.getRateController();
+        if (rateController != null){
+            startBatteryReceiver(rateController);
+        }
     }
 
     /**
-     * Thread to send data after to the monitor system on a fixed interval.
-     * If the host couldn't be find it throws a exception.
+     * Registers the battery receiver that tells the adaptive rate controller when the battery is low
      *
-     * @return the send threads
-     * @throws UnknownHostException
+     * @param rateController The adaptive rate controller
      */
-    private Timer startSendThread() throws UnknownHostException {
-        Timer monitorSender = new Timer();
-        monitorSender.scheduleAtFixedRate(new TimerTask() {
-            private InetAddress address = InetAddress.getByName(HOST);
-
+    private void startBatteryReceiver(final AdaptiveRateController rateController){
+        mBatteryReceiver = new BroadcastReceiver() {
             @Override
-            public void run() {
-                try {
-                    /* Creates a JSON object of the data. */
-                    JSONObject parent = new JSONObject();
-                    parent.put("type", "data");
-                    parent.put("node", monitorNode.getJson());
-
-                    /* Opens a datagram socket and sends the json object as datagram package. */
-                    DatagramSocket s = new DatagramSocket();
-                    DatagramPacket packet = new DatagramPacket(parent.toString().getBytes(), parent.toString().getBytes().length, address, UDP_PORT);
-                    s.send(packet);
-                    s.close();
-
-                } catch (Exception e) {
-                    if (monitorErrorListener != null) {
-                        monitorErrorListener.onError("Data couldn't be send");
-                    }
-                }
+            public void onReceive(Context context, Intent intent) {
+                rateController.setLowBattery(Intent.ACTION_BATTERY_LOW.equals(intent.getAction()));
             }
-
-        }, 0, monitorInterval);
-
-        return monitorSender;
+        };
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_BATTERY_LOW);
+        filter.addAction(Intent.ACTION_BATTERY_OKAY);
+        registerReceiver(mBatteryReceiver, filter);
     }
 
     /**
-     * Function to synchronize the time between the node and the monitor
-     * It uses the method of the precision time protocol: https://en.wikipedia.org/wiki/Precision_Time_Protocol
+     * Stops the monitor when the service is destroyed
      */
-    private void syncTime(){
-        try{
-            byte[] bytes = new byte[4048];
-            long time1, time1d, time2, time2d;
-            JSONObject packageJson;
-
-            /* Creates a socket. */
-            Socket s = new Socket();
-            s.connect(new InetSocketAddress(HOST, TCP_PORT));
-
-            /* Creates an in- and output stream. */
-            DataOutputStream dos = new DataOutputStream(s.getOutputStream());
-            DataInputStream dis = new DataInputStream(s.getInputStream());
-
-            /* Creates a json object and sends it. */
-            JSONObject parent = new JSONObject();
-            parent.put("type", "sync");
-
-            time1 = System.currentTimeMillis();
-            dos.write(parent.toString().getBytes());
-            dos.flush();
-
-            /* Waits until the a package is received. */
-            while (dis.read(bytes) == -1);
-            time2d = System.currentTimeMillis();
-
-            /* Gets t1' and t2 from the JSON packet. */
-            packageJson = new JSONObject(new String(bytes));
-            time1d = Long.parseLong(((String) packageJson.get("time1d")).replace("L", ""));
-            time2 = Long.parseLong(((String) packageJson.get("time2")).replace("L", ""));
-
-            /* Calculates the offset. */
-            monitorTimeOffset = -((time1d - time1 - time2d + time2) / 2);
-
-            dis.close();
-            dos.close();
-            s.close();
-        } catch (Exception e) {
-            if (monitorErrorListener != null){
-                monitorErrorListener.onError("Time synchronization failed");
-            }
-            e.printStackTrace();
-        }
+    @Override
+    public void onDestroy() {
+        stopMonitor();
+        super.onDestroy();
     }
 
     /**
@@ -321,7 +752,6 @@ public class AdhocMonitorService extends Service{
      *
      * All the monitor errors will be send to the monitor error listener
      */
-    public interface MonitorErrorListener {
-        void onError(String errorMsg);
+    public interface MonitorErrorListener extends MonitorClient.ErrorListener {
     }
 }
@@ -0,0 +1,238 @@
+'''
+BinaryPacket
+Decoder for the binary node information packets.
+
+The layout of the packets is described in BinaryPacketEncoder.java of the adhocmonitor module.
+The decoded packet has the same structure as a JSON packet.
+'''
+
+import struct
+import zlib
+
+MAGIC = 0xAD
+VERSION = 1
+
+# Names of the series ids
+SERIES = {1: "ioTotalChart", 2: "ioRecvChart", 3: "ioSendChart", 4: "speedChart", 5: "cpuUsageChart", 6: "cpuTotalUsageChart",
+	7: "samplePeriodChart", 8: "sendPeriodChart", 9: "degradationChart"}
+
+# Prefix and suffix of the families of series, the id is followed by the parameter between them
+NUMBERED_SERIES = {16: ("cpuCore", "UsageChart")}
+NAMED_SERIES = {17: ("linkSendChart:", ""), 18: ("linkRecvChart:", ""), 19: ("latencyP50Chart:", ""),
+	20: ("latencyP90Chart:", ""), 21: ("latencyP99Chart:", ""), 22: ("latencyMaxChart:", "")}
+
+# Flags
+FLAG_SEQUENCE = 1
+FLAG_DELTA = 2
+FLAG_BATCH = 4
+FLAG_ACK_REQUEST = 8
+FLAG_ACK = 16
+FLAG_COMPRESSED = 32
+FLAG_RELAYED = 64
+
+# Custom value types
+TYPE_STRING = 0
+TYPE_LONG = 1
+TYPE_DOUBLE = 2
+TYPE_BOOLEAN = 3
+
+
+# Returns true if the data is a binary packet
+def isBinaryPacket(data):
+	return len(data) > 0 and bytearray(data[:1])[0] == MAGIC
+
+
+# Returns true if the data is a compressed packet
+def isCompressedPacket(data):
+	return len(data) > 2 and isBinaryPacket(data) and bytearray(data[2:3])[0] & FLAG_COMPRESSED != 0
+
+
+# Decompresses a compressed packet with the dictionaries by their id, see PacketCompressor.java
+# The raw deflate data refers to the preset dictionary. zlib of Python 2 can't set a dictionary on raw deflate,
+# so the dictionary is put in front of the data as a stored deflate block and cut off the output.
+def decompressPacket(data, dictionaries):
+	reader = _Reader(bytearray(data))
+	reader.take(3)
+	dictionaryId = struct.unpack(">I", bytes(reader.take(4)))[0]
+	length = reader.varint()
+	dictionary = dictionaries.get(dictionaryId)
+	if dictionary is None:
+		raise ValueError("Unknown dictionary: %x" % dictionaryId)
+
+	stored = struct.pack("<BHH", 0, len(dictionary), len(dictionary) ^ 0xFFFF) + dictionary
+	try:
+		output = zlib.decompressobj(-15).decompress(stored + bytes(reader.data[reader.position:]))
+	except zlib.error:
+		raise ValueError("Invalid compressed packet")
+	if len(output) != len(dictionary) + length:
+		raise ValueError("Compressed packet has a wrong length")
+	return output[len(dictionary):]
+
+
+# Decodes a binary packet into the same structure as a JSON packet
+def decodePacket(data):
+	reader = _Reader(bytearray(data))
+
+	if reader.byte() != MAGIC:
+		raise ValueError("Not a binary packet")
+	version = reader.byte()
+	if version != VERSION:
+		raise ValueError("Unsupported packet version: %d" % version)
+	flags = reader.byte()
+
+	# Batch of data packets, each preceded by its length
+	if flags & FLAG_BATCH:
+		packets = []
+		while reader.position < len(reader.data):
+			length = struct.unpack(">H", bytes(reader.take(2)))[0]
+			packets.append(decodePacket(reader.take(length)))
+		return {"type": "batch", "packets": packets}
+
+	# Address table
+	addresses = [reader.address() for x in range(reader.varint())]
+	node = {"address": addresses[reader.varint()]}
+
+	# Metadata
+	node["status"] = reader.string()
+	timeStamp = reader.varint()
+	node["timeStamp"] = timeStamp
+	if flags & FLAG_SEQUENCE:
+		node["seq"] = reader.varint()
+	if flags & FLAG_DELTA:
+		node["baseSeq"] = reader.varint()
+	if flags & FLAG_ACK_REQUEST:
+		node["ack"] = True
+	if flags & FLAG_RELAYED:
+		node["relay"] = reader.string()
+
+	# Chart series
+	for x in range(reader.varint()):
+		seriesId = reader.byte()
+		if seriesId == 0:
+			name = reader.string()
+		elif seriesId in NUMBERED_SERIES:
+			name = NUMBERED_SERIES[seriesId][0] + str(reader.varint()) + NUMBERED_SERIES[seriesId][1]
+		elif seriesId in NAMED_SERIES:
+			name = NAMED_SERIES[seriesId][0] + reader.string() + NAMED_SERIES[seriesId][1]
+		elif seriesId in SERIES:
+			name = SERIES[seriesId]
+		else:
+			raise ValueError("Unknown series id: %d" % seriesId)
+
+		chart = {}
+		previous = timeStamp
+		for y in range(reader.varint()):
+			previous += reader.zigzag()
+			chart[str(previous)] = reader.float()
+		node[name] = chart
+
+	# Neighbours
+	node["neighbours"] = []
+	for x in range(reader.varint()):
+		neighbour = {"address": addresses[reader.varint()]}
+		neighbour["bytesSend"] = reader.varint()
+		neighbour["bytesReceived"] = reader.varint()
+		neighbour["dataSend"] = reader.byte()
+		node["neighbours"].append(neighbour)
+
+	# Custom values
+	node["customValues"] = {}
+	for x in range(reader.varint()):
+		key = reader.string()
+		node["customValues"][key] = reader.customValue()
+
+	# Removed neighbours and custom values of a delta
+	if flags & FLAG_DELTA:
+		node["removedNeighbours"] = [addresses[reader.varint()] for x in range(reader.varint())]
+		node["removedCustomValues"] = [reader.string() for x in range(reader.varint())]
+
+	return {"type": "data", "node": node}
+
+
+# Encodes an acknowledgement of the sequence numbers of data packets
+def encodeAck(sequences):
+	data = bytearray([MAGIC, VERSION, FLAG_ACK])
+	for value in [len(sequences)] + sequences:
+		_writeVarint(data, value)
+	return bytes(data)
+
+
+# Encodes an acknowledgement of relayed data packets, a list of (node address, sequence number) pairs
+# The aggregator that relayed the packets passes it back to the nodes.
+def encodeRelayedAck(acks):
+	data = bytearray([MAGIC, VERSION, FLAG_ACK | FLAG_RELAYED])
+	_writeVarint(data, len(acks))
+	for address, sequence in acks:
+		encoded = address.encode("utf-8")
+		_writeVarint(data, len(encoded))
+		data.extend(encoded)
+		_writeVarint(data, sequence)
+	return bytes(data)
+
+
+# Writes an unsigned variable length integer
+def _writeVarint(data, value):
+	while value >= 0x80:
+		data.append((value & 0x7F) | 0x80)
+		value >>= 7
+	data.append(value)
+
+
+# Reads the primitive types of a binary packet
+class _Reader:
+	def __init__(self, data):
+		self.data = data
+		self.position = 0
+
+	def take(self, length):
+		if self.position + length > len(self.data):
+			raise ValueError("Truncated binary packet")
+		value = self.data[self.position:self.position + length]
+		self.position += length
+		return value
+
+	def byte(self):
+		return self.take(1)[0]
+
+	def varint(self):
+		value = 0
+		shift = 0
+		while True:
+			b = self.byte()
+			value |= (b & 0x7F) << shift
+			if b & 0x80 == 0:
+				return value
+			shift += 7
+
+	def zigzag(self):
+		value = self.varint()
+		return (value >> 1) ^ -(value & 1)
+
+	def float(self):
+		return struct.unpack(">f", bytes(self.take(4)))[0]
+
+	def double(self):
+		return struct.unpack(">d", bytes(self.take(8)))[0]
+
+	def string(self):
+		return self.take(self.varint()).decode("utf-8")
+
+	def address(self):
+		kind = self.byte()
+		if kind == 0:
+			return self.string()
+		if kind == 1:
+			return ":".join("%02x" % b for b in self.take(6))
+		raise ValueError("Unknown address kind: %d" % kind)
+
+	def customValue(self):
+		valueType = self.byte()
+		if valueType == TYPE_STRING:
+			return self.string()
+		if valueType == TYPE_LONG:
+			return self.zigzag()
+		if valueType == TYPE_DOUBLE:
+			return self.double()
+		if valueType == TYPE_BOOLEAN:
+			return self.byte() != 0
+		raise ValueError("Unknown custom value type: %d" % valueType)
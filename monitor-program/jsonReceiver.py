@@ -2,7 +2,8 @@
 JSONReceiver
 Receiver to receive the packets from the nodes.
 
-The TCP receiver is to synchronize the time between the node and the monitor service.
+The TCP receiver is to synchronize the time between the node and the monitor service, and to receive the
+dictionaries of the nodes that compress their packets.
 The UDP receiver is to receive the node information packets.
 '''
 
@@ -10,11 +11,16 @@ from socket import *
 import thread as thread
 import json
 from copy import copy
+from collections import OrderedDict
+import binascii
+import zlib
 
 from dataStore import DataStore
 from packet import Packet
+from binaryPacket import isBinaryPacket, decodePacket, encodeAck, encodeRelayedAck, isCompressedPacket, decompressPacket
 import time
 import struct
+from threading import Lock
 
 class JSONReceiver:
 	def __init__(self, dataStore, IP="127.0.0.1", UDP_PORT=7000, TCP_PORT=7001, UDP_MaxPacketSize=8096, TCP_MaxPacketSize=8096):
@@ -25,6 +31,15 @@ class JSONReceiver:
 		self.TCP_MaxPacketSize = TCP_MaxPacketSize
 		self.dataStore = dataStore
 
+		# Last keyframe of each node, to restore the full state of delta packets
+		self.keyframes = {}
+		self.keyframeLock = Lock()
+
+		# Compression dictionaries of the nodes by their id, the oldest are removed
+		self.dictionaries = OrderedDict()
+		self.dictionaryLock = Lock()
+		self.maxDictionaries = 1024
+
 		# Starts the receivers
 		self.jsonListener()
 
@@ -41,11 +56,42 @@ class JSONReceiver:
 		s.bind((self.HOST, self.UDP_PORT))
 
 		while 1:
-			# Decodes the packets
-			data = s.recvfrom(self.UDP_MaxPacketSize)[0].decode('utf-8')
+			# Decodes the packets, binary packets are decoded into the same structure as JSON packets
+			data, addr = s.recvfrom(self.UDP_MaxPacketSize)
+			try:
+				if isCompressedPacket(data):
+					self.dictionaryLock.acquire()
+					try:
+						data = decompressPacket(data, self.dictionaries)
+					finally:
+						self.dictionaryLock.release()
+				if isBinaryPacket(data):
+					packet = decodePacket(data)
+				else:
+					packet = json.loads(data.decode('utf-8'))
+			except ValueError:
+				continue
+
+			self.acknowledge(s, packet, addr)
 
 			# Sends the packet to the nodeUpdate function
-			thread.start_new_thread(self.nodeUpdate, (json.loads(data),))
+			thread.start_new_thread(self.nodeUpdate, (packet,))
+
+
+	# Function to acknowledge the data packets of a node in reliable mode, the node retransmits the packets
+	# that are not acknowledged. Relayed packets are acknowledged with the address of their node to the aggregator.
+	def acknowledge(self, s, packet, addr):
+		packets = packet.get("packets", []) if packet.get("type") == "batch" else [packet]
+		nodes = [x["node"] for x in packets if "node" in x and x["node"].get("ack") and "seq" in x["node"]]
+		sequences = [x["seq"] for x in nodes if not x.get("relay")]
+		relayed = [(x["address"], x["seq"]) for x in nodes if x.get("relay")]
+		try:
+			if sequences:
+				s.sendto(encodeAck(sequences), addr)
+			if relayed:
+				s.sendto(encodeRelayedAck(relayed), addr)
+		except error:
+			pass
 
 
 	# TCP receiver to synchronize the time between the node and the monitor
@@ -60,16 +106,34 @@ class JSONReceiver:
 
 
 	# Function to synchronize the time between the monitor and node
+	# A node can send multiple sync requests over one connection, each response is a JSON line
+	# A codec request with the compression dictionary of a node can be larger than one segment, it is read until
+	# it is complete
 	def sync(self, connection, addr):
-		data = connection.recv(self.UDP_MaxPacketSize)
-		time1d = long(round(time.time() * 1000))
+		connection.setsockopt(IPPROTO_TCP, TCP_NODELAY, 1)
 		try:
-			json_data = json.loads(data.decode('utf-8'))
-
-			if "type" in json_data and json_data["type"] == "sync":
-				json_data["time1d"] = time1d
-				json_data["time2"] = long(round(time.time() * 1000))
-				connection.send(str(json_data).encode())
+			while 1:
+				data = connection.recv(self.TCP_MaxPacketSize)
+				time1d = long(round(time.time() * 1000))
+				if not data:
+					break
+
+				while 1:
+					try:
+						json_data = json.loads(data.decode('utf-8'))
+						break
+					except ValueError:
+						more = connection.recv(self.TCP_MaxPacketSize)
+						if not more or len(data) > self.TCP_MaxPacketSize:
+							raise
+						data += more
+
+				if "type" in json_data and json_data["type"] == "sync":
+					json_data["time1d"] = time1d
+					json_data["time2"] = long(round(time.time() * 1000))
+					connection.send((json.dumps(json_data) + "\n").encode())
+				elif "type" in json_data and json_data["type"] == "codec":
+					connection.send((json.dumps(self.addDictionary(json_data)) + "\n").encode())
 
 		except Exception, e:
 			pass
@@ -77,9 +141,71 @@ class JSONReceiver:
 			connection.close()
 
 
+	# Function to keep the compression dictionary of a node, returns the response with the chosen codec
+	def addDictionary(self, json_data):
+		if "deflate" not in json_data.get("codecs", []) or "dictionary" not in json_data:
+			return {"type": "codec", "codec": "none"}
+
+		dictionary = binascii.unhexlify(json_data["dictionary"])
+		dictionaryId = zlib.adler32(dictionary) & 0xFFFFFFFF
+		self.dictionaryLock.acquire()
+		try:
+			self.dictionaries.pop(dictionaryId, None)
+			self.dictionaries[dictionaryId] = dictionary
+			while len(self.dictionaries) > self.maxDictionaries:
+				self.dictionaries.popitem(last=False)
+		finally:
+			self.dictionaryLock.release()
+		return {"type": "codec", "codec": "deflate", "dictionaryId": dictionaryId}
+
+
 	# Function to add the new node information to the data store
 	def nodeUpdate(self, json_data):
+		# A batch packet contains the data packets of multiple send intervals
+		if "type" in json_data and json_data["type"] == "batch" and "packets" in json_data:
+			for packet in json_data["packets"]:
+				self.nodeUpdate(packet)
+			return
+
 		if "type" in json_data and json_data["type"] == "data" and "node" in json_data:
-			packet = Packet(json_data["node"]["address"], json_data["node"]["timeStamp"], json_data["node"])
+			node = self.restoreDelta(json_data["node"])
+			if node is None:
+				return
+
+			packet = Packet(node["address"], node["timeStamp"], node)
 			self.dataStore.addPacket(packet)
 
+
+	# Function to restore the full state of a delta packet using the last keyframe of the node
+	# Returns None if the keyframe of the delta is missing
+	def restoreDelta(self, node):
+		if "seq" not in node:
+			return node
+
+		self.keyframeLock.acquire()
+		try:
+			# Stores the keyframe
+			if "baseSeq" not in node:
+				self.keyframes[node["address"]] = node
+				return node
+
+			keyframe = self.keyframes.get(node["address"])
+			if keyframe is None or keyframe["seq"] != node["baseSeq"]:
+				return None
+		finally:
+			self.keyframeLock.release()
+
+		# Adds the unchanged neighbours of the keyframe
+		present = set(node["removedNeighbours"])
+		present.update(x["address"] for x in node["neighbours"])
+		for neighbour in keyframe["neighbours"]:
+			if neighbour["address"] not in present:
+				node["neighbours"].append(neighbour)
+
+		# Adds the unchanged custom values of the keyframe
+		for key in keyframe["customValues"]:
+			if key not in node["customValues"] and key not in node["removedCustomValues"]:
+				node["customValues"][key] = keyframe["customValues"][key]
+
+		return node
+